@@ -0,0 +1,154 @@
+package game;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+
+/**
+ * The level folders the benchmarks work on: the levels shipped in the game jar, copied out to a temporary folder, and
+ * synthetic levels made of a shipped one plus thousands of objects scattered over the board.
+ *
+ * The synthetic objects go anywhere on the grid, overlapping each other and the path edges: no level would look like
+ * that, but the parsing, the object lists and the collision checks get the load of a level scaled up.
+ */
+class BenchmarkLevels {
+
+    /**
+     * The grid positions an object frame may take on the board.
+     */
+    private static final int COLUMNS = (int) (LevelData.BOARD_WIDTH / LevelData.GRID_DIMENSION) - 1;
+    private static final int ROWS = (int) (LevelData.BOARD_HEIGHT / LevelData.GRID_DIMENSION) - 1;
+
+    /*
+     * The synthetic objects are shared out between these files, as many of each
+     */
+    private static final String[] SYNTHETIC_FILES = {"arrows.dat", "amulets.dat", "ornaments.dat", "keys.dat",
+            "doors.dat"};
+
+    private static final long SEED = 1992;
+
+    /**
+     * Copy the levels out of the game jar, one NN folder each, as ~/.EistReturns/levels has them.
+     *
+     * @return the folder with the levels
+     */
+    static File extractLevels(File target) throws IOException {
+
+        for (int level = 0; level < 100; level++) {
+            String name = (level < 10) ? "0" + level : String.valueOf(level);
+            if (BenchmarkLevels.class.getClassLoader().getResource("levels/" + name + "/level.dat") == null) {
+                continue;
+            }
+            File folder = new File(target, name);
+            copyLevelResources("levels/" + name + "/", folder);
+        }
+        return target;
+    }
+
+    /**
+     * @param base         a level folder
+     * @param extraObjects the objects added to those of the base level
+     * @return the synthetic level folder, in the target folder
+     */
+    static File syntheticLevel(File base, int extraObjects, File target) throws IOException {
+
+        copyFolder(base.toPath(), target.toPath());
+
+        Random random = new Random(SEED);
+        for (int i = 0; i < SYNTHETIC_FILES.length; i++) {
+            String name = SYNTHETIC_FILES[i];
+            int columns = LevelAssets.columnsOf(name);
+            int count = extraObjects / SYNTHETIC_FILES.length + (i < extraObjects % SYNTHETIC_FILES.length ? 1 : 0);
+
+            File file = new File(target, name);
+            StringBuilder content = new StringBuilder();
+            if (file.exists()) {
+                content.append(new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII).trim());
+            }
+            for (int j = 0; j < count; j++) {
+                if (content.length() > 0 && content.charAt(content.length() - 1) != ':') {
+                    content.append(':');
+                }
+                content.append(random.nextInt(COLUMNS)).append(',').append(random.nextInt(ROWS));
+                if (columns > 2) {
+                    /*
+                     * Direction or orientation
+                     */
+                    content.append(',').append(random.nextInt(name.equals("doors.dat") ? 2 : 4));
+                }
+            }
+            Files.write(file.toPath(), content.toString().getBytes(StandardCharsets.US_ASCII));
+        }
+
+        /*
+         * A bundle of the base level would be out of date now
+         */
+        Files.deleteIfExists(new File(target, LevelBundle.FILE_NAME).toPath());
+        return target;
+    }
+
+    /**
+     * @return the folder for the level: the shipped one, or a synthetic one if there are extra objects
+     */
+    static File levelFolder(File levels, String level, int extraObjects, File scratch) throws IOException {
+
+        File base = new File(levels, level);
+        if (extraObjects == 0) {
+            return base;
+        }
+        return syntheticLevel(base, extraObjects, new File(scratch, level + "-" + extraObjects));
+    }
+
+    static File createTempFolder(String prefix) throws IOException {
+        return Files.createTempDirectory(prefix).toFile();
+    }
+
+    static void deleteFolder(File folder) throws IOException {
+
+        if (folder == null || !folder.exists()) {
+            return;
+        }
+        Files.walkFileTree(folder.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static void copyLevelResources(String resource, File folder) throws IOException {
+
+        folder.mkdirs();
+        for (String[] names : new String[][]{LevelAssets.DATA_FILES, LevelBundle.IMAGE_FILES}) {
+            for (String name : names) {
+                try (InputStream inputStream = BenchmarkLevels.class.getClassLoader()
+                        .getResourceAsStream(resource + name)) {
+                    if (inputStream != null) {
+                        Files.copy(inputStream, new File(folder, name).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void copyFolder(Path source, Path target) throws IOException {
+
+        Files.createDirectories(target);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(source)) {
+            for (Path file : files) {
+                if (Files.isRegularFile(file)) {
+                    Files.copy(file, target.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+    }
+}
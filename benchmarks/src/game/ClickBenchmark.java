@@ -0,0 +1,86 @@
+package game;
+
+import javafx.geometry.Rectangle2D;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static game.Utils.DIR_RIGHT;
+
+/**
+ * The in-game click path: the click snapped to a square on the path (WalkabilityMask.nearestAdjustedSquare()), then
+ * the arrow placed if the square is free of level objects (the arrowAllowed() check, in GameState.placeArrow()), and
+ * taken away again. The board is restored after each batch of clicks, as the arrow taken away may be a level one.
+ *
+ * The clicks are spread over the board, the ones off the path included, but not over the board margin, where
+ * nearestAdjustedSquare() prints a message. The score is per click.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClickBenchmark {
+
+    private static final int CLICKS = 1024;
+
+    @Param({"01", "20", "40"})
+    public String level;
+
+    @Param({"0", "2000", "20000"})
+    public int extraObjects;
+
+    private File scratch;
+    private WalkabilityMask walkability;
+    private GameState state;
+    private GameState.Snapshot start;
+    private final double[] clickX = new double[CLICKS];
+    private final double[] clickY = new double[CLICKS];
+
+    @Setup
+    public void setUp() throws IOException {
+
+        scratch = BenchmarkLevels.createTempFolder("eist-bench");
+        File levels = BenchmarkLevels.extractLevels(new File(scratch, "levels"));
+        LevelData levelData = LevelData.loadFiles(BenchmarkLevels.levelFolder(levels, level, extraObjects, scratch));
+
+        walkability = (WalkabilityMask) levelData.getTerrain();
+        state = levelData.newGame(GameClock.DEFAULT_TICK_RATE);
+        start = state.snapshot();
+
+        double margin = LevelData.GRID_DIMENSION;
+        Random random = new Random(1992);
+        for (int i = 0; i < CLICKS; i++) {
+            clickX[i] = margin + random.nextDouble() * (LevelData.BOARD_WIDTH - 2 * margin);
+            clickY[i] = margin + random.nextDouble() * (LevelData.BOARD_HEIGHT - 2 * margin);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkLevels.deleteFolder(scratch);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CLICKS)
+    public int click() {
+
+        int placed = 0;
+        for (int i = 0; i < CLICKS; i++) {
+            if (walkability.isVoid((int) clickX[i], (int) clickY[i])) {
+                continue;
+            }
+            Rectangle2D square = walkability.nearestAdjustedSquare(clickX[i], clickY[i]);
+            if (square != null && state.placeArrow(square.getMinX(), square.getMinY(), DIR_RIGHT)) {
+                state.removeArrow(square);
+                placed++;
+            }
+        }
+        state.restore(start);
+        return placed;
+    }
+}
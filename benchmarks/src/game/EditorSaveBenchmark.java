@@ -0,0 +1,70 @@
+package game;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import game.Sprites.Arrow;
+import game.Sprites.Artifact;
+import game.Sprites.Door;
+import game.Sprites.Key;
+import game.Sprites.Slot;
+import game.Sprites.Teleport;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The editor save, as far as it goes without the FX toolkit: the object lists turned into the .dat file content
+ * (Utils.datContent(), as saveEditor() calls it). Writing the files is left out.
+ *
+ * The ornaments are not in LevelData, which only has what the game rules need; the synthetic ornaments are missing
+ * from the measurement then.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EditorSaveBenchmark {
+
+    @Param({"01", "20", "40"})
+    public String level;
+
+    @Param({"0", "2000", "20000"})
+    public int extraObjects;
+
+    private File scratch;
+    private LevelData levelData;
+
+    @Setup
+    public void setUp() throws IOException {
+
+        scratch = BenchmarkLevels.createTempFolder("eist-bench");
+        File levels = BenchmarkLevels.extractLevels(new File(scratch, "levels"));
+        levelData = LevelData.loadFiles(BenchmarkLevels.levelFolder(levels, level, extraObjects, scratch));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkLevels.deleteFolder(scratch);
+    }
+
+    @Benchmark
+    public void serialize(Blackhole blackhole) {
+
+        double grid = LevelData.GRID_DIMENSION;
+        blackhole.consume(Utils.datContent(levelData.getArrows(), grid, Arrow::getPosX, Arrow::getPosY,
+                Arrow::getDirection));
+        blackhole.consume(Utils.datContent(levelData.getArtifacts(), grid, Artifact::getPosX, Artifact::getPosY,
+                null));
+        blackhole.consume(Utils.datContent(levelData.getDoors(), grid, Door::getPosX, Door::getPosY,
+                Door::getOrientation));
+        blackhole.consume(Utils.datContent(levelData.getKeys(), grid, Key::getPosX, Key::getPosY, null));
+        blackhole.consume(Utils.datContent(levelData.getSlots(), grid, Slot::getPosX, Slot::getPosY,
+                Slot::getOrientation));
+        blackhole.consume(Utils.datContent(levelData.getTeleports(), grid, Teleport::getPosX, Teleport::getPosY,
+                null));
+    }
+}
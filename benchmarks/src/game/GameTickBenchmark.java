@@ -0,0 +1,72 @@
+package game;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The game tick: Eist moved one step and checked against the object lists (arrows, artifacts, teleports, keys,
+ * doors, the exit) and the walkability mask, as on every frame.
+ *
+ * Eist walks from the level start; once fallen, stopped or out, the level starts over from the snapshot taken at
+ * the start. The score is per tick, the restarts included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameTickBenchmark {
+
+    private static final int TICKS = 600;
+
+    @Param({"01", "20", "40"})
+    public String level;
+
+    @Param({"0", "2000", "20000"})
+    public int extraObjects;
+
+    private File scratch;
+    private GameState state;
+    private GameState.Snapshot start;
+    private boolean finished;
+
+    @Setup
+    public void setUp() throws IOException {
+
+        scratch = BenchmarkLevels.createTempFolder("eist-bench");
+        File levels = BenchmarkLevels.extractLevels(new File(scratch, "levels"));
+        LevelData levelData = LevelData.loadFiles(BenchmarkLevels.levelFolder(levels, level, extraObjects, scratch));
+
+        state = levelData.newGame(GameClock.DEFAULT_TICK_RATE);
+        state.setListener((event, x) -> {
+            if (event == GameState.EVENT_FALL_END || event == GameState.EVENT_EXIT_REACHED) {
+                finished = true;
+            }
+        });
+        state.start();
+        start = state.snapshot();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkLevels.deleteFolder(scratch);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TICKS)
+    public long tick() {
+
+        for (int i = 0; i < TICKS; i++) {
+            if (finished || !state.getEist().isMoving) {
+                state.restore(start);
+                finished = false;
+            }
+            state.tick();
+        }
+        return state.getTicks();
+    }
+}
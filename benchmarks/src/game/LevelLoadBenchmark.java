@@ -0,0 +1,79 @@
+package game;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Level loading, headless: the .dat files parsed from memory, the whole level folder loaded (the board decoded and
+ * the walkability mask built included), and the same level loaded from its bundle.
+ *
+ * parseDat is what the game used to do with datToString() and String.split(), now done by DatReader; the files get
+ * read before the measurement, so that only the parsing counts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LevelLoadBenchmark {
+
+    @Param({"01", "20", "40"})
+    public String level;
+
+    /**
+     * Added to the level objects; see BenchmarkLevels.
+     */
+    @Param({"0", "2000", "20000"})
+    public int extraObjects;
+
+    private File scratch;
+    private File folder;
+    private File bundleFile;
+    private byte[][] datBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+
+        scratch = BenchmarkLevels.createTempFolder("eist-bench");
+        File levels = BenchmarkLevels.extractLevels(new File(scratch, "levels"));
+        folder = BenchmarkLevels.levelFolder(levels, level, extraObjects, scratch);
+
+        datBytes = new byte[LevelAssets.DATA_FILES.length][];
+        for (int i = 0; i < LevelAssets.DATA_FILES.length; i++) {
+            File file = new File(folder, LevelAssets.DATA_FILES[i]);
+            datBytes[i] = file.exists() ? Files.readAllBytes(file.toPath()) : new byte[0];
+        }
+
+        bundleFile = new File(scratch, level + "-" + extraObjects + ".bundle");
+        LevelBundle.write(folder, bundleFile);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkLevels.deleteFolder(scratch);
+    }
+
+    @Benchmark
+    public void parseDat(Blackhole blackhole) throws IOException {
+
+        for (int i = 0; i < LevelAssets.DATA_FILES.length; i++) {
+            blackhole.consume(DatReader.read(datBytes[i], LevelAssets.DATA_FILES[i], LevelAssets.DATA_COLUMNS[i]));
+        }
+    }
+
+    @Benchmark
+    public Object loadFiles() throws IOException {
+        return LevelData.loadFiles(folder);
+    }
+
+    @Benchmark
+    public Object loadBundle() throws IOException {
+        return LevelData.load(LevelBundle.open(bundleFile));
+    }
+}
@@ -0,0 +1,58 @@
+package game;
+
+import org.openjdk.jmh.annotations.*;
+
+import game.ZipUtils.ZipFileUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The level export and import of the game menu: the full level set (the levels shipped) zipped with
+ * ZipFileUtil.zipDirectory(), and the archive unzipped with ZipFileUtil.unzip(). Both go through the file system, as
+ * in the game.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ZipBenchmark {
+
+    private File scratch;
+    private File levels;
+    private File zipFile;
+    private File archive;
+    private File unzipped;
+
+    @Setup
+    public void setUp() throws IOException {
+
+        scratch = BenchmarkLevels.createTempFolder("eist-bench");
+        levels = BenchmarkLevels.extractLevels(new File(scratch, "levels"));
+        zipFile = new File(scratch, "export.zip");
+
+        archive = new File(scratch, "levels.zip");
+        ZipFileUtil.zipDirectory(levels, archive);
+        unzipped = new File(scratch, "unzipped");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkLevels.deleteFolder(scratch);
+    }
+
+    @Benchmark
+    public long zipDirectory() throws IOException {
+
+        ZipFileUtil.zipDirectory(levels, zipFile);
+        return zipFile.length();
+    }
+
+    @Benchmark
+    public int unzip() throws IOException {
+        return ZipFileUtil.unzip(archive, unzipped.getPath());
+    }
+}
@@ -0,0 +1,132 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads the game assets on a small pool of worker threads. The assets come in groups: what the first frame can't be
+ * drawn without, and what only gets used later (music, sounds, menu and editor bitmaps), so that the game shows up
+ * before all of it is in.
+ *
+ * The groups add up: GROUP_LATER is loaded when everything is, GROUP_FIRST_FRAME included.
+ *
+ * The loading tasks assign the fields they load. The group completion actions run after all the tasks of the group
+ * have finished, so the fields are safe to read from there on (and from whatever thread the action hands over to).
+ */
+class AssetLoader {
+
+    static final int GROUP_FIRST_FRAME = 0;
+    static final int GROUP_LATER = 1;
+
+    private static final int GROUP_COUNT = 2;
+
+    /**
+     * Most of the work is decoding and file reading; more threads than that just compete for the same disk.
+     */
+    private static final int MAX_THREADS = 4;
+
+    private final ExecutorService executor;
+
+    private final List<List<Runnable>> tasks = new ArrayList<>();
+    private final List<CompletableFuture<Void>> groups = new ArrayList<>();
+
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger done = new AtomicInteger();
+
+    private Runnable progressListener;
+
+    AssetLoader() {
+
+        int threads = Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()));
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "asset-loader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < GROUP_COUNT; i++) {
+            tasks.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * @param progressListener called on a worker thread whenever a task finishes
+     */
+    void setProgressListener(Runnable progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Queue a task. Exceptions get logged, and the rest of the group loads on; the task is expected to report
+     * failures that matter itself, as the synchronous loading did. The time taken goes to an eist.AssetLoad event.
+     */
+    void add(int group, String name, Runnable task) {
+
+        if (!groups.isEmpty()) {
+            throw new IllegalStateException("Loading already started");
+        }
+        total.incrementAndGet();
+        tasks.get(group).add(() -> {
+            GameEvents.AssetLoad event = new GameEvents.AssetLoad();
+            event.begin();
+            event.asset = name;
+            event.group = group;
+            try {
+                task.run();
+                event.outcome = GameEvents.OUTCOME_OK;
+            } catch (RuntimeException e) {
+                System.out.println("Couldn't load " + name + ": " + e);
+                event.outcome = e.toString();
+            }
+            event.commit();
+            done.incrementAndGet();
+            if (progressListener != null) {
+                progressListener.run();
+            }
+        });
+    }
+
+    /**
+     * Start loading; no more tasks after this. The tasks get submitted group by group, so that the first frame
+     * doesn't wait for the later ones whatever the order they were added in. The pool threads end once the tasks
+     * have finished.
+     */
+    void start() {
+
+        List<CompletableFuture<Void>> upToGroup = new ArrayList<>();
+        for (List<Runnable> group : tasks) {
+            for (Runnable task : group) {
+                upToGroup.add(CompletableFuture.runAsync(task, executor));
+            }
+            groups.add(CompletableFuture.allOf(upToGroup.toArray(new CompletableFuture<?>[0])));
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * @param action run once all the tasks of the group (and the groups before) have finished; on the thread
+     *               finishing the last one, or on the calling thread if they all have already
+     */
+    void whenLoaded(int group, Runnable action) {
+        groups.get(group).thenRun(action);
+    }
+
+    /**
+     * Block until everything is loaded; for the editor, which doesn't show anything before.
+     */
+    void awaitAll() {
+        groups.get(groups.size() - 1).join();
+    }
+
+    /**
+     * @return the part of the tasks finished, 0 to 1
+     */
+    double getProgress() {
+        int count = total.get();
+        return count > 0 ? (double) done.get() / count : 1;
+    }
+}
@@ -0,0 +1,245 @@
+package game;
+
+import javafx.application.Platform;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+
+/**
+ * The bitmap of a board.dat board (see LevelData), decoded a tile at a time as the camera gets near, instead of whole:
+ * a 128 x 128 squares board is 7680 pixels a side, 225 MB decoded. The tiles in view and the ones around them get
+ * decoded in the background, from the PNG file kept as it was; once more than MAX_TILES are decoded, the ones drawn
+ * the longest ago get dropped. A tile not decoded yet is drawn black, as off the path.
+ *
+ * A PNG file can only be read from the start, so a row of tiles is decoded at once, the ones missing of it.
+ */
+class BoardTiles {
+
+    static final int TILE_DIMENSION = 8 * (int) LevelData.GRID_DIMENSION;
+
+    private static final int MAX_TILES = 48;
+
+    private final byte[] png;
+    private final int width;
+    private final int height;
+    private final int columns;
+    private final int rows;
+
+    /*
+     * On the FX thread only
+     */
+    private final Image[] tiles;
+    private final long[] lastDrawn;
+    private final boolean[] loading;
+    private int loadedCount;
+    private long frame;
+    private int version;
+
+    private Executor executor;
+    private Runnable onLoaded;
+
+    /**
+     * @param png    the board.png content
+     * @param width  the bitmap dimensions, checked by the caller
+     */
+    BoardTiles(byte[] png, int width, int height) {
+
+        this.png = png;
+        this.width = width;
+        this.height = height;
+        columns = (width + TILE_DIMENSION - 1) / TILE_DIMENSION;
+        rows = (height + TILE_DIMENSION - 1) / TILE_DIMENSION;
+        tiles = new Image[columns * rows];
+        lastDrawn = new long[columns * rows];
+        loading = new boolean[columns * rows];
+    }
+
+    /**
+     * @param executor decodes the tiles
+     * @param onLoaded runs on the FX thread when tiles got decoded, for the view to be drawn again
+     */
+    void setLoading(Executor executor, Runnable onLoaded) {
+        this.executor = executor;
+        this.onLoaded = onLoaded;
+    }
+
+    /**
+     * @return changes whenever tiles get decoded
+     */
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * Draw the tiles of the area, in board coordinates, and have the ones around it decoded; on the FX thread.
+     *
+     * @return the drawImage calls made
+     */
+    int draw(GraphicsContext gc, double minX, double minY, double maxX, double maxY) {
+
+        frame++;
+        int minColumn = Math.max(0, (int) Math.floor(minX / TILE_DIMENSION));
+        int minRow = Math.max(0, (int) Math.floor(minY / TILE_DIMENSION));
+        int maxColumn = Math.min(columns - 1, (int) Math.floor(maxX / TILE_DIMENSION));
+        int maxRow = Math.min(rows - 1, (int) Math.floor(maxY / TILE_DIMENSION));
+
+        int drawn = 0;
+        gc.setFill(Color.BLACK);
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+
+                int idx = row * columns + column;
+                int x = column * TILE_DIMENSION;
+                int y = row * TILE_DIMENSION;
+                int tileWidth = Math.min(TILE_DIMENSION, width - x);
+                int tileHeight = Math.min(TILE_DIMENSION, height - y);
+                if (tiles[idx] != null) {
+                    gc.drawImage(tiles[idx], x, y, tileWidth, tileHeight);
+                    lastDrawn[idx] = frame;
+                    drawn++;
+                } else {
+                    gc.fillRect(x, y, tileWidth, tileHeight);
+                }
+            }
+        }
+
+        for (int row = Math.max(0, minRow - 1); row <= Math.min(rows - 1, maxRow + 1); row++) {
+            load(row, Math.max(0, minColumn - 1), Math.min(columns - 1, maxColumn + 1));
+        }
+        return drawn;
+    }
+
+    /**
+     * Decode the tiles of the row, from the first to the last of the columns given not decoded nor decoding yet.
+     */
+    private void load(int row, int minColumn, int maxColumn) {
+
+        int first = -1;
+        int last = -1;
+        for (int column = minColumn; column <= maxColumn; column++) {
+            int idx = row * columns + column;
+            if (tiles[idx] == null && !loading[idx]) {
+                if (first < 0) {
+                    first = column;
+                }
+                last = column;
+            }
+        }
+        if (first < 0 || executor == null) {
+            return;
+        }
+        for (int column = first; column <= last; column++) {
+            loading[row * columns + column] = true;
+        }
+
+        int firstColumn = first;
+        int lastColumn = last;
+        executor.execute(() -> {
+            Image[] decoded;
+            try {
+                decoded = decode(row, firstColumn, lastColumn);
+            } catch (IOException | RuntimeException e) {
+                // Left loading: not tried again, the tiles stay black
+                System.out.println("Couldn't decode the board tiles of row " + row + ": " + e);
+                return;
+            }
+            Platform.runLater(() -> {
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    int idx = row * columns + column;
+                    loading[idx] = false;
+                    if (tiles[idx] == null) {
+                        tiles[idx] = decoded[column - firstColumn];
+                        lastDrawn[idx] = frame;
+                        loadedCount++;
+                    }
+                }
+                evict();
+                version++;
+                if (onLoaded != null) {
+                    onLoaded.run();
+                }
+            });
+        });
+    }
+
+    /**
+     * Runs on the executor.
+     */
+    private Image[] decode(int row, int firstColumn, int lastColumn) throws IOException {
+
+        int x = firstColumn * TILE_DIMENSION;
+        int y = row * TILE_DIMENSION;
+        int bandWidth = Math.min(width, (lastColumn + 1) * TILE_DIMENSION) - x;
+        int bandHeight = Math.min(TILE_DIMENSION, height - y);
+
+        BufferedImage band;
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(png))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IOException("Not an image");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(new Rectangle(x, y, bandWidth, bandHeight));
+                band = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        Image[] decoded = new Image[lastColumn - firstColumn + 1];
+        int[] argb = new int[TILE_DIMENSION * TILE_DIMENSION];
+        for (int i = 0; i < decoded.length; i++) {
+            int tileX = i * TILE_DIMENSION;
+            int tileWidth = Math.min(TILE_DIMENSION, bandWidth - tileX);
+            band.getRGB(tileX, 0, tileWidth, bandHeight, argb, 0, tileWidth);
+            WritableImage tile = new WritableImage(tileWidth, bandHeight);
+            tile.getPixelWriter().setPixels(0, 0, tileWidth, bandHeight, PixelFormat.getIntArgbInstance(), argb, 0,
+                    tileWidth);
+            decoded[i] = tile;
+        }
+        return decoded;
+    }
+
+    /**
+     * Drop the tiles drawn the longest ago, down to MAX_TILES; not the ones drawn on the last frame.
+     */
+    private void evict() {
+
+        while (loadedCount > MAX_TILES) {
+            int oldest = -1;
+            for (int i = 0; i < tiles.length; i++) {
+                if (tiles[i] != null && lastDrawn[i] < frame && (oldest < 0 || lastDrawn[i] < lastDrawn[oldest])) {
+                    oldest = i;
+                }
+            }
+            if (oldest < 0) {
+                return;
+            }
+            tiles[oldest] = null;
+            loadedCount--;
+        }
+    }
+
+    /**
+     * @return the PNG file and the most tiles decoded at once, at 4 bytes a pixel
+     */
+    long estimateBytes() {
+        return png.length + 4L * MAX_TILES * TILE_DIMENSION * TILE_DIMENSION;
+    }
+}
@@ -0,0 +1,123 @@
+package game;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.stage.Screen;
+
+/**
+ * The board as shown in the window. The game works in a fixed logical space, the one the source graphics were drawn
+ * for: 1920 x 1080, 120 px frames (see LevelData). The view scales it uniformly to fit the window, centered, with
+ * black bars on the sides that don't have the board's aspect ratio; a window resize only changes the view, never the
+ * game state.
+ *
+ * The raster scale is the one the sprites get rasterized at (see SpriteAtlas): the view scale times the output scale
+ * of a HiDPI screen, rounded up to a step, so that resizing by a few pixels doesn't call for new sprites.
+ */
+class BoardView {
+
+    static final double WIDTH = LevelData.BOARD_WIDTH;
+    static final double HEIGHT = LevelData.BOARD_HEIGHT;
+
+    private static final double RASTER_STEP = 0.125;
+
+    private double scale = 1;
+    private double x;
+    private double y;
+    private double outputScale = 1;
+
+    /**
+     * @return the window width for the board dimensions setting: the screen width divided by it
+     */
+    static double windowWidth(double divider) {
+        return Screen.getPrimary().getVisualBounds().getWidth() / divider;
+    }
+
+    static double windowHeight(double divider) {
+        return windowWidth(divider) / WIDTH * HEIGHT;
+    }
+
+    /**
+     * Fit the board to the window.
+     *
+     * @param outputScale window pixels per scene pixel, more than 1 on HiDPI screens
+     * @return true if the view changed
+     */
+    boolean fit(double windowWidth, double windowHeight, double outputScale) {
+
+        double newScale = Math.max(0.01, Math.min(windowWidth / WIDTH, windowHeight / HEIGHT));
+        double newX = Math.round((windowWidth - WIDTH * newScale) / 2);
+        double newY = Math.round((windowHeight - HEIGHT * newScale) / 2);
+        if (newScale == scale && newX == x && newY == y && outputScale == this.outputScale) {
+            return false;
+        }
+        scale = newScale;
+        x = newX;
+        y = newY;
+        this.outputScale = outputScale;
+        return true;
+    }
+
+    /**
+     * @return window pixels per logical pixel
+     */
+    double getScale() {
+        return scale;
+    }
+
+    /**
+     * @return the board top left corner in the window
+     */
+    double getX() {
+        return x;
+    }
+
+    double getY() {
+        return y;
+    }
+
+    double getRasterScale() {
+        return Math.max(RASTER_STEP, Math.ceil(scale * outputScale / RASTER_STEP) * RASTER_STEP);
+    }
+
+    /**
+     * Draw in logical coordinates from now on.
+     */
+    void apply(GraphicsContext gc) {
+        gc.setTransform(scale, 0, 0, scale, x, y);
+    }
+
+    /**
+     * Draw in logical coordinates transformed by the matrix given (as GraphicsContext.setTransform() takes it); set
+     * without anything allocated, for the drawing done every frame.
+     */
+    void apply(GraphicsContext gc, double mxx, double myx, double mxy, double myy, double mxt, double myt) {
+        gc.setTransform(scale * mxx, scale * myx, scale * mxy, scale * myy, scale * mxt + x, scale * myt + y);
+    }
+
+    /**
+     * @return the logical x of a scene x
+     */
+    double toBoardX(double sceneX) {
+        return (sceneX - x) / scale;
+    }
+
+    double toBoardY(double sceneY) {
+        return (sceneY - y) / scale;
+    }
+
+    /**
+     * @return true if the scene point is on the board, not on a black bar
+     */
+    boolean contains(double sceneX, double sceneY) {
+        double boardX = toBoardX(sceneX);
+        double boardY = toBoardY(sceneY);
+        return boardX >= 0 && boardY >= 0 && boardX < WIDTH && boardY < HEIGHT;
+    }
+
+    /**
+     * @return the board area in the window
+     */
+    Rectangle2D getArea() {
+        return new Rectangle2D(x, y, WIDTH * scale, HEIGHT * scale);
+    }
+}
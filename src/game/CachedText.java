@@ -0,0 +1,29 @@
+package game;
+
+import java.util.function.IntFunction;
+
+/**
+ * HUD text built from a single int value. The string is rebuilt only when the value changes, so that drawing the HUD
+ * every frame doesn't allocate.
+ */
+class CachedText {
+
+    private final IntFunction<String> format;
+
+    private boolean valid;
+    private int value;
+    private String text;
+
+    CachedText(IntFunction<String> format) {
+        this.format = format;
+    }
+
+    String of(int value) {
+        if (!valid || value != this.value) {
+            this.value = value;
+            text = format.apply(value);
+            valid = true;
+        }
+        return text;
+    }
+}
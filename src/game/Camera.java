@@ -0,0 +1,127 @@
+package game;
+
+/**
+ * The part of the board the game shows. A 1920 x 1080 board is shown whole, the menu being a part of its bitmap. A
+ * board.dat board (see LevelData) is shown in the playfield, left of the menu, scrolled to keep Eist in view: the
+ * camera moves once Eist gets closer to a view edge than FOLLOW_MARGIN of the view, and stops at the board edges.
+ * A board narrower or lower than the playfield gets centered in it.
+ *
+ * The view is in board coordinates; drawing takes what is in it only (see CellList.allIntersecting() and BoardTiles),
+ * so that a frame costs what the window shows, whatever the board size.
+ */
+class Camera {
+
+    /**
+     * The board part of the 1920 x 1080 layout: the columns left of the menu.
+     */
+    static final double PLAYFIELD_WIDTH = 26 * LevelData.GRID_DIMENSION;
+    static final double PLAYFIELD_HEIGHT = LevelData.BOARD_HEIGHT;
+
+    private static final double FOLLOW_MARGIN = 1 / 3d;
+
+    private boolean sized;
+    private double boardWidth = BoardView.WIDTH;
+    private double boardHeight = BoardView.HEIGHT;
+
+    private double x;
+    private double y;
+
+    /**
+     * @param sized a board.dat board, shown in the playfield; the view is the whole layout otherwise
+     */
+    void setBoard(double width, double height, boolean sized) {
+        this.sized = sized;
+        boardWidth = width;
+        boardHeight = height;
+        x = 0;
+        y = 0;
+    }
+
+    boolean isSized() {
+        return sized;
+    }
+
+    double getBoardWidth() {
+        return boardWidth;
+    }
+
+    double getBoardHeight() {
+        return boardHeight;
+    }
+
+    /**
+     * @return the board x at the view left edge
+     */
+    double getX() {
+        return x;
+    }
+
+    double getY() {
+        return y;
+    }
+
+    double getWidth() {
+        return sized ? PLAYFIELD_WIDTH : BoardView.WIDTH;
+    }
+
+    double getHeight() {
+        return sized ? PLAYFIELD_HEIGHT : BoardView.HEIGHT;
+    }
+
+    /**
+     * Center the view on the board point, as far as the board edges allow; on a level start.
+     *
+     * @param pixels window pixels per logical pixel: the view moves by whole pixels, so that the board doesn't get
+     *               resampled differently on every frame it scrolls
+     */
+    void center(double pointX, double pointY, double pixels) {
+        if (sized) {
+            x = clamp(pointX - getWidth() / 2, boardWidth, getWidth(), pixels);
+            y = clamp(pointY - getHeight() / 2, boardHeight, getHeight(), pixels);
+        }
+    }
+
+    /**
+     * Move the view for the board point to stay out of its margins.
+     */
+    void follow(double pointX, double pointY, double pixels) {
+
+        if (!sized) {
+            return;
+        }
+        double width = getWidth();
+        double height = getHeight();
+        double marginX = width * FOLLOW_MARGIN;
+        double marginY = height * FOLLOW_MARGIN;
+
+        double newX = x;
+        if (pointX < x + marginX) {
+            newX = pointX - marginX;
+        } else if (pointX > x + width - marginX) {
+            newX = pointX - width + marginX;
+        }
+        double newY = y;
+        if (pointY < y + marginY) {
+            newY = pointY - marginY;
+        } else if (pointY > y + height - marginY) {
+            newY = pointY - height + marginY;
+        }
+        x = clamp(newX, boardWidth, width, pixels);
+        y = clamp(newY, boardHeight, height, pixels);
+    }
+
+    /**
+     * @return true if the area, in board coordinates, is at least partly in view
+     */
+    boolean isVisible(double areaX, double areaY, double width, double height) {
+        return areaX + width > x && areaY + height > y && areaX < x + getWidth() && areaY < y + getHeight();
+    }
+
+    private static double clamp(double position, double boardDimension, double viewDimension, double pixels) {
+
+        double clamped = boardDimension <= viewDimension
+                ? (boardDimension - viewDimension) / 2
+                : Math.max(0, Math.min(boardDimension - viewDimension, position));
+        return Math.round(clamped * pixels) / pixels;
+    }
+}
@@ -0,0 +1,152 @@
+package game;
+
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+
+import java.util.Arrays;
+
+/**
+ * The sprites drawn into a transparent Canvas, as big as the window. Only the areas drawn on the previous frame get
+ * cleared, not the whole canvas; the canvas command buffer gets the clears and the drawImage calls of the frame, and
+ * the FX render thread replays them.
+ *
+ * The areas drawn are kept in layout coordinates, so that they get cleared where they were drawn once the viewport
+ * has scrolled.
+ */
+class CanvasSpriteRenderer implements SpriteRenderer {
+
+    private final BoardView view;
+    private final Canvas canvas = new Canvas();
+    private final GraphicsContext gc = canvas.getGraphicsContext2D();
+
+    private SpriteAtlas atlas;
+
+    private double viewportX;
+    private double viewportY;
+    private double viewportWidth = BoardView.WIDTH;
+    private double viewportHeight = BoardView.HEIGHT;
+    private boolean clipped; // In the frame being given
+
+    /**
+     * x, y, width, height of the areas drawn on the last frame.
+     */
+    private double[] dirtyRects = new double[64];
+    private int dirtyCount;
+
+    CanvasSpriteRenderer(BoardView view) {
+        this.view = view;
+    }
+
+    @Override
+    public String getName() {
+        return CANVAS;
+    }
+
+    @Override
+    public Node getNode() {
+        return canvas;
+    }
+
+    @Override
+    public void resize(double width, double height) {
+
+        canvas.setWidth(width);
+        canvas.setHeight(height);
+        gc.setTransform(1, 0, 0, 1, 0, 0);
+        gc.clearRect(0, 0, width, height);
+        view.apply(gc);
+        dirtyCount = 0;
+    }
+
+    @Override
+    public void setViewport(double x, double y, double width, double height) {
+        viewportX = x;
+        viewportY = y;
+        viewportWidth = width;
+        viewportHeight = height;
+    }
+
+    @Override
+    public void beginFrame(SpriteAtlas atlas) {
+
+        this.atlas = atlas;
+        view.apply(gc);
+        for (int i = 0; i < dirtyCount; i += 4) {
+            gc.clearRect(dirtyRects[i], dirtyRects[i + 1], dirtyRects[i + 2], dirtyRects[i + 3]);
+        }
+        dirtyCount = 0;
+
+        clipped = viewportWidth < BoardView.WIDTH || viewportHeight < BoardView.HEIGHT;
+        if (clipped) {
+            gc.save();
+            gc.beginPath();
+            gc.rect(0, 0, viewportWidth, viewportHeight);
+            gc.clip();
+        }
+        applyViewport();
+    }
+
+    @Override
+    public void draw(int sprite, int frame, double x, double y) {
+        atlas.draw(gc, sprite, frame, x, y);
+        markDirty(x, y, atlas.getWidth(sprite), atlas.getHeight(sprite));
+    }
+
+    @Override
+    public void drawRotated(int sprite, int frame, double x, double y, double degrees) {
+
+        RotatedFrames.Cell cell = atlas.getRotated(sprite, frame, degrees);
+        if (cell != null) {
+            atlas.draw(gc, cell, x, y);
+            markDirty(x + cell.x, y + cell.y, cell.width, cell.height);
+            return;
+        }
+
+        /*
+         * No rotated frames: the matrix is set directly, neither a Rotate nor a saved GraphicsContext state gets
+         * allocated on every frame of the turn.
+         */
+        double width = atlas.getWidth(sprite);
+        double height = atlas.getHeight(sprite);
+        double angle = Math.toRadians(atlas.quantizeRotation(degrees));
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+        double pivotX = x + width / 2;
+        double pivotY = y + height / 2;
+        view.apply(gc, cos, sin, -sin, cos, pivotX - cos * pivotX + sin * pivotY - viewportX,
+                pivotY - sin * pivotX - cos * pivotY - viewportY);
+        atlas.draw(gc, sprite, frame, x, y);
+        applyViewport();
+
+        // The rotated frame fits in the square of its diagonal, around the same center
+        double diagonal = Math.hypot(width, height);
+        markDirty(pivotX - diagonal / 2, pivotY - diagonal / 2, diagonal, diagonal);
+    }
+
+    @Override
+    public void endFrame() {
+        if (clipped) {
+            gc.restore();
+        }
+    }
+
+    private void applyViewport() {
+        view.apply(gc, 1, 0, 0, 1, -viewportX, -viewportY);
+    }
+
+    /**
+     * Remember the area drawn, to be cleared on the next frame. A pixel wider on each side, for the antialiased edges
+     * of the sprites drawn at fractional coordinates.
+     */
+    private void markDirty(double x, double y, double width, double height) {
+
+        if (dirtyCount == dirtyRects.length) {
+            dirtyRects = Arrays.copyOf(dirtyRects, dirtyRects.length * 2);
+        }
+        dirtyRects[dirtyCount++] = x - viewportX - 1;
+        dirtyRects[dirtyCount++] = y - viewportY - 1;
+        dirtyRects[dirtyCount++] = width + 2;
+        dirtyRects[dirtyCount++] = height + 2;
+    }
+}
@@ -0,0 +1,359 @@
+package game;
+
+import javafx.geometry.Point2D;
+import javafx.geometry.Rectangle2D;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Function;
+
+/**
+ * List of the board objects (arrows, artifacts, ...) with an index of the grid cells each object area covers.
+ * Finding the object at a board point takes a look at a single cell, whatever the number of the objects in the level.
+ *
+ * The index gets updated on every change made through the list, the iterators included. The object area has to be
+ * set before the object is added, and must not change while it is in the list.
+ *
+ * Lookups return the objects in the order they were added, which is the list order as long as the objects get
+ * appended (the game and the editor never insert).
+ */
+class CellList<T> extends AbstractList<T> implements RandomAccess {
+
+    private static class Entry<T> {
+
+        final T item;
+        final Rectangle2D area;
+        final long order;
+
+        Entry(T item, Rectangle2D area, long order) {
+            this.item = item;
+            this.area = area;
+            this.order = order;
+        }
+    }
+
+    private final Function<T, Rectangle2D> areaOf;
+    private final double cellDimension;
+    private final int columns;
+    private final int rows;
+
+    private final List<Entry<T>> entries = new ArrayList<>();
+    private final List<Entry<T>>[] cells;
+
+    private long nextOrder;
+    private int version;
+
+    /**
+     * @param areaOf        the object area the lookups check
+     * @param cellDimension the grid dimension
+     * @param width         board width; objects and points outside the board go to the edge cells
+     * @param height        board height
+     */
+    /*
+     * No generic array can be created: the raw one holds lists of Entry<T> only, and never leaves this class.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    CellList(Function<T, Rectangle2D> areaOf, double cellDimension, double width, double height) {
+        this.areaOf = areaOf;
+        this.cellDimension = cellDimension;
+        this.columns = (int) Math.ceil(width / cellDimension) + 1;
+        this.rows = (int) Math.ceil(height / cellDimension) + 1;
+        this.cells = new List[columns * rows];
+    }
+
+    /**
+     * Empty list with the same areaOf and grid.
+     */
+    CellList<T> newEmpty() {
+        return new CellList<>(areaOf, cellDimension, (columns - 1) * cellDimension, (rows - 1) * cellDimension);
+    }
+
+    /**
+     * @return a copy with the same grid, indexed the same
+     */
+    CellList<T> copy() {
+        CellList<T> copy = newEmpty();
+        copy.addAll(this);
+        return copy;
+    }
+
+    /**
+     * The objects in the list, indexed as they are, for restore(). Much smaller than a copy() on a big board.
+     */
+    static class Content<T> {
+
+        private final List<Entry<T>> entries;
+        private final long nextOrder;
+
+        private Content(List<Entry<T>> entries, long nextOrder) {
+            this.entries = entries;
+            this.nextOrder = nextOrder;
+        }
+    }
+
+    Content<T> content() {
+        return new Content<>(new ArrayList<>(entries), nextOrder);
+    }
+
+    /**
+     * Get back to the content taken from this list. The entries are shared, being immutable, so that nothing gets
+     * allocated: the game restores the level start in the tick after a falldown (see GameState.restore()).
+     */
+    void restore(Content<T> content) {
+
+        clear();
+        for (int i = 0; i < content.entries.size(); i++) {
+            Entry<T> entry = content.entries.get(i);
+            entries.add(entry);
+            index(entry);
+        }
+        nextOrder = content.nextOrder;
+    }
+
+    @Override
+    public T get(int index) {
+        return entries.get(index).item;
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void add(int index, T item) {
+        Entry<T> entry = new Entry<>(item, areaOf.apply(item), nextOrder++);
+        entries.add(index, entry);
+        index(entry);
+        modCount++;
+        version++;
+    }
+
+    @Override
+    public T set(int index, T item) {
+        Entry<T> entry = new Entry<>(item, areaOf.apply(item), entries.get(index).order);
+        Entry<T> previous = entries.set(index, entry);
+        unindex(previous);
+        index(entry);
+        version++;
+        return previous.item;
+    }
+
+    @Override
+    public T remove(int index) {
+        Entry<T> entry = entries.remove(index);
+        unindex(entry);
+        modCount++;
+        version++;
+        return entry.item;
+    }
+
+    /*
+     * AbstractList would use an iterator; the pickups remove items during the tick.
+     */
+
+    @Override
+    public int indexOf(Object item) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).item.equals(item)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean remove(Object item) {
+        int index = indexOf(item);
+        if (index < 0) {
+            return false;
+        }
+        remove(index);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+        for (List<Entry<T>> cell : cells) {
+            if (cell != null) {
+                cell.clear();
+            }
+        }
+        modCount++;
+        version++;
+    }
+
+    /**
+     * Changes on every add, set, remove or clear; unlike modCount, set() counts too.
+     */
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the first object whose area contains the point, null if none
+     */
+    T first(Point2D point) {
+        return first(point.getX(), point.getY());
+    }
+
+    /*
+     * The point lookups run every tick: indexed loops, no iterators allocated.
+     */
+
+    T first(double x, double y) {
+
+        List<Entry<T>> cell = cells[cell(column(x), row(y))];
+        if (cell != null) {
+            for (int i = 0; i < cell.size(); i++) {
+                Entry<T> entry = cell.get(i);
+                if (entry.area.contains(x, y)) {
+                    return entry.item;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Put all the objects whose area contains the point into the list given.
+     *
+     * @param found cleared first
+     * @return the number of objects found
+     */
+    int allAt(double x, double y, List<T> found) {
+
+        found.clear();
+        List<Entry<T>> cell = cells[cell(column(x), row(y))];
+        if (cell != null) {
+            for (int i = 0; i < cell.size(); i++) {
+                Entry<T> entry = cell.get(i);
+                if (entry.area.contains(x, y)) {
+                    found.add(entry.item);
+                }
+            }
+        }
+        return found.size();
+    }
+
+    /**
+     * @return the first object whose area intersects the rectangle, null if none
+     */
+    T firstIntersecting(Rectangle2D rectangle) {
+
+        Entry<T> first = null;
+
+        int maxColumn = column(rectangle.getMaxX());
+        int maxRow = row(rectangle.getMaxY());
+        for (int row = row(rectangle.getMinY()); row <= maxRow; row++) {
+            for (int column = column(rectangle.getMinX()); column <= maxColumn; column++) {
+
+                List<Entry<T>> cell = cells[cell(column, row)];
+                if (cell == null) {
+                    continue;
+                }
+                for (Entry<T> entry : cell) {
+                    if ((first == null || entry.order < first.order) && entry.area.intersects(rectangle)) {
+                        first = entry;
+                        break;
+                    }
+                }
+            }
+        }
+        return first != null ? first.item : null;
+    }
+
+    /**
+     * Put all the objects whose area intersects the rectangle into the list given, each once, cell by cell rather
+     * than in the list order; for the drawing of what the camera shows (see Camera), which then takes the cells of
+     * the view only, however big the board.
+     *
+     * @param found cleared first
+     * @return the number of objects found
+     */
+    int allIntersecting(double minX, double minY, double maxX, double maxY, List<T> found) {
+
+        found.clear();
+        int minColumn = column(minX);
+        int minRow = row(minY);
+        int maxColumn = column(maxX);
+        int maxRow = row(maxY);
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+
+                List<Entry<T>> cell = cells[cell(column, row)];
+                if (cell == null) {
+                    continue;
+                }
+                for (int i = 0; i < cell.size(); i++) {
+                    Entry<T> entry = cell.get(i);
+                    /*
+                     * An object covering many cells is taken in the first of them inside the rectangle only
+                     */
+                    if (Math.max(column(entry.area.getMinX()), minColumn) == column
+                            && Math.max(row(entry.area.getMinY()), minRow) == row
+                            && entry.area.intersects(minX, minY, maxX - minX, maxY - minY)) {
+                        found.add(entry.item);
+                    }
+                }
+            }
+        }
+        return found.size();
+    }
+
+    private void index(Entry<T> entry) {
+
+        int maxColumn = column(entry.area.getMaxX());
+        int maxRow = row(entry.area.getMaxY());
+        for (int row = row(entry.area.getMinY()); row <= maxRow; row++) {
+            for (int column = column(entry.area.getMinX()); column <= maxColumn; column++) {
+
+                int idx = cell(column, row);
+                List<Entry<T>> cell = cells[idx];
+                if (cell == null) {
+                    cell = new ArrayList<>(2);
+                    cells[idx] = cell;
+                }
+                /*
+                 * Keep the cell in the order added, so that the lookups return the same object a list scan would.
+                 */
+                int position = cell.size();
+                while (position > 0 && cell.get(position - 1).order > entry.order) {
+                    position--;
+                }
+                cell.add(position, entry);
+            }
+        }
+    }
+
+    private void unindex(Entry<T> entry) {
+
+        int maxColumn = column(entry.area.getMaxX());
+        int maxRow = row(entry.area.getMaxY());
+        for (int row = row(entry.area.getMinY()); row <= maxRow; row++) {
+            for (int column = column(entry.area.getMinX()); column <= maxColumn; column++) {
+                cells[cell(column, row)].remove(entry);
+            }
+        }
+    }
+
+    /*
+     * Closed rectangles (as Rectangle2D.contains() checks them) go to every cell they touch; points outside the board
+     * are clamped to the edge cells, as are the objects.
+     */
+
+    private int column(double x) {
+        return Math.max(0, Math.min(columns - 1, (int) Math.floor(x / cellDimension)));
+    }
+
+    private int row(double y) {
+        return Math.max(0, Math.min(rows - 1, (int) Math.floor(y / cellDimension)));
+    }
+
+    private int cell(int column, int row) {
+        return row * columns + column;
+    }
+}
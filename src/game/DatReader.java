@@ -0,0 +1,375 @@
+package game;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Parses the level .dat files: entries separated by ':', each made of ',' separated values (grid positions,
+ * directions, orientations, or "null" for no ladder slot). Whitespace around the separators is allowed, and so is a
+ * trailing ':', as the editor writes one, and a trailing ',' after the last value of an entry, as some of the
+ * shipped levels have.
+ *
+ * The bytes are parsed as they get read, straight into an int table: no lines, no strings split, no boxed numbers.
+ * A malformed file is reported with the line and column of the first error, instead of a NumberFormatException
+ * halfway through loading the level.
+ *
+ * eist-returns -D [entries] compares the throughput with splitting strings, as the level loading used to, on a
+ * synthetic file.
+ */
+class DatReader {
+
+    /**
+     * The value of "null"; the values are never negative otherwise.
+     */
+    static final int NULL_VALUE = -1;
+
+    private static final int DEFAULT_BENCH_ENTRIES = 1000000;
+    private static final int BENCH_RUNS = 10;
+
+    /*
+     * Parser states
+     */
+    private static final int EXPECT_VALUE = 0;
+    private static final int IN_NUMBER = 1;
+    private static final int IN_NULL = 2;
+    private static final int AFTER_VALUE = 3;
+
+    private static final byte[] NULL_BYTES = "null".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The entries of a .dat file, all of the same length.
+     */
+    static class Table {
+
+        private final int columns;
+        private final int rows;
+        private final int[] values;
+
+        Table(int columns, int rows, int[] values) {
+            this.columns = columns;
+            this.rows = rows;
+            this.values = values;
+        }
+
+        int getRows() {
+            return rows;
+        }
+
+        int getColumns() {
+            return columns;
+        }
+
+        /**
+         * @return NULL_VALUE for "null"
+         */
+        int get(int row, int column) {
+            if (row >= rows || column >= columns) {
+                throw new IndexOutOfBoundsException("(" + row + ", " + column + ") outside " + rows + "x" + columns);
+            }
+            return values[row * columns + column];
+        }
+    }
+
+    static class FormatException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int line;
+        private final int column;
+
+        FormatException(String name, int line, int column, String message) {
+            super(name + ", line " + line + ", column " + column + ": " + message);
+            this.line = line;
+            this.column = column;
+        }
+
+        int getLine() {
+            return line;
+        }
+
+        int getColumn() {
+            return column;
+        }
+    }
+
+    private final String name;
+    private final int columns;
+
+    private int[] values = new int[64];
+    private int count;
+
+    private int state = EXPECT_VALUE;
+    private int entryValues;
+    private long number;
+    private int nullMatched;
+
+    private int line = 1;
+    private int column;
+
+    private long bytesParsed;
+
+    private DatReader(String name, int columns) {
+        this.name = name;
+        this.columns = columns;
+    }
+
+    /**
+     * Parse the stream to its end; closing it is up to the caller.
+     *
+     * @param name    for the error messages
+     * @param columns the values every entry must have
+     * @throws FormatException if malformed
+     */
+    static Table read(InputStream inputStream, String name, int columns) throws IOException {
+
+        GameEvents.DatParse event = new GameEvents.DatParse();
+        event.begin();
+
+        DatReader reader = new DatReader(name, columns);
+        Table table;
+        try {
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = inputStream.read(buffer)) != -1) {
+                reader.parse(buffer, length);
+            }
+            table = reader.finish();
+        } catch (IOException e) {
+            reader.commit(event, e);
+            throw e;
+        }
+        reader.commit(event, null);
+        return table;
+    }
+
+    static Table read(byte[] bytes, String name, int columns) throws FormatException {
+
+        GameEvents.DatParse event = new GameEvents.DatParse();
+        event.begin();
+
+        DatReader reader = new DatReader(name, columns);
+        Table table;
+        try {
+            reader.parse(bytes, bytes.length);
+            table = reader.finish();
+        } catch (FormatException e) {
+            reader.commit(event, e);
+            throw e;
+        }
+        reader.commit(event, null);
+        return table;
+    }
+
+    /**
+     * @param error null if parsed
+     */
+    private void commit(GameEvents.DatParse event, IOException error) {
+
+        if (event.shouldCommit()) {
+            event.file = name;
+            event.bytes = bytesParsed;
+            event.entries = count / Math.max(1, columns);
+            event.outcome = error != null ? error.getMessage() : GameEvents.OUTCOME_OK;
+            event.commit();
+        }
+    }
+
+    private void parse(byte[] buffer, int length) throws FormatException {
+
+        bytesParsed += length;
+
+        int i = 0;
+        while (i < length) {
+            byte b = buffer[i];
+
+            switch (state) {
+                case IN_NUMBER:
+                    if (b >= '0' && b <= '9') {
+                        number = number * 10 + (b - '0');
+                        if (number > Integer.MAX_VALUE) {
+                            throw error("number too big");
+                        }
+                        break;
+                    }
+                    addValue((int) number);
+                    state = AFTER_VALUE;
+                    continue; // The same byte again, as the one after the value
+
+                case IN_NULL:
+                    if (b != NULL_BYTES[nullMatched]) {
+                        throw error("expected a number or null");
+                    }
+                    if (++nullMatched == NULL_BYTES.length) {
+                        addValue(NULL_VALUE);
+                        state = AFTER_VALUE;
+                    }
+                    break;
+
+                case EXPECT_VALUE:
+                    if ((b >= '0' && b <= '9' || b == 'n') && entryValues == columns) {
+                        throw error("more than " + columns + " values in the entry");
+                    }
+                    if (b >= '0' && b <= '9') {
+                        number = b - '0';
+                        state = IN_NUMBER;
+                    } else if (b == ':' && entryValues == columns) {
+                        endEntry(); // After a trailing ','
+                    } else if (b == 'n') {
+                        nullMatched = 1;
+                        state = IN_NULL;
+                    } else if (!isWhitespace(b)) {
+                        throw error(b == ':' && entryValues == 0 ? "empty entry" : "expected a number or null");
+                    }
+                    break;
+
+                case AFTER_VALUE:
+                    if (b == ',') {
+                        state = EXPECT_VALUE;
+                    } else if (b == ':') {
+                        endEntry();
+                        state = EXPECT_VALUE;
+                    } else if (!isWhitespace(b)) {
+                        throw error("expected ',' or ':'");
+                    }
+                    break;
+            }
+
+            if (b == '\n') {
+                line++;
+                column = 0;
+            } else {
+                column++;
+            }
+            i++;
+        }
+    }
+
+    private Table finish() throws FormatException {
+
+        /*
+         * The errors here point past the last byte
+         */
+        switch (state) {
+            case IN_NUMBER:
+                addValue((int) number);
+                endEntry();
+                break;
+            case IN_NULL:
+                throw error("expected a number or null");
+            case AFTER_VALUE:
+                endEntry();
+                break;
+            default:
+                /*
+                 * An empty file, a trailing ':', or a trailing ',' after a full entry
+                 */
+                if (entryValues > 0 && entryValues < columns) {
+                    throw error("expected a number or null");
+                }
+                break;
+        }
+        return new Table(columns, count / Math.max(1, columns), values);
+    }
+
+    private void addValue(int value) {
+
+        if (count == values.length) {
+            values = Arrays.copyOf(values, 2 * count);
+        }
+        values[count++] = value;
+        entryValues++;
+    }
+
+    private void endEntry() throws FormatException {
+
+        if (entryValues < columns) {
+            throw error(columns + " values expected in the entry, found " + entryValues);
+        }
+        entryValues = 0;
+    }
+
+    /**
+     * @return the error at the current byte; the column counts from 1
+     */
+    private FormatException error(String message) {
+        return new FormatException(name, line, column + 1, message);
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    /**
+     * @return process exit code
+     */
+    static int main(String[] args) {
+
+        int entries = args.length > 0 ? Integer.valueOf(args[0]) : DEFAULT_BENCH_ENTRIES;
+
+        /*
+         * A synthetic arrows.dat, as the editor writes it
+         */
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < entries; i++) {
+            stringBuilder.append(i % 33).append(',').append(i % 19).append(',').append(i % 4).append(':');
+        }
+        byte[] bytes = stringBuilder.toString().getBytes(StandardCharsets.US_ASCII);
+
+        long checksum = 0;
+        long readerTime = 0;
+        long splitTime = 0;
+        for (int run = 0; run < 2 * BENCH_RUNS; run++) {
+
+            long startTime = System.nanoTime();
+            try {
+                Table table = read(new ByteArrayInputStream(bytes), "arrows.dat", 3);
+                for (int row = 0; row < table.getRows(); row++) {
+                    checksum += table.get(row, 0) + table.get(row, 1) + table.get(row, 2);
+                }
+            } catch (IOException e) {
+                System.out.println("Couldn't parse: " + e.getMessage());
+                return 1;
+            }
+            long middleTime = System.nanoTime();
+
+            /*
+             * Read into lines, then split and boxed, as the level loading used to
+             */
+            try (BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(
+                    new ByteArrayInputStream(bytes)))) {
+                StringBuilder lines = new StringBuilder();
+                String line;
+                while ((line = bufferedReader.readLine()) != null) {
+                    lines.append(line).append("\n");
+                }
+                for (String single_entry : lines.toString().trim().split(":")) {
+                    String[] positions = single_entry.split(",");
+                    checksum -= Integer.valueOf(positions[0]) + Integer.valueOf(positions[1])
+                            + Integer.valueOf(positions[2]);
+                }
+            } catch (IOException e) {
+                System.out.println("Couldn't parse: " + e.getMessage());
+                return 1;
+            }
+            long endTime = System.nanoTime();
+
+            /*
+             * The first half warms up the JIT
+             */
+            if (run >= BENCH_RUNS) {
+                readerTime += middleTime - startTime;
+                splitTime += endTime - middleTime;
+            }
+        }
+        if (checksum != 0) {
+            System.out.println("The parsers disagree");
+            return 1;
+        }
+
+        double megabytes = (double) bytes.length * BENCH_RUNS / (1024 * 1024);
+        System.out.println(String.format("%d entries, %.1f MB: DatReader %.1f MB/s, split %.1f MB/s", entries,
+                bytes.length / (1024d * 1024d), megabytes / (readerTime / 1e9), megabytes / (splitTime / 1e9)));
+        return 0;
+    }
+}
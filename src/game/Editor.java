@@ -12,33 +12,76 @@ import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.image.Image;
 import javafx.scene.media.MediaPlayer;
 import javafx.scene.paint.Color;
-import javafx.scene.transform.Rotate;
+import javafx.scene.transform.Scale;
+import javafx.scene.transform.Translate;
 import javafx.stage.Stage;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
 
 public class Editor extends Utils {
 
-    private GraphicsContext gc;
+    /*
+     * Two layers, as in Main: the static one (the board, the objects placed, the toolbar and the HUD) is redrawn
+     * when its key changes; the dynamic one above it holds the animated sprites and Eist.
+     */
+    private GraphicsContext staticGc;
+    private GraphicsContext dynamicGc;
+
+    /**
+     * Count the view changes and the clicks on the board, for the layer keys: both call for a redraw.
+     */
+    private int mViewVersion;
+    private int mInputVersion;
+
+    private static final int STATIC_LAYER_KEY_LENGTH = 23;
+    private final int[] mStaticLayerKey = new int[STATIC_LAYER_KEY_LENGTH];
+    private final int[] mDrawnStaticLayerKey = new int[STATIC_LAYER_KEY_LENGTH];
+    private String mDrawnMenuHint;
+
+    private static final int DYNAMIC_LAYER_KEY_LENGTH = 17;
+    private final double[] mDynamicLayerKey = new double[DYNAMIC_LAYER_KEY_LENGTH];
+    private final double[] mDrawnDynamicLayerKey = new double[DYNAMIC_LAYER_KEY_LENGTH];
+
+    /**
+     * The performance overlay canvas, over the dynamic layer; see drawFrameStats().
+     */
+    private GraphicsContext statsGc;
+    private boolean mFrameStatsShown;
+
+    /*
+     * The HUD text, built when the value changes and drawn from the glyphs of its fonts, as in Main
+     */
+    private final CachedText mKeysText = new CachedText(String::valueOf);
+    private final CachedText mTurnsText = new CachedText(turns -> "Turns: " + turns);
+    private final CachedText mBestText = new CachedText(best -> best > 0 ? "Best: " + best : "Best: -");
+
+    private GlyphAtlas mInfoGlyphs;
+    private GlyphAtlas mTurnsGlyphs;
+    private GlyphAtlas mMessageGlyphs;
+    private final GlyphRun mLevelRun = new GlyphRun();
+    private final GlyphRun mKeysRun = new GlyphRun();
+    private final GlyphRun mTurnsRun = new GlyphRun();
+    private final GlyphRun mBestRun = new GlyphRun();
+    private final GlyphRun mHintRun = new GlyphRun();
 
-    private final int FRAME_LAST_IDX = 7;
     private final double FRAME_DURATION_EIST = 90000000;
-    private final double FRAME_DURATION_ARTIFACT = 135000000;
-    private final double FRAME_DURATION_FALLING = 60000000;
 
-
-    private long lastEistFrameChangeTime;
-    private long lastArtifactFrameChangeTime;
-    private long lastFallingFrameChangeTime;
-
-    private double mFps = 0;
-
-    private boolean mShowFps = false;
+    private GameClock clock;
 
     private AnimationTimer animationTimer;
     private boolean mTrackMainWasPlaying;
     private boolean mTrackLevelWasPlaying;
 
+    /*
+     * Eist's frames, rotated for the turns (see RotatedFrames): rasterized for the window in the background, see
+     * rasterizeEistAtlas(). The turns are drawn with a transform until then.
+     */
+    private SpriteAtlas mEistAtlas;
+    private boolean mEistAtlasRasterizing;
+    private int mEistSprite = SpriteAtlas.EIST_RIGHT;
+
     @Override
     public void start(Stage stage) throws Exception {
 
@@ -62,14 +105,21 @@ public class Editor extends Utils {
         mEditorStage.setTitle("Level editor");
 
         mEditorStage.getIcons().add(new Image("/images/common/eist.png"));
-        mEditorStage.setResizable(false);
         if (mDimensionDivider == 1.0) {
             mEditorStage.setFullScreen(true);
         }
 
+        /*
+         * The editor draws on a canvas of the logical board size, with the toolbar buttons over it: the whole of it
+         * gets scaled to the window (see BoardView), which may be resized any time.
+         */
         Group root = new Group();
-        mEditorScene = new Scene(root, mSceneWidth, mSceneHeight);
+        mEditorScene = new Scene(root, BoardView.windowWidth(mDimensionDivider),
+                BoardView.windowHeight(mDimensionDivider), Color.BLACK);
         mEditorStage.setScene(mEditorScene);
+        fitEditorView();
+        mEditorScene.widthProperty().addListener((observable, oldValue, newValue) -> fitEditorView());
+        mEditorScene.heightProperty().addListener((observable, oldValue, newValue) -> fitEditorView());
 
         mEditorStage.setOnCloseRequest(event -> {
             System.out.println("Window close requested");
@@ -78,13 +128,17 @@ public class Editor extends Utils {
             Platform.exit();
         });
 
-        Canvas canvas = new Canvas(mSceneWidth, mSceneHeight);
-        root.getChildren().add(canvas);
-        gc = canvas.getGraphicsContext2D();
+        Canvas staticCanvas = new Canvas(mSceneWidth, mSceneHeight);
+        Canvas dynamicCanvas = new Canvas(mSceneWidth, mSceneHeight);
+        Canvas statsCanvas = new Canvas(mSceneWidth, mSceneHeight);
+        root.getChildren().addAll(staticCanvas, dynamicCanvas, statsCanvas);
+        staticGc = staticCanvas.getGraphicsContext2D();
+        dynamicGc = dynamicCanvas.getGraphicsContext2D();
+        statsGc = statsCanvas.getGraphicsContext2D();
 
         initializeFonts();
 
-        gc.setFont(infoFont);
+        staticGc.setFont(infoFont);
 
         eist = new Player();
         ladder = new Ladder();
@@ -92,6 +146,12 @@ public class Editor extends Utils {
         pad = new Pad();
         toolbar = new Toolbar();
 
+        state = new GameState(mTickRate, eist, ladder, exit);
+        state.setDimensions(mGridDimension, mDetectionOffset, mRotationRadius);
+        state.setSpeed(walkingSpeedPerSecond, FRAME_DURATION_EIST);
+        state.setTerrain((x, y) -> mWalkability.isVoid(x, y));
+        state.setListener(this::onGameEvent);
+
         /*
          * Init toolbar areas and initially selected values.
          */
@@ -118,6 +178,7 @@ public class Editor extends Utils {
         mMenuHint = "Right click rotates";
 
         loadCommonGraphics();
+        rasterizeEistAtlas();
 
         mCurrentLevel = Integer.MAX_VALUE;
         mMuteMusic = true;
@@ -136,81 +197,61 @@ public class Editor extends Utils {
 
         loadEditor();
 
-        mEditorScene.setOnMouseClicked(this::handleMouseEvent);
+        mEditorScene.setOnMouseClicked(event -> {
+            handleMouseEvent(event);
+            mInputVersion++;
+        });
 
         mEditorScene.setOnKeyPressed(event -> {
+            if (handleFrameStatsKey(event.getCode())) {
+                return;
+            }
             switch (event.getCode()) {
                 case F:
-                    mShowFps = !mShowFps;
+                    mFrameStats.toggleVisible();
+                    break;
+                case F11:
+                    mEditorStage.setFullScreen(!mEditorStage.isFullScreen());
                     break;
                 default:
                     break;
             }
         });
 
-        lastEistFrameChangeTime = System.nanoTime();
-        lastArtifactFrameChangeTime = System.nanoTime();
-        lastFallingFrameChangeTime = System.nanoTime();
+        clock = new GameClock(mTickRate);
 
         animationTimer = new AnimationTimer() {
             @Override
             public void handle(long now) {
 
-                if (now - lastEistFrameChangeTime > FRAME_DURATION_EIST && eist.isMoving) {
-                    lastEistFrameChangeTime = now;
-                    mCurrentEistFrame++;
-
-                    if (mCurrentEistFrame > FRAME_LAST_IDX) {
-                        mCurrentEistFrame = 0;
-                    }
-                }
-
-                if (now - lastArtifactFrameChangeTime > FRAME_DURATION_ARTIFACT) {
-                    lastArtifactFrameChangeTime = now;
-                    mCurrentArtifactFrame++;
-
-                    if (mCurrentArtifactFrame > FRAME_LAST_IDX) {
-                        mCurrentArtifactFrame = 0;
+                mFrameStats.frameStart(now);
+                clock.advance(now);
+                while (clock.nextTick()) {
+                    GameEvents.Tick tickEvent = GameEvents.beginTick();
+                    state.setFallDetection(mTesting);
+                    state.tick();
+                    if (tickEvent != null && tickEvent.shouldCommit()) {
+                        tickEvent.level = mCurrentLevel;
+                        tickEvent.tick = state.getTicks();
+                        tickEvent.commit();
                     }
                 }
-
-                if (mCurrentFallingFrame != null && now - lastFallingFrameChangeTime > FRAME_DURATION_FALLING) {
-                    lastFallingFrameChangeTime = now;
-
-                    if (mCurrentFallingFrame < 8) {
-
-                        mCurrentFallingFrame++;
-
-                    } else {
-
-                        mCurrentFallingFrame = null;
-
-                        if (!mMuteSound) {
-                            fxLevelLost.setBalance(calculateBalance(eist.x));
-                            fxLevelLost.play();
-                        }
-                        loadEditor();
-                    }
+                mFrameStats.updateEnd(clock.getTicksThisFrame());
+
+                GameEvents.Render renderEvent = GameEvents.beginRender();
+                drawBoard(clock.getAlpha(), renderEvent);
+                if (renderEvent != null && renderEvent.shouldCommit()) {
+                    renderEvent.level = mCurrentLevel;
+                    renderEvent.drawImages = -1;
+                    renderEvent.commit();
                 }
 
-                updateBoard();
-
-                drawBoard();
-
                 /*
-                if (lastUpdate > 0) {
-                    long nanosElapsed = now - lastUpdate;
-                    double frameRate = 1000000000.0 / nanosElapsed;
-                    index %= frameRates.length;
-                    frameRates[index++] = frameRate;
-                }
-                lastUpdate = now;
-                */
-                /*
-                 * Let's use the averaged fps value here for now, but preserve the Utils.getInstantFPS() just in case.
-                 * We need the current fps value to adjust the animation speed according to the current performance.
+                 * The drawImage calls are not counted here: the editor draws on its canvases directly, not through
+                 * a SpriteRenderer
                  */
-                //mFps = getAverageFPS();
+                mFrameStats.frameEnd(false);
+                drawFrameStats();
             }
         };
         animationTimer.start();
@@ -247,6 +288,8 @@ public class Editor extends Utils {
                 if (mTrackLevelWasPlaying) {
                     trackLevelPlayer.play();
                 }
+                clock.reset();
+                mFrameStats.pause();
                 animationTimer.start();
             }
         });
@@ -254,46 +297,276 @@ public class Editor extends Utils {
         mEditorStage.show();
     }
 
-    private void drawBoard() {
+    /**
+     * Sounds and level restarts triggered by the game rules (see GameState).
+     */
+    private void onGameEvent(int event, double x) {
 
-        gc.clearRect(0, 0, mSceneWidth, mSceneHeight);
+        switch (event) {
+            case GameState.EVENT_ARTIFACT:
+                if (!mMuteSound) {
+                    fxArtifact.setBalance(calculateBalance(x));
+                    fxArtifact.play();
+                }
+                break;
 
-        gc.drawImage(mBoardImg, 0, 0, mSceneWidth, mSceneHeight);
+            case GameState.EVENT_EXIT_OPEN:
+                if (!mMuteSound) {
+                    fxExit.play();
+                }
+                break;
 
-        gc.drawImage(mBoardImg, 0, 0, mSceneWidth, mSceneHeight);
+            case GameState.EVENT_TELEPORT:
+                if (mCurrentLevel > 0 && !mMuteSound) {
+                    fxTeleport.setBalance(calculateBalance(x));
+                    fxTeleport.play();
+                }
+                break;
 
-        if (mMuteMusic) {
-            gc.drawImage(mMutedMusicImg, columns[30], rows[11], mGridDimension, mGridDimension);
-        }
-        if (mMuteSound) {
-            gc.drawImage(mMutedSoundImg, columns[30], rows[13], mGridDimension, mGridDimension);
-        }
+            case GameState.EVENT_KEY:
+                if (mCurrentLevel > 0 && !mMuteSound) {
+                    fxKey.setBalance(calculateBalance(x));
+                    fxKey.play();
+                }
+                break;
 
-        /*
-         * Switch the Eists source graphics according to the movement direction. It could have been just rotated,
-         * but I wanted the light to always come from the right side. Oh, ok: almost always. The bitmap will need
-         * rotation while turning, and sometimes while falling down. Missing chiaroscuro should be unnoticeable.
-         */
-        switch (eist.getDirection()) {
-            case DIR_RIGHT:
-                mEistImg = mEistRightImg;
+            case GameState.EVENT_DOOR_OPEN:
+                if (mCurrentLevel > 0 && !mMuteSound) {
+                    fxDoor.setBalance(calculateBalance(x));
+                    fxDoor.play();
+                }
                 break;
 
-            case DIR_DOWN:
-                mEistImg = mEistDownImg;
+            case GameState.EVENT_DOOR_BOUNCE:
+                if (mCurrentLevel > 0 && !mMuteSound) {
+                    fxBounce.setBalance(calculateBalance(x));
+                    fxBounce.play();
+                }
                 break;
 
-            case DIR_LEFT:
-                mEistImg = mEistLeftImg;
+            case GameState.EVENT_FALL_END:
+                if (!mMuteSound) {
+                    fxLevelLost.setBalance(calculateBalance(x));
+                    fxLevelLost.play();
+                }
+                resetEditorTest();
                 break;
 
-            case DIR_UP:
-                mEistImg = mEistUpImg;
+            case GameState.EVENT_EXIT_REACHED:
+                int turns = state.getTurns();
+                if (turns < mTurnsBest || mTurnsBest == 0) {
+                    String lvlNumberToString = (mCurrentLevel < 10) ? "0" + String.valueOf(mCurrentLevel) : String.valueOf(mCurrentLevel);
+                    prefs.putInt(lvlNumberToString + "best", turns);
+                    if (turns < mTurnsBest) {
+                        displayNewBestAlert(mTurnsBest, turns);
+                    }
+                }
+
+                if (mCurrentLevel + 1 < MAX_LEVEL) {
+                    mCurrentLevel++;
+                } else {
+                    mGameFinished = true;
+                    mCurrentLevel = 0;
+                }
+
+                if (mCurrentLevel > mAchievedLevel) {
+                    prefs.putInt("achieved", mCurrentLevel);
+                }
+                prefs.putInt("level", mCurrentLevel);
+
+                if (mCurrentLevel > 0 && !mMuteSound) {
+                    fxLevelUp.play();
+                }
+
+                loadEditor();
                 break;
 
             default:
                 break;
         }
+    }
+
+    /**
+     * Scale the board and the toolbar buttons to the window.
+     */
+    private void fitEditorView() {
+
+        fitView(mEditorScene.getWidth(), mEditorScene.getHeight(), mEditorStage.getOutputScaleX());
+        mEditorScene.getRoot().getTransforms().setAll(new Translate(mView.getX(), mView.getY()),
+                new Scale(mView.getScale(), mView.getScale()));
+        mViewVersion++;
+        rasterizeEistAtlas();
+    }
+
+    /**
+     * Rasterize Eist's frames and their rotations again if the view calls for another scale, as Utils.rasterizeAtlas()
+     * does for the game: on the atlas-raster thread, one at a time, swapped in on the FX thread.
+     */
+    private void rasterizeEistAtlas() {
+
+        if (mEistAtlasRasterizing || mEistRightImg == null
+                || mEistAtlas != null && mEistAtlas.getScale() == mView.getRasterScale()) {
+            return;
+        }
+
+        mEistAtlasRasterizing = true;
+        double scale = mView.getRasterScale();
+        double rotationStep = mRotationStep;
+        long rotationCacheBytes = mRotationCacheBytes;
+        double frameDimension = mFrameDimension;
+        Image[] images = {mEistRightImg, mEistDownImg, mEistLeftImg, mEistUpImg};
+        int[] sprites = {SpriteAtlas.EIST_RIGHT, SpriteAtlas.EIST_DOWN, SpriteAtlas.EIST_LEFT, SpriteAtlas.EIST_UP};
+
+        CompletableFuture.supplyAsync(() -> {
+            SpriteAtlas atlas = new SpriteAtlas(scale);
+            atlas.setRotations(rotationStep, rotationCacheBytes, null);
+            for (int i = 0; i < sprites.length; i++) {
+                atlas.addRotated(sprites[i]);
+                atlas.add(sprites[i], images[i], SpriteAtlas.SHEET_FRAMES, frameDimension, frameDimension);
+            }
+            atlas.pack();
+            atlas.renderRotations();
+            return atlas;
+        }, mRasterExecutor).whenComplete((atlas, error) -> Platform.runLater(() -> {
+            mEistAtlasRasterizing = false;
+            if (error != null) {
+                System.out.println("Couldn't rasterize the Eist sprites: " + error);
+                return;
+            }
+            mEistAtlas = atlas;
+            rasterizeEistAtlas();
+        }));
+    }
+
+    /**
+     * Redraw the layers whose content changed since they were drawn, if any.
+     *
+     * @param alpha position between the previous and the current simulation tick, to interpolate Eist's drawing
+     * @param event gets the layers redrawn; null while no recording takes it
+     */
+    private void drawBoard(double alpha, GameEvents.Render event) {
+
+        boolean staticLayer = staticLayerChanged();
+        if (staticLayer) {
+            drawStaticLayer();
+        }
+        boolean dynamicLayer = dynamicLayerChanged(alpha);
+        if (dynamicLayer) {
+            drawDynamicLayer(alpha);
+        }
+        if (event != null) {
+            event.staticLayer = staticLayer;
+            event.dynamicLayer = dynamicLayer;
+        }
+    }
+
+    /**
+     * Fill the key of what the static layer shows, and compare it with the one drawn. The toolbar buttons change the
+     * selection, the orientations and the hint; the clicks on the board place and remove the objects, and a loaded
+     * level comes with a new board image.
+     *
+     * @return true if the static layer needs to be redrawn
+     */
+    private boolean staticLayerChanged() {
+
+        int[] key = mStaticLayerKey;
+        int idx = 0;
+        key[idx++] = mViewVersion;
+        key[idx++] = mInputVersion;
+        key[idx++] = System.identityHashCode(mBoardImg);
+        key[idx++] = mArrows != null ? mArrows.getVersion() : -1;
+        key[idx++] = mKeys.getVersion();
+        key[idx++] = mDoors != null ? mDoors.getVersion() : -1;
+        key[idx++] = mSlots != null ? mSlots.size() : -1;
+        key[idx++] = mArtifacts.size(); // Exit open
+        key[idx++] = ladder.getSlotIdx() != null ? ladder.getSlotIdx() : -1;
+        key[idx++] = eist.isMoving && pad.getSelection() != null ? pad.getSelection() : -1;
+        key[idx++] = eist.getKeys();
+        key[idx++] = state.getTurns();
+        key[idx++] = mTurnsBest;
+        key[idx++] = (mMuteMusic ? 1 : 0) | (mMuteSound ? 2 : 0) | (mEditor ? 4 : 0) | (mTesting ? 8 : 0)
+                | (state.isFalling() ? 16 : 0);
+        key[idx++] = toolbar.getSelection() != null ? toolbar.getSelection() : -1;
+        key[idx++] = toolbar.getDoorOrientation();
+        key[idx++] = toolbar.getSlotOrientation();
+        key[idx++] = toolbar.getArrowDirection();
+        key[idx++] = (int) Math.round(exit.getPosX());
+        key[idx++] = (int) Math.round(exit.getPosY());
+        // The Eist selection highlight, where he stands until the test
+        key[idx++] = mTesting ? -1 : (int) Math.round(eist.x);
+        key[idx++] = mTesting ? -1 : (int) Math.round(eist.y);
+        key[idx] = loading(mLadderHImg) + loading(mLadderVImg) + loading(mExitClosedImg) + loading(mExitOpenImg);
+
+        if (Arrays.equals(key, mDrawnStaticLayerKey) && mMenuHint.equals(mDrawnMenuHint)) {
+            return false;
+        }
+        System.arraycopy(key, 0, mDrawnStaticLayerKey, 0, key.length);
+        mDrawnMenuHint = mMenuHint;
+        return true;
+    }
+
+    /**
+     * @return 1 while the image loads in the background (see loadEditor()), so that it gets drawn once loaded
+     */
+    private static int loading(Image image) {
+        return image != null && image.getProgress() < 1 ? 1 : 0;
+    }
+
+    /**
+     * Fill the key of what the dynamic layer shows, and compare it with the one drawn.
+     *
+     * @return true if the dynamic layer needs to be redrawn
+     */
+    private boolean dynamicLayerChanged(double alpha) {
+
+        double[] key = mDynamicLayerKey;
+        int idx = 0;
+        key[idx++] = mViewVersion;
+        key[idx++] = mInputVersion;
+        key[idx++] = System.identityHashCode(mBoardImg);
+        key[idx++] = System.identityHashCode(mEistAtlas);
+        key[idx++] = state.getArtifactFrame();
+        key[idx++] = mArtifacts.size();
+        key[idx++] = mOrnaments.size();
+        key[idx++] = mTeleports.size();
+        key[idx++] = eist.getDirection();
+        key[idx++] = state.getEistFrame();
+        key[idx++] = eist.getRenderX(alpha);
+        key[idx++] = eist.getRenderY(alpha);
+        key[idx++] = eist.rotation;
+        key[idx++] = state.getFallingFrame();
+        key[idx++] = eist.isMoving ? 1 : 0;
+        key[idx++] = state.isFalling() ? 1 : 0;
+        key[idx] = mTesting ? 1 : 0;
+
+        if (Arrays.equals(key, mDrawnDynamicLayerKey)) {
+            return false;
+        }
+        System.arraycopy(key, 0, mDrawnDynamicLayerKey, 0, key.length);
+        return true;
+    }
+
+    /**
+     * The board and whatever changes on clicks and events only: arrows, keys, slots, doors, ladder, exit, pad, the
+     * toolbar and the HUD.
+     */
+    private void drawStaticLayer() {
+
+        GraphicsContext gc = staticGc;
+        updateGlyphs();
+        double pixels = mView.getScale();
+
+        /*
+         * The opaque board covers the whole canvas, no need to clear it first
+         */
+        gc.drawImage(mBoardImg, 0, 0, mSceneWidth, mSceneHeight);
+
+        if (mMuteMusic) {
+            gc.drawImage(mMutedMusicImg, columns[30], rows[11], mGridDimension, mGridDimension);
+        }
+        if (mMuteSound) {
+            gc.drawImage(mMutedSoundImg, columns[30], rows[13], mGridDimension, mGridDimension);
+        }
 
         /*
          * Draw arrows
@@ -320,122 +593,6 @@ public class Editor extends Utils {
                         image = null;
                 }
                 gc.drawImage(image, arrow.getPosX(), arrow.getPosY(), mFrameDimension, mFrameDimension);
-
-                if (arrow.getArea().contains(eist.getCenter())) {
-
-                    reactToArrow(arrow);
-                    break;
-                }
-            }
-        }
-
-        /*
-         * Draw artifacts
-         */
-
-        if (mArtifactImg != null && mArtifacts.size() > 0) {
-
-            for (Artifact artifact : mArtifacts) {
-
-                gc.drawImage(mArtifactImg, 160 * mCurrentArtifactFrame, 0, 160, 160, artifact.getPosX(), artifact.getPosY(), mFrameDimension, mFrameDimension);
-
-                if (artifact.getArea().contains(eist.getCenter())) {
-
-                    mArtifacts.remove(artifact);
-
-                    if (mArtifacts.size() > 0) {
-
-                        if (!mMuteSound) {
-                            fxArtifact.setBalance(calculateBalance(eist.x));
-                            fxArtifact.play();
-                        }
-
-                    } else {
-
-                        if (!mMuteSound) {
-                            fxExit.play();
-                        }
-                    }
-                    break;
-                }
-            }
-        }
-
-        /*
-         * Draw ornaments
-         */
-        if (mOrnamentImg != null && mOrnaments.size() > 0) {
-
-            for (Ornament ornament : mOrnaments) {
-
-                gc.drawImage(mOrnamentImg, 160 * mCurrentArtifactFrame, 0, 160, 160, ornament.getPosX(), ornament.getPosY(), mFrameDimension, mFrameDimension);
-            }
-        }
-
-        /*
-         * Draw teleports
-         */
-        if (mTeleportImg != null && mTeleports.size() > 0) {
-
-            for (Teleport teleport : mTeleports) {
-
-                gc.drawImage(mTeleportImg, 160 * mCurrentArtifactFrame, 0, 160, 160, teleport.getPosX(), teleport.getPosY(), mFrameDimension, mFrameDimension);
-
-                if (mTeleports.size() == 2 && teleport.getArea().contains(eist.getCenter())) {
-
-                    if (mCurrentLevel > 0 && !mMuteSound) {
-                        fxTeleport.setBalance(calculateBalance(eist.x));
-                        fxTeleport.play();
-                    }
-
-                    if (mTeleports.indexOf(teleport) == 0) {
-                        switch (eist.getDirection()) {
-                            case DIR_RIGHT:
-                                eist.x = mTeleports.get(1).getPosX() + mGridDimension;
-                                eist.y = mTeleports.get(1).getPosY();
-                                break;
-
-                            case DIR_LEFT:
-                                eist.x = mTeleports.get(1).getPosX() - mGridDimension;
-                                eist.y = mTeleports.get(1).getPosY();
-                                break;
-
-                            case DIR_UP:
-                                eist.x = mTeleports.get(1).getPosX();
-                                eist.y = mTeleports.get(1).getPosY() - mGridDimension;
-                                break;
-
-                            case DIR_DOWN:
-                                eist.x = mTeleports.get(1).getPosX();
-                                eist.y = mTeleports.get(1).getPosY() + mGridDimension;
-                                break;
-                        }
-
-                    } else {
-
-                        switch (eist.getDirection()) {
-                            case DIR_RIGHT:
-                                eist.x = mTeleports.get(0).getPosX() + mGridDimension;
-                                eist.y = mTeleports.get(0).getPosY();
-                                break;
-
-                            case DIR_LEFT:
-                                eist.x = mTeleports.get(0).getPosX() - mGridDimension;
-                                eist.y = mTeleports.get(0).getPosY();
-                                break;
-
-                            case DIR_UP:
-                                eist.x = mTeleports.get(0).getPosX();
-                                eist.y = mTeleports.get(0).getPosY() - mGridDimension;
-                                break;
-
-                            case DIR_DOWN:
-                                eist.x = mTeleports.get(0).getPosX();
-                                eist.y = mTeleports.get(0).getPosY() + mGridDimension;
-                                break;
-                        }
-                    }
-                }
             }
         }
 
@@ -447,18 +604,6 @@ public class Editor extends Utils {
             for (Key key : mKeys) {
 
                 gc.drawImage(mKeyImg, key.getPosX(), key.getPosY(), mFrameDimension, mFrameDimension);
-
-                if (key.getArea().contains(eist.getCenter())) {
-
-                    if (mCurrentLevel > 0 && !mMuteSound) {
-                        fxKey.setBalance(calculateBalance(eist.x));
-                        fxKey.play();
-                    }
-
-                    mKeys.remove(key);
-                    eist.setKeys(eist.getKeys() + 1);
-                    break;
-                }
             }
         }
 
@@ -480,8 +625,6 @@ public class Editor extends Utils {
          */
         if (mDoors != null && mDoors.size() > 0) {
 
-            Door doorToRemove = null;
-
             for (Door door : mDoors) {
 
                 Image image;
@@ -491,35 +634,6 @@ public class Editor extends Utils {
                     image = mDoorVImg;
                 }
                 gc.drawImage(image, door.getPosX(), door.getPosY(), mFrameDimension, mFrameDimension);
-
-                if (door.getArea().contains(eist.getCenter())) {
-
-                    if (eist.getKeys() > 0) {
-
-                        if (mCurrentLevel > 0 && !mMuteSound) {
-                            fxDoor.setBalance(calculateBalance(door.getPosX()));
-                            fxDoor.play();
-                        }
-
-                        eist.setKeys(eist.getKeys() - 1);
-                        doorToRemove = door;
-
-                    } else {
-
-                        if (!mDisableDoorReaction) {
-                            reactToDoor(door);
-                        }
-                    }
-                }
-            }
-            if (doorToRemove != null) {
-                mDoors.remove(doorToRemove);
-            }
-            mDisableDoorReaction = false;
-            for (Door door : mDoors) {
-                if (door.getArea().contains(eist.getCenter())) {
-                    mDisableDoorReaction = true;
-                }
             }
         }
 
@@ -559,160 +673,23 @@ public class Editor extends Utils {
         } else {
 
             gc.drawImage(mExitOpenImg, exit.getPosX(), exit.getPosY(), mFrameDimension, mFrameDimension);
-
-            /*
-             * Check if exit reached
-             */
-            if (exit.getArea().contains(eist.getCenter())) {
-
-                if (mTurnsCounter < mTurnsBest || mTurnsBest == 0) {
-                    String lvlNumberToString = (mCurrentLevel < 10) ? "0" + String.valueOf(mCurrentLevel) : String.valueOf(mCurrentLevel);
-                    prefs.putInt(lvlNumberToString + "best", mTurnsCounter);
-                    if (mTurnsCounter < mTurnsBest) {
-                        displayNewBestAlert(mTurnsBest, mTurnsCounter);
-                    }
-                }
-
-                if (mCurrentLevel + 1 < MAX_LEVEL) {
-                    mCurrentLevel++;
-                } else {
-                    mGameFinished = true;
-                    mCurrentLevel = 0;
-                }
-
-                if (mCurrentLevel > mAchievedLevel) {
-                    prefs.putInt("achieved", mCurrentLevel);
-                }
-                prefs.putInt("level", mCurrentLevel);
-
-                mCurrentFallingFrame = 0;
-
-                if (mCurrentLevel > 0 && !mMuteSound) {
-                    fxLevelUp.play();
-                }
-
-                loadEditor();
-            }
         }
 
         /*
-         * Draw Eist
+         * Eist selection highlight, under him
          */
-        if (mCurrentFallingFrame == null) {
-
-            if (toolbar.getSelection() != null) {
-                if (mEditor && !mTesting && toolbar.getSelection() == SELECTION_EIST) {
-                    gc.setFill(Color.color(0, 1, 1, 0.3));
-                    gc.fillRect(eist.x, eist.y, mFrameDimension, mFrameDimension);
-                }
-            }
-
-            if (eist.rotation != 0) {
-                gc.save();
-                Rotate r = new Rotate(eist.rotation, eist.x + mGridDimension, eist.y + mGridDimension);
-                gc.setTransform(r.getMxx(), r.getMyx(), r.getMxy(), r.getMyy(), r.getTx(), r.getTy());
-                gc.drawImage(mEistImg, 120 * mCurrentEistFrame, 0, 120, 120, eist.x, eist.y, mFrameDimension, mFrameDimension);
-                gc.restore();
-
-            } else {
-                gc.drawImage(mEistImg, 120 * mCurrentEistFrame, 0, 120, 120, eist.x, eist.y, mFrameDimension, mFrameDimension);
-            }
-        }
-
-
-        // Detect black pixel below
-        if (mTesting && mCurrentFallingFrame == null) {
-            try {
-
-                boolean leftOut = pixelReader.getArgb(eist.detectionPoint1X, eist.detectionPoint1Y) == -16777216;
-                boolean rightOut = pixelReader.getArgb(eist.detectionPoint2X, eist.detectionPoint2Y) == -16777216;
-                if (leftOut || rightOut) {
-
-                    // Stepped off the path, start falling...
-                    mCurrentFallingFrame = 0;
-
-                    // Wait! Are we on the ladder?
-                    if (ladder.getSlotIdx() != null) {
-                        if (mSlots.get(ladder.getSlotIdx()).getArea().contains(new Point2D(eist.detectionPoint1X, eist.detectionPoint1Y))
-                                && mSlots.get(ladder.getSlotIdx()).getArea().contains(new Point2D(eist.detectionPoint2X, eist.detectionPoint2Y))) {
-
-                            mCurrentFallingFrame = null;
-                        }
-                    }
-                    // Just left foot off the path
-                    if (leftOut && !rightOut) {
-                        switch (eist.getDirection()) {
-                            case DIR_RIGHT:
-                                eist.y = eist.y - mHalfGridDimension;
-                                break;
-                            case DIR_LEFT:
-                                eist.y = eist.y + mHalfGridDimension;
-                                break;
-                            case DIR_UP:
-                                eist.x = eist.x - mHalfGridDimension;
-                                break;
-                            case DIR_DOWN:
-                                eist.x = eist.x + mHalfGridDimension;
-                                break;
-                        }
-                    }
-                    // Just right foot off the path
-                    if (rightOut && !leftOut) {
-                        switch (eist.getDirection()) {
-                            case DIR_RIGHT:
-                                eist.y = eist.y + mHalfGridDimension;
-                                break;
-                            case DIR_LEFT:
-                                eist.y = eist.y - mHalfGridDimension;
-                                break;
-                            case DIR_UP:
-                                eist.x = eist.x + mHalfGridDimension;
-                                break;
-                            case DIR_DOWN:
-                                eist.x = eist.x - mHalfGridDimension;
-                                break;
-                        }
-                    }
-
-                } else {
-                    mCurrentFallingFrame = null;
-                }
-
-            } catch (Exception e) {
-                e.printStackTrace();
-                eist.isMoving = false;
+        if (!state.isFalling() && toolbar.getSelection() != null) {
+            if (mEditor && !mTesting && toolbar.getSelection() == SELECTION_EIST) {
+                gc.setFill(Color.color(0, 1, 1, 0.3));
+                gc.fillRect(eist.x, eist.y, mFrameDimension, mFrameDimension);
             }
         }
 
-        if (eist.isMoving) {
-
-            if (mCurrentFallingFrame != null) {
-
-                switch (eist.getDirection()) {
-                    case DIR_RIGHT:
-                        gc.drawImage(mEistFallingRightImg, 160 * mCurrentFallingFrame, 0, 160, 160, eist.x, eist.y, mFrameDimension, mFrameDimension);
-                        break;
-
-                    case DIR_DOWN:
-                        gc.drawImage(mEistFallingDownImg, 160 * mCurrentFallingFrame, 0, 160, 160, eist.x, eist.y, mFrameDimension, mFrameDimension);
-                        break;
-
-                    case DIR_LEFT:
-                        gc.drawImage(mEistFallingLeftImg, 160 * mCurrentFallingFrame, 0, 160, 160, eist.x, eist.y, mFrameDimension, mFrameDimension);
-                        break;
-
-                    case DIR_UP:
-                        gc.drawImage(mEistFallingUpImg, 160 * mCurrentFallingFrame, 0, 160, 160, eist.x, eist.y, mFrameDimension, mFrameDimension);
-                        break;
-                }
-            }
-            //gc.setFill(Color.WHITE);
-            //gc.fillOval(eist.detectionPoint1X - 1, eist.detectionPoint1Y - 1, 2, 2);
-            //gc.fillOval(eist.detectionPoint2X - 1, eist.detectionPoint2Y - 1, 2, 2);
-
         /*
          * Draw game pad selection;
          */
+        if (eist.isMoving) {
+
             if (pad.getSelection() != null) {
 
                 Rectangle2D button;
@@ -753,21 +730,11 @@ public class Editor extends Utils {
         }
 
         if (mTesting) {
-            gc.setFill(Color.WHITE);
-            gc.setFont(infoFont);
-            gc.fillText(" L ?", columns[27], rows[12]);
+            mLevelRun.draw(gc, mInfoGlyphs, " L ?", columns[27], rows[12], pixels);
             gc.drawImage(mKeyImg, columns[26] + mHalfGridDimension, rows[12] + mHalfGridDimension, mFrameDimension, mFrameDimension);
-            gc.fillText(String.valueOf(eist.getKeys()), columns[28], rows[14]);
-            gc.setFont(turnsFont);
-            gc.fillText("Turns: " + mTurnsCounter, columns[27], rows[15]);
-            if (mTurnsBest > 0) {
-                gc.fillText("Best: " + mTurnsBest, columns[27], rows[16]);
-            } else {
-                gc.fillText("Best: -", columns[27], rows[16]);
-            }
-            if (mShowFps) {
-                gc.fillText("FPS: " + String.valueOf((int) mFps), columns[27], rows[17]);
-            }
+            mKeysRun.draw(gc, mInfoGlyphs, mKeysText.of(eist.getKeys()), columns[28], rows[14], pixels);
+            mTurnsRun.draw(gc, mTurnsGlyphs, mTurnsText.of(state.getTurns()), columns[27], rows[15], pixels);
+            mBestRun.draw(gc, mTurnsGlyphs, mBestText.of(mTurnsBest), columns[27], rows[16], pixels);
 
         } else {
 
@@ -822,9 +789,8 @@ public class Editor extends Utils {
                 }
 
                 if (!mMenuHint.equals("")) {
-                    gc.setFill(Color.WHITE);
-                    gc.setFont(messageFont);
-                    gc.fillText(mMenuHint, toolbar.getMessageCorner().getX(), toolbar.getMessageCorner().getY());
+                    mHintRun.draw(gc, mMessageGlyphs, mMenuHint, toolbar.getMessageCorner().getX(),
+                            toolbar.getMessageCorner().getY(), pixels);
                 }
             }
 
@@ -852,15 +818,9 @@ public class Editor extends Utils {
                     break;
             }
 
-            area = toolbar.getArtifactArea();
-            gc.drawImage(mArtifactImg, 160 * mCurrentArtifactFrame, 0, 160, 160, area.getMinX(), area.getMinY(), area.getWidth(), area.getHeight());
-
             area = toolbar.getKeyArea();
             gc.drawImage(mKeyImg, area.getMinX(), area.getMinY(), area.getWidth(), area.getHeight());
 
-            area = toolbar.getTeleportArea();
-            gc.drawImage(mTeleportImg, 160 * mCurrentArtifactFrame, 0, 160, 160, area.getMinX(), area.getMinY(), area.getWidth(), area.getHeight());
-
             area = toolbar.getExitArea();
             gc.drawImage(mExitClosedImg, area.getMinX(), area.getMinY(), area.getWidth(), area.getHeight());
 
@@ -882,445 +842,213 @@ public class Editor extends Utils {
                     break;
             }
 
-            area = toolbar.getOrnamentArea();
-            gc.drawImage(mOrnamentImg, 160 * mCurrentArtifactFrame, 0, 160, 160, area.getMinX(), area.getMinY(), area.getWidth(), area.getHeight());
-
-            area = toolbar.getEistArea();
-            switch (eist.getDirection()) {
-                case DIR_RIGHT:
-                    gc.drawImage(mEistRightImg, 120 * mCurrentEistFrame, 0, 120, 120, area.getMinX(), area.getMinY(), area.getWidth(), area.getHeight());
-                    break;
-                case DIR_DOWN:
-                    gc.drawImage(mEistDownImg, 120 * mCurrentEistFrame, 0, 120, 120, area.getMinX(), area.getMinY(), area.getWidth(), area.getHeight());
-                    break;
-                case DIR_LEFT:
-                    gc.drawImage(mEistLeftImg, 120 * mCurrentEistFrame, 0, 120, 120, area.getMinX(), area.getMinY(), area.getWidth(), area.getHeight());
-                    break;
-                case DIR_UP:
-                    gc.drawImage(mEistUpImg, 120 * mCurrentEistFrame, 0, 120, 120, area.getMinX(), area.getMinY(), area.getWidth(), area.getHeight());
-                    break;
-                default:
-                    break;
-            }
-
             area = toolbar.getClearArea();
             gc.drawImage(mToolbarEraseImg, area.getMinX(), area.getMinY(), area.getWidth(), area.getHeight());
         }
     }
 
-    private void updateBoard() {
-
-        /*
-         * The walkingSpeedPerSecond value depends on the board dimension.
-         * The movement speed depends on it and the current FPS.
-         */
-        if (eist.isMoving) {
-            switch (eist.getDirection()) {
-                case DIR_RIGHT:
-                    eist.x = eist.x + (walkingSpeedPerSecond / 60);
-                    break;
-
-                case DIR_DOWN:
-                    eist.y = eist.y + (walkingSpeedPerSecond / 60);
-                    break;
-
-                case DIR_LEFT:
-                    eist.x = eist.x - (walkingSpeedPerSecond / 60);
-                    break;
+    /**
+     * The animated sprites and Eist, over the static layer; in the editor, the animated toolbar buttons too.
+     */
+    private void drawDynamicLayer(double alpha) {
 
-                case DIR_UP:
-                    eist.y = eist.y - (walkingSpeedPerSecond / 60);
-                    break;
+        GraphicsContext gc = dynamicGc;
+        gc.clearRect(0, 0, mSceneWidth, mSceneHeight);
 
-                default:
-                    break;
-            }
-        }
-        Point2D center = new Point2D(eist.x + mGridDimension, eist.y + mGridDimension);
-        eist.setCenter(center);
         /*
-         * Calculate points to check if black pixel below (triggers falling down)
+         * Switch the Eists source graphics according to the movement direction. It could have been just rotated,
+         * but I wanted the light to always come from the right side. Oh, ok: almost always. The bitmap will need
+         * rotation while turning, and sometimes while falling down. Missing chiaroscuro should be unnoticeable.
          */
         switch (eist.getDirection()) {
             case DIR_RIGHT:
-                eist.detectionPoint1X = (int) center.getX() + mDetectionOffset;
-                eist.detectionPoint1Y = (int) center.getY() - mDetectionOffset;
-                eist.detectionPoint2X = (int) center.getX() + mDetectionOffset;
-                eist.detectionPoint2Y = (int) center.getY() + mDetectionOffset;
+                mEistImg = mEistRightImg;
+                mEistSprite = SpriteAtlas.EIST_RIGHT;
                 break;
 
             case DIR_DOWN:
-                eist.detectionPoint1X = (int) center.getX() + mDetectionOffset;
-                eist.detectionPoint1Y = (int) center.getY() + mDetectionOffset;
-                eist.detectionPoint2X = (int) center.getX() - mDetectionOffset;
-                eist.detectionPoint2Y = (int) center.getY() + mDetectionOffset;
+                mEistImg = mEistDownImg;
+                mEistSprite = SpriteAtlas.EIST_DOWN;
                 break;
 
             case DIR_LEFT:
-                eist.detectionPoint1X = (int) center.getX() - mDetectionOffset;
-                eist.detectionPoint1Y = (int) center.getY() + mDetectionOffset;
-                eist.detectionPoint2X = (int) center.getX() - mDetectionOffset;
-                eist.detectionPoint2Y = (int) center.getY() - mDetectionOffset;
+                mEistImg = mEistLeftImg;
+                mEistSprite = SpriteAtlas.EIST_LEFT;
                 break;
 
             case DIR_UP:
-                eist.detectionPoint1X = (int) center.getX() - mDetectionOffset;
-                eist.detectionPoint1Y = (int) center.getY() - mDetectionOffset;
-                eist.detectionPoint2X = (int) center.getX() + mDetectionOffset;
-                eist.detectionPoint2Y = (int) center.getY() - mDetectionOffset;
+                mEistImg = mEistUpImg;
+                mEistSprite = SpriteAtlas.EIST_UP;
+                break;
+
+            default:
                 break;
         }
 
         /*
-         * Rotate Eist on arrows and doors
+         * Draw artifacts
          */
-        int turning = eist.getTurning();
-        if (turning != 0) {
 
-            double endX = eist.getEndPoint().getX();
-            double endY = eist.getEndPoint().getY();
+        if (mArtifactImg != null && mArtifacts.size() > 0) {
 
-            switch (eist.getDirection()) {
-                case DIR_RIGHT:
-                    switch (eist.getTurning()) {
-                        case TURNING_RIGHT:
-                            if (eist.x < endX) {
-                                double left = Math.abs(endX - eist.x);
-                                if (eist.rotation < 90) {
-                                    eist.rotation = 90 - (90 * (left / mRotationRadius));
-                                }
-                            } else {
-                                eist.rotation = 0;
-                                eist.setDirection(DIR_DOWN);
-                                eist.setTurning(TURNING_NOT);
-                                eist.x = endX;
-                                eist.y = endY;
-                            }
-                            break;
-
-                        case TURNING_LEFT:
-                            if (eist.x < endX) {
-                                double left = Math.abs(eist.x - endX);
-                                if (eist.rotation > -90) {
-                                    eist.rotation = -90 + (90 * (left / mRotationRadius));
-                                }
-                            } else {
-                                eist.rotation = 0;
-                                eist.setDirection(DIR_UP);
-                                eist.setTurning(TURNING_NOT);
-                                eist.x = endX;
-                                eist.y = endY;
-                            }
-                            break;
-
-                        case TURNING_BACK:
-                            if (eist.x < endX) {
-                                double left = Math.abs(eist.x - endX);
-                                if (turnRight) {
-                                    if (eist.rotation < 180) {
-                                        eist.rotation = 180 - (180 * (left / mRotationRadius));
-                                    }
-                                } else {
-                                    if (eist.rotation > -180) {
-                                        eist.rotation = -180 + (180 * (left / mRotationRadius));
-                                    }
-                                }
-                            } else {
-                                eist.rotation = 0;
-                                eist.setDirection(DIR_LEFT);
-                                eist.setTurning(TURNING_NOT);
-                                eist.x = endX;
-                                eist.y = endY;
-                            }
-                            break;
-                    }
-                    break;
+            for (Artifact artifact : mArtifacts) {
 
-                case DIR_LEFT:
-                    switch (eist.getTurning()) {
-                        case TURNING_LEFT:
-                            if (eist.x > endX) {
-                                double left = Math.abs(endX - eist.x);
-                                if (eist.rotation < 90) {
-                                    eist.rotation = -90 + (90 * (left / mRotationRadius));
-                                }
-                            } else {
-                                eist.rotation = 0;
-                                eist.setDirection(DIR_DOWN);
-                                eist.setTurning(TURNING_NOT);
-                                eist.x = endX;
-                                eist.y = endY;
-                            }
-                            break;
-
-                        case TURNING_RIGHT:
-                            if (eist.x > endX) {
-                                double left = Math.abs(eist.x - endX);
-                                if (eist.rotation > -90) {
-                                    eist.rotation = 90 - (90 * (left / mRotationRadius));
-                                }
-                            } else {
-                                eist.rotation = 0;
-                                eist.setDirection(DIR_UP);
-                                eist.setTurning(TURNING_NOT);
-                                eist.x = endX;
-                                eist.y = endY;
-                            }
-                            break;
-
-                        case TURNING_BACK:
-                            if (eist.x > endX) {
-                                double left = Math.abs(eist.x - endX);
-                                if (turnRight) {
-                                    if (eist.rotation < 180) {
-                                        eist.rotation = 180 - (180 * (left / mRotationRadius));
-                                    }
-                                } else {
-                                    if (eist.rotation > -180) {
-                                        eist.rotation = -180 + (180 * (left / mRotationRadius));
-                                    }
-                                }
-                            } else {
-                                eist.rotation = 0;
-                                eist.setDirection(DIR_RIGHT);
-                                eist.setTurning(TURNING_NOT);
-                                eist.x = endX;
-                                eist.y = endY;
-                            }
-                            break;
-                    }
-                    break;
+                gc.drawImage(mArtifactImg, 160 * state.getArtifactFrame(), 0, 160, 160, artifact.getPosX(), artifact.getPosY(), mFrameDimension, mFrameDimension);
+            }
+        }
 
-                case DIR_DOWN:
-                    switch (eist.getTurning()) {
-                        case TURNING_RIGHT:
-                            if (eist.y < endY) {
-                                double left = Math.abs(endY - eist.y);
-                                if (eist.rotation < 90) {
-                                    eist.rotation = 90 - (90 * (left / mRotationRadius));
-                                }
-                            } else {
-                                eist.rotation = 0;
-                                eist.setDirection(DIR_LEFT);
-                                eist.setTurning(TURNING_NOT);
-                                eist.x = endX;
-                                eist.y = endY;
-                            }
-                            break;
-
-                        case TURNING_LEFT:
-                            if (eist.y < endY) {
-                                double left = Math.abs(endY - eist.y);
-                                if (eist.rotation > -90) {
-                                    eist.rotation = -90 + (90 * (left / mRotationRadius));
-                                }
-                            } else {
-                                eist.rotation = 0;
-                                eist.setDirection(DIR_RIGHT);
-                                eist.setTurning(TURNING_NOT);
-                                eist.x = endX;
-                                eist.y = endY;
-                            }
-                            break;
-
-                        case TURNING_BACK:
-                            if (eist.y < endY) {
-                                double left = Math.abs(endY - eist.y);
-                                if (turnRight) {
-                                    if (eist.rotation < 180) {
-                                        eist.rotation = 180 - (180 * (left / mRotationRadius));
-                                    }
-                                } else {
-                                    eist.rotation = -180 + (180 * (left / mRotationRadius));
-                                }
-                            } else {
-                                eist.rotation = 0;
-                                eist.setDirection(DIR_UP);
-                                eist.setTurning(TURNING_NOT);
-                                eist.x = endX;
-                                eist.y = endY;
-                            }
-                            break;
-                    }
-                    break;
+        /*
+         * Draw ornaments
+         */
+        if (mOrnamentImg != null && mOrnaments.size() > 0) {
 
-                case DIR_UP:
-                    switch (eist.getTurning()) {
-                        case TURNING_RIGHT:
-                            if (eist.y > endY) {
-                                double left = Math.abs(endY - eist.y);
-                                if (eist.rotation < 90) {
-                                    eist.rotation = 90 - (90 * (left / mRotationRadius));
-                                }
-                            } else {
-                                eist.rotation = 0;
-                                eist.setDirection(DIR_RIGHT);
-                                eist.setTurning(TURNING_NOT);
-                                eist.x = endX;
-                                eist.y = endY;
-                            }
-                            break;
-
-                        case TURNING_LEFT:
-                            if (eist.y > endY) {
-                                double left = Math.abs(endY - eist.y);
-                                if (eist.rotation > -90) {
-                                    eist.rotation = -90 + (90 * (left / mRotationRadius));
-                                }
-                            } else {
-                                eist.rotation = 0;
-                                eist.setDirection(DIR_LEFT);
-                                eist.setTurning(TURNING_NOT);
-                                eist.x = endX;
-                                eist.y = endY;
-                            }
-                            break;
-
-                        case TURNING_BACK:
-                            if (eist.y > endY) {
-                                double left = Math.abs(endY - eist.y);
-                                if (turnRight) {
-                                    if (eist.rotation < 180) {
-                                        eist.rotation = 180 - (180 * (left / mRotationRadius));
-                                    }
-                                } else {
-                                    if (eist.rotation > -180) {
-                                        eist.rotation = -180 + (180 * (left / mRotationRadius));
-                                    }
-                                }
-                            } else {
-                                eist.rotation = 0;
-                                eist.setDirection(DIR_DOWN);
-                                eist.setTurning(TURNING_NOT);
-                                eist.x = endX;
-                                eist.y = endY;
-                            }
-                            break;
-                    }
-                    break;
+            for (Ornament ornament : mOrnaments) {
+
+                gc.drawImage(mOrnamentImg, 160 * state.getArtifactFrame(), 0, 160, 160, ornament.getPosX(), ornament.getPosY(), mFrameDimension, mFrameDimension);
             }
         }
-    }
 
-    private void reactToArrow(Arrow arrow) {
         /*
-         * In the updateBoard method: Keep turning until the point reached.
+         * Draw teleports
          */
-        eist.setEndPoint(new Point2D(arrow.getPosX(), arrow.getPosY()));
+        if (mTeleportImg != null && mTeleports.size() > 0) {
 
-        turnRight = getRandomBoolean();
+            for (Teleport teleport : mTeleports) {
 
-        mTurnsCounter++;
+                gc.drawImage(mTeleportImg, 160 * state.getArtifactFrame(), 0, 160, 160, teleport.getPosX(), teleport.getPosY(), mFrameDimension, mFrameDimension);
+            }
+        }
 
-        switch (eist.getDirection()) {
-            case DIR_RIGHT:
-                switch (arrow.getDirection()) {
-                    case DIR_DOWN:
-                        eist.setTurning(TURNING_RIGHT);
-                        break;
+        /*
+         * Draw Eist
+         */
+        if (!state.isFalling()) {
 
-                    case DIR_UP:
-                        eist.setTurning(TURNING_LEFT);
-                        break;
+            double eistX = eist.getRenderX(alpha);
+            double eistY = eist.getRenderY(alpha);
 
-                    case DIR_LEFT:
-                        eist.setTurning(TURNING_BACK);
-                        break;
+            if (eist.rotation != 0) {
+                drawEistRotated(eistX, eistY, eist.rotation);
 
-                    default:
-                        break;
-                }
-                break;
+            } else {
+                gc.drawImage(mEistImg, 120 * state.getEistFrame(), 0, 120, 120, eistX, eistY, mFrameDimension, mFrameDimension);
+            }
+        }
 
-            case DIR_DOWN:
-                switch (arrow.getDirection()) {
-                    case DIR_LEFT:
-                        eist.setTurning(TURNING_RIGHT);
-                        break;
+        if (eist.isMoving) {
 
+            if (state.isFalling()) {
+
+                switch (eist.getDirection()) {
                     case DIR_RIGHT:
-                        eist.setTurning(TURNING_LEFT);
+                        gc.drawImage(mEistFallingRightImg, 160 * state.getFallingFrame(), 0, 160, 160, eist.getRenderX(alpha), eist.getRenderY(alpha), mFrameDimension, mFrameDimension);
                         break;
 
-                    case DIR_UP:
-                        eist.setTurning(TURNING_BACK);
+                    case DIR_DOWN:
+                        gc.drawImage(mEistFallingDownImg, 160 * state.getFallingFrame(), 0, 160, 160, eist.getRenderX(alpha), eist.getRenderY(alpha), mFrameDimension, mFrameDimension);
                         break;
 
-                    default:
-                        break;
-                }
-                break;
-
-            case DIR_LEFT:
-                switch (arrow.getDirection()) {
-                    case DIR_DOWN:
-                        eist.setTurning(TURNING_LEFT);
+                    case DIR_LEFT:
+                        gc.drawImage(mEistFallingLeftImg, 160 * state.getFallingFrame(), 0, 160, 160, eist.getRenderX(alpha), eist.getRenderY(alpha), mFrameDimension, mFrameDimension);
                         break;
 
                     case DIR_UP:
-                        eist.setTurning(TURNING_RIGHT);
+                        gc.drawImage(mEistFallingUpImg, 160 * state.getFallingFrame(), 0, 160, 160, eist.getRenderX(alpha), eist.getRenderY(alpha), mFrameDimension, mFrameDimension);
                         break;
+                }
+            }
+            //gc.setFill(Color.WHITE);
+            //gc.fillOval(eist.detectionPoint1X - 1, eist.detectionPoint1Y - 1, 2, 2);
+            //gc.fillOval(eist.detectionPoint2X - 1, eist.detectionPoint2Y - 1, 2, 2);
+        }
 
-                    case DIR_RIGHT:
-                        eist.setTurning(TURNING_BACK);
-                        break;
+        /*
+         * The animated toolbar buttons, over the static ones
+         */
+        if (!mTesting) {
 
-                    default:
-                        break;
-                }
-                break;
+            Rectangle2D area;
 
-            case DIR_UP:
-                switch (arrow.getDirection()) {
-                    case DIR_RIGHT:
-                        eist.setTurning(TURNING_RIGHT);
-                        break;
+            area = toolbar.getArtifactArea();
+            gc.drawImage(mArtifactImg, 160 * state.getArtifactFrame(), 0, 160, 160, area.getMinX(), area.getMinY(), area.getWidth(), area.getHeight());
 
-                    case DIR_LEFT:
-                        eist.setTurning(TURNING_LEFT);
-                        break;
+            area = toolbar.getTeleportArea();
+            gc.drawImage(mTeleportImg, 160 * state.getArtifactFrame(), 0, 160, 160, area.getMinX(), area.getMinY(), area.getWidth(), area.getHeight());
 
-                    case DIR_DOWN:
-                        eist.setTurning(TURNING_BACK);
-                        break;
-                }
-                break;
+            area = toolbar.getOrnamentArea();
+            gc.drawImage(mOrnamentImg, 160 * state.getArtifactFrame(), 0, 160, 160, area.getMinX(), area.getMinY(), area.getWidth(), area.getHeight());
+
+            area = toolbar.getEistArea();
+            switch (eist.getDirection()) {
+                case DIR_RIGHT:
+                    gc.drawImage(mEistRightImg, 120 * state.getEistFrame(), 0, 120, 120, area.getMinX(), area.getMinY(), area.getWidth(), area.getHeight());
+                    break;
+                case DIR_DOWN:
+                    gc.drawImage(mEistDownImg, 120 * state.getEistFrame(), 0, 120, 120, area.getMinX(), area.getMinY(), area.getWidth(), area.getHeight());
+                    break;
+                case DIR_LEFT:
+                    gc.drawImage(mEistLeftImg, 120 * state.getEistFrame(), 0, 120, 120, area.getMinX(), area.getMinY(), area.getWidth(), area.getHeight());
+                    break;
+                case DIR_UP:
+                    gc.drawImage(mEistUpImg, 120 * state.getEistFrame(), 0, 120, 120, area.getMinX(), area.getMinY(), area.getWidth(), area.getHeight());
+                    break;
+                default:
+                    break;
+            }
         }
-        mArrows.remove(arrow);
     }
 
-    private void reactToDoor(Door door) {
+    /**
+     * Rasterize the HUD fonts again if the raster scale changed; on the FX thread.
+     */
+    private void updateGlyphs() {
 
-        mTurnsCounter++;
+        double scale = mView.getRasterScale();
+        mInfoGlyphs = GlyphAtlas.reuse(mInfoGlyphs, infoFont, Color.WHITE, scale);
+        mTurnsGlyphs = GlyphAtlas.reuse(mTurnsGlyphs, turnsFont, Color.WHITE, scale);
+        mMessageGlyphs = GlyphAtlas.reuse(mMessageGlyphs, messageFont, Color.WHITE, scale);
+    }
 
-        if (mCurrentLevel > 0 && !mMuteSound) {
-            fxBounce.setBalance(calculateBalance(eist.x));
-            fxBounce.play();
+    /**
+     * The performance overlay, on a canvas of its own over the editor, as in Main: redrawn only when its text changes
+     * (twice a second), or cleared once when hidden.
+     */
+    private void drawFrameStats() {
+
+        boolean changed = mFrameStats.refreshText();
+        if (changed || mFrameStatsShown != mFrameStats.isVisible()) {
+            statsGc.clearRect(0, 0, mSceneWidth, mSceneHeight);
+            mFrameStats.draw(statsGc, 0, 0, statsFont);
+            mFrameStatsShown = mFrameStats.isVisible();
         }
+    }
 
-        turnRight = getRandomBoolean();
-
-        switch (eist.getDirection()) {
-            case DIR_RIGHT: {
-                eist.setEndPoint(new Point2D(door.getPosX(), door.getPosY()));
-                break;
-            }
-            case DIR_LEFT: {
-                eist.setEndPoint(new Point2D(door.getPosX(), door.getPosY()));
-                break;
-            }
-            case DIR_DOWN: {
-                eist.setEndPoint(new Point2D(door.getPosX(), door.getPosY()));
-                break;
-            }
-            case DIR_UP: {
-                eist.setEndPoint(new Point2D(door.getPosX(), door.getPosY()));
-                break;
-            }
+    /**
+     * A rotated frame copied, once rasterized; until then the matrix is set directly, as in CanvasSpriteRenderer:
+     * neither a Rotate nor a saved GraphicsContext state gets allocated on every frame of the turn.
+     *
+     * @param degrees clockwise, around the frame center
+     */
+    private void drawEistRotated(double x, double y, double degrees) {
+
+        GraphicsContext gc = dynamicGc;
+        SpriteAtlas atlas = mEistAtlas;
+        int frame = state.getEistFrame();
+        RotatedFrames.Cell cell = atlas != null ? atlas.getRotated(mEistSprite, frame, degrees) : null;
+        if (cell != null) {
+            atlas.draw(gc, cell, x, y);
+            return;
         }
-        eist.setTurning(TURNING_BACK);
 
-        mDisableDoorReaction = true;
+        double angle = Math.toRadians(degrees);
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+        double pivotX = x + mGridDimension;
+        double pivotY = y + mGridDimension;
+        gc.setTransform(cos, sin, -sin, cos, pivotX - cos * pivotX + sin * pivotY,
+                pivotY - sin * pivotX - cos * pivotY);
+        gc.drawImage(mEistImg, 120 * frame, 0, 120, 120, x, y, mFrameDimension, mFrameDimension);
+        gc.setTransform(1, 0, 0, 1, 0, 0);
     }
 
     public static void main(String[] args) {
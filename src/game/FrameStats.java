@@ -0,0 +1,374 @@
+package game;
+
+import javafx.geometry.VPos;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+
+import java.io.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Frame timing for the performance overlay: the frame time (from one AnimationTimer pulse to the next), the time
+ * spent in the simulation ticks and in the drawing, the drawImage calls, the GC and the heap. The drawing time is the
+ * time taken to fill the canvas command buffers; the FX render thread does the actual rendering later, and a slow
+ * render shows in the frame time only.
+ *
+ * The frame times go into a histogram of the last WINDOW_FRAMES frames, fixed in size, from which the percentiles
+ * get read. Nothing gets allocated per frame: the overlay text is only rebuilt every TEXT_REFRESH_NANOS, and the CSV
+ * lines are written from a reused buffer.
+ *
+ * The CSV export has a line per frame, the times in microseconds:
+ *
+ *   frame,time_us,frame_us,update_us,draw_us,ticks,draw_images,gc_count,gc_time_ms,heap_used_kb
+ *
+ * gc_count and gc_time_ms are totals since the JVM started; draw_images is -1 where not counted (the editor).
+ */
+class FrameStats {
+
+    /**
+     * Frames the percentiles are taken over: a few seconds at any refresh rate.
+     */
+    static final int WINDOW_FRAMES = 1024;
+
+    private static final long BUCKET_NANOS = 100000; // 0.1 ms
+    private static final int BUCKETS = 1000; // Up to 100 ms, longer frames go to the last bucket
+
+    private static final long TEXT_REFRESH_NANOS = 500000000;
+
+    /**
+     * Overlay width, in font sizes: fits the longest line in a monospaced font.
+     */
+    private static final double OVERLAY_WIDTH = 28;
+
+    private static final String CSV_HEADER =
+            "frame,time_us,frame_us,update_us,draw_us,ticks,draw_images,gc_count,gc_time_ms,heap_used_kb";
+
+    private final GarbageCollectorMXBean[] gcBeans =
+            ManagementFactory.getGarbageCollectorMXBeans().toArray(new GarbageCollectorMXBean[0]);
+    private final Runtime runtime = Runtime.getRuntime();
+
+    /*
+     * The window: per frame, ring buffers of the values; per frame time bucket, the frames in the window
+     */
+    private final long[] frameNanos = new long[WINDOW_FRAMES];
+    private final long[] updateNanos = new long[WINDOW_FRAMES];
+    private final long[] drawNanos = new long[WINDOW_FRAMES];
+    private final int[] drawImages = new int[WINDOW_FRAMES];
+    private final long[] gcCounts = new long[WINDOW_FRAMES];
+    private final long[] gcMillis = new long[WINDOW_FRAMES];
+    private final int[] histogram = new int[BUCKETS];
+    private int frames; // In the window
+    private int next; // Ring index
+
+    private long framesTotal;
+    private long firstNow = -1;
+    private long lastNow = -1;
+    private long frameNow;
+    private long frameStart;
+    private long updateEnd;
+    private int frameTicks;
+    private int frameDrawImages;
+
+    private boolean visible;
+    private long textTime;
+    private String[] text = new String[0];
+
+    private Writer csvWriter;
+    private File csvFile;
+    private final StringBuilder csvLine = new StringBuilder();
+    private char[] csvChars = new char[128];
+
+    /*
+     * Frame phases, in the order called by the game loop
+     */
+
+    /**
+     * @param now the AnimationTimer.handle() value
+     */
+    void frameStart(long now) {
+
+        frameNow = now;
+        frameStart = System.nanoTime();
+        frameDrawImages = 0;
+    }
+
+    /**
+     * The simulation ticks of the frame are done.
+     */
+    void updateEnd(int ticks) {
+        updateEnd = System.nanoTime();
+        frameTicks = ticks;
+    }
+
+    /**
+     * Count the drawImage calls made by the frame; see SpriteAtlas.takeDrawCount().
+     */
+    void addDrawImages(int count) {
+        frameDrawImages += count;
+    }
+
+    /**
+     * @return the drawImage calls counted so far in the frame
+     */
+    int getDrawImages() {
+        return frameDrawImages;
+    }
+
+    /**
+     * The frame is drawn: record it.
+     *
+     * @param countedDrawImages false if the drawImage calls were not counted
+     */
+    void frameEnd(boolean countedDrawImages) {
+
+        long drawEnd = System.nanoTime();
+
+        if (lastNow < 0) {
+            /*
+             * No frame time for the first frame, nor for the first one after a pause
+             */
+            if (firstNow < 0) {
+                firstNow = frameNow;
+            }
+            lastNow = frameNow;
+            return;
+        }
+        long frameTime = frameNow - lastNow;
+        lastNow = frameNow;
+
+        long gcCount = 0;
+        long gcTime = 0;
+        for (GarbageCollectorMXBean bean : gcBeans) {
+            gcCount += Math.max(0, bean.getCollectionCount());
+            gcTime += Math.max(0, bean.getCollectionTime());
+        }
+
+        if (frames == WINDOW_FRAMES) {
+            histogram[bucket(frameNanos[next])]--;
+        } else {
+            frames++;
+        }
+        frameNanos[next] = frameTime;
+        updateNanos[next] = updateEnd - frameStart;
+        drawNanos[next] = drawEnd - updateEnd;
+        drawImages[next] = countedDrawImages ? frameDrawImages : -1;
+        gcCounts[next] = gcCount;
+        gcMillis[next] = gcTime;
+        histogram[bucket(frameTime)]++;
+        next = (next + 1) % WINDOW_FRAMES;
+        framesTotal++;
+
+        if (csvWriter != null) {
+            writeCsvLine(frameTime, drawEnd, gcCount, gcTime, countedDrawImages);
+        }
+    }
+
+    /**
+     * The game loop was stopped (the window minimized): the next frame gets no frame time, instead of the pause.
+     */
+    void pause() {
+        lastNow = -1;
+    }
+
+    private static int bucket(long nanos) {
+        return (int) Math.min(BUCKETS - 1, nanos / BUCKET_NANOS);
+    }
+
+    /*
+     * The overlay
+     */
+
+    boolean isVisible() {
+        return visible;
+    }
+
+    void toggleVisible() {
+        visible = !visible;
+        textTime = 0;
+    }
+
+    /**
+     * @return true if the overlay text changed since the last call; it does every TEXT_REFRESH_NANOS at most
+     */
+    boolean refreshText() {
+
+        if (!visible || frames == 0 || (textTime != 0 && frameNow - textTime < TEXT_REFRESH_NANOS)) {
+            return false;
+        }
+        textTime = frameNow;
+
+        int newest = (next + WINDOW_FRAMES - 1) % WINDOW_FRAMES;
+        int oldest = frames == WINDOW_FRAMES ? next : 0;
+
+        long maxFrame = 0;
+        long updateTotal = 0;
+        long drawTotal = 0;
+        long drawImagesTotal = 0;
+        for (int i = 0; i < frames; i++) {
+            maxFrame = Math.max(maxFrame, frameNanos[i]);
+            updateTotal += updateNanos[i];
+            drawTotal += drawNanos[i];
+            drawImagesTotal += drawImages[i];
+        }
+
+        long usedHeap = runtime.totalMemory() - runtime.freeMemory();
+
+        String drawImagesText = drawImages[newest] < 0 ? "-"
+                : String.format("%.1f", (double) drawImagesTotal / frames);
+        text = new String[]{
+                String.format("frame  p50 %5.1f  p99 %5.1f  max %5.1f ms", percentileMillis(0.5),
+                        percentileMillis(0.99), maxFrame / 1e6),
+                String.format("update %6.2f ms   draw %6.2f ms", updateTotal / 1e6 / frames, drawTotal / 1e6 / frames),
+                "drawImage " + drawImagesText + " per frame",
+                String.format("GC %d, %d ms   last %d frames: %d, %d ms", gcCounts[newest], gcMillis[newest],
+                        frames, gcCounts[newest] - gcCounts[oldest], gcMillis[newest] - gcMillis[oldest]),
+                String.format("heap %d / %d MB", usedHeap >> 20, runtime.maxMemory() >> 20),
+                csvFile != null ? "CSV " + csvFile.getName() : "F4: CSV export"
+        };
+        return true;
+    }
+
+    /**
+     * @return the frame time under which the fraction of the window frames is, at the bucket upper bound
+     */
+    private double percentileMillis(double fraction) {
+
+        int rank = (int) Math.ceil(fraction * frames);
+        int count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += histogram[i];
+            if (count >= rank) {
+                return (i + 1) * BUCKET_NANOS / 1e6;
+            }
+        }
+        return BUCKETS * BUCKET_NANOS / 1e6;
+    }
+
+    /**
+     * Draw the overlay text on a dark box, top left at (x, y).
+     */
+    void draw(GraphicsContext gc, double x, double y, Font font) {
+
+        if (!visible) {
+            return;
+        }
+        double lineHeight = font.getSize() * 1.3;
+        double padding = font.getSize() / 2;
+
+        gc.save();
+        gc.setFill(Color.color(0, 0, 0, 0.7));
+        gc.fillRect(x, y, getWidth(font), getHeight(font));
+        gc.setFont(font);
+        gc.setFill(Color.LIGHTGREEN);
+        gc.setTextAlign(TextAlignment.LEFT);
+        gc.setTextBaseline(VPos.TOP);
+        for (int i = 0; i < text.length; i++) {
+            gc.fillText(text[i], x + padding, y + padding + i * lineHeight);
+        }
+        gc.restore();
+    }
+
+    /**
+     * @return the width draw() covers
+     */
+    double getWidth(Font font) {
+        return OVERLAY_WIDTH * font.getSize();
+    }
+
+    /**
+     * @return the height draw() covers
+     */
+    double getHeight(Font font) {
+        return text.length * font.getSize() * 1.3 + font.getSize();
+    }
+
+    /*
+     * The CSV export
+     */
+
+    boolean isRecording() {
+        return csvWriter != null;
+    }
+
+    /**
+     * Start writing the frames into a new file in the folder, or stop if writing already.
+     *
+     * @return the file written to, null if stopped or failed
+     */
+    File toggleRecording(File folder) {
+
+        if (csvWriter != null) {
+            stopRecording();
+            return null;
+        }
+        folder.mkdirs();
+        File file = new File(folder, "frames-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".csv");
+        try {
+            csvWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.US_ASCII),
+                    1 << 16);
+            csvWriter.write(CSV_HEADER);
+            csvWriter.write('\n');
+        } catch (IOException e) {
+            System.out.println("Couldn't write " + file + ": " + e);
+            csvWriter = null;
+            return null;
+        }
+        csvFile = file;
+        textTime = 0;
+        System.out.println("Writing the frame times to " + file);
+        return file;
+    }
+
+    void stopRecording() {
+
+        if (csvWriter == null) {
+            return;
+        }
+        try {
+            csvWriter.close();
+        } catch (IOException e) {
+            System.out.println("Couldn't write " + csvFile + ": " + e);
+        }
+        System.out.println("Frame times written to " + csvFile);
+        csvWriter = null;
+        csvFile = null;
+        textTime = 0;
+    }
+
+    private void writeCsvLine(long frameTime, long drawEnd, long gcCount, long gcTime, boolean countedDrawImages) {
+
+        StringBuilder line = csvLine;
+        line.setLength(0);
+        line.append(framesTotal).append(',')
+                .append((frameNow - firstNow) / 1000).append(',')
+                .append(frameTime / 1000).append(',')
+                .append((updateEnd - frameStart) / 1000).append(',')
+                .append((drawEnd - updateEnd) / 1000).append(',')
+                .append(frameTicks).append(',')
+                .append(countedDrawImages ? frameDrawImages : -1).append(',')
+                .append(gcCount).append(',')
+                .append(gcTime).append(',')
+                .append((runtime.totalMemory() - runtime.freeMemory()) >> 10).append('\n');
+
+        /*
+         * Through a char array: Writer.append(CharSequence) would make a String of it
+         */
+        int length = line.length();
+        if (length > csvChars.length) {
+            csvChars = new char[2 * length];
+        }
+        line.getChars(0, length, csvChars, 0);
+        try {
+            csvWriter.write(csvChars, 0, length);
+        } catch (IOException e) {
+            System.out.println("Couldn't write " + csvFile + ": " + e);
+            stopRecording();
+        }
+    }
+}
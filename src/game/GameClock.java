@@ -0,0 +1,131 @@
+package game;
+
+/**
+ * Fixed-timestep clock for the game loop.
+ *
+ * The AnimationTimer fires at the display refresh rate (60, 120, 144 Hz...), so the simulation can't just move
+ * Eist once per handle() call. The timer's 'now' value is fed into an accumulator instead, and the simulation
+ * is stepped in constant ticks until it catches up. Whatever is left in the accumulator tells the renderer how far
+ * between the last two ticks we are, so that the drawing may be interpolated.
+ */
+class GameClock {
+
+    static final int DEFAULT_TICK_RATE = 60;
+
+    /*
+     * The "tickrate" pref gets clamped to these
+     */
+    static final int MIN_TICK_RATE = 10;
+    static final int MAX_TICK_RATE = 1000;
+
+    /**
+     * If the game window was frozen for a while (dragged, dialog opened, GC pause), don't try to run hundreds
+     * of ticks at once - just drop the time we couldn't catch up with. Capped by time, not by ticks, so that a slow
+     * frame runs all its ticks whatever the tick rate.
+     */
+    private static final long MAX_FRAME_NANOS = 250000000;
+    private static final long MAX_CATCH_UP_NANOS = 1000000000;
+
+    private final int tickRate;
+    private final long tickNanos;
+
+    private long lastNow = -1;
+    private long accumulator;
+    private long ticks;
+    private int ticksThisFrame;
+    private boolean catchUp;
+
+    /**
+     * @param tickRate see clampTickRate()
+     */
+    GameClock(int tickRate) {
+        this.tickRate = clampTickRate(tickRate);
+        this.tickNanos = 1000000000L / this.tickRate;
+    }
+
+    /**
+     * @return the rate clamped to MIN_TICK_RATE..MAX_TICK_RATE; DEFAULT_TICK_RATE if not positive
+     */
+    static int clampTickRate(int tickRate) {
+        return tickRate > 0 ? Math.max(MIN_TICK_RATE, Math.min(MAX_TICK_RATE, tickRate)) : DEFAULT_TICK_RATE;
+    }
+
+    /**
+     * Feed the clock with the AnimationTimer.handle(now) value. Call nextTick() in a loop afterwards.
+     */
+    void advance(long now) {
+        if (lastNow >= 0 && now > lastNow) {
+            accumulator += now - lastNow;
+        }
+        lastNow = now;
+        ticksThisFrame = 0;
+        accumulator = Math.min(accumulator, catchUp ? MAX_CATCH_UP_NANOS : MAX_FRAME_NANOS);
+        catchUp = false;
+    }
+
+    /**
+     * The game loop was stopped on purpose while nothing moved (see Main): the next advance() runs the ticks of all
+     * the time elapsed, up to a second of them, rather than dropping what a frozen window would.
+     */
+    void catchUp() {
+        catchUp = true;
+    }
+
+    /**
+     * @return true if one more simulation tick should be run in the current frame
+     */
+    boolean nextTick() {
+        if (accumulator < tickNanos) {
+            return false;
+        }
+        accumulator -= tickNanos;
+        ticks++;
+        ticksThisFrame++;
+        return true;
+    }
+
+    /**
+     * @return position between the previous and the current tick, in range 0.0 to 1.0
+     */
+    double getAlpha() {
+        return (double) accumulator / tickNanos;
+    }
+
+    /**
+     * @return the time until the simulation gets the given time ahead of where it is, the time accumulated already
+     *         taken off
+     */
+    long getNanosUntil(long simulationNanos) {
+        return Math.max(0, simulationNanos - accumulator);
+    }
+
+    /**
+     * Forget the time elapsed since the last frame, e.g. when the window gets restored after minimization.
+     */
+    void reset() {
+        lastNow = -1;
+        accumulator = 0;
+    }
+
+    /**
+     * @return simulation time in nanoseconds; advances by exactly one tick duration per tick
+     */
+    long getSimulationTime() {
+        return ticks * tickNanos;
+    }
+
+    long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * @return the ticks run since the last advance()
+     */
+    int getTicksThisFrame() {
+        return ticksThisFrame;
+    }
+
+    int getTickRate() {
+        return tickRate;
+    }
+}
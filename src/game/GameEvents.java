@@ -0,0 +1,415 @@
+package game;
+
+import javafx.scene.image.Image;
+import jdk.jfr.*;
+
+import java.io.File;
+import java.net.URL;
+import java.util.function.LongSupplier;
+
+/**
+ * Java Flight Recorder events of the game: the level loading, broken down into the integrity check of a user-defined
+ * level, the .dat parsing and the bitmap decoding; the common asset loading; the simulation ticks and the render
+ * passes; the Hall of Fame requests, the editor save and the level set export and import.
+ *
+ * Nothing gets recorded unless a recording runs, for example:
+ *
+ *   JAVA_TOOL_OPTIONS=-XX:StartFlightRecording:filename=eist.jfr eist-returns
+ *   jfr print --events eist.LevelLoad,eist.DatParse eist.jfr
+ *   jfr summary eist.jfr
+ *
+ * The events come under the "Eist Returns" category in JDK Mission Control. The nested events of a level load (the
+ * integrity check, the parsing and the decoding) are on the level-load thread, within the duration of the outer one,
+ * which ends on the FX thread; the level assets loaded ahead of time (see Utils.prefetchLevel()) are on the
+ * level-load thread too. The ticks and the render passes come every frame, so they have no stack traces; a threshold
+ * keeps the long ones only:
+ *
+ *   -XX:StartFlightRecording:filename=eist.jfr,eist.Tick#threshold=1ms,eist.Render#threshold=5ms
+ *
+ * The outcome fields are OUTCOME_OK, or what went wrong.
+ */
+class GameEvents {
+
+    static final String OUTCOME_OK = "ok";
+
+    private static final String CATEGORY = "Eist Returns";
+
+    /*
+     * Level loading
+     */
+
+    @Name("eist.LevelLoad")
+    @Label("Level Load")
+    @Category({CATEGORY, "Level"})
+    @Description("A level started: the integrity check, the assets (from the cache, or loaded) and the level objects")
+    static class LevelLoad extends Event {
+
+        @Label("Level")
+        int level;
+
+        @Label("User-Defined Level")
+        @Description("False for a level shipped with the game, or one loaded instead of a user-defined one")
+        boolean userLevel;
+
+        @Label("Assets")
+        @Description("Where the level assets came from: cache, prefetch or load")
+        String assets;
+
+        @Label("Cache Hits")
+        @Description("Level asset cache lookups served, since the game started")
+        int cacheHits;
+
+        @Label("Cache Misses")
+        int cacheMisses;
+
+        @Label("Cache Evictions")
+        int cacheEvictions;
+
+        @Label("Cache Size")
+        @DataAmount
+        long cacheBytes;
+
+        @Label("Outcome")
+        String outcome;
+    }
+
+    @Name("eist.LevelIntegrityCheck")
+    @Label("Level Integrity Check")
+    @Category({CATEGORY, "Level"})
+    @Description("The files of a user-defined level folder checked for")
+    static class LevelIntegrityCheck extends Event {
+
+        @Label("Level")
+        int level;
+
+        @Label("Missing Files")
+        int missingFiles;
+
+        @Label("Outcome")
+        String outcome;
+    }
+
+    @Name("eist.LevelAssetsLoad")
+    @Label("Level Assets Load")
+    @Category({CATEGORY, "Level"})
+    @Description("The level bitmaps decoded, the .dat files parsed and the sprite atlas built")
+    static class LevelAssetsLoad extends Event {
+
+        @Label("Level")
+        int level;
+
+        @Label("User-Defined Level")
+        boolean userLevel;
+
+        @Label("From Bundle")
+        @Description("Loaded from the level bundle rather than the level files")
+        boolean bundle;
+
+        @Label("Prefetch")
+        @Description("Loaded ahead of time, for the level likely to come next")
+        boolean prefetch;
+
+        @Label("Outcome")
+        String outcome;
+    }
+
+    @Name("eist.DatParse")
+    @Label("Level Data Parse")
+    @Category({CATEGORY, "Level"})
+    @Description("A .dat file parsed")
+    @StackTrace(false)
+    static class DatParse extends Event {
+
+        @Label("File")
+        String file;
+
+        @Label("Size")
+        @DataAmount
+        long bytes;
+
+        @Label("Entries")
+        int entries;
+
+        @Label("Outcome")
+        String outcome;
+    }
+
+    @Name("eist.ImageDecode")
+    @Label("Image Decode")
+    @Category({CATEGORY, "Assets"})
+    @Description("A bitmap decoded, and scaled if asked to")
+    @StackTrace(false)
+    static class ImageDecode extends Event {
+
+        @Label("Image")
+        String image;
+
+        @Label("Source")
+        @Description("bundle, file or resource")
+        String source;
+
+        @Label("Size")
+        @Description("The encoded size, -1 if unknown")
+        @DataAmount
+        long bytes;
+
+        @Label("Width")
+        int width;
+
+        @Label("Height")
+        int height;
+
+        @Label("Outcome")
+        String outcome;
+
+        /**
+         * End the event, and commit it with the fields of the image decoded if it is recorded.
+         *
+         * @param encodedBytes the encoded size, -1 if unknown; only asked for if recorded
+         */
+        void commit(Image decoded, String image, String source, LongSupplier encodedBytes) {
+
+            end();
+            if (shouldCommit()) {
+                this.image = image;
+                this.source = source;
+                bytes = encodedBytes.getAsLong();
+                width = (int) decoded.getWidth();
+                height = (int) decoded.getHeight();
+                outcome = decoded.isError() ? String.valueOf(decoded.getException()) : OUTCOME_OK;
+                commit();
+            }
+        }
+    }
+
+    @Name("eist.AtlasBuild")
+    @Label("Sprite Atlas Build")
+    @Category({CATEGORY, "Assets"})
+    @Description("The sprites decoded again at the board size and copied into the atlas")
+    static class AtlasBuild extends Event {
+
+        @Label("Width")
+        int width;
+
+        @Label("Height")
+        int height;
+    }
+
+    @Name("eist.RotatedFramesRender")
+    @Label("Rotated Frames Render")
+    @Category({CATEGORY, "Assets"})
+    @Description("Eist's frames rotated in steps, once for the atlas scale; on the atlas-raster thread")
+    static class RotatedFramesRender extends Event {
+
+        @Label("Steps")
+        @Description("In a full turn, 0 if they don't fit in the memory allowed")
+        int steps;
+
+        @Label("Size")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("eist.AssetLoad")
+    @Label("Asset Load")
+    @Category({CATEGORY, "Assets"})
+    @Description("A common asset (sprites, sounds, music, menu bitmaps) loaded on the asset loader threads")
+    static class AssetLoad extends Event {
+
+        @Label("Asset")
+        String asset;
+
+        @Label("Group")
+        @Description("0: needed for the first frame, 1: later")
+        int group;
+
+        @Label("Outcome")
+        String outcome;
+    }
+
+    /*
+     * The game loop
+     */
+
+    @Name("eist.Tick")
+    @Label("Simulation Tick")
+    @Category({CATEGORY, "Game Loop"})
+    @StackTrace(false)
+    static class Tick extends Event {
+
+        @Label("Level")
+        int level;
+
+        @Label("Tick")
+        @Description("Since the level was loaded")
+        long tick;
+
+        @Label("Replay")
+        boolean replay;
+    }
+
+    @Name("eist.Render")
+    @Label("Render Pass")
+    @Category({CATEGORY, "Game Loop"})
+    @Description("The board layers that changed redrawn; the FX render thread renders them later")
+    @StackTrace(false)
+    static class Render extends Event {
+
+        @Label("Level")
+        int level;
+
+        @Label("Static Layer Redrawn")
+        boolean staticLayer;
+
+        @Label("Dynamic Layer Redrawn")
+        @Description("False when nothing moved since the last frame")
+        boolean dynamicLayer;
+
+        @Label("drawImage Calls")
+        @Description("-1 where not counted (the editor)")
+        int drawImages;
+    }
+
+    /*
+     * The game loop events come every tick and every frame: they get created only while a recording takes them,
+     * for the loop to allocate nothing otherwise. An instance can't be reused instead, its begin() and commit() give
+     * the duration of the first use only.
+     */
+    private static final EventType TICK_TYPE = EventType.getEventType(Tick.class);
+    private static final EventType RENDER_TYPE = EventType.getEventType(Render.class);
+
+    /**
+     * @return a Tick begun, or null while no recording takes it
+     */
+    static Tick beginTick() {
+
+        if (!TICK_TYPE.isEnabled()) {
+            return null;
+        }
+        Tick event = new Tick();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * @return a Render begun, or null while no recording takes it
+     */
+    static Render beginRender() {
+
+        if (!RENDER_TYPE.isEnabled()) {
+            return null;
+        }
+        Render event = new Render();
+        event.begin();
+        return event;
+    }
+
+    /*
+     * Hall of Fame, editor and level sets
+     */
+
+    @Name("eist.HallOfFameRequest")
+    @Label("Hall of Fame Request")
+    @Category({CATEGORY, "Network"})
+    @Description("An HTTP request to the Hall of Fame server; the player name and password are left out")
+    static class HallOfFameRequest extends Event {
+
+        @Label("Host")
+        String host;
+
+        @Label("Action")
+        String action;
+
+        @Label("Response Code")
+        int responseCode;
+
+        @Label("Response Length")
+        @Description("In characters, the line breaks left out")
+        long responseLength;
+
+        @Label("Outcome")
+        String outcome;
+    }
+
+    @Name("eist.EditorSave")
+    @Label("Editor Save")
+    @Category({CATEGORY, "Editor"})
+    @Description("The editor level written into the editor-data folder")
+    static class EditorSave extends Event {
+
+        @Label("Files")
+        int files;
+
+        @Label("Failed Files")
+        int failedFiles;
+
+        @Label("Size")
+        @DataAmount
+        long bytes;
+
+        @Label("Teleports Skipped")
+        @Description("A single teleport, not saved")
+        boolean teleportsSkipped;
+
+        /**
+         * @param bytes written, -1 if the file couldn't be
+         */
+        void fileWritten(long bytes) {
+
+            files++;
+            if (bytes < 0) {
+                failedFiles++;
+            } else {
+                this.bytes += bytes;
+            }
+        }
+    }
+
+    @Name("eist.LevelsZip")
+    @Label("Level Set Export or Import")
+    @Category({CATEGORY, "Editor"})
+    static class LevelsZip extends Event {
+
+        @Label("Operation")
+        @Description("export or import")
+        String operation;
+
+        @Label("Archive")
+        String archive;
+
+        @Label("Entries")
+        int entries;
+
+        @Label("Size")
+        @Description("Uncompressed")
+        @DataAmount
+        long bytes;
+
+        @Label("Outcome")
+        String outcome;
+    }
+
+    /**
+     * @param url a URL, or a resource path as JavaFX Image takes one
+     * @return the length of what the URL points to, -1 if unknown; it may open the resource
+     */
+    static long contentLength(String url) {
+
+        try {
+            URL resource = url.contains(":") ? new URL(url) : GameEvents.class.getClassLoader().getResource(url);
+            if (resource == null) {
+                return -1;
+            }
+            if (resource.getProtocol().equals("file")) {
+                /*
+                 * The file: connection would open the file to tell
+                 */
+                File file = new File(resource.toURI());
+                return file.isFile() ? file.length() : -1;
+            }
+            return resource.openConnection().getContentLengthLong();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,1195 @@
+package game;
+
+import javafx.geometry.Point2D;
+import javafx.geometry.Rectangle2D;
+
+import game.Sprites.Player;
+import game.Sprites.Arrow;
+import game.Sprites.Artifact;
+import game.Sprites.Teleport;
+import game.Sprites.Key;
+import game.Sprites.Door;
+import game.Sprites.Ladder;
+import game.Sprites.Slot;
+import game.Sprites.Exit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static game.Utils.DIR_RIGHT;
+import static game.Utils.DIR_DOWN;
+import static game.Utils.DIR_LEFT;
+import static game.Utils.DIR_UP;
+import static game.Utils.TURNING_NOT;
+import static game.Utils.TURNING_RIGHT;
+import static game.Utils.TURNING_LEFT;
+import static game.Utils.TURNING_BACK;
+
+/**
+ * The game rules, separated from the rendering. No GraphicsContext, AudioClip nor Stage in here: whatever
+ * the renderer or the audio layer should know about is sent to the Listener as an event. This way the rules may
+ * be run at thousands of ticks per second in tools and tests, without the FX toolkit started.
+ *
+ * The object lists are shared with the caller (Main, Editor), so that the in-game arrow placement and the editor
+ * tools keep working on the same data.
+ */
+class GameState {
+
+    /*
+     * Events sent to the Listener. The 'x' value passed along is the board X coordinate the event happened at
+     * (to set the sound balance).
+     */
+    static final int EVENT_ARROW = 0;
+    static final int EVENT_ARTIFACT = 1;
+    static final int EVENT_EXIT_OPEN = 2; // The last artifact collected
+    static final int EVENT_TELEPORT = 3;
+    static final int EVENT_KEY = 4;
+    static final int EVENT_DOOR_OPEN = 5;
+    static final int EVENT_DOOR_BOUNCE = 6;
+    static final int EVENT_FALL = 7;
+    static final int EVENT_FALL_END = 8; // Falldown animation finished, the level should be restarted
+    static final int EVENT_EXIT_REACHED = 9;
+
+    interface Listener {
+        void onGameEvent(int event, double x);
+    }
+
+    /**
+     * Tells if the board coordinates point outside the path (the black pixel on the board bitmap).
+     */
+    interface Terrain {
+        boolean isVoid(int x, int y);
+    }
+
+    static final long DEFAULT_SEED = 0x9E3779B97F4A7C15L;
+
+    static final int FRAME_LAST_IDX = 7;
+    static final long FRAME_DURATION_ARTIFACT = 135000000;
+    static final long FRAME_DURATION_FALLING = 60000000;
+
+    private final long tickNanos;
+
+    private final Player eist;
+    private final Ladder ladder;
+    private final Exit exit;
+
+    private CellList<Arrow> arrows;
+    private CellList<Artifact> artifacts;
+    private CellList<Teleport> teleports;
+    private CellList<Key> keys;
+    private CellList<Door> doors;
+    private List<Slot> slots;
+
+    private Terrain terrain;
+    private Listener listener;
+
+    private double gridDimension;
+    private int detectionOffset;
+    private double rotationRadius;
+    private double stepPerTick;
+    private double eistFrameDuration;
+
+    private boolean fallDetection = true;
+
+    /*
+     * Simulation time in nanoseconds, and the times the sprite frames changed at.
+     */
+    private long time;
+    private long lastEistFrameChangeTime;
+    private long lastArtifactFrameChangeTime;
+    private long lastFallingFrameChangeTime;
+
+    private int eistFrame = 0;
+    private int artifactFrame = 0;
+    private int fallingFrame = -1; // -1 = not falling
+
+    private int turns;
+    private boolean turnRight;
+    private boolean disableDoorReaction = false;
+
+    /**
+     * Ticks since the level has been loaded. Player input gets recorded with it.
+     */
+    private long ticks;
+
+    /**
+     * xorshift64* state. Seeded per level, so that a replay may reproduce the run exactly.
+     */
+    private long random = DEFAULT_SEED;
+
+    private ReplayRecorder recorder;
+
+    /**
+     * Reused by checkDoors(), so that the tick doesn't allocate.
+     */
+    private final List<Door> doorsFound = new ArrayList<>(4);
+
+    GameState(int tickRate, Player eist, Ladder ladder, Exit exit) {
+        this.tickNanos = 1000000000L / tickRate;
+        this.eist = eist;
+        this.ladder = ladder;
+        this.exit = exit;
+    }
+
+    /**
+     * Board geometry derived from the scene dimensions (see Utils.setBoard()). Set it before the speed.
+     */
+    void setDimensions(double gridDimension, int detectionOffset, double rotationRadius) {
+        this.gridDimension = gridDimension;
+        this.detectionOffset = detectionOffset;
+        this.rotationRadius = rotationRadius;
+    }
+
+    /**
+     * @param walkingSpeedPerSecond distance in board pixels Eist makes per second
+     * @param eistFrameDuration     walking animation frame duration in nanoseconds
+     */
+    void setSpeed(double walkingSpeedPerSecond, double eistFrameDuration) {
+        this.stepPerTick = walkingSpeedPerSecond * tickNanos / 1000000000d;
+        this.eistFrameDuration = eistFrameDuration;
+
+        recordSpeed();
+    }
+
+    private void recordSpeed() {
+        if (recorder != null && gridDimension > 0) {
+            recorder.recordSpeed(ticks, stepPerTick / gridDimension * 1000000000d / tickNanos, (long) eistFrameDuration);
+        }
+    }
+
+    void setTerrain(Terrain terrain) {
+        this.terrain = terrain;
+    }
+
+    void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * The editor only lets Eist fall down while testing the level.
+     */
+    void setFallDetection(boolean enabled) {
+        fallDetection = enabled;
+    }
+
+    /**
+     * @param seed random generator seed; applies at once, load() leaves the generator as it is
+     */
+    void setSeed(long seed) {
+        random = seed != 0 ? seed : DEFAULT_SEED;
+    }
+
+    /**
+     * Player input gets recorded if set. Set null to stop recording.
+     */
+    void setRecorder(ReplayRecorder recorder) {
+        this.recorder = recorder;
+        recordSpeed();
+    }
+
+    ReplayRecorder getRecorder() {
+        return recorder;
+    }
+
+    /**
+     * Start over on the freshly loaded level objects. Eist, the ladder and the exit are expected to be set already.
+     */
+    void load(CellList<Arrow> arrows, CellList<Artifact> artifacts, CellList<Teleport> teleports, CellList<Key> keys,
+              CellList<Door> doors, List<Slot> slots) {
+        this.arrows = arrows;
+        this.artifacts = artifacts;
+        this.teleports = teleports;
+        this.keys = keys;
+        this.doors = doors;
+        this.slots = slots;
+
+        fallingFrame = -1;
+        turns = 0;
+        disableDoorReaction = false;
+
+        ticks = 0;
+        time = 0;
+        lastEistFrameChangeTime = 0;
+        lastArtifactFrameChangeTime = 0;
+        lastFallingFrameChangeTime = 0;
+        eistFrame = 0;
+        artifactFrame = 0;
+    }
+
+    /**
+     * A single fixed simulation step.
+     */
+    void tick() {
+
+        ticks++;
+        time += tickNanos;
+
+        if (time - lastEistFrameChangeTime > eistFrameDuration && eist.isMoving) {
+            lastEistFrameChangeTime = time;
+            eistFrame++;
+
+            if (eistFrame > FRAME_LAST_IDX) {
+                eistFrame = 0;
+            }
+        }
+
+        if (time - lastArtifactFrameChangeTime > FRAME_DURATION_ARTIFACT) {
+            lastArtifactFrameChangeTime = time;
+            artifactFrame++;
+
+            if (artifactFrame > FRAME_LAST_IDX) {
+                artifactFrame = 0;
+            }
+        }
+
+        /*
+         * Count falldown frames (only once, 0 to 8th frame)
+         */
+        if (fallingFrame >= 0 && time - lastFallingFrameChangeTime > FRAME_DURATION_FALLING) {
+            lastFallingFrameChangeTime = time;
+
+            if (fallingFrame < 8) {
+
+                fallingFrame++;
+
+            } else {
+
+                fallingFrame = -1;
+                emit(EVENT_FALL_END, eist.x);
+                return;
+            }
+        }
+
+        eist.storePosition();
+
+        move();
+
+        checkArrows();
+        checkArtifacts();
+        checkTeleports();
+        checkKeys();
+        checkDoors();
+
+        if (checkExit()) {
+            return;
+        }
+
+        detectFall();
+    }
+
+    /*
+     * The object lookups below check the grid cell Eist's center is in (see CellList), not the whole lists.
+     */
+
+    private void checkArrows() {
+
+        Arrow arrow = arrows.first(eist.getCenterX(), eist.getCenterY());
+        if (arrow != null) {
+
+            reactToArrow(arrow);
+            emit(EVENT_ARROW, eist.x);
+        }
+    }
+
+    private void checkArtifacts() {
+
+        Artifact artifact = artifacts.first(eist.getCenterX(), eist.getCenterY());
+        if (artifact != null) {
+
+            artifacts.remove(artifact);
+
+            if (artifacts.size() > 0) {
+                emit(EVENT_ARTIFACT, eist.x);
+            } else {
+                emit(EVENT_EXIT_OPEN, eist.x);
+            }
+        }
+    }
+
+    private void checkTeleports() {
+
+        if (teleports.size() != 2) {
+            return;
+        }
+
+        Teleport teleport = teleports.first(eist.getCenterX(), eist.getCenterY());
+        if (teleport != null) {
+
+            emit(EVENT_TELEPORT, eist.x);
+
+            Teleport target = teleport == teleports.get(0) ? teleports.get(1) : teleports.get(0);
+
+            switch (eist.getDirection()) {
+                case DIR_RIGHT:
+                    eist.x = target.getPosX() + gridDimension;
+                    eist.y = target.getPosY();
+                    break;
+
+                case DIR_LEFT:
+                    eist.x = target.getPosX() - gridDimension;
+                    eist.y = target.getPosY();
+                    break;
+
+                case DIR_UP:
+                    eist.x = target.getPosX();
+                    eist.y = target.getPosY() - gridDimension;
+                    break;
+
+                case DIR_DOWN:
+                    eist.x = target.getPosX();
+                    eist.y = target.getPosY() + gridDimension;
+                    break;
+            }
+            eist.storePosition();
+        }
+    }
+
+    private void checkKeys() {
+
+        Key key = keys.first(eist.getCenterX(), eist.getCenterY());
+        if (key != null) {
+
+            emit(EVENT_KEY, eist.x);
+
+            keys.remove(key);
+            eist.setKeys(eist.getKeys() + 1);
+        }
+    }
+
+    private void checkDoors() {
+
+        if (doors.isEmpty()) {
+            return;
+        }
+
+        Door doorToRemove = null;
+
+        int found = doors.allAt(eist.getCenterX(), eist.getCenterY(), doorsFound);
+        for (int i = 0; i < found; i++) {
+
+            Door door = doorsFound.get(i);
+
+            if (eist.getKeys() > 0) {
+
+                emit(EVENT_DOOR_OPEN, door.getPosX());
+
+                eist.setKeys(eist.getKeys() - 1);
+                doorToRemove = door;
+
+            } else {
+
+                if (!disableDoorReaction) {
+                    reactToDoor(door);
+                }
+            }
+        }
+        if (doorToRemove != null) {
+            doors.remove(doorToRemove);
+        }
+        disableDoorReaction = doors.first(eist.getCenterX(), eist.getCenterY()) != null;
+    }
+
+    /**
+     * @return true if the exit has been reached
+     */
+    private boolean checkExit() {
+
+        if (artifacts.isEmpty() && exit.getArea().contains(eist.getCenterX(), eist.getCenterY())) {
+            emit(EVENT_EXIT_REACHED, eist.x);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Detect black pixel below
+     */
+    private void detectFall() {
+
+        if (!fallDetection || fallingFrame >= 0 || terrain == null) {
+            return;
+        }
+        try {
+
+            boolean leftOut = terrain.isVoid(eist.detectionPoint1X, eist.detectionPoint1Y);
+            boolean rightOut = terrain.isVoid(eist.detectionPoint2X, eist.detectionPoint2Y);
+            if (leftOut || rightOut) {
+
+                // Stepped off the path, start falling...
+                fallingFrame = 0;
+
+                // Wait! Are we on the ladder?
+                if (ladder.getSlotIdx() != null) {
+                    Slot slot = slots.get(ladder.getSlotIdx());
+                    if (slot.getArea().contains(eist.detectionPoint1X, eist.detectionPoint1Y)
+                            && slot.getArea().contains(eist.detectionPoint2X, eist.detectionPoint2Y)) {
+
+                        fallingFrame = -1;
+                    }
+                }
+                // Just left foot off the path
+                if (leftOut && !rightOut) {
+                    switch (eist.getDirection()) {
+                        case DIR_RIGHT:
+                            eist.y = eist.y - gridDimension / 2;
+                            break;
+                        case DIR_LEFT:
+                            eist.y = eist.y + gridDimension / 2;
+                            break;
+                        case DIR_UP:
+                            eist.x = eist.x - gridDimension / 2;
+                            break;
+                        case DIR_DOWN:
+                            eist.x = eist.x + gridDimension / 2;
+                            break;
+                    }
+                }
+                // Just right foot off the path
+                if (rightOut && !leftOut) {
+                    switch (eist.getDirection()) {
+                        case DIR_RIGHT:
+                            eist.y = eist.y + gridDimension / 2;
+                            break;
+                        case DIR_LEFT:
+                            eist.y = eist.y - gridDimension / 2;
+                            break;
+                        case DIR_UP:
+                            eist.x = eist.x + gridDimension / 2;
+                            break;
+                        case DIR_DOWN:
+                            eist.x = eist.x - gridDimension / 2;
+                            break;
+                    }
+                }
+
+                if (fallingFrame == 0) {
+                    emit(EVENT_FALL, eist.x);
+                }
+            }
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            eist.isMoving = false;
+        }
+    }
+
+    /**
+     * Move Eist, calculate the fall detection points and progress the turning maneuver.
+     */
+    private void move() {
+
+        /*
+         * The walking speed depends on the board dimension.
+         * The distance made in a single tick depends on it and the simulation tick rate.
+         */
+        if (eist.isMoving) {
+            switch (eist.getDirection()) {
+                case DIR_RIGHT:
+                    eist.x = eist.x + stepPerTick;
+                    break;
+
+                case DIR_DOWN:
+                    eist.y = eist.y + stepPerTick;
+                    break;
+
+                case DIR_LEFT:
+                    eist.x = eist.x - stepPerTick;
+                    break;
+
+                case DIR_UP:
+                    eist.y = eist.y - stepPerTick;
+                    break;
+
+                default:
+                    break;
+            }
+        }
+        eist.setCenter(eist.x + gridDimension, eist.y + gridDimension);
+        int centerX = (int) eist.getCenterX();
+        int centerY = (int) eist.getCenterY();
+        /*
+         * Calculate points to check if black pixel below (triggers falling down)
+         */
+        switch (eist.getDirection()) {
+            case DIR_RIGHT:
+                eist.detectionPoint1X = centerX + detectionOffset;
+                eist.detectionPoint1Y = centerY - detectionOffset;
+                eist.detectionPoint2X = centerX + detectionOffset;
+                eist.detectionPoint2Y = centerY + detectionOffset;
+                break;
+
+            case DIR_DOWN:
+                eist.detectionPoint1X = centerX + detectionOffset;
+                eist.detectionPoint1Y = centerY + detectionOffset;
+                eist.detectionPoint2X = centerX - detectionOffset;
+                eist.detectionPoint2Y = centerY + detectionOffset;
+                break;
+
+            case DIR_LEFT:
+                eist.detectionPoint1X = centerX - detectionOffset;
+                eist.detectionPoint1Y = centerY + detectionOffset;
+                eist.detectionPoint2X = centerX - detectionOffset;
+                eist.detectionPoint2Y = centerY - detectionOffset;
+                break;
+
+            case DIR_UP:
+                eist.detectionPoint1X = centerX - detectionOffset;
+                eist.detectionPoint1Y = centerY - detectionOffset;
+                eist.detectionPoint2X = centerX + detectionOffset;
+                eist.detectionPoint2Y = centerY - detectionOffset;
+                break;
+        }
+
+        /*
+         * Rotate Eist on arrows (also on doors in the future).
+         * At the end of the maneuver - place him exactly on the endPoint.
+         */
+        int turning = eist.getTurning();
+        if (turning != 0) {
+
+            double endX = eist.getEndX();
+            double endY = eist.getEndY();
+
+            switch (eist.getDirection()) {
+                case DIR_RIGHT:
+                    switch (eist.getTurning()) {
+                        case TURNING_RIGHT:
+                            if (eist.x < endX) {
+                                double left = Math.abs(endX - eist.x);
+                                if (eist.rotation < 90) {
+                                    eist.rotation = 90 - (90 * (left / rotationRadius));
+                                }
+                            } else {
+                                eist.rotation = 0;
+                                eist.setDirection(DIR_DOWN);
+                                eist.setTurning(TURNING_NOT);
+                                eist.x = endX;
+                                eist.y = endY;
+                            }
+                            break;
+
+                        case TURNING_LEFT:
+                            if (eist.x < endX) {
+                                double left = Math.abs(eist.x - endX);
+                                if (eist.rotation > -90) {
+                                    eist.rotation = -90 + (90 * (left / rotationRadius));
+                                }
+                            } else {
+                                eist.rotation = 0;
+                                eist.setDirection(DIR_UP);
+                                eist.setTurning(TURNING_NOT);
+                                eist.x = endX;
+                                eist.y = endY;
+                            }
+                            break;
+
+                        case TURNING_BACK:
+                            if (eist.x < endX) {
+                                double left = Math.abs(eist.x - endX);
+                                if (turnRight) {
+                                    if (eist.rotation < 180) {
+                                        eist.rotation = 180 - (180 * (left / rotationRadius));
+                                    }
+                                } else {
+                                    if (eist.rotation > -180) {
+                                        eist.rotation = -180 + (180 * (left / rotationRadius));
+                                    }
+                                }
+                            } else {
+                                eist.rotation = 0;
+                                eist.setDirection(DIR_LEFT);
+                                eist.setTurning(TURNING_NOT);
+                                eist.x = endX;
+                                eist.y = endY;
+                            }
+                            break;
+                    }
+                    break;
+
+                case DIR_LEFT:
+                    switch (eist.getTurning()) {
+                        case TURNING_LEFT:
+                            if (eist.x > endX) {
+                                double left = Math.abs(endX - eist.x);
+                                if (eist.rotation < 90) {
+                                    eist.rotation = -90 + (90 * (left / rotationRadius));
+                                }
+                            } else {
+                                eist.rotation = 0;
+                                eist.setDirection(DIR_DOWN);
+                                eist.setTurning(TURNING_NOT);
+                                eist.x = endX;
+                                eist.y = endY;
+                            }
+                            break;
+
+                        case TURNING_RIGHT:
+                            if (eist.x > endX) {
+                                double left = Math.abs(eist.x - endX);
+                                if (eist.rotation > -90) {
+                                    eist.rotation = 90 - (90 * (left / rotationRadius));
+                                }
+                            } else {
+                                eist.rotation = 0;
+                                eist.setDirection(DIR_UP);
+                                eist.setTurning(TURNING_NOT);
+                                eist.x = endX;
+                                eist.y = endY;
+                            }
+                            break;
+
+                        case TURNING_BACK:
+                            if (eist.x > endX) {
+                                double left = Math.abs(eist.x - endX);
+                                if (turnRight) {
+                                    if (eist.rotation < 180) {
+                                        eist.rotation = 180 - (180 * (left / rotationRadius));
+                                    }
+                                } else {
+                                    if (eist.rotation > -180) {
+                                        eist.rotation = -180 + (180 * (left / rotationRadius));
+                                    }
+                                }
+                            } else {
+                                eist.rotation = 0;
+                                eist.setDirection(DIR_RIGHT);
+                                eist.setTurning(TURNING_NOT);
+                                eist.x = endX;
+                                eist.y = endY;
+                            }
+                            break;
+                    }
+                    break;
+
+                case DIR_DOWN:
+                    switch (eist.getTurning()) {
+                        case TURNING_RIGHT:
+                            if (eist.y < endY) {
+                                double left = Math.abs(endY - eist.y);
+                                if (eist.rotation < 90) {
+                                    eist.rotation = 90 - (90 * (left / rotationRadius));
+                                }
+                            } else {
+                                eist.rotation = 0;
+                                eist.setDirection(DIR_LEFT);
+                                eist.setTurning(TURNING_NOT);
+                                eist.x = endX;
+                                eist.y = endY;
+                            }
+                            break;
+
+                        case TURNING_LEFT:
+                            if (eist.y < endY) {
+                                double left = Math.abs(endY - eist.y);
+                                if (eist.rotation > -90) {
+                                    eist.rotation = -90 + (90 * (left / rotationRadius));
+                                }
+                            } else {
+                                eist.rotation = 0;
+                                eist.setDirection(DIR_RIGHT);
+                                eist.setTurning(TURNING_NOT);
+                                eist.x = endX;
+                                eist.y = endY;
+                            }
+                            break;
+
+                        case TURNING_BACK:
+                            if (eist.y < endY) {
+                                double left = Math.abs(endY - eist.y);
+                                if (turnRight) {
+                                    if (eist.rotation < 180) {
+                                        eist.rotation = 180 - (180 * (left / rotationRadius));
+                                    }
+                                } else {
+                                    eist.rotation = -180 + (180 * (left / rotationRadius));
+                                }
+                            } else {
+                                eist.rotation = 0;
+                                eist.setDirection(DIR_UP);
+                                eist.setTurning(TURNING_NOT);
+                                eist.x = endX;
+                                eist.y = endY;
+                            }
+                            break;
+                    }
+                    break;
+
+                case DIR_UP:
+                    switch (eist.getTurning()) {
+                        case TURNING_RIGHT:
+                            if (eist.y > endY) {
+                                double left = Math.abs(endY - eist.y);
+                                if (eist.rotation < 90) {
+                                    eist.rotation = 90 - (90 * (left / rotationRadius));
+                                }
+                            } else {
+                                eist.rotation = 0;
+                                eist.setDirection(DIR_RIGHT);
+                                eist.setTurning(TURNING_NOT);
+                                eist.x = endX;
+                                eist.y = endY;
+                            }
+                            break;
+
+                        case TURNING_LEFT:
+                            if (eist.y > endY) {
+                                double left = Math.abs(endY - eist.y);
+                                if (eist.rotation > -90) {
+                                    eist.rotation = -90 + (90 * (left / rotationRadius));
+                                }
+                            } else {
+                                eist.rotation = 0;
+                                eist.setDirection(DIR_LEFT);
+                                eist.setTurning(TURNING_NOT);
+                                eist.x = endX;
+                                eist.y = endY;
+                            }
+                            break;
+
+                        case TURNING_BACK:
+                            if (eist.y > endY) {
+                                double left = Math.abs(endY - eist.y);
+                                if (turnRight) {
+                                    if (eist.rotation < 180) {
+                                        eist.rotation = 180 - (180 * (left / rotationRadius));
+                                    }
+                                } else {
+                                    if (eist.rotation > -180) {
+                                        eist.rotation = -180 + (180 * (left / rotationRadius));
+                                    }
+                                }
+                            } else {
+                                eist.rotation = 0;
+                                eist.setDirection(DIR_DOWN);
+                                eist.setTurning(TURNING_NOT);
+                                eist.x = endX;
+                                eist.y = endY;
+                            }
+                            break;
+                    }
+                    break;
+            }
+        }
+    }
+
+    private void reactToArrow(Arrow arrow) {
+        /*
+         * In the updateBoard method: Keep turning until the point reached.
+         */
+        eist.setEndPoint(arrow.getPosX(), arrow.getPosY());
+
+        turnRight = nextRandomBoolean();
+
+        turns++;
+
+        switch (eist.getDirection()) {
+            case DIR_RIGHT:
+                switch (arrow.getDirection()) {
+                    case DIR_DOWN:
+                        eist.setTurning(TURNING_RIGHT);
+                        break;
+
+                    case DIR_UP:
+                        eist.setTurning(TURNING_LEFT);
+                        break;
+
+                    case DIR_LEFT:
+                        eist.setTurning(TURNING_BACK);
+                        break;
+
+                    default:
+                        break;
+                }
+                break;
+
+            case DIR_DOWN:
+                switch (arrow.getDirection()) {
+                    case DIR_LEFT:
+                        eist.setTurning(TURNING_RIGHT);
+                        break;
+
+                    case DIR_RIGHT:
+                        eist.setTurning(TURNING_LEFT);
+                        break;
+
+                    case DIR_UP:
+                        eist.setTurning(TURNING_BACK);
+                        break;
+
+                    default:
+                        break;
+                }
+                break;
+
+            case DIR_LEFT:
+                switch (arrow.getDirection()) {
+                    case DIR_DOWN:
+                        eist.setTurning(TURNING_LEFT);
+                        break;
+
+                    case DIR_UP:
+                        eist.setTurning(TURNING_RIGHT);
+                        break;
+
+                    case DIR_RIGHT:
+                        eist.setTurning(TURNING_BACK);
+                        break;
+
+                    default:
+                        break;
+                }
+                break;
+
+            case DIR_UP:
+                switch (arrow.getDirection()) {
+                    case DIR_RIGHT:
+                        eist.setTurning(TURNING_RIGHT);
+                        break;
+
+                    case DIR_LEFT:
+                        eist.setTurning(TURNING_LEFT);
+                        break;
+
+                    case DIR_DOWN:
+                        eist.setTurning(TURNING_BACK);
+                        break;
+                }
+                break;
+        }
+        arrows.remove(arrow);
+    }
+
+    private void reactToDoor(Door door) {
+
+        turns++;
+
+        emit(EVENT_DOOR_BOUNCE, eist.x);
+
+        turnRight = nextRandomBoolean();
+
+        switch (eist.getDirection()) {
+            case DIR_RIGHT: {
+                eist.setEndPoint(door.getPosX(), door.getPosY());
+                break;
+            }
+            case DIR_LEFT: {
+                eist.setEndPoint(door.getPosX(), door.getPosY());
+                break;
+            }
+            case DIR_DOWN: {
+                eist.setEndPoint(door.getPosX(), door.getPosY());
+                break;
+            }
+            case DIR_UP: {
+                eist.setEndPoint(door.getPosX(), door.getPosY());
+                break;
+            }
+        }
+        eist.setTurning(TURNING_BACK);
+
+        disableDoorReaction = true;
+    }
+
+    /*
+     * Player input. The in-game mouse / key handlers, the Simulator and the ReplayPlayer go through the methods
+     * below, so that the same placement rules apply to all, and every accepted input may be recorded.
+     */
+
+    /**
+     * Let Eist go (the first click or key press on the level).
+     */
+    void start() {
+
+        if (!eist.isMoving) {
+            eist.isMoving = true;
+            record(ReplayRecorder.INPUT_START, 0, 0, 0);
+        }
+    }
+
+    /**
+     * The pad only tells which arrow to place next. It doesn't change anything here, but gets recorded,
+     * so that the replay shows it.
+     */
+    void selectPad(int selection) {
+
+        record(ReplayRecorder.INPUT_PAD, selection, 0, 0);
+        start();
+    }
+
+    /**
+     * Place the arrow on the square of the frame dimension.
+     *
+     * @param x square top left X
+     * @param y square top left Y
+     * @return false if the square is occupied by another arrow or a level object
+     */
+    boolean placeArrow(double x, double y, int direction) {
+
+        Point2D squareCenter = new Point2D(x + gridDimension, y + gridDimension);
+
+        if (arrows.first(squareCenter) != null || artifacts.first(squareCenter) != null
+                || keys.first(squareCenter) != null || doors.first(squareCenter) != null
+                || teleports.first(squareCenter) != null || exit.getArea().contains(squareCenter)) {
+            return false;
+        }
+
+        Arrow arrow = new Arrow();
+        arrow.setPosX(x);
+        arrow.setPosY(y);
+        arrow.setArea(new Rectangle2D(x + gridDimension / 2, y + gridDimension / 2, gridDimension, gridDimension));
+        arrow.setDirection(direction);
+        arrows.add(arrow);
+
+        record(ReplayRecorder.INPUT_ARROW, toGrid(x), toGrid(y), direction);
+        return true;
+    }
+
+    /**
+     * Remove the (first) arrow intersecting the square.
+     */
+    boolean removeArrow(Rectangle2D square) {
+
+        Arrow arrow = arrows.firstIntersecting(square);
+        if (arrow == null) {
+            return false;
+        }
+        arrows.remove(arrow);
+
+        record(ReplayRecorder.INPUT_CLEAR, toGrid(square.getMinX()), toGrid(square.getMinY()), 0);
+        return true;
+    }
+
+    /**
+     * The ladder slot clicked: place the ladder if not placed yet, take it away if clicked on its current slot.
+     *
+     * @return true if the ladder has been moved
+     */
+    boolean clickSlot(int slotIdx) {
+
+        if (ladder.getSlotIdx() == null) {
+            ladder.setSlotIdx(slotIdx);
+
+        } else if (ladder.getSlotIdx() == slotIdx) {
+            ladder.setSlotIdx(null);
+
+        } else {
+            return false;
+        }
+        record(ReplayRecorder.INPUT_LADDER, slotIdx, 0, 0);
+        return true;
+    }
+
+    private int toGrid(double value) {
+        return (int) Math.round(value / gridDimension);
+    }
+
+    private void record(int input, int value1, int value2, int value3) {
+        if (recorder != null) {
+            recorder.record(ticks, input, value1, value2, value3);
+        }
+    }
+
+    /**
+     * Everything tick() may change, to get back to later (replay seeking).
+     */
+    static class Snapshot {
+
+        private double x, y, prevX, prevY, rotation;
+        private boolean isMoving;
+        private int detectionPoint1X, detectionPoint1Y, detectionPoint2X, detectionPoint2Y;
+        private int direction, turning, keyCount;
+        private Rectangle2D area;
+        private double centerX, centerY, endX, endY;
+        private Integer ladderSlotIdx;
+
+        private CellList.Content<Arrow> arrows;
+        private CellList.Content<Artifact> artifacts;
+        private CellList.Content<Teleport> teleports;
+        private CellList.Content<Key> keys;
+        private CellList.Content<Door> doors;
+
+        private long ticks, time, lastEistFrameChangeTime, lastArtifactFrameChangeTime, lastFallingFrameChangeTime;
+        private int eistFrame, artifactFrame, fallingFrame, turns;
+        private boolean turnRight, disableDoorReaction;
+        private long random;
+        private double stepPerTick, eistFrameDuration;
+
+        long getTicks() {
+            return ticks;
+        }
+    }
+
+    Snapshot snapshot() {
+
+        Snapshot snapshot = new Snapshot();
+
+        snapshot.x = eist.x;
+        snapshot.y = eist.y;
+        snapshot.prevX = eist.prevX;
+        snapshot.prevY = eist.prevY;
+        snapshot.rotation = eist.rotation;
+        snapshot.isMoving = eist.isMoving;
+        snapshot.detectionPoint1X = eist.detectionPoint1X;
+        snapshot.detectionPoint1Y = eist.detectionPoint1Y;
+        snapshot.detectionPoint2X = eist.detectionPoint2X;
+        snapshot.detectionPoint2Y = eist.detectionPoint2Y;
+        snapshot.direction = eist.getDirection();
+        snapshot.turning = eist.getTurning();
+        snapshot.keyCount = eist.getKeys();
+        snapshot.area = eist.getArea();
+        snapshot.centerX = eist.getCenterX();
+        snapshot.centerY = eist.getCenterY();
+        snapshot.endX = eist.getEndX();
+        snapshot.endY = eist.getEndY();
+        snapshot.ladderSlotIdx = ladder.getSlotIdx();
+
+        /*
+         * The level objects themselves don't change, the lists do.
+         */
+        snapshot.arrows = arrows.content();
+        snapshot.artifacts = artifacts.content();
+        snapshot.teleports = teleports.content();
+        snapshot.keys = keys.content();
+        snapshot.doors = doors.content();
+
+        snapshot.ticks = ticks;
+        snapshot.time = time;
+        snapshot.lastEistFrameChangeTime = lastEistFrameChangeTime;
+        snapshot.lastArtifactFrameChangeTime = lastArtifactFrameChangeTime;
+        snapshot.lastFallingFrameChangeTime = lastFallingFrameChangeTime;
+        snapshot.eistFrame = eistFrame;
+        snapshot.artifactFrame = artifactFrame;
+        snapshot.fallingFrame = fallingFrame;
+        snapshot.turns = turns;
+        snapshot.turnRight = turnRight;
+        snapshot.disableDoorReaction = disableDoorReaction;
+        snapshot.random = random;
+        snapshot.stepPerTick = stepPerTick;
+        snapshot.eistFrameDuration = eistFrameDuration;
+
+        return snapshot;
+    }
+
+    /**
+     * Get back to the snapshot taken on the same level. The shared lists are refilled, not replaced, and nothing gets
+     * allocated: a falldown restores the level start within the tick.
+     */
+    void restore(Snapshot snapshot) {
+
+        eist.x = snapshot.x;
+        eist.y = snapshot.y;
+        eist.prevX = snapshot.prevX;
+        eist.prevY = snapshot.prevY;
+        eist.rotation = snapshot.rotation;
+        eist.isMoving = snapshot.isMoving;
+        eist.detectionPoint1X = snapshot.detectionPoint1X;
+        eist.detectionPoint1Y = snapshot.detectionPoint1Y;
+        eist.detectionPoint2X = snapshot.detectionPoint2X;
+        eist.detectionPoint2Y = snapshot.detectionPoint2Y;
+        eist.setDirection(snapshot.direction);
+        eist.setTurning(snapshot.turning);
+        eist.setKeys(snapshot.keyCount);
+        eist.setArea(snapshot.area);
+        eist.setCenter(snapshot.centerX, snapshot.centerY);
+        eist.setEndPoint(snapshot.endX, snapshot.endY);
+        ladder.setSlotIdx(snapshot.ladderSlotIdx);
+
+        arrows.restore(snapshot.arrows);
+        artifacts.restore(snapshot.artifacts);
+        teleports.restore(snapshot.teleports);
+        keys.restore(snapshot.keys);
+        doors.restore(snapshot.doors);
+
+        ticks = snapshot.ticks;
+        time = snapshot.time;
+        lastEistFrameChangeTime = snapshot.lastEistFrameChangeTime;
+        lastArtifactFrameChangeTime = snapshot.lastArtifactFrameChangeTime;
+        lastFallingFrameChangeTime = snapshot.lastFallingFrameChangeTime;
+        eistFrame = snapshot.eistFrame;
+        artifactFrame = snapshot.artifactFrame;
+        fallingFrame = snapshot.fallingFrame;
+        turns = snapshot.turns;
+        turnRight = snapshot.turnRight;
+        disableDoorReaction = snapshot.disableDoorReaction;
+        random = snapshot.random;
+        stepPerTick = snapshot.stepPerTick;
+        eistFrameDuration = snapshot.eistFrameDuration;
+    }
+
+    private void emit(int event, double x) {
+        if (listener != null) {
+            listener.onGameEvent(event, x);
+        }
+    }
+
+    private boolean nextRandomBoolean() {
+        random ^= random >>> 12;
+        random ^= random << 25;
+        random ^= random >>> 27;
+        return (random * 0x2545F4914F6CDD1DL) < 0;
+    }
+
+    Player getEist() {
+        return eist;
+    }
+
+    /**
+     * @return the artifacts not collected yet
+     */
+    CellList<Artifact> getArtifacts() {
+        return artifacts;
+    }
+
+    CellList<Teleport> getTeleports() {
+        return teleports;
+    }
+
+    double getGridDimension() {
+        return gridDimension;
+    }
+
+    int getTurns() {
+        return turns;
+    }
+
+    int getEistFrame() {
+        return eistFrame;
+    }
+
+    int getArtifactFrame() {
+        return artifactFrame;
+    }
+
+    /**
+     * @return the simulation time until the artifact animation moves to its next frame, in whole ticks
+     */
+    long getNanosToArtifactFrame() {
+        long remaining = Math.max(0, FRAME_DURATION_ARTIFACT - (time - lastArtifactFrameChangeTime));
+        return (remaining / tickNanos + 1) * tickNanos;
+    }
+
+    /**
+     * @return current falldown animation frame, -1 if Eist is not falling
+     */
+    int getFallingFrame() {
+        return fallingFrame;
+    }
+
+    boolean isFalling() {
+        return fallingFrame >= 0;
+    }
+
+    /**
+     * @return ticks since the level has been loaded
+     */
+    long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * @return simulation time in nanoseconds
+     */
+    long getTime() {
+        return time;
+    }
+}
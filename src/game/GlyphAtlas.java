@@ -0,0 +1,159 @@
+package game;
+
+import javafx.geometry.Bounds;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextBoundsType;
+
+/**
+ * The printable ASCII characters of a font in a color, rasterized once at a raster scale into one image, side by
+ * side; the HUD text gets drawn from it a glyph at a time (see GlyphRun), so that the text isn't rasterized again each
+ * time the static layer gets redrawn. The fonts are plain, without kerning, so a glyph after another is where fillText
+ * puts it.
+ *
+ * Each glyph gets PADDING_EMS of the font size around its advance, for the strokes reaching past it (italics, the
+ * antialiased edges); the padding is drawn with the glyph, transparent.
+ *
+ * Built on the FX application thread: the glyphs get drawn by a canvas and snapshotted.
+ */
+class GlyphAtlas {
+
+    static final char FIRST_CHARACTER = ' ';
+    static final char LAST_CHARACTER = '~';
+
+    private static final double PADDING_EMS = 0.2;
+
+    private final Font font;
+    private final Color color;
+    private final double scale;
+
+    private final Image image;
+
+    /**
+     * Logical: the glyph advances, the padding, the ascent (the baseline below the image top); the image height, and
+     * the line height (from a baseline to the next, as fillText lays out the lines of a text).
+     */
+    private final double[] advances = new double[LAST_CHARACTER - FIRST_CHARACTER + 1];
+    private final double padding;
+    private final double ascent;
+    private final double height;
+    private final double lineHeight;
+
+    /**
+     * Where each glyph cell starts in the image, in pixels; a cell is the advance plus the padding on both sides.
+     */
+    private final int[] cellX = new int[LAST_CHARACTER - FIRST_CHARACTER + 1];
+    private final int[] cellWidths = new int[LAST_CHARACTER - FIRST_CHARACTER + 1];
+    private final int cellHeight;
+
+    /**
+     * @param font  as drawn on the board, logical size
+     * @param scale raster pixels per logical pixel
+     */
+    GlyphAtlas(Font font, Color color, double scale) {
+
+        this.font = font;
+        this.color = color;
+        this.scale = scale;
+
+        /*
+         * Rasterized with the font at the raster size, not with the logical one scaled: the glyphs are hinted for the
+         * pixels they end up on.
+         */
+        Font rasterFont = new Font(font.getName(), font.getSize() * scale);
+        Text text = new Text();
+        text.setFont(rasterFont);
+        text.setBoundsType(TextBoundsType.LOGICAL);
+
+        int rasterPadding = (int) Math.ceil(rasterFont.getSize() * PADDING_EMS);
+        double[] rasterAdvances = new double[advances.length];
+        int x = 0;
+        for (int i = 0; i < advances.length; i++) {
+            text.setText(String.valueOf((char) (FIRST_CHARACTER + i)));
+            rasterAdvances[i] = text.getLayoutBounds().getWidth();
+            cellX[i] = x;
+            cellWidths[i] = (int) Math.ceil(rasterAdvances[i]) + 2 * rasterPadding;
+            x += cellWidths[i];
+            advances[i] = rasterAdvances[i] / scale;
+        }
+
+        text.setText("Hg");
+        Bounds bounds = text.getLayoutBounds(); // From the baseline, the top above it negative
+        int rasterAscent = (int) Math.ceil(-bounds.getMinY()) + rasterPadding;
+        cellHeight = rasterAscent + (int) Math.ceil(bounds.getMaxY()) + rasterPadding;
+
+        padding = rasterPadding / scale;
+        ascent = rasterAscent / scale;
+        height = cellHeight / scale;
+        lineHeight = bounds.getHeight() / scale;
+
+        Canvas canvas = new Canvas(Math.max(1, x), cellHeight);
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.setFont(rasterFont);
+        gc.setFill(color);
+        for (int i = 0; i < advances.length; i++) {
+            gc.fillText(String.valueOf((char) (FIRST_CHARACTER + i)), cellX[i] + rasterPadding, rasterAscent);
+        }
+        SnapshotParameters parameters = new SnapshotParameters();
+        parameters.setFill(Color.TRANSPARENT);
+        image = canvas.snapshot(parameters, null);
+    }
+
+    /**
+     * @return true if built for these; the fonts and colors are compared by value
+     */
+    boolean isFor(Font font, Color color, double scale) {
+        return this.scale == scale && this.font.equals(font) && this.color.equals(color);
+    }
+
+    /**
+     * @param glyphs the atlas in use, null if none yet
+     * @return the atlas in use if built for these, a new one otherwise (on the FX thread)
+     */
+    static GlyphAtlas reuse(GlyphAtlas glyphs, Font font, Color color, double scale) {
+        return glyphs != null && glyphs.isFor(font, color, scale) ? glyphs : new GlyphAtlas(font, color, scale);
+    }
+
+    Font getFont() {
+        return font;
+    }
+
+    Color getColor() {
+        return color;
+    }
+
+    static boolean contains(char character) {
+        return character >= FIRST_CHARACTER && character <= LAST_CHARACTER;
+    }
+
+    /**
+     * @return the logical advance of the character, which contains() tells about
+     */
+    double getAdvance(char character) {
+        return advances[character - FIRST_CHARACTER];
+    }
+
+    /**
+     * @return the logical distance from a baseline to the next one
+     */
+    double getLineHeight() {
+        return lineHeight;
+    }
+
+    /**
+     * Draw a glyph.
+     *
+     * @param x where its advance starts, logical
+     * @param y the baseline, logical
+     */
+    void draw(GraphicsContext gc, char character, double x, double y) {
+        int i = character - FIRST_CHARACTER;
+        gc.drawImage(image, cellX[i], 0, cellWidths[i], cellHeight,
+                x - padding, y - ascent, cellWidths[i] / scale, height);
+    }
+}
@@ -0,0 +1,86 @@
+package game;
+
+import javafx.scene.canvas.GraphicsContext;
+
+import java.util.Arrays;
+
+/**
+ * A HUD text laid out as the glyphs of a GlyphAtlas: the characters and where each one starts, worked out when the
+ * text or the atlas changes only. Drawing is then a drawImage per glyph, each on a whole pixel so that the glyphs stay
+ * as sharp as rasterized; the spaces are skipped, and a line break starts the next line, as with fillText.
+ *
+ * A text with characters the atlas doesn't have (a player name, say) gets drawn with fillText instead.
+ */
+class GlyphRun {
+
+    private String text;
+    private GlyphAtlas glyphs;
+
+    private char[] characters = new char[16];
+    private double[] offsets = new double[16]; // Logical, from the text start
+    private double[] lineOffsets = new double[16]; // Logical, from the first baseline
+    private int count;
+    private boolean fillText;
+
+    /**
+     * @param x      the text start, as fillText takes it: left aligned
+     * @param y      the baseline of the first line
+     * @param pixels pixels per logical pixel, for the glyphs to start on a whole pixel
+     * @return the drawImage calls made
+     */
+    int draw(GraphicsContext gc, GlyphAtlas glyphs, String text, double x, double y, double pixels) {
+
+        if (glyphs != this.glyphs || !text.equals(this.text)) {
+            layout(glyphs, text);
+        }
+
+        if (fillText) {
+            gc.setFont(glyphs.getFont());
+            gc.setFill(glyphs.getColor());
+            gc.fillText(text, x, y);
+            return 0;
+        }
+
+        for (int i = 0; i < count; i++) {
+            glyphs.draw(gc, characters[i], Math.round((x + offsets[i]) * pixels) / pixels,
+                    Math.round((y + lineOffsets[i]) * pixels) / pixels);
+        }
+        return count;
+    }
+
+    private void layout(GlyphAtlas glyphs, String text) {
+
+        this.glyphs = glyphs;
+        this.text = text;
+        count = 0;
+        fillText = false;
+
+        if (characters.length < text.length()) {
+            characters = Arrays.copyOf(characters, text.length());
+            offsets = Arrays.copyOf(offsets, text.length());
+            lineOffsets = Arrays.copyOf(lineOffsets, text.length());
+        }
+
+        double offset = 0;
+        double lineOffset = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char character = text.charAt(i);
+            if (character == '\n') {
+                offset = 0;
+                lineOffset += glyphs.getLineHeight();
+                continue;
+            }
+            if (!GlyphAtlas.contains(character)) {
+                fillText = true;
+                return;
+            }
+            if (character != ' ') {
+                characters[count] = character;
+                offsets[count] = offset;
+                lineOffsets[count] = lineOffset;
+                count++;
+            }
+            offset += glyphs.getAdvance(character);
+        }
+    }
+}
@@ -16,30 +16,67 @@ class HttpURLConnection {
     static String sendGet(String url) throws Exception {
 
         URL obj = new URL(url);
-        java.net.HttpURLConnection con = (java.net.HttpURLConnection) obj.openConnection();
 
-        // optional default is GET
-        con.setRequestMethod("GET");
+        /*
+         * The query has the player name and password: only the action goes to the event
+         */
+        GameEvents.HallOfFameRequest event = new GameEvents.HallOfFameRequest();
+        event.begin();
+        event.host = obj.getHost();
+        event.action = queryValue(obj.getQuery(), "action");
 
-        //add request header
-        con.setRequestProperty("User-Agent", USER_AGENT);
+        try {
+            java.net.HttpURLConnection con = (java.net.HttpURLConnection) obj.openConnection();
 
-        int responseCode = con.getResponseCode();
+            // optional default is GET
+            con.setRequestMethod("GET");
 
-        //System.out.println("Sending 'GET' request to " + url);
-        //System.out.println("Response Code: " + responseCode);
+            //add request header
+            con.setRequestProperty("User-Agent", USER_AGENT);
 
-        BufferedReader in = new BufferedReader(
-                new InputStreamReader(con.getInputStream()));
-        String inputLine;
-        StringBuilder response = new StringBuilder();
+            int responseCode = con.getResponseCode();
+            event.responseCode = responseCode;
 
-        while ((inputLine = in.readLine()) != null) {
-            response.append(inputLine);
+            //System.out.println("Sending 'GET' request to " + url);
+            //System.out.println("Response Code: " + responseCode);
+
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(con.getInputStream()));
+            String inputLine;
+            StringBuilder response = new StringBuilder();
+
+            while ((inputLine = in.readLine()) != null) {
+                response.append(inputLine);
+            }
+            in.close();
+
+            event.responseLength = response.length();
+            event.outcome = GameEvents.OUTCOME_OK;
+            return response.toString();
+
+        } catch (Exception e) {
+            /*
+             * The class only: the messages may have the URL in
+             */
+            event.outcome = e.getClass().getName();
+            throw e;
+        } finally {
+            event.commit();
         }
-        in.close();
+    }
 
-        return response.toString();
+    /**
+     * @return the value of the query parameter, null if none
+     */
+    private static String queryValue(String query, String parameter) {
 
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                if (pair.startsWith(parameter + "=")) {
+                    return pair.substring(parameter.length() + 1);
+                }
+            }
+        }
+        return null;
     }
 }
@@ -0,0 +1,117 @@
+package game;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The assets of the levels loaded lately, so that going to the menu and back, or switching between a few levels,
+ * doesn't read nor decode anything again. Least recently used levels get evicted once the estimated memory use
+ * (see LevelAssets.estimateBytes()) exceeds the budget.
+ */
+class LevelAssetCache {
+
+    private final LinkedHashMap<String, LevelAssets> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Long> sizes = new HashMap<>();
+
+    private final long budgetBytes;
+    private long usedBytes;
+
+    private int hits;
+    private int misses;
+    private int evictions;
+
+    /**
+     * @param budgetBytes 0 disables the cache
+     */
+    LevelAssetCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * @return null if not cached; counted as a miss
+     */
+    LevelAssets get(String key) {
+
+        LevelAssets assets = entries.get(key);
+        if (assets != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return assets;
+    }
+
+    /**
+     * @return whether the assets are cached; not counted as a hit nor a miss, nor as a use
+     */
+    boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Keep the assets, evicting the least recently used ones as needed. Assets bigger than the whole budget don't get
+     * kept at all.
+     */
+    void put(String key, LevelAssets assets) {
+
+        remove(key);
+
+        long bytes = assets.estimateBytes();
+        if (bytes > budgetBytes) {
+            return;
+        }
+
+        Iterator<Map.Entry<String, LevelAssets>> iterator = entries.entrySet().iterator();
+        while (usedBytes + bytes > budgetBytes && iterator.hasNext()) {
+            String eldest = iterator.next().getKey();
+            iterator.remove();
+            usedBytes -= sizes.remove(eldest);
+            evictions++;
+        }
+
+        entries.put(key, assets);
+        sizes.put(key, bytes);
+        usedBytes += bytes;
+    }
+
+    void remove(String key) {
+
+        if (entries.remove(key) != null) {
+            usedBytes -= sizes.remove(key);
+        }
+    }
+
+    void clear() {
+        entries.clear();
+        sizes.clear();
+        usedBytes = 0;
+    }
+
+    int getHits() {
+        return hits;
+    }
+
+    int getMisses() {
+        return misses;
+    }
+
+    int getEvictions() {
+        return evictions;
+    }
+
+    long getUsedBytes() {
+        return usedBytes;
+    }
+
+    long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    @Override
+    public String toString() {
+        return entries.size() + " levels, " + usedBytes / 1024 + " of " + budgetBytes / 1024 + " kB, " + hits
+                + " hits, " + misses + " misses, " + evictions + " evictions";
+    }
+}
@@ -0,0 +1,112 @@
+package game;
+
+import javafx.scene.image.Image;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * What loadLevel() reads and decodes from the level folder: the bitmaps (at the logical size, see BoardView), the
+ * walkability mask sampled from the board, the sprite atlas built on them and the .dat files parsed. All of it is
+ * read-only once loaded, so it can be kept in the LevelAssetCache and shared by the later loads of the same level;
+ * but for the atlas, replaced on the FX thread when rasterized for another window size (see Utils.rasterizeAtlas()),
+ * and the board tiles, decoded on demand.
+ */
+class LevelAssets {
+
+    /**
+     * The .dat files of a level folder.
+     */
+    static final String[] DATA_FILES = {
+            "arrows.dat", "amulets.dat", "ornaments.dat", "teleports.dat", "keys.dat", "doors.dat", "slots.dat",
+            "level.dat", "board.dat"
+    };
+
+    /**
+     * The values per entry in each of DATA_FILES: column and row, plus the direction or orientation; level.dat has
+     * Eist column, row and direction, exit column and row, and the ladder slot index; board.dat, optional, the board
+     * columns and rows (see LevelData).
+     */
+    static final int[] DATA_COLUMNS = {3, 2, 2, 2, 2, 3, 3, 6, 2};
+
+    Image board;
+    Image artifact;
+    Image ornament;
+    Image key;
+    Image doorH;
+    Image doorV;
+    Image ladderH;
+    Image ladderV;
+    Image exitClosed;
+    Image exitOpen;
+
+    /**
+     * Instead of board, for a board.dat board: decoded a part at a time as shown
+     */
+    BoardTiles boardTiles;
+
+    WalkabilityMask walkability;
+    SpriteAtlas atlas;
+
+    /**
+     * The first .dat file error; the level is not to be used then, nor cached.
+     */
+    String error;
+
+    private final Map<String, DatReader.Table> data = new HashMap<>();
+
+    /**
+     * @return the DATA_COLUMNS of the file
+     */
+    static int columnsOf(String name) {
+        for (int i = 0; i < DATA_FILES.length; i++) {
+            if (DATA_FILES[i].equals(name)) {
+                return DATA_COLUMNS[i];
+            }
+        }
+        throw new IllegalArgumentException("Not a level data file: " + name);
+    }
+
+    /**
+     * @param table null if the file is missing
+     */
+    void putData(String name, DatReader.Table table) {
+        data.put(name, table);
+    }
+
+    /**
+     * @return the file parsed; null if the file is missing
+     */
+    DatReader.Table getData(String name) {
+        return data.get(name);
+    }
+
+    /**
+     * Rough memory use: the decoded bitmaps at 4 bytes a pixel, the mask bits and the data values.
+     */
+    long estimateBytes() {
+
+        long bytes = imageBytes(board) + imageBytes(artifact) + imageBytes(ornament) + imageBytes(key)
+                + imageBytes(doorH) + imageBytes(doorV) + imageBytes(ladderH) + imageBytes(ladderV)
+                + imageBytes(exitClosed) + imageBytes(exitOpen);
+        if (boardTiles != null) {
+            bytes += boardTiles.estimateBytes();
+        }
+        if (atlas != null) {
+            bytes += imageBytes(atlas.getImage());
+        }
+        if (walkability != null) {
+            bytes += (long) walkability.getWidth() * walkability.getHeight() / 8;
+        }
+        for (DatReader.Table table : data.values()) {
+            if (table != null) {
+                bytes += 4L * table.getRows() * table.getColumns();
+            }
+        }
+        return bytes;
+    }
+
+    private static long imageBytes(Image image) {
+        return image != null ? 4L * (long) image.getWidth() * (long) image.getHeight() : 0;
+    }
+}
@@ -0,0 +1,593 @@
+package game;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A level folder packed into a single file, level.bundle, next to the files it was made of (or instead of them).
+ * The game and LevelData load it when present; see isCurrent() for when the folder files take precedence.
+ *
+ * eist-returns -B [--bench] [level folder]...
+ *
+ * converts the folders given, or the user-defined levels (~/.EistReturns/levels/NN) if none. With --bench nothing
+ * gets written: the folders are converted to a temporary file, and loading both formats is timed.
+ *
+ * The layout, big-endian:
+ *
+ *   int       MAGIC
+ *   short     VERSION
+ *   byte[20]  content hash of the files converted (see LevelData.getContentHash()), so that the par cache and the
+ *             replays match either format
+ *   short     table count, then per table:
+ *               byte + bytes  .dat file name
+ *               short, short  row (entry) count, column (value) count
+ *               short[]       the values, row by row; DatReader.NULL_VALUE for "null"
+ *   short     mask width, height: the board bitmap in the source graphics dimension, or as board.dat sizes it
+ *   int       run count, then short[] runs: per mask row, alternately path and void pixel counts, path first
+ *   short     image count, then per image:
+ *               byte + bytes  file name
+ *               short         blob index
+ *   short     blob count, then per blob: int offset from the end of this table, int length
+ *   the blobs: the PNG files as they were, each identical file stored once
+ */
+class LevelBundle {
+
+    static final String FILE_NAME = "level.bundle";
+
+    static final int MAGIC = 0x45495354; // "EIST"
+    static final int VERSION = 1;
+
+    /**
+     * The bitmaps of a level folder.
+     */
+    static final String[] IMAGE_FILES = {
+            "board.png", "amulet.png", "ornament.png", "key.png", "door_h.png", "door_v.png", "ladder_h.png",
+            "ladder_v.png", "exit_closed.png", "exit_open.png"
+    };
+
+    private static final int HASH_LENGTH = 20;
+
+    private static final int BENCH_RUNS = 20;
+
+    private final String contentHash;
+
+    private final Map<String, DatReader.Table> tables = new HashMap<>();
+
+    private final int maskWidth;
+    private final int maskHeight;
+    private final ByteBuffer runs;
+    private final int runCount;
+
+    private final Map<String, ByteBuffer> images = new HashMap<>();
+
+    private LevelBundle(ByteBuffer buffer) throws IOException {
+
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a level bundle");
+        }
+        int version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported level bundle version " + version);
+        }
+
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < HASH_LENGTH; i++) {
+            stringBuilder.append(String.format("%02x", buffer.get()));
+        }
+        contentHash = stringBuilder.toString();
+
+        int tableCount = buffer.getShort();
+        for (int i = 0; i < tableCount; i++) {
+            String name = getName(buffer);
+            int rows = buffer.getShort();
+            int columns = buffer.getShort();
+            int[] values = new int[rows * columns];
+            for (int j = 0; j < values.length; j++) {
+                values[j] = buffer.getShort();
+            }
+            tables.put(name, new DatReader.Table(columns, rows, values));
+        }
+
+        maskWidth = buffer.getShort();
+        maskHeight = buffer.getShort();
+        runCount = buffer.getInt();
+        runs = slice(buffer, buffer.position(), 2 * runCount);
+        buffer.position(buffer.position() + 2 * runCount);
+
+        int imageCount = buffer.getShort();
+        String[] imageNames = new String[imageCount];
+        int[] imageBlobs = new int[imageCount];
+        for (int i = 0; i < imageCount; i++) {
+            imageNames[i] = getName(buffer);
+            imageBlobs[i] = buffer.getShort();
+        }
+
+        int blobCount = buffer.getShort();
+        int[] offsets = new int[blobCount];
+        int[] lengths = new int[blobCount];
+        for (int i = 0; i < blobCount; i++) {
+            offsets[i] = buffer.getInt();
+            lengths[i] = buffer.getInt();
+        }
+        int blobBase = buffer.position();
+        for (int i = 0; i < imageCount; i++) {
+            int blob = imageBlobs[i];
+            images.put(imageNames[i], slice(buffer, blobBase + offsets[blob], lengths[blob]));
+        }
+    }
+
+    private static String getName(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.get()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int position, int length) throws IOException {
+
+        if (position < 0 || length < 0 || position + length > buffer.limit()) {
+            throw new IOException("Level bundle truncated");
+        }
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(position);
+        duplicate.limit(position + length);
+        return duplicate.slice();
+    }
+
+    /**
+     * Map the file into memory; the bitmaps are decoded straight out of the mapping, with no copy on the heap.
+     */
+    static LevelBundle open(File file) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Read the whole stream: for the bundles that are not files, in the game jar.
+     */
+    static LevelBundle read(InputStream inputStream) throws IOException {
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, count);
+        }
+        return parse(ByteBuffer.wrap(outputStream.toByteArray()));
+    }
+
+    /**
+     * @param url a class path resource: mapped if it's a file, read otherwise
+     */
+    static LevelBundle load(URL url) throws IOException {
+
+        if (url.getProtocol().equals("file")) {
+            try {
+                return open(new File(url.toURI()));
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
+        }
+        try (InputStream inputStream = url.openStream()) {
+            return read(inputStream);
+        }
+    }
+
+    private static LevelBundle parse(ByteBuffer buffer) throws IOException {
+
+        try {
+            return new LevelBundle(buffer);
+
+        } catch (RuntimeException e) {
+            /*
+             * BufferUnderflowException and the like: a truncated or corrupt file
+             */
+            throw new IOException("Malformed level bundle: " + e, e);
+        }
+    }
+
+    /**
+     * @return whether the folder has a bundle, not older than any other file in the folder; the files edited after
+     * the conversion take precedence
+     */
+    static boolean isCurrent(File folder) {
+
+        File bundle = new File(folder, FILE_NAME);
+        if (!bundle.isFile()) {
+            return false;
+        }
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.lastModified() > bundle.lastModified()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return SHA-1 of the files converted, hex encoded
+     */
+    String getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * @return the .dat file as DatReader parses it, null if the folder had no such file
+     */
+    DatReader.Table getTable(String name) {
+        return tables.get(name);
+    }
+
+    boolean hasImage(String name) {
+        return images.containsKey(name);
+    }
+
+    /**
+     * @return the PNG file content, null if the folder had no such file; every call streams from the start
+     */
+    InputStream getImage(String name) {
+
+        ByteBuffer image = images.get(name);
+        return image != null ? new BufferInputStream(image.duplicate()) : null;
+    }
+
+    /**
+     * @return the PNG file size, -1 if the folder had no such file
+     */
+    long getImageSize(String name) {
+
+        ByteBuffer image = images.get(name);
+        return image != null ? image.remaining() : -1;
+    }
+
+    /**
+     * The mask of the board as LevelData builds it, in the source graphics dimension; without the board decoded.
+     */
+    WalkabilityMask getWalkability(double gridDimension, double frameDimension) {
+
+        ByteBuffer source = runs.duplicate();
+        return WalkabilityMask.fromRuns(() -> source.getShort(), maskWidth, maskHeight, gridDimension,
+                frameDimension);
+    }
+
+    int getMaskWidth() {
+        return maskWidth;
+    }
+
+    int getMaskHeight() {
+        return maskHeight;
+    }
+
+    private static class BufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    /**
+     * Convert the level folder into a bundle file. The folder gets parsed as LevelData does first, so that a level
+     * the game couldn't load doesn't get converted either.
+     */
+    static void write(File folder, File target) throws IOException {
+
+        LevelData levelData = LevelData.loadFiles(folder);
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(header);
+
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+
+        String hash = levelData.getContentHash();
+        for (int i = 0; i < HASH_LENGTH; i++) {
+            out.writeByte(Integer.parseInt(hash.substring(2 * i, 2 * i + 2), 16));
+        }
+
+        /*
+         * The .dat files
+         */
+        Map<String, DatReader.Table> tables = new LinkedHashMap<>();
+        for (String name : LevelAssets.DATA_FILES) {
+            File file = new File(folder, name);
+            if (file.isFile()) {
+                tables.put(name, DatReader.read(Files.readAllBytes(file.toPath()), name, LevelAssets.columnsOf(name)));
+            }
+        }
+        out.writeShort(tables.size());
+        for (Map.Entry<String, DatReader.Table> entry : tables.entrySet()) {
+
+            DatReader.Table table = entry.getValue();
+
+            writeName(out, entry.getKey());
+            out.writeShort(table.getRows());
+            out.writeShort(table.getColumns());
+            for (int row = 0; row < table.getRows(); row++) {
+                for (int column = 0; column < table.getColumns(); column++) {
+                    int value = table.get(row, column);
+                    if (value > Short.MAX_VALUE) {
+                        throw new IOException(entry.getKey() + ": value out of range: " + value);
+                    }
+                    out.writeShort(value);
+                }
+            }
+        }
+
+        /*
+         * The walkability mask
+         */
+        GameState.Terrain terrain = levelData.getTerrain();
+        int width = levelData.getBoardWidth();
+        int height = levelData.getBoardHeight();
+        List<Integer> runs = new ArrayList<>();
+        for (int y = 0; y < height; y++) {
+            boolean isVoid = false;
+            int run = 0;
+            for (int x = 0; x < width; x++) {
+                if (terrain.isVoid(x, y) != isVoid) {
+                    runs.add(run);
+                    isVoid = !isVoid;
+                    run = 0;
+                }
+                run++;
+            }
+            runs.add(run);
+        }
+        out.writeShort(width);
+        out.writeShort(height);
+        out.writeInt(runs.size());
+        for (int run : runs) {
+            out.writeShort(run);
+        }
+
+        /*
+         * The bitmaps; ByteBuffer compares the content, so the identical files share a blob
+         */
+        Map<String, Integer> imageBlobs = new LinkedHashMap<>();
+        Map<ByteBuffer, Integer> blobIndexes = new HashMap<>();
+        List<byte[]> blobs = new ArrayList<>();
+        for (String name : IMAGE_FILES) {
+            File file = new File(folder, name);
+            if (!file.isFile()) {
+                continue;
+            }
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            Integer blob = blobIndexes.get(ByteBuffer.wrap(bytes));
+            if (blob == null) {
+                blob = blobs.size();
+                blobs.add(bytes);
+                blobIndexes.put(ByteBuffer.wrap(bytes), blob);
+            }
+            imageBlobs.put(name, blob);
+        }
+        out.writeShort(imageBlobs.size());
+        for (Map.Entry<String, Integer> image : imageBlobs.entrySet()) {
+            writeName(out, image.getKey());
+            out.writeShort(image.getValue());
+        }
+        out.writeShort(blobs.size());
+        int offset = 0;
+        for (byte[] blob : blobs) {
+            out.writeInt(offset);
+            out.writeInt(blob.length);
+            offset += blob.length;
+        }
+        for (byte[] blob : blobs) {
+            out.write(blob);
+        }
+        out.flush();
+
+        /*
+         * Replace the bundle at once, as the game may be reading it
+         */
+        File temporary = new File(target.getPath() + ".tmp");
+        Files.write(temporary.toPath(), header.toByteArray());
+        Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void writeName(DataOutputStream out, String name) throws IOException {
+        byte[] bytes = name.getBytes(StandardCharsets.US_ASCII);
+        out.writeByte(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * @return the differences between the level loaded from the folder and from the bundle, none if the same
+     */
+    static List<String> compare(LevelData files, LevelData bundle) {
+
+        List<String> differences = new ArrayList<>();
+
+        if (!files.getContentHash().equals(bundle.getContentHash())) {
+            differences.add("content hash");
+        }
+        if (files.getEistX() != bundle.getEistX() || files.getEistY() != bundle.getEistY()
+                || files.getEistDirection() != bundle.getEistDirection()) {
+            differences.add("Eist start");
+        }
+        if (!files.getExit().getArea().equals(bundle.getExit().getArea())) {
+            differences.add("exit");
+        }
+        compareAreas("arrows", files.getArrows(), bundle.getArrows(), Sprites.Arrow::getArea, differences);
+        compareAreas("artifacts", files.getArtifacts(), bundle.getArtifacts(), Sprites.Artifact::getArea, differences);
+        compareAreas("teleports", files.getTeleports(), bundle.getTeleports(), Sprites.Teleport::getArea, differences);
+        compareAreas("keys", files.getKeys(), bundle.getKeys(), Sprites.Key::getArea, differences);
+        compareAreas("doors", files.getDoors(), bundle.getDoors(), Sprites.Door::getArea, differences);
+        compareAreas("slots", files.getSlots(), bundle.getSlots(), Sprites.Slot::getArea, differences);
+
+        if (files.getBoardWidth() != bundle.getBoardWidth() || files.getBoardHeight() != bundle.getBoardHeight()) {
+            differences.add("board size");
+            return differences;
+        }
+        GameState.Terrain filesTerrain = files.getTerrain();
+        GameState.Terrain bundleTerrain = bundle.getTerrain();
+        search:
+        for (int y = 0; y < files.getBoardHeight(); y++) {
+            for (int x = 0; x < files.getBoardWidth(); x++) {
+                if (filesTerrain.isVoid(x, y) != bundleTerrain.isVoid(x, y)) {
+                    differences.add("walkability at (" + x + ", " + y + ")");
+                    break search;
+                }
+            }
+        }
+        return differences;
+    }
+
+    private static <T> void compareAreas(String name, List<T> files, List<T> bundle,
+                                         Function<T, Object> areaOf, List<String> differences) {
+
+        boolean same = files.size() == bundle.size();
+        for (int i = 0; same && i < files.size(); i++) {
+            same = areaOf.apply(files.get(i)).equals(areaOf.apply(bundle.get(i)));
+        }
+        if (!same) {
+            differences.add(name);
+        }
+    }
+
+    /**
+     * @return process exit code
+     */
+    static int main(String[] args) {
+
+        boolean bench = false;
+        List<File> folders = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("--bench")) {
+                bench = true;
+            } else {
+                folders.add(new File(arg));
+            }
+        }
+
+        if (folders.isEmpty()) {
+            File[] userLevels = new File(System.getProperty("user.home") + "/.EistReturns/levels").listFiles();
+            if (userLevels != null) {
+                for (File folder : userLevels) {
+                    if (new File(folder, "level.dat").isFile()) {
+                        folders.add(folder);
+                    }
+                }
+            }
+            if (folders.isEmpty()) {
+                System.out.println("Usage: eist-returns -B [--bench] [level folder]...");
+                System.out.println("No user-defined levels found in ~/.EistReturns/levels");
+                return 2;
+            }
+            folders.sort(null);
+        }
+
+        int exitCode = 0;
+        double filesTotal = 0;
+        double bundleTotal = 0;
+        for (File folder : folders) {
+            try {
+                File target = bench ? File.createTempFile("level", ".bundle") : new File(folder, FILE_NAME);
+                try {
+                    write(folder, target);
+
+                    LevelData files = LevelData.loadFiles(folder);
+                    LevelData bundle = LevelData.load(open(target));
+                    List<String> differences = compare(files, bundle);
+                    if (!differences.isEmpty()) {
+                        System.out.println(folder + ": the bundle differs: " + differences);
+                        exitCode = 1;
+                        continue;
+                    }
+
+                    long filesBytes = 0;
+                    for (File file : folder.listFiles()) {
+                        if (!file.getName().equals(FILE_NAME)) {
+                            filesBytes += file.length();
+                        }
+                    }
+                    String sizes = filesBytes / 1024 + " kB in files, " + target.length() / 1024 + " kB bundled";
+
+                    if (!bench) {
+                        System.out.println(folder + ": " + sizes);
+                        continue;
+                    }
+
+                    /*
+                     * The first runs warm up the JIT and the file cache; both formats are read from memory then
+                     */
+                    long filesTime = 0;
+                    long bundleTime = 0;
+                    for (int run = 0; run < 2 * BENCH_RUNS; run++) {
+                        long startTime = System.nanoTime();
+                        LevelData.loadFiles(folder);
+                        long middleTime = System.nanoTime();
+                        LevelData.load(open(target));
+                        long endTime = System.nanoTime();
+                        if (run >= BENCH_RUNS) {
+                            filesTime += middleTime - startTime;
+                            bundleTime += endTime - middleTime;
+                        }
+                    }
+                    double filesMs = filesTime / 1e6 / BENCH_RUNS;
+                    double bundleMs = bundleTime / 1e6 / BENCH_RUNS;
+                    filesTotal += filesMs;
+                    bundleTotal += bundleMs;
+                    System.out.println(String.format("%s: files %.2f ms, bundle %.2f ms; %s", folder, filesMs,
+                            bundleMs, sizes));
+
+                } finally {
+                    if (bench) {
+                        target.delete();
+                    }
+                }
+
+            } catch (IOException | RuntimeException e) {
+                System.out.println(folder + ": couldn't convert: " + e);
+                exitCode = 1;
+            }
+        }
+        if (bench) {
+            System.out.println(String.format("\nAll levels: files %.1f ms, bundle %.1f ms", filesTotal, bundleTotal));
+        }
+        return exitCode;
+    }
+}
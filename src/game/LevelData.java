@@ -0,0 +1,492 @@
+package game;
+
+import javafx.geometry.Rectangle2D;
+
+import game.Sprites.Player;
+import game.Sprites.Arrow;
+import game.Sprites.Artifact;
+import game.Sprites.Teleport;
+import game.Sprites.Key;
+import game.Sprites.Door;
+import game.Sprites.Slot;
+import game.Sprites.Ladder;
+import game.Sprites.Exit;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static game.Utils.ORIENTATION_VERTICAL;
+
+/**
+ * Level content read without the FX toolkit: the .dat files and the board bitmap (decoded with ImageIO).
+ * The board is kept in the source graphics dimension (1920 x 1080), so the level geometry doesn't depend on
+ * the users' screen, as it does in Utils.setBoard().
+ *
+ * A level with a board.dat has a board of its own size instead: columns and rows of GRID_DIMENSION, up to
+ * MAX_BOARD_SQUARES each. Its board.png is the maze only, exactly that size, with no menu on it; the game shows it
+ * scrolled in the playfield (see Camera).
+ *
+ * Objects parsed here are a template: newGame() hands out a GameState working on copies of the object lists,
+ * so that a single LevelData may feed many simulations at once.
+ */
+class LevelData {
+
+    static final int BOARD_WIDTH = 1920;
+    static final int BOARD_HEIGHT = 1080;
+    static final double FRAME_DIMENSION = 120;
+    static final double GRID_DIMENSION = FRAME_DIMENSION / 2;
+
+    /*
+     * The board.dat limits, in grid squares: a frame fits, and the mask and the tables stay small enough.
+     */
+    static final int MIN_BOARD_SQUARES = 4;
+    static final int MAX_BOARD_SQUARES = 128;
+
+    /*
+     * Same as in Utils.setBoard() and Utils.setSpeed() on the full speed setting.
+     */
+    static final int DETECTION_OFFSET = (int) FRAME_DIMENSION / 6;
+    static final double ROTATION_RADIUS = FRAME_DIMENSION / 4;
+    static final double WALKING_SPEED_PER_SECOND = BOARD_WIDTH / 14d;
+    static final double FRAME_DURATION_EIST = 70000000;
+
+    private final String source;
+    private final LevelBundle bundle;
+
+    private int boardWidth = BOARD_WIDTH;
+    private int boardHeight = BOARD_HEIGHT;
+    private boolean sizedBoard;
+
+    /*
+     * Made once the board size is known
+     */
+    private CellList<Arrow> arrows;
+    private CellList<Artifact> artifacts;
+    private CellList<Teleport> teleports;
+    private CellList<Key> keys;
+    private CellList<Door> doors;
+    private final List<Slot> slots = new ArrayList<>();
+
+    private double eistX;
+    private double eistY;
+    private int eistDirection;
+    private Exit exit;
+    private Integer ladderSlotIdx;
+
+    private WalkabilityMask walkability;
+
+    private MessageDigest digest;
+    private String contentHash;
+
+    private LevelData(String source, LevelBundle bundle) {
+        this.source = source;
+        this.bundle = bundle;
+    }
+
+    /**
+     * Load the level the way the game does: from ~/.EistReturns/levels/NN if the folder exists, from resources
+     * otherwise. A level bundle is loaded instead of the level files when there is one; see LevelBundle.
+     */
+    static LevelData load(int level) throws IOException {
+
+        String lvlNumberToString = (level < 10) ? "0" + String.valueOf(level) : String.valueOf(level);
+
+        File userLevel = new File(System.getProperty("user.home") + "/.EistReturns/levels/" + lvlNumberToString);
+        if (level > 0 && (new File(userLevel, "level.dat").exists() || LevelBundle.isCurrent(userLevel))) {
+            return load(userLevel);
+        }
+
+        String source = "levels/" + lvlNumberToString + "/";
+        URL bundleUrl = LevelData.class.getClassLoader().getResource(source + LevelBundle.FILE_NAME);
+        if (bundleUrl != null) {
+            return load(LevelBundle.load(bundleUrl));
+        }
+
+        LevelData data = new LevelData(source, null);
+        data.parse();
+        return data;
+    }
+
+    /**
+     * Load the level from any folder, e.g. the editor data; from the level bundle if up to date.
+     */
+    static LevelData load(File folder) throws IOException {
+
+        if (LevelBundle.isCurrent(folder)) {
+            return load(LevelBundle.open(new File(folder, LevelBundle.FILE_NAME)));
+        }
+        return loadFiles(folder);
+    }
+
+    /**
+     * Load the level files, even if there's a level bundle.
+     */
+    static LevelData loadFiles(File folder) throws IOException {
+
+        LevelData data = new LevelData(folder.getAbsolutePath() + File.separator, null);
+        data.parse();
+        return data;
+    }
+
+    static LevelData load(LevelBundle bundle) throws IOException {
+
+        LevelData data = new LevelData(LevelBundle.FILE_NAME, bundle);
+        data.parse();
+        return data;
+    }
+
+    /**
+     * @return the file content, null if the file doesn't exist. Whatever is read goes into the content hash.
+     */
+    private byte[] read(String name) throws IOException {
+
+        InputStream inputStream;
+        File file = new File(source + name);
+        if (file.isAbsolute()) {
+            inputStream = file.exists() ? new FileInputStream(file) : null;
+        } else {
+            inputStream = getClass().getClassLoader().getResourceAsStream(source + name);
+        }
+        if (inputStream == null) {
+            return null;
+        }
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (InputStream in = inputStream) {
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, count);
+            }
+        }
+        byte[] bytes = outputStream.toByteArray();
+
+        digest.update(name.getBytes(StandardCharsets.UTF_8));
+        digest.update(bytes);
+        return bytes;
+    }
+
+    /**
+     * @return the .dat file parsed, no entries if the file doesn't exist
+     * @throws DatReader.FormatException if malformed
+     */
+    private DatReader.Table readTable(String name) throws IOException {
+
+        DatReader.Table table = bundle != null ? bundle.getTable(name) : null;
+        if (table == null) {
+            byte[] bytes = bundle == null ? read(name) : null;
+            table = DatReader.read(bytes != null ? bytes : new byte[0], source + name, LevelAssets.columnsOf(name));
+        }
+        return table;
+    }
+
+    private void parse() throws IOException {
+
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        DatReader.Table table = readTable("board.dat");
+        if (table.getRows() > 0) {
+            checkBoardSize(table, source + "board.dat");
+            sizedBoard = true;
+            boardWidth = (int) GRID_DIMENSION * table.get(0, 0);
+            boardHeight = (int) GRID_DIMENSION * table.get(0, 1);
+        }
+
+        if (bundle != null) {
+            if (bundle.getMaskWidth() != boardWidth || bundle.getMaskHeight() != boardHeight) {
+                throw new IOException("Unexpected board dimensions in " + source);
+            }
+            walkability = bundle.getWalkability(GRID_DIMENSION, FRAME_DIMENSION);
+        } else {
+            parseBoard();
+        }
+
+        parseObjects();
+    }
+
+    private void parseBoard() throws IOException {
+
+        byte[] boardBytes = read("board.png");
+        if (boardBytes == null) {
+            throw new FileNotFoundException(source + "board.png");
+        }
+        BufferedImage image = decodeBoard(boardBytes, source + "board.png", sizedBoard ? boardWidth : 0, boardHeight);
+        if (!sizedBoard && (image.getWidth() != BOARD_WIDTH || image.getHeight() != BOARD_HEIGHT)) {
+            /*
+             * The game scales the board to the scene dimensions; scale it to the source graphics size here.
+             */
+            BufferedImage scaled = new BufferedImage(BOARD_WIDTH, BOARD_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = scaled.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, BOARD_WIDTH, BOARD_HEIGHT, null);
+            g.dispose();
+            image = scaled;
+        }
+        walkability = WalkabilityMask.fromImage(image, GRID_DIMENSION, FRAME_DIMENSION);
+    }
+
+    /**
+     * @throws IOException if the board.dat entry is out of the limits
+     */
+    static void checkBoardSize(DatReader.Table table, String name) throws IOException {
+
+        for (int i = 0; i < 2; i++) {
+            int squares = table.get(0, i);
+            if (squares < MIN_BOARD_SQUARES || squares > MAX_BOARD_SQUARES) {
+                throw new IOException(name + ": " + (i == 0 ? "columns" : "rows") + " out of "
+                        + MIN_BOARD_SQUARES + ".." + MAX_BOARD_SQUARES + ": " + squares);
+            }
+        }
+    }
+
+    /**
+     * @param width  the size the bitmap must have, for a board.dat board; 0 for any
+     * @param height ignored if width is 0
+     */
+    static BufferedImage decodeBoard(byte[] bytes, String name, int width, int height) throws IOException {
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+        if (image == null) {
+            throw new IOException("Couldn't decode " + name);
+        }
+        if (width > 0 && (image.getWidth() != width || image.getHeight() != height)) {
+            throw new IOException(name + " is " + image.getWidth() + " x " + image.getHeight()
+                    + ", board.dat calls for " + width + " x " + height);
+        }
+        return image;
+    }
+
+    private void parseObjects() throws IOException {
+
+        arrows = newCellList(Arrow::getArea);
+        artifacts = newCellList(Artifact::getArea);
+        teleports = newCellList(Teleport::getArea);
+        keys = newCellList(Key::getArea);
+        doors = newCellList(Door::getArea);
+
+        DatReader.Table table = readTable("arrows.dat");
+        for (int i = 0; i < table.getRows(); i++) {
+            Arrow arrow = new Arrow();
+            arrow.setPosX(column(table.get(i, 0)));
+            arrow.setPosY(row(table.get(i, 1)));
+            arrow.setArea(innerRect(arrow.getPosX(), arrow.getPosY()));
+            arrow.setDirection(table.get(i, 2));
+            arrows.add(arrow);
+        }
+
+        table = readTable("amulets.dat");
+        for (int i = 0; i < table.getRows(); i++) {
+            Artifact artifact = new Artifact();
+            artifact.setPosX(column(table.get(i, 0)));
+            artifact.setPosY(row(table.get(i, 1)));
+            artifact.setArea(innerRect(artifact.getPosX(), artifact.getPosY()));
+            artifacts.add(artifact);
+        }
+
+        table = readTable("teleports.dat");
+        for (int i = 0; i < table.getRows(); i++) {
+            Teleport teleport = new Teleport();
+            teleport.setPosX(column(table.get(i, 0)));
+            teleport.setPosY(row(table.get(i, 1)));
+            teleport.setArea(innerRect(teleport.getPosX(), teleport.getPosY()));
+            teleports.add(teleport);
+        }
+
+        table = readTable("keys.dat");
+        for (int i = 0; i < table.getRows(); i++) {
+            Key key = new Key();
+            key.setPosX(column(table.get(i, 0)));
+            key.setPosY(row(table.get(i, 1)));
+            key.setArea(innerRect(key.getPosX(), key.getPosY()));
+            keys.add(key);
+        }
+
+        table = readTable("doors.dat");
+        for (int i = 0; i < table.getRows(); i++) {
+            Door door = new Door();
+            door.setPosX(column(table.get(i, 0)));
+            door.setPosY(row(table.get(i, 1)));
+            door.setOrientation(table.get(i, 2));
+            door.setArea(innerRect(door.getPosX(), door.getPosY()));
+            doors.add(door);
+        }
+
+        table = readTable("slots.dat");
+        for (int i = 0; i < table.getRows(); i++) {
+            Slot slot = new Slot();
+            slot.setPosX(column(table.get(i, 0)));
+            slot.setPosY(row(table.get(i, 1)));
+            slot.setOrientation(table.get(i, 2));
+            if (slot.getOrientation() == ORIENTATION_VERTICAL) {
+                slot.setArea(new Rectangle2D(slot.getPosX(), slot.getPosY(), FRAME_DIMENSION, GRID_DIMENSION));
+            } else {
+                slot.setArea(new Rectangle2D(slot.getPosX(), slot.getPosY(), GRID_DIMENSION, FRAME_DIMENSION));
+            }
+            slots.add(slot);
+        }
+
+        table = readTable("level.dat");
+        if (table.getRows() == 0) {
+            throw new FileNotFoundException(source + "level.dat");
+        }
+
+        eistX = column(table.get(0, 0));
+        eistY = row(table.get(0, 1));
+        eistDirection = table.get(0, 2);
+        exit = new Exit();
+        exit.setPosX(column(table.get(0, 3)));
+        exit.setPosY(row(table.get(0, 4)));
+        exit.setArea(new Rectangle2D(exit.getPosX(), exit.getPosY(), FRAME_DIMENSION, FRAME_DIMENSION));
+        ladderSlotIdx = table.get(0, 5) == DatReader.NULL_VALUE ? null : table.get(0, 5);
+
+        if (bundle != null) {
+            /*
+             * The hash of the files the bundle was made of
+             */
+            contentHash = bundle.getContentHash();
+        } else {
+            StringBuilder stringBuilder = new StringBuilder();
+            for (byte b : digest.digest()) {
+                stringBuilder.append(String.format("%02x", b));
+            }
+            contentHash = stringBuilder.toString();
+        }
+        digest = null;
+    }
+
+    private <T> CellList<T> newCellList(Function<T, Rectangle2D> areaOf) {
+        return new CellList<>(areaOf, GRID_DIMENSION, boardWidth, boardHeight);
+    }
+
+    private static double column(int value) {
+        return GRID_DIMENSION * value;
+    }
+
+    private static double row(int value) {
+        return GRID_DIMENSION * value;
+    }
+
+    /**
+     * See Utils.innerRect()
+     */
+    private static Rectangle2D innerRect(double outerX, double outerY) {
+        return new Rectangle2D(outerX + GRID_DIMENSION / 2, outerY + GRID_DIMENSION / 2, GRID_DIMENSION, GRID_DIMENSION);
+    }
+
+    /**
+     * @return BOARD_WIDTH, unless board.dat tells otherwise
+     */
+    int getBoardWidth() {
+        return boardWidth;
+    }
+
+    int getBoardHeight() {
+        return boardHeight;
+    }
+
+    /**
+     * @return true if the size came from board.dat
+     */
+    boolean isSizedBoard() {
+        return sizedBoard;
+    }
+
+    /**
+     * Read-only, so it may be shared by simulations running on many threads.
+     */
+    GameState.Terrain getTerrain() {
+        return walkability;
+    }
+
+    /**
+     * @return a GameState of its own, with Eist standing still at the start position
+     */
+    GameState newGame(int tickRate) {
+
+        Player eist = new Player();
+        eist.x = eistX;
+        eist.y = eistY;
+        eist.setDirection(eistDirection);
+        eist.setKeys(0);
+        eist.storePosition();
+
+        Ladder ladder = new Ladder();
+        ladder.setSlotIdx(ladderSlotIdx);
+
+        GameState state = new GameState(tickRate, eist, ladder, exit);
+        state.setDimensions(GRID_DIMENSION, DETECTION_OFFSET, ROTATION_RADIUS);
+        state.setSpeed(WALKING_SPEED_PER_SECOND, FRAME_DURATION_EIST);
+        state.setTerrain(getTerrain());
+        state.load(arrows.copy(), artifacts.copy(), teleports.copy(), keys.copy(), doors.copy(), slots);
+        return state;
+    }
+
+    /*
+     * The level template. Not to be modified: newGame() copies what the game changes.
+     */
+
+    List<Arrow> getArrows() {
+        return arrows;
+    }
+
+    List<Artifact> getArtifacts() {
+        return artifacts;
+    }
+
+    List<Teleport> getTeleports() {
+        return teleports;
+    }
+
+    List<Key> getKeys() {
+        return keys;
+    }
+
+    List<Door> getDoors() {
+        return doors;
+    }
+
+    List<Slot> getSlots() {
+        return slots;
+    }
+
+    Exit getExit() {
+        return exit;
+    }
+
+    double getEistX() {
+        return eistX;
+    }
+
+    double getEistY() {
+        return eistY;
+    }
+
+    int getEistDirection() {
+        return eistDirection;
+    }
+
+    String getSource() {
+        return source;
+    }
+
+    /**
+     * @return SHA-1 of all the level files read, hex encoded
+     */
+    String getContentHash() {
+        return contentHash;
+    }
+}
@@ -0,0 +1,726 @@
+package game;
+
+import javafx.geometry.Rectangle2D;
+
+import game.Sprites.Arrow;
+import game.Sprites.Artifact;
+import game.Sprites.Teleport;
+import game.Sprites.Key;
+import game.Sprites.Door;
+import game.Sprites.Slot;
+import game.Sprites.Exit;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntConsumer;
+import java.util.prefs.Preferences;
+
+import static game.Utils.DIR_RIGHT;
+import static game.Utils.DIR_DOWN;
+import static game.Utils.DIR_LEFT;
+import static game.Utils.DIR_UP;
+
+/**
+ * Finds the minimum number of turns (as counted by GameState) needed to clear the level - the "Par" value.
+ *
+ * The board is reduced to the grid the level objects are placed on (GRID_DIMENSION squares). Eist's top left
+ * corner always stays on the grid lines while walking, and all the level objects are triggered when he reaches their
+ * grid square, so the search state is: Eist's square and direction, plus the bitmasks of the collected artifacts,
+ * the collected keys, the opened doors and the level arrows already passed (keys held = collected - doors opened).
+ *
+ * The player may place an arrow right in front of Eist at any moment, so a turn is possible on every free path
+ * square, at the cost of 1. Level arrows and closed doors cost 1 too. Placed arrows disappear when passed,
+ * so they're not a part of the state. Moving the ladder costs nothing and may be done at any time, so the active
+ * slot isn't either: a step over the black area is allowed if a single ladder slot covers it.
+ *
+ * Costs are small integers, so the search is Dijkstra on a bucket queue. Eist walks straight through the corridors
+ * in a single step, up to the next square where a turn makes sense or something happens. The transposition table
+ * of the states already expanded drops the states dominated by the ones in there.
+ */
+class LevelSolver {
+
+    static final int UNSOLVED = -1;
+
+    /**
+     * Bump it whenever the rules or the model change, to invalidate the cached values.
+     */
+    private static final int SOLVER_VERSION = 1;
+
+    private static final int MAX_STATES = 1 << 21;
+
+    private static final int[] DX = {1, 0, -1, 0};
+    private static final int[] DY = {0, 1, 0, -1};
+
+    /*
+     * Level object on the square
+     */
+    private static final int OBJ_NONE = 0;
+    private static final int OBJ_ARROW = 1;
+    private static final int OBJ_ARTIFACT = 2;
+    private static final int OBJ_TELEPORT = 3;
+    private static final int OBJ_KEY = 4;
+    private static final int OBJ_DOOR = 5;
+
+    private static final long GOAL = Long.MIN_VALUE;
+
+    /*
+     * The board in grid squares, and in pixels
+     */
+    private final int columns;
+    private final int rows;
+    private final int boardWidth;
+    private final int boardHeight;
+
+    private final int[] objectType;
+    private final int[] objectIdx;
+
+    /**
+     * Can Eist walk from the square to the next one in the direction: [direction][square]
+     */
+    private final boolean[][] walkable;
+
+    /**
+     * Is the square center on the path (the in-game click on black does nothing)
+     */
+    private final boolean[] onPath;
+
+    private final boolean[] exitArea;
+
+    private final int[] arrowDirections;
+    private final int[] teleportSquares;
+    private final int startSquare;
+    private final int startDirection;
+
+    private final int artifactBits;
+    private final int keyBits;
+    private final int doorBits;
+    private final int arrowBits;
+
+    private final int keyShift;
+    private final int doorShift;
+    private final int arrowShift;
+    private final int stateShift;
+
+    private final boolean supported;
+
+    LevelSolver(LevelData level) {
+
+        int grid = (int) LevelData.GRID_DIMENSION;
+
+        boardWidth = level.getBoardWidth();
+        boardHeight = level.getBoardHeight();
+        columns = boardWidth / grid;
+        rows = boardHeight / grid;
+        objectType = new int[columns * rows];
+        objectIdx = new int[columns * rows];
+        walkable = new boolean[4][columns * rows];
+        onPath = new boolean[columns * rows];
+        exitArea = new boolean[columns * rows];
+
+        List<Arrow> arrows = level.getArrows();
+        List<Artifact> artifacts = level.getArtifacts();
+        List<Teleport> teleports = level.getTeleports();
+        List<Key> keys = level.getKeys();
+        List<Door> doors = level.getDoors();
+
+        arrowDirections = new int[arrows.size()];
+        for (int i = 0; i < arrows.size(); i++) {
+            mark(square(arrows.get(i).getPosX(), arrows.get(i).getPosY()), OBJ_ARROW, i);
+            arrowDirections[i] = arrows.get(i).getDirection();
+        }
+        for (int i = 0; i < artifacts.size(); i++) {
+            mark(square(artifacts.get(i).getPosX(), artifacts.get(i).getPosY()), OBJ_ARTIFACT, i);
+        }
+        teleportSquares = new int[teleports.size()];
+        for (int i = 0; i < teleports.size(); i++) {
+            teleportSquares[i] = square(teleports.get(i).getPosX(), teleports.get(i).getPosY());
+            mark(teleportSquares[i], OBJ_TELEPORT, i);
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            mark(square(keys.get(i).getPosX(), keys.get(i).getPosY()), OBJ_KEY, i);
+        }
+        for (int i = 0; i < doors.size(); i++) {
+            mark(square(doors.get(i).getPosX(), doors.get(i).getPosY()), OBJ_DOOR, i);
+        }
+
+        /*
+         * GameState.checkExit(): the exit area is of the frame dimension, so Eist's center gets inside it
+         * from 4 squares.
+         */
+        Exit exit = level.getExit();
+        int exitColumn = (int) (exit.getPosX() / grid);
+        int exitRow = (int) (exit.getPosY() / grid);
+        for (int column = exitColumn - 1; column <= exitColumn; column++) {
+            for (int row = exitRow - 1; row <= exitRow; row++) {
+                if (column >= 0 && row >= 0 && column < columns && row < rows) {
+                    exitArea[row * columns + column] = true;
+                }
+            }
+        }
+
+        GameState.Terrain terrain = level.getTerrain();
+        List<Slot> slots = level.getSlots();
+
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+
+                int square = row * columns + column;
+                int centerX = column * grid + grid;
+                int centerY = row * grid + grid;
+
+                onPath[square] = centerX < boardWidth && centerY < boardHeight
+                        && !terrain.isVoid(centerX, centerY);
+
+                for (int direction = DIR_RIGHT; direction <= DIR_UP; direction++) {
+                    walkable[direction][square] = isStepSafe(terrain, slots, column, row, direction);
+                }
+            }
+        }
+
+        startSquare = square(level.getEistX(), level.getEistY());
+        startDirection = level.getEistDirection();
+
+        artifactBits = artifacts.size();
+        keyBits = keys.size();
+        doorBits = doors.size();
+        arrowBits = arrows.size();
+
+        keyShift = artifactBits;
+        arrowShift = keyShift + keyBits;
+        doorShift = arrowShift + arrowBits;
+        stateShift = doorShift + doorBits;
+
+        // Square and direction above the objects, the sign bit is the GOAL flag
+        int squareBits = 64 - Long.numberOfLeadingZeros(4L * columns * rows - 1);
+        supported = stateShift + squareBits < 63;
+    }
+
+    private int square(double x, double y) {
+        return (int) (y / LevelData.GRID_DIMENSION) * columns + (int) (x / LevelData.GRID_DIMENSION);
+    }
+
+    private void mark(int square, int type, int idx) {
+        if (square >= 0 && square < objectType.length) {
+            objectType[square] = type;
+            objectIdx[square] = idx;
+        }
+    }
+
+    /**
+     * Replays GameState.move() and detectFall() pixel by pixel, from the square to the next one.
+     */
+    private boolean isStepSafe(GameState.Terrain terrain, List<Slot> slots, int column, int row, int direction) {
+
+        int grid = (int) LevelData.GRID_DIMENSION;
+        int offset = LevelData.DETECTION_OFFSET;
+
+        // Ladder slots which could cover all the black pixels found so far
+        long slotMask = -1L;
+
+        for (int step = 0; step <= grid; step++) {
+
+            int centerX = column * grid + grid + DX[direction] * step;
+            int centerY = row * grid + grid + DY[direction] * step;
+
+            int point1X, point1Y, point2X, point2Y;
+            switch (direction) {
+                case DIR_RIGHT:
+                    point1X = centerX + offset;
+                    point1Y = centerY - offset;
+                    point2X = centerX + offset;
+                    point2Y = centerY + offset;
+                    break;
+
+                case DIR_DOWN:
+                    point1X = centerX + offset;
+                    point1Y = centerY + offset;
+                    point2X = centerX - offset;
+                    point2Y = centerY + offset;
+                    break;
+
+                case DIR_LEFT:
+                    point1X = centerX - offset;
+                    point1Y = centerY + offset;
+                    point2X = centerX - offset;
+                    point2Y = centerY - offset;
+                    break;
+
+                default:
+                    point1X = centerX - offset;
+                    point1Y = centerY - offset;
+                    point2X = centerX + offset;
+                    point2Y = centerY - offset;
+                    break;
+            }
+
+            if (point1X < 0 || point2X < 0 || point1Y < 0 || point2Y < 0
+                    || point1X >= boardWidth || point2X >= boardWidth
+                    || point1Y >= boardHeight || point2Y >= boardHeight) {
+                return false;
+            }
+
+            if (terrain.isVoid(point1X, point1Y) || terrain.isVoid(point2X, point2Y)) {
+
+                long covering = 0;
+                for (int i = 0; i < slots.size() && i < 64; i++) {
+                    Rectangle2D area = slots.get(i).getArea();
+                    if (area.contains(point1X, point1Y) && area.contains(point2X, point2Y)) {
+                        covering |= 1L << i;
+                    }
+                }
+                slotMask &= covering;
+                if (slotMask == 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /*
+     * State packing: [square * 4 + direction][doors][arrows][keys][artifacts]
+     */
+
+    private long pack(int square, int direction, long objects) {
+        return ((long) (square * 4 + direction) << stateShift) | objects;
+    }
+
+    private int squareOf(long state) {
+        return (int) ((state >>> stateShift) / 4);
+    }
+
+    private int directionOf(long state) {
+        return (int) ((state >>> stateShift) % 4);
+    }
+
+    private long objectsOf(long state) {
+        return state & ((1L << stateShift) - 1);
+    }
+
+    /**
+     * @return minimum number of turns, UNSOLVED if the exit can't be reached (or the level is too big to search)
+     */
+    int solve() {
+
+        if (!supported || startSquare < 0 || startSquare >= objectType.length) {
+            return UNSOLVED;
+        }
+
+        List<LongQueue> buckets = new ArrayList<>();
+        Transpositions expanded = new Transpositions(doorShift);
+
+        long[] settled = new long[1];
+        int[] cost = new int[1];
+
+        /*
+         * Objects on the start square get triggered in the first tick, as if Eist just arrived there.
+         */
+        cost[0] = 0;
+        settled[0] = pack(startSquare, startDirection, 0);
+        arrive(settled, cost, startSquare, startDirection, 0, true);
+        push(buckets, cost[0], settled[0]);
+
+        for (int bucket = 0; bucket < buckets.size(); bucket++) {
+
+            LongQueue queue = buckets.get(bucket);
+
+            while (!queue.isEmpty()) {
+
+                long state = queue.poll();
+                if (state == GOAL) {
+                    return bucket;
+                }
+                if (!expanded.add(state)) {
+                    continue;
+                }
+                if (expanded.size() >= MAX_STATES) {
+                    return UNSOLVED;
+                }
+
+                int square = squareOf(state);
+                int direction = directionOf(state);
+                long objects = objectsOf(state);
+
+                /*
+                 * Walk on, up to the next square something may happen on
+                 */
+                int next = nextSquare(square, direction);
+                int steps = 0;
+                while (next >= 0 && steps++ < columns * rows) {
+
+                    cost[0] = bucket;
+                    arrive(settled, cost, next, direction, objects, true);
+
+                    if (settled[0] == GOAL || settled[0] != pack(next, direction, objects)
+                            || isDecisionSquare(next, direction, objects)) {
+                        push(buckets, cost[0], settled[0]);
+                        break;
+                    }
+                    next = nextSquare(next, direction);
+                }
+
+                /*
+                 * Place an arrow and turn here
+                 */
+                for (int newDirection = DIR_RIGHT; newDirection <= DIR_UP; newDirection++) {
+                    if (canTurn(square, direction, newDirection, objects)) {
+                        push(buckets, bucket + 1, pack(square, newDirection, objects));
+                    }
+                }
+            }
+        }
+        return UNSOLVED;
+    }
+
+    /**
+     * @return the square Eist gets to walking in the direction, -1 if he'd fall or leave the board
+     */
+    private int nextSquare(int square, int direction) {
+
+        if (!walkable[direction][square]) {
+            return -1;
+        }
+        int column = square % columns + DX[direction];
+        int row = square / columns + DY[direction];
+        if (column < 0 || row < 0 || column >= columns || row >= rows) {
+            return -1;
+        }
+        return row * columns + column;
+    }
+
+    /**
+     * Turns worth considering. Turning sideways only makes sense where the side path is walkable. Turning back in
+     * the middle of the corridor gives the same as turning back further on, so only just before whatever
+     * is ahead: a level object, the exit, the black area or the ladder.
+     */
+    private boolean canTurn(int square, int direction, int newDirection, long objects) {
+
+        if (newDirection == direction || !isArrowAllowed(square, objects) || nextSquare(square, newDirection) < 0) {
+            return false;
+        }
+        if (newDirection != (direction + 2) % 4) {
+            return true;
+        }
+        int ahead = nextSquare(square, direction);
+        return ahead < 0 || !isArrowAllowed(ahead, objects);
+    }
+
+    private boolean isDecisionSquare(int square, int direction, long objects) {
+
+        for (int newDirection = DIR_RIGHT; newDirection <= DIR_UP; newDirection++) {
+            if (canTurn(square, direction, newDirection, objects)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * GameState.placeArrow(): the square must be on the path, and free from not yet triggered level objects.
+     */
+    private boolean isArrowAllowed(int square, long objects) {
+
+        if (!onPath[square] || exitArea[square]) {
+            return false;
+        }
+        int idx = objectIdx[square];
+        switch (objectType[square]) {
+            case OBJ_ARROW:
+                return (objects & (1L << (arrowShift + idx))) != 0;
+            case OBJ_ARTIFACT:
+                return (objects & (1L << idx)) != 0;
+            case OBJ_TELEPORT:
+                return false;
+            case OBJ_KEY:
+                return (objects & (1L << (keyShift + idx))) != 0;
+            case OBJ_DOOR:
+                return (objects & (1L << (doorShift + idx))) != 0;
+            default:
+                return true;
+        }
+    }
+
+    private int keysHeld(long objects) {
+        long keysMask = ((1L << keyBits) - 1) << keyShift;
+        long doorsMask = ((1L << doorBits) - 1) << doorShift;
+        return Long.bitCount(objects & keysMask) - Long.bitCount(objects & doorsMask);
+    }
+
+    /**
+     * Trigger the level object on the square Eist just reached, as GameState.tick() does.
+     *
+     * @param settled  out: the resulting state, or GOAL
+     * @param cost     in/out: turns so far
+     * @param teleport false right after the teleport jump (Eist lands beside the target teleport)
+     */
+    private void arrive(long[] settled, int[] cost, int square, int direction, long objects, boolean teleport) {
+
+        int idx = objectIdx[square];
+
+        switch (objectType[square]) {
+            case OBJ_ARROW:
+                long arrowBit = 1L << (arrowShift + idx);
+                if ((objects & arrowBit) == 0) {
+                    objects |= arrowBit;
+                    direction = arrowDirections[idx];
+                    cost[0]++;
+                }
+                break;
+
+            case OBJ_ARTIFACT:
+                objects |= 1L << idx;
+                break;
+
+            case OBJ_TELEPORT:
+                if (teleport && teleportSquares.length == 2) {
+                    int target = teleportSquares[idx == 0 ? 1 : 0];
+                    int column = target % columns + DX[direction];
+                    int row = target / columns + DY[direction];
+                    if (column >= 0 && row >= 0 && column < columns && row < rows) {
+                        arrive(settled, cost, row * columns + column, direction, objects, false);
+                        return;
+                    }
+                }
+                break;
+
+            case OBJ_KEY:
+                objects |= 1L << (keyShift + idx);
+                break;
+
+            case OBJ_DOOR:
+                long doorBit = 1L << (doorShift + idx);
+                if ((objects & doorBit) == 0) {
+                    if (keysHeld(objects) > 0) {
+                        objects |= doorBit;
+                    } else {
+                        direction = (direction + 2) % 4;
+                        cost[0]++;
+                    }
+                }
+                break;
+
+            default:
+                break;
+        }
+
+        long allArtifacts = (1L << artifactBits) - 1;
+        if (exitArea[square] && (objects & allArtifacts) == allArtifacts) {
+            settled[0] = GOAL;
+        } else {
+            settled[0] = pack(square, direction, objects);
+        }
+    }
+
+    private static void push(List<LongQueue> buckets, int cost, long state) {
+        while (buckets.size() <= cost) {
+            buckets.add(new LongQueue());
+        }
+        buckets.get(cost).add(state);
+    }
+
+    /**
+     * FIFO of primitive longs
+     */
+    private static class LongQueue {
+
+        private long[] items = new long[64];
+        private int head;
+        private int tail;
+
+        void add(long value) {
+            if (tail == items.length) {
+                if (head > items.length / 2) {
+                    System.arraycopy(items, head, items, 0, tail - head);
+                } else {
+                    long[] grown = new long[items.length * 2];
+                    System.arraycopy(items, head, grown, 0, tail - head);
+                    items = grown;
+                }
+                tail -= head;
+                head = 0;
+            }
+            items[tail++] = value;
+        }
+
+        long poll() {
+            return items[head++];
+        }
+
+        boolean isEmpty() {
+            return head == tail;
+        }
+    }
+
+    /**
+     * Transposition table with dominance: the states are grouped by everything but the collected artifacts, keys
+     * and the level arrows passed (the low bits). More of them never hurts, so a state is skipped if a state
+     * of the same group, with all its artifacts, keys and arrows collected (and maybe more), has been expanded
+     * already.
+     */
+    private static class Transpositions {
+
+        private final Map<Long, long[]> groups = new HashMap<>();
+        private final int lowBits;
+        private int size;
+
+        Transpositions(int lowBits) {
+            this.lowBits = lowBits;
+        }
+
+        /**
+         * @return false if the state (or a better one) is there already
+         */
+        boolean add(long state) {
+
+            long group = state >>> lowBits;
+            long collected = state & ((1L << lowBits) - 1);
+
+            long[] entries = groups.get(group);
+            if (entries == null) {
+                groups.put(group, new long[]{1, collected});
+                size++;
+                return true;
+            }
+
+            // entries[0] = count, dominated entries get removed
+            int count = (int) entries[0];
+            int kept = 0;
+            for (int i = 1; i <= count; i++) {
+                long other = entries[i];
+                if ((other & collected) == collected) {
+                    return false;
+                }
+                if ((collected & other) != other) {
+                    entries[++kept] = other;
+                }
+            }
+            if (kept + 1 >= entries.length) {
+                entries = Arrays.copyOf(entries, entries.length * 2);
+                groups.put(group, entries);
+            }
+            entries[++kept] = collected;
+            entries[0] = kept;
+            size += kept - count;
+            return true;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    /*
+     * Par values are cached in the preferences, by the level content hash: user-defined levels get their own values,
+     * and a modified level gets solved again.
+     */
+
+    private static Preferences parPrefs() {
+        return Preferences.userNodeForPackage(Main.class).node("par");
+    }
+
+    private static String cacheKey(LevelData level) {
+        return level.getContentHash() + "-" + SOLVER_VERSION;
+    }
+
+    /**
+     * @return the cached or just calculated par value
+     */
+    static int par(LevelData level) {
+
+        Preferences prefs = parPrefs();
+        String key = cacheKey(level);
+
+        int par = prefs.getInt(key, Integer.MIN_VALUE);
+        if (par == Integer.MIN_VALUE) {
+            par = new LevelSolver(level).solve();
+            prefs.putInt(key, par);
+        }
+        return par;
+    }
+
+    /**
+     * Calculate the level par in the background; the callback is called on the ForkJoin pool thread.
+     */
+    static void requestPar(int level, IntConsumer callback) {
+
+        ForkJoinPool.commonPool().execute(() -> callback.accept(new ParTask(level).compute()));
+    }
+
+    static class ParTask extends RecursiveTask<Integer> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int level;
+
+        ParTask(int level) {
+            this.level = level;
+        }
+
+        @Override
+        protected Integer compute() {
+            try {
+                return par(LevelData.load(level));
+
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Couldn't solve level " + level + ": " + e);
+                return UNSOLVED;
+            }
+        }
+    }
+
+    /**
+     * Solve levels 1 to maxLevel in parallel.
+     *
+     * @return par values, index = level number
+     */
+    static int[] solveAll(int maxLevel) {
+
+        List<ParTask> tasks = new ArrayList<>();
+        for (int level = 1; level <= maxLevel; level++) {
+            tasks.add(new ParTask(level));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            pool.submit(() -> ParTask.invokeAll(tasks)).join();
+        } finally {
+            pool.shutdown();
+        }
+
+        int[] par = new int[maxLevel + 1];
+        for (int level = 1; level <= maxLevel; level++) {
+            par[level] = tasks.get(level - 1).join();
+        }
+        return par;
+    }
+
+    /**
+     * eist-returns -P: print the par values of all the levels.
+     *
+     * @return process exit code
+     */
+    static int main(String[] args) {
+
+        int maxLevel = args.length > 0 ? Integer.valueOf(args[0]) : 40;
+
+        long startTime = System.nanoTime();
+        int[] par = solveAll(maxLevel);
+
+        int exitCode = 0;
+        for (int level = 1; level <= maxLevel; level++) {
+            System.out.println("Level " + (level < 10 ? "0" : "") + level + ": "
+                    + (par[level] == UNSOLVED ? "unsolved" : "par " + par[level]));
+            if (par[level] == UNSOLVED) {
+                exitCode = 1;
+            }
+        }
+        System.out.println("\nSolved in " + (System.nanoTime() - startTime) / 1000000 + " ms");
+        return exitCode;
+    }
+}
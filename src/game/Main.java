@@ -1,24 +1,26 @@
 package game;
 
 import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
 import javafx.concurrent.Task;
-import javafx.geometry.Point2D;
+import javafx.geometry.Pos;
 import javafx.geometry.Rectangle2D;
 import javafx.scene.Group;
+import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.canvas.*;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.image.ImageView;
+import javafx.scene.input.KeyCode;
+import javafx.scene.layout.VBox;
 
 import javafx.scene.media.MediaPlayer;
 import javafx.scene.paint.Color;
-import javafx.scene.transform.Rotate;
 import javafx.stage.Stage;
 import javafx.scene.image.Image;
 
 import game.Sprites.Player;
 import game.Sprites.Arrow;
-import game.Sprites.Artifact;
-import game.Sprites.Ornament;
-import game.Sprites.Teleport;
 import game.Sprites.Key;
 import game.Sprites.Door;
 import game.Sprites.Ladder;
@@ -27,25 +29,119 @@ import game.Sprites.Exit;
 import game.Sprites.Pad;
 import javafx.stage.StageStyle;
 
-public class Main extends Utils {
-
-    private GraphicsContext gc;
-
-    private final int FRAME_LAST_IDX = 7;
-
-    private final double FRAME_DURATION_ARTIFACT = 135000000;
-    private final double FRAME_DURATION_FALLING = 60000000;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
+public class Main extends Utils {
 
-    private long lastEistFrameChangeTime;
-    private long lastArtifactFrameChangeTime;
-    private long lastFallingFrameChangeTime;
+    /*
+     * Two layers: the static one (the board and whatever changes on events only) is a canvas redrawn when its key
+     * changes; the dynamic one above it holds the animated sprites, drawn by the renderer chosen at startup.
+     */
+    private GraphicsContext staticGc;
+    private SpriteRenderer mSprites;
+
+    /**
+     * Counts the view changes and the atlas swaps, for the static layer key: both call for a redraw.
+     */
+    private int mViewVersion;
+
+    private static final int STATIC_LAYER_KEY_LENGTH = 19;
+    private final int[] mStaticLayerKey = new int[STATIC_LAYER_KEY_LENGTH];
+    private final int[] mDrawnStaticLayerKey = new int[STATIC_LAYER_KEY_LENGTH];
+    private String mDrawnPlayer;
+
+    private static final int DYNAMIC_LAYER_KEY_LENGTH = 16;
+    private final double[] mDynamicLayerKey = new double[DYNAMIC_LAYER_KEY_LENGTH];
+    private final double[] mDrawnDynamicLayerKey = new double[DYNAMIC_LAYER_KEY_LENGTH];
+
+    /*
+     * The objects in view, found again for each layer drawn (see Camera)
+     */
+    private final List<Arrow> mArrowsInView = new ArrayList<>();
+    private final List<Key> mKeysInView = new ArrayList<>();
+    private final List<Door> mDoorsInView = new ArrayList<>();
+    private final SpriteLayer mSpriteLayer = new SpriteLayer();
+
+    /**
+     * While nothing moves, the game loop stops, and wakes up for the next artifact animation frame, the input, or
+     * IDLE_FRAME_NANOS at the latest (the Hall of Fame replies and the dialogs change what the board shows).
+     */
+    private static final long IDLE_FRAME_NANOS = 250000000;
+    private boolean mIdle;
+    private ScheduledExecutorService mIdleExecutor;
+    private ScheduledFuture<?> mIdleWake;
+
+    private GameClock clock;
+
+    /**
+     * The performance overlay canvas, over the dynamic layer; see drawFrameStats().
+     */
+    private GraphicsContext statsGc;
+    private boolean mFrameStatsShown;
 
-    //private double mFps = 0;
+    private AnimationTimer animationTimer;
 
-    private boolean mShowFps = false;
+    /**
+     * Set when started with -R <replay file>: the recording is played instead of taking the player input.
+     */
+    private ReplayPlayer mReplay;
+    private int mReplaySpeed = 1;
+
+    /**
+     * Set when started with --render-bench: the scripted scene gets drawn with both renderers, then the game exits.
+     */
+    private RenderBench mRenderBench;
+
+    /*
+     * Drawn every frame, rebuilt when the value changes
+     */
+    private final CachedText mLevelText = new CachedText(level -> " L " + lvlToString(level));
+    private final CachedText mSelectedLevelText = new CachedText(level -> "LEVEL " + lvlToString(level));
+    private final CachedText mKeysText = new CachedText(String::valueOf);
+    private final CachedText mTurnsText = new CachedText(turns -> "Turns: " + turns);
+    private final CachedText mBestText = new CachedText(best -> best > 0 ? "Best: " + best : "Best: -");
+    private final CachedText mParText = new CachedText(par -> "Par: " + par);
+    private final CachedText mReplayText = new CachedText(
+            value -> "Replay " + (value >> 1) + "x" + ((value & 1) != 0 ? ", end" : ""));
+
+    private static final Color LEVEL_SELECTION_COLOR = Color.color(0, 1, 1, 1);
+    private static final Color PLAYER_COLOR = Color.color(0.5, 1, 0.5, 1);
+
+    /*
+     * The HUD text, drawn from the glyphs of its fonts rasterized at the raster scale (see GlyphAtlas), a run per
+     * text laid out when the text changes
+     */
+    private GlyphAtlas mInfoGlyphs;
+    private GlyphAtlas mSelectionGlyphs;
+    private GlyphAtlas mTurnsGlyphs;
+    private GlyphAtlas mMessageGlyphs;
+    private GlyphAtlas mPlayerGlyphs;
+    private final GlyphRun mSelectedLevelRun = new GlyphRun();
+    private final GlyphRun mLevelRun = new GlyphRun();
+    private final GlyphRun mKeysRun = new GlyphRun();
+    private final GlyphRun mTurnsRun = new GlyphRun();
+    private final GlyphRun mBestRun = new GlyphRun();
+    private final GlyphRun mParRun = new GlyphRun();
+    private final GlyphRun mMessageRun = new GlyphRun();
+    private final GlyphRun mPlayerRun = new GlyphRun();
+
+    /**
+     * mPlayer as the HUD shows it, upper case and shortened; built again when mPlayer changes.
+     */
+    private String mPlayerName;
+    private String mPlayerNameOf;
+    private ProgressBar mSplashProgress;
+    private boolean mFirstFrameDrawn;
 
-    private AnimationTimer animationTimer;
     private boolean mTrackMainWasPlaying;
     private boolean mTrackLevelWasPlaying;
 
@@ -64,8 +160,13 @@ public class Main extends Utils {
             mGameStage.setFullScreen(true);
         }
 
+        /*
+         * The canvases are as big as the window, and the board gets scaled into them (see BoardView); the window
+         * may be resized or go full screen any time.
+         */
         Group root = new Group();
-        Scene mScene = new Scene(root, mSceneWidth, mSceneHeight);
+        Scene mScene = new Scene(root, BoardView.windowWidth(mDimensionDivider),
+                BoardView.windowHeight(mDimensionDivider), Color.BLACK);
         mGameStage.setScene(mScene);
 
         mGameStage.setOnCloseRequest(event -> {
@@ -76,149 +177,159 @@ public class Main extends Utils {
             }
         });
 
-        Canvas canvas = new Canvas(mSceneWidth, mSceneHeight);
-        root.getChildren().add(canvas);
-        gc = canvas.getGraphicsContext2D();
+        List<String> args = getParameters().getRaw();
+        String renderer = option(args, "--renderer");
+        int benchArg = args.indexOf("--render-bench");
+        if (benchArg >= 0) {
+            mRenderBench = RenderBench.parse(args.subList(benchArg + 1, args.size()).toArray(new String[0]), renderer);
+            renderer = mRenderBench.getRenderer();
+        }
+
+        Canvas staticCanvas = new Canvas(mScene.getWidth(), mScene.getHeight());
+        mSprites = SpriteRenderer.create(renderer, mView);
+        Canvas statsCanvas = new Canvas(mScene.getWidth(), mScene.getHeight());
+        root.getChildren().addAll(staticCanvas, mSprites.getNode(), statsCanvas);
+        staticGc = staticCanvas.getGraphicsContext2D();
+        statsGc = statsCanvas.getGraphicsContext2D();
 
-        initializeFonts();
+        fitView(mScene.getWidth(), mScene.getHeight(), mGameStage.getOutputScaleX());
+        mView.apply(staticGc);
+        mSprites.resize(mScene.getWidth(), mScene.getHeight());
+        mScene.widthProperty().addListener((observable, oldValue, newValue) -> onWindowResized(mScene));
+        mScene.heightProperty().addListener((observable, oldValue, newValue) -> onWindowResized(mScene));
+        mGameStage.outputScaleXProperty().addListener((observable, oldValue, newValue) -> onWindowResized(mScene));
 
-        gc.setFont(infoFont);
+        initializeFonts();
 
         eist = new Player();
         ladder = new Ladder();
         exit = new Exit();
         pad = new Pad();
 
-        loadCommonGraphics();
-
-        mSelectedLevel = prefs.getInt("achieved", 1);
-
-        loadLevel(mCurrentLevel);
+        state = new GameState(mTickRate, eist, ladder, exit);
+        state.setDimensions(mGridDimension, mDetectionOffset, mRotationRadius);
+        state.setTerrain((x, y) -> mWalkability.isVoid(x, y));
+        state.setListener(this::onGameEvent);
 
-        mScene.setOnMouseClicked(this::handleMouseEvent);
+        initializeButtons();
 
-        mScene.setOnKeyPressed(event -> {
-            switch (event.getCode()) {
-                case F:
-                    mFullSpeed = !mFullSpeed;
-                    prefs.putBoolean("fspeed", mFullSpeed);
-                    setSpeed(mCurrentLevel);
-                    break;
-                case C:
-                    if (!mPlayer.isEmpty() && !mPass.isEmpty() && !mDevMode) {
-                        updateHallScore(mPlayer, mPass, false);
-                    }
-                    break;
-                case A:
-                    if(mCurrentLevel > 0) {
-                        pad.setSelection(DIR_LEFT);
-                        eist.isMoving = true;
-                    }
-                    break;
-                case W:
-                    if(mCurrentLevel > 0) {
-                        pad.setSelection(DIR_UP);
-                        eist.isMoving = true;
-                    }
-                    break;
-                case S:
-                    if(mCurrentLevel > 0) {
-                        pad.setSelection(DIR_DOWN);
-                        eist.isMoving = true;
-                    }
-                    break;
-                case D:
-                    if(mCurrentLevel > 0) {
-                        pad.setSelection(DIR_RIGHT);
-                        eist.isMoving = true;
-                    }
-                    break;
-                case X:
-                    if(mCurrentLevel > 0) {
-                        pad.setSelection(DIR_CLEAR);
-                        eist.isMoving = true;
-                    }
-                    break;
+        mSelectedLevel = prefs.getInt("achieved", 1);
 
-                case ESCAPE:
-                    gameExit(true);
-                    break;
-                default:
-                    break;
+        if (args.size() > 1 && (args.get(0).equalsIgnoreCase("-R") || args.get(0).equalsIgnoreCase("--replay"))) {
+            try {
+                mReplay = ReplayPlayer.read(new File(args.get(1)));
+                mReplaying = true;
+                mCurrentLevel = mReplay.getLevel();
+            } catch (IOException e) {
+                System.out.println("Couldn't play " + args.get(1) + ": " + e.getMessage());
             }
-        });
+        }
+        if (mRenderBench != null) {
+            /*
+             * Nothing but the scene: no input, no sounds
+             */
+            mCurrentLevel = mRenderBench.getLevel();
+            mMuteMusic = true;
+            mMuteSound = true;
+        }
 
-        lastEistFrameChangeTime = System.nanoTime();
-        lastArtifactFrameChangeTime = System.nanoTime();
-        lastFallingFrameChangeTime = System.nanoTime();
+        /*
+         * The assets load in the background while the splash shows the progress. The game starts as soon as the
+         * first frame can be drawn, and takes the input once the rest (music, sounds, menu bitmaps) is in too.
+         * A replay plays the sounds without any input, so it waits for all of it; so does the render bench, not to
+         * be measured while loading.
+         */
+        Node splash = createSplash();
+        root.getChildren().add(splash);
+
+        AssetLoader loader = new AssetLoader();
+        loader.setProgressListener(() -> Platform.runLater(() -> mSplashProgress.setProgress(loader.getProgress())));
+        queueCommonAssets(loader);
+        loader.start();
+
+        int startGroup = mReplay != null || mRenderBench != null
+                ? AssetLoader.GROUP_LATER : AssetLoader.GROUP_FIRST_FRAME;
+        loader.whenLoaded(startGroup, () -> Platform.runLater(() -> {
+            root.getChildren().remove(splash);
+            startGame();
+            if (mRenderBench == null) {
+                loader.whenLoaded(AssetLoader.GROUP_LATER, () -> Platform.runLater(() -> enableInput(mScene)));
+            }
+        }));
 
-        animationTimer = new AnimationTimer() {
-            @Override
-            public void handle(long now) {
+        mGameStage.show();
+    }
 
-                if (now - lastEistFrameChangeTime > mFrameDurationEist && eist.isMoving) {
-                    lastEistFrameChangeTime = now;
-                    mCurrentEistFrame++;
+    /**
+     * The splash image centered on the screen, with the loading progress below.
+     */
+    private Node createSplash() {
 
-                    if (mCurrentEistFrame > FRAME_LAST_IDX) {
-                        mCurrentEistFrame = 0;
-                    }
-                }
+        Rectangle2D board = mView.getArea();
 
-                if (now - lastArtifactFrameChangeTime > FRAME_DURATION_ARTIFACT) {
-                    lastArtifactFrameChangeTime = now;
-                    mCurrentArtifactFrame++;
+        ImageView image = new ImageView(new Image(ClassLoader.getSystemResource("images/common/splash.png").toExternalForm()));
+        image.setPreserveRatio(true);
+        image.setFitWidth(Math.min(board.getWidth() * 0.75, image.getImage().getWidth()));
 
-                    if (mCurrentArtifactFrame > FRAME_LAST_IDX) {
-                        mCurrentArtifactFrame = 0;
-                    }
-                }
+        mSplashProgress = new ProgressBar(0);
+        mSplashProgress.setPrefWidth(image.getFitWidth() / 2);
 
-                /*
-                Count falldown frames (only once, 0 to 7th frame);
-                (mCurrentFallingFrame != null) means: falldown animation in progress
-                */
-                if (mCurrentFallingFrame != null && now - lastFallingFrameChangeTime > FRAME_DURATION_FALLING) {
-                    lastFallingFrameChangeTime = now;
+        VBox splash = new VBox(mGridDimension * mView.getScale(), image, mSplashProgress);
+        splash.setAlignment(Pos.CENTER);
+        splash.setLayoutX(board.getMinX());
+        splash.setLayoutY(board.getMinY());
+        splash.setPrefSize(board.getWidth(), board.getHeight());
+        return splash;
+    }
 
-                    if (mCurrentFallingFrame < 8) {
+    /**
+     * The assets for the first frame are in: load the level and start the game loop.
+     */
+    private void startGame() {
 
-                        mCurrentFallingFrame++;
+        loadLevel(mCurrentLevel);
 
-                    } else {
+        if (mReplay != null) {
+            mReplay.attach(state);
+            mReplay.setPadListener(selection -> pad.setSelection(selection));
+        }
 
-                        /*
-                        Falldown finished
-                         */
-                        mCurrentFallingFrame = null;
+        clock = new GameClock(mTickRate);
 
-                        if (mCurrentLevel > 0 && !mMuteSound) {
-                            fxLevelLost.setBalance(calculateBalance(eist.x));
-                            fxLevelLost.play();
-                        }
+        animationTimer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
 
-                        loadLevel(mCurrentLevel);
-                    }
+                /*
+                 * Run as many fixed simulation ticks as the time elapsed since the previous frame demands,
+                 * then draw once, whatever changed. On 120/144 Hz displays most frames run a single tick or none.
+                 */
+                if (mRenderBench != null && !startRenderBenchFrame(now)) {
+                    return;
                 }
+                mFrameStats.frameStart(now);
+                runTicks(now);
+                mFrameStats.updateEnd(clock.getTicksThisFrame());
+
+                GameEvents.Render renderEvent = GameEvents.beginRender();
+                drawBoard(clock.getAlpha(), renderEvent);
+                mFrameStats.addDrawImages(mAtlas.takeDrawCount());
+                if (renderEvent != null && renderEvent.shouldCommit()) {
+                    renderEvent.level = mCurrentLevel;
+                    renderEvent.drawImages = mFrameStats.getDrawImages();
+                    renderEvent.commit();
+                }
+                mFrameStats.frameEnd(true);
+                drawFrameStats();
 
-                updateBoard();
-
-                drawBoard();
-
-                /*
-                if (lastUpdate > 0) {
-                    long nanosElapsed = now - lastUpdate;
-                    double frameRate = 1000000000.0 / nanosElapsed;
-                    index %= frameRates.length;
-                    frameRates[index++] = frameRate;
+                if (!mFirstFrameDrawn) {
+                    mFirstFrameDrawn = true;
+                    System.out.println("Time to first frame: " + ManagementFactory.getRuntimeMXBean().getUptime() + " ms");
                 }
-                lastUpdate = now;
-                */
-                /*
-                 * Possibly binding the animation speed to current FPS value is unnecessary in JavaFX...
-                 */
-                //mFps = getAverageFPS();
 
+                if (isIdle()) {
+                    enterIdle();
+                }
             }
         };
         animationTimer.start();
@@ -255,11 +366,238 @@ public class Main extends Utils {
                 if (mTrackLevelWasPlaying) {
                     trackLevelPlayer.play();
                 }
+                clock.reset();
+                mFrameStats.pause();
+                mIdle = false;
                 animationTimer.start();
             }
         });
+    }
 
-        mGameStage.show();
+    /**
+     * @param now the AnimationTimer.handle() value, or System.nanoTime(): the same time base
+     */
+    private void runTicks(long now) {
+
+        clock.advance(now);
+        while (clock.nextTick()) {
+            GameEvents.Tick tickEvent = GameEvents.beginTick();
+            if (mReplay != null) {
+                for (int i = 0; i < mReplaySpeed; i++) {
+                    mReplay.advance();
+                }
+            } else {
+                state.tick();
+            }
+            if (tickEvent != null && tickEvent.shouldCommit()) {
+                tickEvent.level = mCurrentLevel;
+                tickEvent.tick = state.getTicks();
+                tickEvent.replay = mReplay != null;
+                tickEvent.commit();
+            }
+        }
+    }
+
+    /**
+     * @return true if nothing on the board moves but the artifact animation: Eist standing still (the menu, before
+     *         the first click, or after the exit), no replay playing, no performance overlay to refresh
+     */
+    private boolean isIdle() {
+        return !eist.isMoving && !state.isFalling() && eist.rotation == 0
+                && (mReplay == null || mReplay.isFinished()) && mRenderBench == null && !mFrameStats.isVisible();
+    }
+
+    /**
+     * Stop the game loop until the next artifact animation frame is due. The simulation time stops with it, and
+     * gets caught up with on wake().
+     */
+    private void enterIdle() {
+
+        animationTimer.stop();
+        mFrameStats.pause();
+        mIdle = true;
+
+        long wait = IDLE_FRAME_NANOS;
+        if (mArtifacts.size() > 0 || mOrnaments.size() > 0 || mTeleports.size() > 0) {
+            wait = Math.min(wait, clock.getNanosUntil(state.getNanosToArtifactFrame()));
+        }
+        if (mIdleExecutor == null) {
+            mIdleExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "idle-wake");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        if (mIdleWake != null) {
+            mIdleWake.cancel(false);
+        }
+        mIdleWake = mIdleExecutor.schedule(() -> Platform.runLater(this::wake), wait, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Restart the game loop if idle. The ticks of the idle time run first, so that the input that woke the loop up
+     * comes at the tick it would have without the idling, and the simulation keeps the same pace.
+     */
+    private void wake() {
+
+        if (!mIdle) {
+            return;
+        }
+        mIdle = false;
+        mIdleWake.cancel(false);
+        if (mGameStage.isIconified()) {
+            // Started again when restored
+            return;
+        }
+        clock.catchUp();
+        runTicks(System.nanoTime());
+        animationTimer.start();
+    }
+
+    /**
+     * The window got resized, went full screen or back, or to a screen of another output scale: the canvases follow,
+     * and the board gets scaled anew. The game goes on as it was; the sprites get rasterized for the new size in the
+     * background (see rasterizeAtlas()), and are drawn resampled until then.
+     */
+    private void onWindowResized(Scene scene) {
+
+        double width = scene.getWidth();
+        double height = scene.getHeight();
+        for (GraphicsContext context : new GraphicsContext[]{staticGc, statsGc}) {
+            context.getCanvas().setWidth(width);
+            context.getCanvas().setHeight(height);
+            context.setTransform(1, 0, 0, 1, 0, 0);
+            context.clearRect(0, 0, width, height);
+        }
+        fitView(width, height, mGameStage.getOutputScaleX());
+        mView.apply(staticGc);
+        mSprites.resize(width, height);
+        mFrameStatsShown = false;
+        mViewVersion++;
+
+        rasterizeAtlas();
+        wake();
+    }
+
+    /**
+     * A render bench frame starts: switch to the renderer it asks for, or exit once it is over.
+     *
+     * @return false if the frame shouldn't be drawn
+     */
+    private boolean startRenderBenchFrame(long now) {
+
+        mRenderBench.frameStart(now);
+        if (mRenderBench.isFinished()) {
+            animationTimer.stop();
+            mGameStage.close();
+            Platform.exit();
+            return false;
+        }
+        if (!mRenderBench.getRenderer().equals(mSprites.getName())) {
+            Group root = (Group) mGameStage.getScene().getRoot();
+            SpriteRenderer renderer = SpriteRenderer.create(mRenderBench.getRenderer(), mView);
+            root.getChildren().set(root.getChildren().indexOf(mSprites.getNode()), renderer.getNode());
+            renderer.resize(mGameStage.getScene().getWidth(), mGameStage.getScene().getHeight());
+            mSprites = renderer;
+        }
+        return true;
+    }
+
+    @Override
+    void onAtlasChanged() {
+        mViewVersion++;
+        wake();
+    }
+
+    @Override
+    void onBoardTilesLoaded() {
+        wake();
+    }
+
+    /**
+     * All the assets are in: take the player input.
+     */
+    private void enableInput(Scene scene) {
+
+        scene.setOnMouseClicked(event -> {
+            wake();
+            if (mReplay == null) {
+                handleMouseEvent(event);
+            }
+        });
+
+        scene.setOnKeyPressed(event -> {
+            wake();
+            if (handleFrameStatsKey(event.getCode())) {
+                return;
+            }
+            if (event.getCode() == KeyCode.F11) {
+                mGameStage.setFullScreen(!mGameStage.isFullScreen());
+                return;
+            }
+            if (mReplay != null) {
+                handleReplayKey(event.getCode());
+                return;
+            }
+            switch (event.getCode()) {
+                case F:
+                    mFullSpeed = !mFullSpeed;
+                    prefs.putBoolean("fspeed", mFullSpeed);
+                    setSpeed(mCurrentLevel);
+                    break;
+                case C:
+                    if (!mPlayer.isEmpty() && !mPass.isEmpty() && !mDevMode) {
+                        updateHallScore(mPlayer, mPass, false);
+                    }
+                    break;
+                case A:
+                    if(mCurrentLevel > 0) {
+                        pad.setSelection(DIR_LEFT);
+                        state.selectPad(DIR_LEFT);
+                    }
+                    break;
+                case W:
+                    if(mCurrentLevel > 0) {
+                        pad.setSelection(DIR_UP);
+                        state.selectPad(DIR_UP);
+                    }
+                    break;
+                case S:
+                    if(mCurrentLevel > 0) {
+                        pad.setSelection(DIR_DOWN);
+                        state.selectPad(DIR_DOWN);
+                    }
+                    break;
+                case D:
+                    if(mCurrentLevel > 0) {
+                        pad.setSelection(DIR_RIGHT);
+                        state.selectPad(DIR_RIGHT);
+                    }
+                    break;
+                case X:
+                    if(mCurrentLevel > 0) {
+                        pad.setSelection(DIR_CLEAR);
+                        state.selectPad(DIR_CLEAR);
+                    }
+                    break;
+
+                case ESCAPE:
+                    gameExit(true);
+                    break;
+                default:
+                    break;
+            }
+        });
+
+        /*
+         * The level 0 music didn't get started if it wasn't loaded yet
+         */
+        if (mCurrentLevel == 0 && trackMainPlayer != null && !mMuteMusic
+                && !trackMainPlayer.getStatus().equals(MediaPlayer.Status.PLAYING)) {
+            trackMainPlayer.play();
+        }
+
+        System.out.println("Time to interactive: " + ManagementFactory.getRuntimeMXBean().getUptime() + " ms");
 
         mPlayer = prefs.get("user", "");
         mPass = prefs.get("pass", "");
@@ -290,239 +628,356 @@ public class Main extends Utils {
         }
     }
 
-    private void drawBoard() {
-
-        gc.clearRect(0, 0, mSceneWidth, mSceneHeight);
-
-        gc.drawImage(mBoardImg, 0, 0, mSceneWidth, mSceneHeight);
-
-        /*
-         * On level0 switch intro messages
-         */
-        if (mCurrentLevel == 0) {
-
-            switch (mArtifacts.size()) {
-                case 3:
-                    gc.drawImage(mIntro01, 0, 0, mSceneWidth, mSceneHeight);
-                    break;
-                case 2:
-                    gc.drawImage(mIntro02, 0, 0, mSceneWidth, mSceneHeight);
-                    break;
-                case 1:
-                    gc.drawImage(mIntro03, 0, 0, mSceneWidth, mSceneHeight);
-                    break;
-                case 0:
-                    gc.drawImage(mIntro04, 0, 0, mSceneWidth, mSceneHeight);
-                    break;
-            }
-            String lvlNumberToString = (mSelectedLevel < 10) ? "0" + String.valueOf(mSelectedLevel) : String.valueOf(mSelectedLevel);
-            gc.setFont(infoFont);
-            gc.setFill(Color.color(0, 1, 1, 1));
-            gc.fillText("LEVEL " + lvlNumberToString, columns[27], rows[1] + mHalfGridDimension);
-        } else {
-
-            gc.drawImage(mBoardImg, 0, 0, mSceneWidth, mSceneHeight);
-        }
+    /**
+     * Sounds and level switching triggered by the game rules (see GameState).
+     */
+    private void onGameEvent(int event, double x) {
 
-        if (mMuteMusic) {
-            gc.drawImage(mMutedMusicImg, columns[30], rows[11], mGridDimension, mGridDimension);
-        }
-        if (mMuteSound) {
-            gc.drawImage(mMutedSoundImg, columns[30], rows[13], mGridDimension, mGridDimension);
+        if (mReplay != null && mReplay.isSeeking()) {
+            return;
         }
 
-        /*
-         * Switch the Eists source graphics according to the movement direction. It could have been just rotated,
-         * but I wanted the light to always come from the right side. Oh, ok: almost always. The bitmap will need
-         * rotation while turning, and sometimes while falling down. Missing chiaroscuro should be unnoticeable.
-         */
-        switch (eist.getDirection()) {
-            case DIR_RIGHT:
-                mEistImg = mEistRightImg;
+        switch (event) {
+            case GameState.EVENT_ARTIFACT:
+                if (mCurrentLevel > 0 && !mMuteSound) {
+                    fxArtifact.setBalance(calculateBalance(x));
+                    fxArtifact.play();
+                }
                 break;
 
-            case DIR_DOWN:
-                mEistImg = mEistDownImg;
+            case GameState.EVENT_EXIT_OPEN:
+                if (mCurrentLevel > 0 && !mMuteSound) {
+                    fxExit.play();
+                }
+                /*
+                 * Loaded when the level started already, unless evicted meanwhile (or the user level files changed)
+                 */
+                if (mCurrentLevel > 0) {
+                    prefetchLevel(mCurrentLevel + 1);
+                }
                 break;
 
-            case DIR_LEFT:
-                mEistImg = mEistLeftImg;
+            case GameState.EVENT_TELEPORT:
+                if (mCurrentLevel > 0 && !mMuteSound) {
+                    fxTeleport.setBalance(calculateBalance(x));
+                    fxTeleport.play();
+                }
                 break;
 
-            case DIR_UP:
-                mEistImg = mEistUpImg;
+            case GameState.EVENT_KEY:
+                if (mCurrentLevel > 0 && !mMuteSound) {
+                    fxKey.setBalance(calculateBalance(x));
+                    fxKey.play();
+                }
                 break;
 
-            default:
+            case GameState.EVENT_DOOR_OPEN:
+                if (mCurrentLevel > 0 && !mMuteSound) {
+                    fxDoor.setBalance(calculateBalance(x));
+                    fxDoor.play();
+                }
                 break;
-        }
-
-        /*
-         * Draw arrows
-         */
-        if (mArrows != null && mArrows.size() > 0) {
-
-            for (Arrow arrow : mArrows) {
 
-                Image image;
-                switch (arrow.getDirection()) {
-                    case DIR_RIGHT:
-                        image = mArrowRightImg;
-                        break;
-                    case DIR_DOWN:
-                        image = mArrowDownImg;
-                        break;
-                    case DIR_LEFT:
-                        image = mArrowLeftImg;
-                        break;
-                    case DIR_UP:
-                        image = mArrowUpImg;
-                        break;
-                    default:
-                        image = null;
+            case GameState.EVENT_DOOR_BOUNCE:
+                if (mCurrentLevel > 0 && !mMuteSound) {
+                    fxBounce.setBalance(calculateBalance(x));
+                    fxBounce.play();
                 }
-                gc.drawImage(image, arrow.getPosX(), arrow.getPosY(), mFrameDimension, mFrameDimension);
-
-                if (arrow.getArea().contains(eist.getCenter())) {
+                break;
 
-                    reactToArrow(arrow);
+            case GameState.EVENT_FALL_END:
+                if (mCurrentLevel > 0 && !mMuteSound) {
+                    fxLevelLost.setBalance(calculateBalance(x));
+                    fxLevelLost.play();
+                }
+                if (mReplay != null) {
                     break;
                 }
-            }
-        }
+                saveReplay(ReplayRecorder.END_FELL);
+                resetLevel();
+                break;
 
-        /*
-         * Draw artifacts
-         */
-        if (mArtifactImg != null && mArtifacts.size() > 0) {
+            case GameState.EVENT_EXIT_REACHED:
+                // Eist stays in the exit until the next level is in
+                if (mSwitchingLevel) {
+                    break;
+                }
+                if (mReplay != null) {
+                    if (!mMuteSound) {
+                        fxLevelUp.play();
+                    }
+                    break;
+                }
+                saveReplay(ReplayRecorder.END_EXIT);
 
-            for (Artifact artifact : mArtifacts) {
+                prefs.putInt(lvlToString(mCurrentLevel) + "best", state.getTurns());
+                mResultsChanged = true;
 
-                gc.drawImage(mArtifactImg, 160 * mCurrentArtifactFrame, 0, 160, 160, artifact.getPosX(), artifact.getPosY(), mFrameDimension, mFrameDimension);
+                if (mCurrentLevel + 1 < MAX_LEVEL) {
+                    mCurrentLevel++;
+                } else {
+                    mGameFinished = true;
+                    mCurrentLevel = 0;
+                }
 
-                if (artifact.getArea().contains(eist.getCenter())) {
+                if (mCurrentLevel > mAchievedLevel && !mDevMode) {
+                    prefs.putInt("achieved", mCurrentLevel);
+                    mAchievedLevel = mCurrentLevel;
+                }
+                if (!mPlayer.isEmpty() && !mPass.isEmpty() && !mDevMode) {
+                    updateHallScore(mPlayer, mPass, false);
+                }
+                prefs.putInt("level", mCurrentLevel);
 
-                    mArtifacts.remove(artifact);
+                if (mCurrentLevel > 0 && !mMuteSound) {
+                    fxLevelUp.play();
+                }
 
-                    if (mCurrentLevel > 0) {
+                switchLevel(mCurrentLevel);
+                break;
 
-                        if (mArtifacts.size() > 0) {
+            default:
+                break;
+        }
+    }
 
-                            if (!mMuteSound) {
-                                fxArtifact.setBalance(calculateBalance(eist.x));
-                                fxArtifact.play();
-                            }
+    /**
+     * Replay controls: 1 - 5 for 1x to 16x speed, left / right arrow to seek 10 seconds back / forth.
+     */
+    private void handleReplayKey(KeyCode code) {
 
-                        } else {
+        long seekTicks = 10L * mReplay.getTickRate();
 
-                            if (!mMuteSound) {
-                                fxExit.play();
-                            }
-                        }
-                    }
-                    break;
-                }
-            }
+        switch (code) {
+            case DIGIT1:
+            case DIGIT2:
+            case DIGIT3:
+            case DIGIT4:
+            case DIGIT5:
+                mReplaySpeed = 1 << (code.ordinal() - KeyCode.DIGIT1.ordinal());
+                break;
+            case LEFT:
+                mReplay.seek(state.getTicks() - seekTicks);
+                break;
+            case RIGHT:
+                mReplay.seek(state.getTicks() + seekTicks);
+                break;
+            case ESCAPE:
+                mGameStage.close();
+                Platform.exit();
+                break;
+            default:
+                break;
         }
+    }
 
-        /*
-         * Draw ornaments
-         */
-        if (mOrnamentImg != null && mOrnaments.size() > 0) {
-
-            for (Ornament ornament : mOrnaments) {
+    /**
+     * Redraw the layers whose content changed since they were drawn, if any.
+     *
+     * @param alpha how far between the previous and the current simulation tick we are; used to interpolate
+     *              Eist's position, so that the movement stays smooth whatever the display refresh rate.
+     * @param event gets the layers redrawn; null while no recording takes it
+     */
+    private void drawBoard(double alpha, GameEvents.Render event) {
+
+        mCamera.follow(eist.getRenderX(alpha) + mGridDimension, eist.getRenderY(alpha) + mGridDimension,
+                mView.getScale());
+
+        boolean staticLayer = staticLayerChanged();
+        if (staticLayer) {
+            drawStaticLayer();
+        }
+        boolean dynamicLayer = mRenderBench != null || dynamicLayerChanged(alpha);
+        if (dynamicLayer) {
+            drawDynamicLayer(alpha);
+        }
+        if (event != null) {
+            event.staticLayer = staticLayer;
+            event.dynamicLayer = dynamicLayer;
+        }
+    }
 
-                gc.drawImage(mOrnamentImg, 160 * mCurrentArtifactFrame, 0, 160, 160, ornament.getPosX(), ornament.getPosY(), mFrameDimension, mFrameDimension);
-            }
+    /**
+     * Fill the key of what the static layer shows, and compare it with the one drawn.
+     *
+     * @return true if the static layer needs to be redrawn
+     */
+    private boolean staticLayerChanged() {
+
+        int[] key = mStaticLayerKey;
+        int idx = 0;
+        key[idx++] = mLevelLoadCount;
+        key[idx++] = mViewVersion;
+        key[idx++] = mCurrentLevel;
+        key[idx++] = mSelectedLevel;
+        key[idx++] = mArrows.getVersion();
+        key[idx++] = mKeys.getVersion();
+        key[idx++] = mDoors.getVersion();
+        key[idx++] = mArtifacts.size(); // Exit open, level 0 intro
+        key[idx++] = ladder.getSlotIdx() != null ? ladder.getSlotIdx() : -1;
+        key[idx++] = eist.isMoving && pad.getSelection() != null ? pad.getSelection() : -1;
+        key[idx++] = eist.getKeys();
+        key[idx++] = state.getTurns();
+        key[idx++] = mTurnsBest;
+        key[idx++] = mPar;
+        key[idx++] = (mMuteMusic ? 1 : 0) | (mMuteSound ? 2 : 0) | (mFullSpeed ? 4 : 0) | (mDevMode ? 8 : 0);
+        key[idx++] = (int) Math.round(mCamera.getX() * mView.getScale());
+        key[idx++] = (int) Math.round(mCamera.getY() * mView.getScale());
+        key[idx++] = mBoardTiles != null ? mBoardTiles.getVersion() : -1;
+        key[idx] = mReplay != null ? mReplaySpeed << 1 | (mReplay.isFinished() ? 1 : 0) : -1;
+
+        if (Arrays.equals(key, mDrawnStaticLayerKey) && mPlayer.equals(mDrawnPlayer)) {
+            return false;
         }
+        System.arraycopy(key, 0, mDrawnStaticLayerKey, 0, key.length);
+        mDrawnPlayer = mPlayer;
+        return true;
+    }
 
-        /*
-         * Draw teleports
-         */
-        if (mTeleportImg != null && mTeleports.size() > 0) {
+    /**
+     * Fill the key of what the dynamic layer shows, and compare it with the one drawn. The artifacts, ornaments and
+     * teleports stay where they are, only their count changes.
+     *
+     * @return true if the dynamic layer needs to be redrawn
+     */
+    private boolean dynamicLayerChanged(double alpha) {
+
+        double[] key = mDynamicLayerKey;
+        int idx = 0;
+        key[idx++] = mLevelLoadCount;
+        key[idx++] = mViewVersion;
+        key[idx++] = state.getArtifactFrame();
+        key[idx++] = mArtifacts.size();
+        key[idx++] = mOrnaments.size();
+        key[idx++] = mTeleports.size();
+        key[idx++] = eist.getDirection();
+        key[idx++] = state.getEistFrame();
+        key[idx++] = eist.getRenderX(alpha);
+        key[idx++] = eist.getRenderY(alpha);
+        key[idx++] = eist.rotation;
+        key[idx++] = state.getFallingFrame();
+        key[idx++] = eist.isMoving ? 1 : 0;
+        key[idx++] = mCamera.getX();
+        key[idx++] = mCamera.getY();
+        key[idx] = System.identityHashCode(mSprites);
+
+        if (Arrays.equals(key, mDrawnDynamicLayerKey)) {
+            return false;
+        }
+        System.arraycopy(key, 0, mDrawnDynamicLayerKey, 0, key.length);
+        return true;
+    }
 
-            for (Teleport teleport : mTeleports) {
+    /**
+     * The board and whatever changes on events only: arrows, keys, slots, doors, ladder, exit, pad and the HUD.
+     */
+    private void drawStaticLayer() {
 
-                gc.drawImage(mTeleportImg, 160 * mCurrentArtifactFrame, 0, 160, 160, teleport.getPosX(), teleport.getPosY(), mFrameDimension, mFrameDimension);
+        GraphicsContext gc = staticGc;
+        updateGlyphs();
+        double pixels = mView.getScale();
+        int glyphDraws = 0;
 
-                if (teleport.getArea().contains(eist.getCenter())) {
+        /*
+         * The playfield: the board and the objects on it, those in view only (see Camera); scrolled, and cut at the
+         * menu on a board.dat board
+         */
+        double viewX = mCamera.getX();
+        double viewY = mCamera.getY();
+        double viewMaxX = viewX + mCamera.getWidth();
+        double viewMaxY = viewY + mCamera.getHeight();
+
+        gc.save();
+        if (mCamera.isSized()) {
+            gc.beginPath();
+            gc.rect(0, 0, mCamera.getWidth(), mCamera.getHeight());
+            gc.clip();
+            // Around a board smaller than the playfield
+            gc.setFill(Color.BLACK);
+            gc.fillRect(0, 0, mCamera.getWidth(), mCamera.getHeight());
+        }
+        mView.apply(gc, 1, 0, 0, 1, -viewX, -viewY);
 
-                    if (mCurrentLevel > 0 && !mMuteSound) {
-                        fxTeleport.setBalance(calculateBalance(eist.x));
-                        fxTeleport.play();
-                    }
+        if (mBoardTiles != null) {
+            mFrameStats.addDrawImages(mBoardTiles.draw(gc, viewX, viewY, viewMaxX, viewMaxY));
+        } else {
+            gc.drawImage(mBoardImg, 0, 0, mSceneWidth, mSceneHeight);
+            mFrameStats.addDrawImages(1);
+        }
 
-                    if (mTeleports.indexOf(teleport) == 0) {
-                        switch (eist.getDirection()) {
-                            case DIR_RIGHT:
-                                eist.x = mTeleports.get(1).getPosX() + mGridDimension;
-                                eist.y = mTeleports.get(1).getPosY();
-                                break;
-
-                            case DIR_LEFT:
-                                eist.x = mTeleports.get(1).getPosX() - mGridDimension;
-                                eist.y = mTeleports.get(1).getPosY();
-                                break;
-
-                            case DIR_UP:
-                                eist.x = mTeleports.get(1).getPosX();
-                                eist.y = mTeleports.get(1).getPosY() - mGridDimension;
-                                break;
-
-                            case DIR_DOWN:
-                                eist.x = mTeleports.get(1).getPosX();
-                                eist.y = mTeleports.get(1).getPosY() + mGridDimension;
-                                break;
-                        }
+        /*
+         * On level0 switch intro messages; level0 has a 1920 x 1080 board, not scrolled
+         */
+        if (mCurrentLevel == 0) {
 
-                    } else {
+            switch (mArtifacts.size()) {
+                case 3:
+                    gc.drawImage(mIntro01, 0, 0, mSceneWidth, mSceneHeight);
+                    mFrameStats.addDrawImages(1);
+                    break;
+                case 2:
+                    gc.drawImage(mIntro02, 0, 0, mSceneWidth, mSceneHeight);
+                    mFrameStats.addDrawImages(1);
+                    break;
+                case 1:
+                    gc.drawImage(mIntro03, 0, 0, mSceneWidth, mSceneHeight);
+                    mFrameStats.addDrawImages(1);
+                    break;
+                case 0:
+                    gc.drawImage(mIntro04, 0, 0, mSceneWidth, mSceneHeight);
+                    mFrameStats.addDrawImages(1);
+                    break;
+            }
+            glyphDraws += mSelectedLevelRun.draw(gc, mSelectionGlyphs, mSelectedLevelText.of(mSelectedLevel),
+                    columns[27], rows[1] + mHalfGridDimension, pixels);
+        }
 
-                        switch (eist.getDirection()) {
-                            case DIR_RIGHT:
-                                eist.x = mTeleports.get(0).getPosX() + mGridDimension;
-                                eist.y = mTeleports.get(0).getPosY();
-                                break;
+        /*
+         * The objects whose frame reaches into the view: their areas are a frame's inner square
+         */
+        double minX = viewX - mGridDimension;
+        double minY = viewY - mGridDimension;
+        double maxX = viewMaxX + mGridDimension;
+        double maxY = viewMaxY + mGridDimension;
 
-                            case DIR_LEFT:
-                                eist.x = mTeleports.get(0).getPosX() - mGridDimension;
-                                eist.y = mTeleports.get(0).getPosY();
-                                break;
+        /*
+         * Draw arrows
+         */
+        if (mArrows != null && mArrows.allIntersecting(minX, minY, maxX, maxY, mArrowsInView) > 0) {
 
-                            case DIR_UP:
-                                eist.x = mTeleports.get(0).getPosX();
-                                eist.y = mTeleports.get(0).getPosY() - mGridDimension;
-                                break;
+            for (int i = 0; i < mArrowsInView.size(); i++) {
+                Arrow arrow = mArrowsInView.get(i);
 
-                            case DIR_DOWN:
-                                eist.x = mTeleports.get(0).getPosX();
-                                eist.y = mTeleports.get(0).getPosY() + mGridDimension;
-                                break;
-                        }
-                    }
+                int sprite;
+                switch (arrow.getDirection()) {
+                    case DIR_RIGHT:
+                        sprite = SpriteAtlas.ARROW_RIGHT;
+                        break;
+                    case DIR_DOWN:
+                        sprite = SpriteAtlas.ARROW_DOWN;
+                        break;
+                    case DIR_LEFT:
+                        sprite = SpriteAtlas.ARROW_LEFT;
+                        break;
+                    case DIR_UP:
+                        sprite = SpriteAtlas.ARROW_UP;
+                        break;
+                    default:
+                        continue;
                 }
+                mAtlas.draw(gc, sprite, arrow.getPosX(), arrow.getPosY());
             }
         }
 
         /*
          * Draw keys
          */
-        if (mKeyImg != null && mKeys.size() > 0) {
-
-            for (Key key : mKeys) {
-
-                gc.drawImage(mKeyImg, key.getPosX(), key.getPosY(), mFrameDimension, mFrameDimension);
+        if (mKeyImg != null && mKeys.allIntersecting(minX, minY, maxX, maxY, mKeysInView) > 0) {
 
-                if (key.getArea().contains(eist.getCenter())) {
+            for (int i = 0; i < mKeysInView.size(); i++) {
+                Key key = mKeysInView.get(i);
 
-                    if (mCurrentLevel > 0 && !mMuteSound) {
-                        fxKey.setBalance(calculateBalance(eist.x));
-                        fxKey.play();
-                    }
-
-                    mKeys.remove(key);
-                    eist.setKeys(eist.getKeys() + 1);
-                    break;
-                }
+                mAtlas.draw(gc, SpriteAtlas.KEY, key.getPosX(), key.getPosY());
             }
         }
 
@@ -530,11 +985,15 @@ public class Main extends Utils {
          * Draw slots
          */
         if (mSlots != null && mSlots.size() > 0) {
-            for (Slot slot : mSlots) {
+            for (int i = 0; i < mSlots.size(); i++) {
+                Slot slot = mSlots.get(i);
+                if (!mCamera.isVisible(slot.getPosX(), slot.getPosY(), mFrameDimension, mFrameDimension)) {
+                    continue;
+                }
                 if (slot.getOrientation() == ORIENTATION_HORIZONTAL) {
-                    gc.drawImage(mSlotHImg, slot.getPosX(), slot.getPosY(), mGridDimension, mFrameDimension);
+                    mAtlas.draw(gc, SpriteAtlas.SLOT_H, slot.getPosX(), slot.getPosY());
                 } else {
-                    gc.drawImage(mSlotVImg, slot.getPosX(), slot.getPosY(), mFrameDimension, mGridDimension);
+                    mAtlas.draw(gc, SpriteAtlas.SLOT_V, slot.getPosX(), slot.getPosY());
                 }
             }
         }
@@ -542,723 +1001,205 @@ public class Main extends Utils {
         /*
          * Draw doors
          */
-        if (mDoors != null && mDoors.size() > 0) {
-
-            Door doorToRemove = null;
+        if (mDoors != null && mDoors.allIntersecting(minX, minY, maxX, maxY, mDoorsInView) > 0) {
 
-            for (Door door : mDoors) {
+            for (int i = 0; i < mDoorsInView.size(); i++) {
+                Door door = mDoorsInView.get(i);
 
-                Image image;
                 if (door.getOrientation() == ORIENTATION_HORIZONTAL) {
-                    image = mDoorHImg;
+                    mAtlas.draw(gc, SpriteAtlas.DOOR_H, door.getPosX(), door.getPosY());
                 } else {
-                    image = mDoorVImg;
-                }
-                gc.drawImage(image, door.getPosX(), door.getPosY(), mFrameDimension, mFrameDimension);
-
-                if (door.getArea().contains(eist.getCenter())) {
-
-                    if (eist.getKeys() > 0) {
-
-                        if (mCurrentLevel > 0 && !mMuteSound) {
-                            fxDoor.setBalance(calculateBalance(door.getPosX()));
-                            fxDoor.play();
-                        }
-
-                        eist.setKeys(eist.getKeys() - 1);
-                        doorToRemove = door;
-
-                    } else {
-
-                        if (!mDisableDoorReaction) {
-                            reactToDoor(door);
-                        }
-                    }
-                }
-            }
-            if (doorToRemove != null) {
-                mDoors.remove(doorToRemove);
-            }
-            mDisableDoorReaction = false;
-            for (Door door : mDoors) {
-                if (door.getArea().contains(eist.getCenter())) {
-                    mDisableDoorReaction = true;
+                    mAtlas.draw(gc, SpriteAtlas.DOOR_V, door.getPosX(), door.getPosY());
                 }
             }
         }
 
         /*
-         * Draw ladder
+         * Draw ladder, if in a slot
          */
         Integer currentSlotIdx = ladder.getSlotIdx();
         if (currentSlotIdx != null) {
             Slot activeSlot = mSlots.get(currentSlotIdx);
             if (mSlots.get(currentSlotIdx).getOrientation() == 0) {
-                mLadderImg = mLadderHImg;
-                gc.drawImage(mLadderImg, activeSlot.getPosX(), activeSlot.getPosY(), mGridDimension, mFrameDimension);
+                mAtlas.draw(gc, SpriteAtlas.LADDER_H, activeSlot.getPosX(), activeSlot.getPosY());
             } else {
-                mLadderImg = mLadderVImg;
-                gc.drawImage(mLadderImg, activeSlot.getPosX(), activeSlot.getPosY(), mFrameDimension, mGridDimension);
+                mAtlas.draw(gc, SpriteAtlas.LADDER_V, activeSlot.getPosX(), activeSlot.getPosY());
             }
-        } else {
-            mLadderImg = mLadderHImg;
-            gc.drawImage(mLadderImg, columns[29], rows[3], mGridDimension, mFrameDimension);
         }
 
         /*
          * Draw exit
          */
-        if (mArtifacts.size() > 0) {
-            gc.drawImage(mExitClosedImg, exit.getPosX(), exit.getPosY(), mFrameDimension, mFrameDimension);
-
-        } else {
-
-            gc.drawImage(mExitOpenImg, exit.getPosX(), exit.getPosY(), mFrameDimension, mFrameDimension);
-
-            /*
-             * Check if exit reached
-             */
-            if (exit.getArea().contains(eist.getCenter())) {
-
-                /*
-                if (mTurnsCounter < mTurnsBest || mTurnsBest == 0) {
-                    String lvlNumberToString = (mCurrentLevel < 10) ? "0" + String.valueOf(mCurrentLevel) : String.valueOf(mCurrentLevel);
-                    prefs.putInt(lvlNumberToString + "best", mTurnsCounter);
-                    if (mTurnsCounter < mTurnsBest) {
-                        displayNewBestAlert(mTurnsBest, mTurnsCounter);
-                    }
-                }
-                */
-                prefs.putInt(lvlToString(mCurrentLevel) + "best", mTurnsCounter);
-                mResultsChanged = true;
-
-                if (mCurrentLevel + 1 < MAX_LEVEL) {
-                    mCurrentLevel++;
-                } else {
-                    mGameFinished = true;
-                    mCurrentLevel = 0;
-                }
-
-                if (mCurrentLevel > mAchievedLevel && !mDevMode) {
-                    prefs.putInt("achieved", mCurrentLevel);
-                    mAchievedLevel = mCurrentLevel;
-                }
-                if (!mPlayer.isEmpty() && !mPass.isEmpty() && !mDevMode) {
-                    updateHallScore(mPlayer, mPass, false);
-                }
-                prefs.putInt("level", mCurrentLevel);
-
-                mCurrentFallingFrame = 0;
-
-                if (mCurrentLevel > 0 && !mMuteSound) {
-                    fxLevelUp.play();
-                }
-
-                loadLevel(mCurrentLevel);
-            }
-        }
-
-        /*
-         * Draw Eist
-         */
-        if (mCurrentFallingFrame == null) {
-
-            if (eist.rotation != 0) {
-                gc.save();
-                Rotate r = new Rotate(eist.rotation, eist.x + mGridDimension, eist.y + mGridDimension);
-                gc.setTransform(r.getMxx(), r.getMyx(), r.getMxy(), r.getMyy(), r.getTx(), r.getTy());
-                gc.drawImage(mEistImg, 120 * mCurrentEistFrame, 0, 120, 120, eist.x, eist.y, mFrameDimension, mFrameDimension);
-                gc.restore();
-
+        if (mCamera.isVisible(exit.getPosX(), exit.getPosY(), mFrameDimension, mFrameDimension)) {
+            if (mArtifacts.size() > 0) {
+                mAtlas.draw(gc, SpriteAtlas.EXIT_CLOSED, exit.getPosX(), exit.getPosY());
             } else {
-                gc.drawImage(mEistImg, 120 * mCurrentEistFrame, 0, 120, 120, eist.x, eist.y, mFrameDimension, mFrameDimension);
+                mAtlas.draw(gc, SpriteAtlas.EXIT_OPEN, exit.getPosX(), exit.getPosY());
             }
         }
 
-
-        // Detect black pixel below
-        if (mCurrentFallingFrame == null) {
-            try {
-
-                boolean leftOut = pixelReader.getArgb(eist.detectionPoint1X, eist.detectionPoint1Y) == -16777216;
-                boolean rightOut = pixelReader.getArgb(eist.detectionPoint2X, eist.detectionPoint2Y) == -16777216;
-                if (leftOut || rightOut) {
-
-                    // Stepped off the path, start falling...
-                    mCurrentFallingFrame = 0;
-
-                    // Wait! Are we on the ladder?
-                    if (ladder.getSlotIdx() != null) {
-                        if (mSlots.get(ladder.getSlotIdx()).getArea().contains(new Point2D(eist.detectionPoint1X, eist.detectionPoint1Y))
-                                && mSlots.get(ladder.getSlotIdx()).getArea().contains(new Point2D(eist.detectionPoint2X, eist.detectionPoint2Y))) {
-
-                            mCurrentFallingFrame = null;
-                        }
-                    }
-                    // Just left foot off the path
-                    if (leftOut && !rightOut) {
-                        switch (eist.getDirection()) {
-                            case DIR_RIGHT:
-                                eist.y = eist.y - mHalfGridDimension;
-                                break;
-                            case DIR_LEFT:
-                                eist.y = eist.y + mHalfGridDimension;
-                                break;
-                            case DIR_UP:
-                                eist.x = eist.x - mHalfGridDimension;
-                                break;
-                            case DIR_DOWN:
-                                eist.x = eist.x + mHalfGridDimension;
-                                break;
-                        }
-                    }
-                    // Just right foot off the path
-                    if (rightOut && !leftOut) {
-                        switch (eist.getDirection()) {
-                            case DIR_RIGHT:
-                                eist.y = eist.y + mHalfGridDimension;
-                                break;
-                            case DIR_LEFT:
-                                eist.y = eist.y - mHalfGridDimension;
-                                break;
-                            case DIR_UP:
-                                eist.x = eist.x + mHalfGridDimension;
-                                break;
-                            case DIR_DOWN:
-                                eist.x = eist.x - mHalfGridDimension;
-                                break;
-                        }
-                    }
-
-                } else {
-                    mCurrentFallingFrame = null;
-                }
-
-            } catch (Exception e) {
-                e.printStackTrace();
-                eist.isMoving = false;
-            }
-        }
-
-        if (eist.isMoving) {
-
-            if (mCurrentFallingFrame != null) {
-
-                switch (eist.getDirection()) {
-                    case DIR_RIGHT:
-                        gc.drawImage(mEistFallingRightImg, 160 * mCurrentFallingFrame, 0, 160, 160, eist.x, eist.y, mFrameDimension, mFrameDimension);
-                        break;
-
-                    case DIR_DOWN:
-                        gc.drawImage(mEistFallingDownImg, 160 * mCurrentFallingFrame, 0, 160, 160, eist.x, eist.y, mFrameDimension, mFrameDimension);
-                        break;
-
-                    case DIR_LEFT:
-                        gc.drawImage(mEistFallingLeftImg, 160 * mCurrentFallingFrame, 0, 160, 160, eist.x, eist.y, mFrameDimension, mFrameDimension);
-                        break;
-
-                    case DIR_UP:
-                        gc.drawImage(mEistFallingUpImg, 160 * mCurrentFallingFrame, 0, 160, 160, eist.x, eist.y, mFrameDimension, mFrameDimension);
-                        break;
-                }
-            }
-            //gc.setFill(Color.WHITE);
-            //gc.fillOval(eist.detectionPoint1X - 1, eist.detectionPoint1Y - 1, 2, 2);
-            //gc.fillOval(eist.detectionPoint2X - 1, eist.detectionPoint2Y - 1, 2, 2);
+        gc.restore();
 
         /*
-         * Draw game pad selection;
+         * The menu: a part of the board bitmap, but on a board.dat board
          */
-            if (pad.getSelection() != null) {
-
-                Rectangle2D button;
-                Image image;
-                switch (pad.getSelection()) {
-                    case DIR_RIGHT:
-                        button = pad.getButtonRight();
-                        image = mSelRightImg;
-                        break;
-
-                    case DIR_LEFT:
-                        button = pad.getButtonLeft();
-                        image = mSelLeftImg;
-                        break;
-
-                    case DIR_UP:
-                        button = pad.getButtonUp();
-                        image = mSelUpImg;
-                        break;
-
-                    case DIR_DOWN:
-                        button = pad.getButtonDown();
-                        image = mSelDownImg;
-                        break;
-
-                    case DIR_CLEAR:
-                        button = pad.getButtonClear();
-                        image = mSelClearImg;
-                        break;
-
-                    default:
-                        button = pad.getButtonClear();
-                        image = mSelClearImg;
-                        break;
-                }
-                gc.drawImage(image, button.getMinX(), button.getMinY(), button.getWidth(), button.getHeight());
-            }
+        if (mCamera.isSized()) {
+            gc.drawImage(mMenuImg, Camera.PLAYFIELD_WIDTH, 0, mSceneWidth - Camera.PLAYFIELD_WIDTH, mSceneHeight);
+            mFrameStats.addDrawImages(1);
         }
 
-        gc.setFill(Color.WHITE);
-        gc.setFont(infoFont);
-        gc.fillText(" L " + lvlToString(mCurrentLevel), columns[27], rows[12]);
-        gc.drawImage(mKeyImg, columns[26] + mHalfGridDimension, rows[12] + mHalfGridDimension, mFrameDimension, mFrameDimension);
-        gc.fillText(String.valueOf(eist.getKeys()), columns[28], rows[14]);
-        gc.setFont(turnsFont);
-        gc.fillText("Turns: " + mTurnsCounter, columns[27], rows[15]);
-        if (mTurnsBest > 0) {
-            gc.fillText("Best: " + mTurnsBest, columns[27], rows[16]);
-        } else {
-            gc.fillText("Best: -", columns[27], rows[16]);
-        }
-        if (mCurrentLevel > 0 && mFullSpeed) {
-            gc.fillText("Full speed", columns[27], rows[17]);
+        if (mMuteMusic) {
+            mAtlas.draw(gc, SpriteAtlas.MUTED_MUSIC, columns[30], rows[11]);
         }
-        if (mCurrentLevel == 0) {
-            gc.setFill(Color.color(0.5, 1, 0.5, 1));
-            if (!mPlayer.isEmpty()) {
-                gc.setFont(playerFont);
-                String displayName = mPlayer.toUpperCase();
-                if (displayName.length() > 16) {
-                    gc.fillText(displayName.substring(0, 16).toUpperCase() + "...", columns[27], rows[2]);
-                } else {
-                    gc.setFill(Color.color(0.5, 1, 0.5, 1));
-                    gc.fillText(displayName.toUpperCase(), columns[27], rows[2]);
-                }
-            } else {
-                gc.setFont(playerFont);
-                if (!mDevMode) {
-                    gc.fillText("Hall of Fame login", columns[27], rows[2]);
-                } else {
-                    gc.fillText("Developer mode", columns[27], rows[2]);
-                }
-            }
+        if (mMuteSound) {
+            mAtlas.draw(gc, SpriteAtlas.MUTED_SOUND, columns[30], rows[13]);
         }
-    }
 
-    private void updateBoard() {
+        /*
+         * Draw ladder, if not placed yet
+         */
+        if (currentSlotIdx == null) {
+            mAtlas.draw(gc, SpriteAtlas.LADDER_H, columns[29], rows[3]);
+        }
 
         /*
-         * The walkingSpeedPerSecond value depends on the board dimension.
-         * The movement speed depends on it and the current FPS.
+         * Draw game pad selection;
          */
-        if (eist.isMoving) {
-            switch (eist.getDirection()) {
-                case DIR_RIGHT:
-                    eist.x = eist.x + (walkingSpeedPerSecond / 60);
-                    break;
+        if (eist.isMoving && pad.getSelection() != null) {
 
-                case DIR_DOWN:
-                    eist.y = eist.y + (walkingSpeedPerSecond / 60);
+            Rectangle2D button;
+            int sprite;
+            switch (pad.getSelection()) {
+                case DIR_RIGHT:
+                    button = pad.getButtonRight();
+                    sprite = SpriteAtlas.SEL_RIGHT;
                     break;
 
                 case DIR_LEFT:
-                    eist.x = eist.x - (walkingSpeedPerSecond / 60);
+                    button = pad.getButtonLeft();
+                    sprite = SpriteAtlas.SEL_LEFT;
                     break;
 
                 case DIR_UP:
-                    eist.y = eist.y - (walkingSpeedPerSecond / 60);
+                    button = pad.getButtonUp();
+                    sprite = SpriteAtlas.SEL_UP;
                     break;
 
-                default:
+                case DIR_DOWN:
+                    button = pad.getButtonDown();
+                    sprite = SpriteAtlas.SEL_DOWN;
                     break;
-            }
-        }
-        Point2D center = new Point2D(eist.x + mGridDimension, eist.y + mGridDimension);
-        eist.setCenter(center);
-        /*
-         * Calculate points to check if black pixel below (triggers falling down)
-         */
-        switch (eist.getDirection()) {
-            case DIR_RIGHT:
-                eist.detectionPoint1X = (int) center.getX() + mDetectionOffset;
-                eist.detectionPoint1Y = (int) center.getY() - mDetectionOffset;
-                eist.detectionPoint2X = (int) center.getX() + mDetectionOffset;
-                eist.detectionPoint2Y = (int) center.getY() + mDetectionOffset;
-                break;
 
-            case DIR_DOWN:
-                eist.detectionPoint1X = (int) center.getX() + mDetectionOffset;
-                eist.detectionPoint1Y = (int) center.getY() + mDetectionOffset;
-                eist.detectionPoint2X = (int) center.getX() - mDetectionOffset;
-                eist.detectionPoint2Y = (int) center.getY() + mDetectionOffset;
-                break;
-
-            case DIR_LEFT:
-                eist.detectionPoint1X = (int) center.getX() - mDetectionOffset;
-                eist.detectionPoint1Y = (int) center.getY() + mDetectionOffset;
-                eist.detectionPoint2X = (int) center.getX() - mDetectionOffset;
-                eist.detectionPoint2Y = (int) center.getY() - mDetectionOffset;
-                break;
-
-            case DIR_UP:
-                eist.detectionPoint1X = (int) center.getX() - mDetectionOffset;
-                eist.detectionPoint1Y = (int) center.getY() - mDetectionOffset;
-                eist.detectionPoint2X = (int) center.getX() + mDetectionOffset;
-                eist.detectionPoint2Y = (int) center.getY() - mDetectionOffset;
-                break;
-        }
-
-        /*
-         * Rotate Eist on arrows (also on doors in the future).
-         * At the end of the maneuver - place him exactly on the endPoint.
-         */
-        int turning = eist.getTurning();
-        if (turning != 0) {
-
-            double endX = eist.getEndPoint().getX();
-            double endY = eist.getEndPoint().getY();
-
-            switch (eist.getDirection()) {
-                case DIR_RIGHT:
-                    switch (eist.getTurning()) {
-                        case TURNING_RIGHT:
-                            if (eist.x < endX) {
-                                double left = Math.abs(endX - eist.x);
-                                if (eist.rotation < 90) {
-                                    eist.rotation = 90 - (90 * (left / mRotationRadius));
-                                }
-                            } else {
-                                eist.rotation = 0;
-                                eist.setDirection(DIR_DOWN);
-                                eist.setTurning(TURNING_NOT);
-                                eist.x = endX;
-                                eist.y = endY;
-                            }
-                            break;
-
-                        case TURNING_LEFT:
-                            if (eist.x < endX) {
-                                double left = Math.abs(eist.x - endX);
-                                if (eist.rotation > -90) {
-                                    eist.rotation = -90 + (90 * (left / mRotationRadius));
-                                }
-                            } else {
-                                eist.rotation = 0;
-                                eist.setDirection(DIR_UP);
-                                eist.setTurning(TURNING_NOT);
-                                eist.x = endX;
-                                eist.y = endY;
-                            }
-                            break;
-
-                        case TURNING_BACK:
-                            if (eist.x < endX) {
-                                double left = Math.abs(eist.x - endX);
-                                if (turnRight) {
-                                    if (eist.rotation < 180) {
-                                        eist.rotation = 180 - (180 * (left / mRotationRadius));
-                                    }
-                                } else {
-                                    if (eist.rotation > -180) {
-                                        eist.rotation = -180 + (180 * (left / mRotationRadius));
-                                    }
-                                }
-                            } else {
-                                eist.rotation = 0;
-                                eist.setDirection(DIR_LEFT);
-                                eist.setTurning(TURNING_NOT);
-                                eist.x = endX;
-                                eist.y = endY;
-                            }
-                            break;
-                    }
+                case DIR_CLEAR:
+                    button = pad.getButtonClear();
+                    sprite = SpriteAtlas.SEL_CLEAR;
                     break;
 
-                case DIR_LEFT:
-                    switch (eist.getTurning()) {
-                        case TURNING_LEFT:
-                            if (eist.x > endX) {
-                                double left = Math.abs(endX - eist.x);
-                                if (eist.rotation < 90) {
-                                    eist.rotation = -90 + (90 * (left / mRotationRadius));
-                                }
-                            } else {
-                                eist.rotation = 0;
-                                eist.setDirection(DIR_DOWN);
-                                eist.setTurning(TURNING_NOT);
-                                eist.x = endX;
-                                eist.y = endY;
-                            }
-                            break;
-
-                        case TURNING_RIGHT:
-                            if (eist.x > endX) {
-                                double left = Math.abs(eist.x - endX);
-                                if (eist.rotation > -90) {
-                                    eist.rotation = 90 - (90 * (left / mRotationRadius));
-                                }
-                            } else {
-                                eist.rotation = 0;
-                                eist.setDirection(DIR_UP);
-                                eist.setTurning(TURNING_NOT);
-                                eist.x = endX;
-                                eist.y = endY;
-                            }
-                            break;
-
-                        case TURNING_BACK:
-                            if (eist.x > endX) {
-                                double left = Math.abs(eist.x - endX);
-                                if (turnRight) {
-                                    if (eist.rotation < 180) {
-                                        eist.rotation = 180 - (180 * (left / mRotationRadius));
-                                    }
-                                } else {
-                                    if (eist.rotation > -180) {
-                                        eist.rotation = -180 + (180 * (left / mRotationRadius));
-                                    }
-                                }
-                            } else {
-                                eist.rotation = 0;
-                                eist.setDirection(DIR_RIGHT);
-                                eist.setTurning(TURNING_NOT);
-                                eist.x = endX;
-                                eist.y = endY;
-                            }
-                            break;
-                    }
-                    break;
-
-                case DIR_DOWN:
-                    switch (eist.getTurning()) {
-                        case TURNING_RIGHT:
-                            if (eist.y < endY) {
-                                double left = Math.abs(endY - eist.y);
-                                if (eist.rotation < 90) {
-                                    eist.rotation = 90 - (90 * (left / mRotationRadius));
-                                }
-                            } else {
-                                eist.rotation = 0;
-                                eist.setDirection(DIR_LEFT);
-                                eist.setTurning(TURNING_NOT);
-                                eist.x = endX;
-                                eist.y = endY;
-                            }
-                            break;
-
-                        case TURNING_LEFT:
-                            if (eist.y < endY) {
-                                double left = Math.abs(endY - eist.y);
-                                if (eist.rotation > -90) {
-                                    eist.rotation = -90 + (90 * (left / mRotationRadius));
-                                }
-                            } else {
-                                eist.rotation = 0;
-                                eist.setDirection(DIR_RIGHT);
-                                eist.setTurning(TURNING_NOT);
-                                eist.x = endX;
-                                eist.y = endY;
-                            }
-                            break;
-
-                        case TURNING_BACK:
-                            if (eist.y < endY) {
-                                double left = Math.abs(endY - eist.y);
-                                if (turnRight) {
-                                    if (eist.rotation < 180) {
-                                        eist.rotation = 180 - (180 * (left / mRotationRadius));
-                                    }
-                                } else {
-                                    eist.rotation = -180 + (180 * (left / mRotationRadius));
-                                }
-                            } else {
-                                eist.rotation = 0;
-                                eist.setDirection(DIR_UP);
-                                eist.setTurning(TURNING_NOT);
-                                eist.x = endX;
-                                eist.y = endY;
-                            }
-                            break;
-                    }
+                default:
+                    button = pad.getButtonClear();
+                    sprite = SpriteAtlas.SEL_CLEAR;
                     break;
+            }
+            mAtlas.draw(gc, sprite, button);
+        }
 
-                case DIR_UP:
-                    switch (eist.getTurning()) {
-                        case TURNING_RIGHT:
-                            if (eist.y > endY) {
-                                double left = Math.abs(endY - eist.y);
-                                if (eist.rotation < 90) {
-                                    eist.rotation = 90 - (90 * (left / mRotationRadius));
-                                }
-                            } else {
-                                eist.rotation = 0;
-                                eist.setDirection(DIR_RIGHT);
-                                eist.setTurning(TURNING_NOT);
-                                eist.x = endX;
-                                eist.y = endY;
-                            }
-                            break;
-
-                        case TURNING_LEFT:
-                            if (eist.y > endY) {
-                                double left = Math.abs(endY - eist.y);
-                                if (eist.rotation > -90) {
-                                    eist.rotation = -90 + (90 * (left / mRotationRadius));
-                                }
-                            } else {
-                                eist.rotation = 0;
-                                eist.setDirection(DIR_LEFT);
-                                eist.setTurning(TURNING_NOT);
-                                eist.x = endX;
-                                eist.y = endY;
-                            }
-                            break;
-
-                        case TURNING_BACK:
-                            if (eist.y > endY) {
-                                double left = Math.abs(endY - eist.y);
-                                if (turnRight) {
-                                    if (eist.rotation < 180) {
-                                        eist.rotation = 180 - (180 * (left / mRotationRadius));
-                                    }
-                                } else {
-                                    if (eist.rotation > -180) {
-                                        eist.rotation = -180 + (180 * (left / mRotationRadius));
-                                    }
-                                }
-                            } else {
-                                eist.rotation = 0;
-                                eist.setDirection(DIR_DOWN);
-                                eist.setTurning(TURNING_NOT);
-                                eist.x = endX;
-                                eist.y = endY;
-                            }
-                            break;
-                    }
-                    break;
+        glyphDraws += mLevelRun.draw(gc, mInfoGlyphs, mLevelText.of(mCurrentLevel), columns[27], rows[12], pixels);
+        mAtlas.draw(gc, SpriteAtlas.KEY, columns[26] + mHalfGridDimension, rows[12] + mHalfGridDimension);
+        glyphDraws += mKeysRun.draw(gc, mInfoGlyphs, mKeysText.of(eist.getKeys()), columns[28], rows[14], pixels);
+        glyphDraws += mTurnsRun.draw(gc, mTurnsGlyphs, mTurnsText.of(state.getTurns()), columns[27], rows[15], pixels);
+        glyphDraws += mBestRun.draw(gc, mTurnsGlyphs, mBestText.of(mTurnsBest), columns[27], rows[16], pixels);
+        if (mCurrentLevel > 0 && mPar > 0) {
+            glyphDraws += mParRun.draw(gc, mTurnsGlyphs, mParText.of(mPar), columns[27], rows[17], pixels);
+        }
+        if (mReplay != null) {
+            glyphDraws += mMessageRun.draw(gc, mMessageGlyphs,
+                    mReplayText.of(mReplaySpeed << 1 | (mReplay.isFinished() ? 1 : 0)),
+                    columns[27], rows[18] - mHalfGridDimension / 2, pixels);
+        } else if (mCurrentLevel > 0 && mFullSpeed) {
+            glyphDraws += mMessageRun.draw(gc, mMessageGlyphs, "Full speed",
+                    columns[27], rows[18] - mHalfGridDimension / 2, pixels);
+        }
+        if (mCurrentLevel == 0) {
+            String name;
+            if (!mPlayer.isEmpty()) {
+                name = getPlayerName();
+            } else if (!mDevMode) {
+                name = "Hall of Fame login";
+            } else {
+                name = "Developer mode";
             }
+            glyphDraws += mPlayerRun.draw(gc, mPlayerGlyphs, name, columns[27], rows[2], pixels);
         }
+        mFrameStats.addDrawImages(glyphDraws);
     }
 
-    private void reactToArrow(Arrow arrow) {
-        /*
-         * In the updateBoard method: Keep turning until the point reached.
-         */
-        eist.setEndPoint(new Point2D(arrow.getPosX(), arrow.getPosY()));
-
-        turnRight = getRandomBoolean();
-
-        mTurnsCounter++;
-
-        switch (eist.getDirection()) {
-            case DIR_RIGHT:
-                switch (arrow.getDirection()) {
-                    case DIR_DOWN:
-                        eist.setTurning(TURNING_RIGHT);
-                        break;
-
-                    case DIR_UP:
-                        eist.setTurning(TURNING_LEFT);
-                        break;
-
-                    case DIR_LEFT:
-                        eist.setTurning(TURNING_BACK);
-                        break;
-
-                    default:
-                        break;
-                }
-                break;
-
-            case DIR_DOWN:
-                switch (arrow.getDirection()) {
-                    case DIR_LEFT:
-                        eist.setTurning(TURNING_RIGHT);
-                        break;
-
-                    case DIR_RIGHT:
-                        eist.setTurning(TURNING_LEFT);
-                        break;
-
-                    case DIR_UP:
-                        eist.setTurning(TURNING_BACK);
-                        break;
-
-                    default:
-                        break;
-                }
-                break;
-
-            case DIR_LEFT:
-                switch (arrow.getDirection()) {
-                    case DIR_DOWN:
-                        eist.setTurning(TURNING_LEFT);
-                        break;
-
-                    case DIR_UP:
-                        eist.setTurning(TURNING_RIGHT);
-                        break;
-
-                    case DIR_RIGHT:
-                        eist.setTurning(TURNING_BACK);
-                        break;
-
-                    default:
-                        break;
-                }
-                break;
-
-            case DIR_UP:
-                switch (arrow.getDirection()) {
-                    case DIR_RIGHT:
-                        eist.setTurning(TURNING_RIGHT);
-                        break;
+    /**
+     * Rasterize the HUD fonts again if the raster scale changed; on the FX thread.
+     */
+    private void updateGlyphs() {
+
+        double scale = mView.getRasterScale();
+        mInfoGlyphs = GlyphAtlas.reuse(mInfoGlyphs, infoFont, Color.WHITE, scale);
+        mSelectionGlyphs = GlyphAtlas.reuse(mSelectionGlyphs, infoFont, LEVEL_SELECTION_COLOR, scale);
+        mTurnsGlyphs = GlyphAtlas.reuse(mTurnsGlyphs, turnsFont, Color.WHITE, scale);
+        mMessageGlyphs = GlyphAtlas.reuse(mMessageGlyphs, messageFont, Color.WHITE, scale);
+        mPlayerGlyphs = GlyphAtlas.reuse(mPlayerGlyphs, playerFont, PLAYER_COLOR, scale);
+    }
 
-                    case DIR_LEFT:
-                        eist.setTurning(TURNING_LEFT);
-                        break;
+    /**
+     * @return the player name in upper case, shortened to 16 characters and an ellipsis
+     */
+    private String getPlayerName() {
 
-                    case DIR_DOWN:
-                        eist.setTurning(TURNING_BACK);
-                        break;
-                }
-                break;
+        if (!mPlayer.equals(mPlayerNameOf)) {
+            String name = mPlayer.toUpperCase();
+            mPlayerName = name.length() > 16 ? name.substring(0, 16) + "..." : name;
+            mPlayerNameOf = mPlayer;
         }
-        mArrows.remove(arrow);
+        return mPlayerName;
     }
 
-    private void reactToDoor(Door door) {
+    /**
+     * The animated sprites and Eist, over the static layer.
+     */
+    private void drawDynamicLayer(double alpha) {
 
-        mTurnsCounter++;
+        SpriteRenderer sprites = mSprites;
+        mSpriteLayer.draw(sprites, mAtlas, state, mArtifacts, mOrnaments, mTeleports, mCamera, alpha);
+        if (mRenderBench != null) {
+            mRenderBench.drawSprites(sprites);
+        }
+        sprites.endFrame();
+        //gc.setFill(Color.WHITE);
+        //gc.fillOval(eist.detectionPoint1X - 1, eist.detectionPoint1Y - 1, 2, 2);
+        //gc.fillOval(eist.detectionPoint2X - 1, eist.detectionPoint2Y - 1, 2, 2);
+    }
 
-        if (mCurrentLevel > 0 && !mMuteSound) {
-            fxBounce.setBalance(calculateBalance(eist.x));
-            fxBounce.play();
+    /**
+     * The performance overlay, on a canvas of its own over the game: redrawn only when its text changes (twice a
+     * second), or cleared once when hidden. Drawn in window pixels, not scaled with the board.
+     */
+    private void drawFrameStats() {
+
+        boolean changed = mFrameStats.refreshText();
+        if (changed || mFrameStatsShown != mFrameStats.isVisible()) {
+            statsGc.clearRect(0, 0, statsGc.getCanvas().getWidth(), statsGc.getCanvas().getHeight());
+            mFrameStats.draw(statsGc, 0, 0, statsFont);
+            mFrameStatsShown = mFrameStats.isVisible();
         }
+    }
 
-        turnRight = getRandomBoolean();
+    /**
+     * @return the value of the --name=value argument, null if not given
+     */
+    private static String option(List<String> args, String name) {
 
-        switch (eist.getDirection()) {
-            case DIR_RIGHT: {
-                eist.setEndPoint(new Point2D(door.getPosX(), door.getPosY()));
-                break;
-            }
-            case DIR_LEFT: {
-                eist.setEndPoint(new Point2D(door.getPosX(), door.getPosY()));
-                break;
-            }
-            case DIR_DOWN: {
-                eist.setEndPoint(new Point2D(door.getPosX(), door.getPosY()));
-                break;
-            }
-            case DIR_UP: {
-                eist.setEndPoint(new Point2D(door.getPosX(), door.getPosY()));
-                break;
+        for (String arg : args) {
+            if (arg.startsWith(name + "=")) {
+                return arg.substring(name.length() + 1);
             }
         }
-        eist.setTurning(TURNING_BACK);
-
-        mDisableDoorReaction = true;
+        return null;
     }
 
     public static void main(String[] args) {
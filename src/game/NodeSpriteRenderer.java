@@ -0,0 +1,143 @@
+package game;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.transform.Scale;
+import javafx.scene.transform.Translate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The sprites as ImageViews in the scene graph, all showing the atlas image through a viewport on the frame. The
+ * views are pooled: a frame takes them in the order the sprites come, moves them and sets their frame; the ones not
+ * taken get hidden. Nothing is allocated once the pool is as big as the busiest frame, and the properties set to the
+ * value they have already don't mark the node dirty, so the sprites that stay still cost the FX render thread
+ * nothing to work out.
+ *
+ * The layer group holds the view transform, so the views are in logical coordinates as the canvas drawing is; and the
+ * viewport scroll, with a clip to the viewport when it's smaller than the layout. The views make no drawImage calls:
+ * the performance overlay counts those of the static layer only.
+ */
+class NodeSpriteRenderer implements SpriteRenderer {
+
+    private final BoardView view;
+    private final Group layer = new Group();
+    private final Translate translate = new Translate();
+    private final Scale scale = new Scale();
+    private final Translate scroll = new Translate();
+    private final Rectangle clip = new Rectangle(); // Set in board coordinates, as the views
+
+    private final List<ImageView> pool = new ArrayList<>();
+    private int used; // In the frame being given
+    private int shown; // In the last frame
+
+    private SpriteAtlas atlas;
+
+    NodeSpriteRenderer(BoardView view) {
+        this.view = view;
+        layer.getTransforms().addAll(translate, scale, scroll);
+        layer.setMouseTransparent(true);
+    }
+
+    @Override
+    public String getName() {
+        return NODES;
+    }
+
+    @Override
+    public Node getNode() {
+        return layer;
+    }
+
+    @Override
+    public void resize(double width, double height) {
+        translate.setX(view.getX());
+        translate.setY(view.getY());
+        scale.setX(view.getScale());
+        scale.setY(view.getScale());
+    }
+
+    @Override
+    public void setViewport(double x, double y, double width, double height) {
+
+        scroll.setX(-x);
+        scroll.setY(-y);
+        if (width < BoardView.WIDTH || height < BoardView.HEIGHT) {
+            clip.setX(x);
+            clip.setY(y);
+            clip.setWidth(width);
+            clip.setHeight(height);
+            layer.setClip(clip);
+        } else {
+            layer.setClip(null);
+        }
+    }
+
+    @Override
+    public void beginFrame(SpriteAtlas atlas) {
+        this.atlas = atlas;
+        used = 0;
+    }
+
+    @Override
+    public void draw(int sprite, int frame, double x, double y) {
+
+        Rectangle2D area = atlas.getFrame(sprite, frame);
+        if (area != null) {
+            place(atlas.getImage(), area, x, y, atlas.getWidth(sprite), atlas.getHeight(sprite), 0);
+        }
+    }
+
+    @Override
+    public void drawRotated(int sprite, int frame, double x, double y, double degrees) {
+
+        RotatedFrames.Cell cell = atlas.getRotated(sprite, frame, degrees);
+        if (cell != null) {
+            place(cell.page, cell.area, x + cell.x, y + cell.y, cell.width, cell.height, 0);
+            return;
+        }
+        Rectangle2D area = atlas.getFrame(sprite, frame);
+        if (area != null) {
+            place(atlas.getImage(), area, x, y, atlas.getWidth(sprite), atlas.getHeight(sprite),
+                    atlas.quantizeRotation(degrees));
+        }
+    }
+
+    @Override
+    public void endFrame() {
+
+        for (int i = used; i < shown; i++) {
+            pool.get(i).setVisible(false);
+        }
+        shown = used;
+    }
+
+    /**
+     * @param degrees Node.rotate turns around the center of the layout bounds: the frame center, as the canvas
+     *                rotation does
+     */
+    private void place(Image image, Rectangle2D area, double x, double y, double width, double height,
+                       double degrees) {
+
+        if (used == pool.size()) {
+            ImageView imageView = new ImageView();
+            imageView.setSmooth(true);
+            pool.add(imageView);
+            layer.getChildren().add(imageView);
+        }
+        ImageView imageView = pool.get(used++);
+        imageView.setImage(image);
+        imageView.setViewport(area);
+        imageView.setX(x);
+        imageView.setY(y);
+        imageView.setFitWidth(width);
+        imageView.setFitHeight(height);
+        imageView.setRotate(degrees);
+        imageView.setVisible(true);
+    }
+}
@@ -0,0 +1,186 @@
+package game;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * The scripted benchmark scene of the sprite renderers (see SpriteRenderer), started with:
+ *
+ *   eist-returns --render-bench [level] [sprites] [--renderer=canvas|nodes]
+ *
+ * The level is loaded, and the dynamic layer gets, on top of the level sprites, the sprites given moving along fixed
+ * paths, animated, every fourth one turning. Each renderer in turn draws the same scene: WARMUP_FRAMES frames first,
+ * then MEASURED_FRAMES frames timed; the renderer given starts. The frame times and the CPU time per frame, of the FX
+ * application thread and of the whole process (the FX render thread with it), get printed for both.
+ *
+ * The frame rate is capped to the display refresh rate, so with few sprites the frame times are the same and the CPU
+ * time tells the renderers apart; the JVM option -Djavafx.animation.fullspeed=true lifts the cap.
+ */
+class RenderBench {
+
+    static final int DEFAULT_LEVEL = 1;
+    static final int DEFAULT_SPRITES = 400;
+
+    private static final int WARMUP_FRAMES = 300;
+    private static final int MEASURED_FRAMES = 1200;
+
+    /**
+     * The sprites of the scene, taken in turn; all of them have SHEET_FRAMES frames.
+     */
+    private static final int[] SCENE_SPRITES = {
+            SpriteAtlas.ARTIFACT, SpriteAtlas.ORNAMENT, SpriteAtlas.TELEPORT, SpriteAtlas.EIST_RIGHT,
+            SpriteAtlas.EIST_DOWN, SpriteAtlas.FALLING_LEFT, SpriteAtlas.FALLING_UP
+    };
+
+    private final int level;
+    private final int sprites;
+    private final String[] renderers;
+
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private final OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+
+    private final long[] frameNanos = new long[MEASURED_FRAMES];
+    private final String[] results;
+
+    private int phase; // The renderer benchmarked
+    private int frame; // In the phase
+    private long lastNow;
+    private long startThreadCpu;
+    private long startProcessCpu;
+
+    /**
+     * @param renderer the one to start with
+     */
+    RenderBench(int level, int sprites, String renderer) {
+
+        this.level = level;
+        this.sprites = sprites;
+        renderers = SpriteRenderer.NODES.equalsIgnoreCase(renderer)
+                ? new String[]{SpriteRenderer.NODES, SpriteRenderer.CANVAS}
+                : new String[]{SpriteRenderer.CANVAS, SpriteRenderer.NODES};
+        results = new String[renderers.length];
+    }
+
+    /**
+     * @param args the arguments following --render-bench: the level and the sprite count, both optional
+     */
+    static RenderBench parse(String[] args, String renderer) {
+
+        int level = DEFAULT_LEVEL;
+        int sprites = DEFAULT_SPRITES;
+        try {
+            if (args.length > 0 && !args[0].startsWith("-")) {
+                level = Integer.parseInt(args[0]);
+            }
+            if (args.length > 1 && !args[1].startsWith("-")) {
+                sprites = Math.max(0, Integer.parseInt(args[1]));
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("--render-bench [level] [sprites]: " + e.getMessage());
+        }
+        return new RenderBench(level, sprites, renderer);
+    }
+
+    int getLevel() {
+        return level;
+    }
+
+    /**
+     * @return the renderer to draw the frame with
+     */
+    String getRenderer() {
+        return renderers[phase];
+    }
+
+    boolean isFinished() {
+        return phase == renderers.length;
+    }
+
+    /**
+     * A frame starts, on the FX application thread.
+     *
+     * @param now the AnimationTimer.handle() value
+     */
+    void frameStart(long now) {
+
+        if (frame == WARMUP_FRAMES) {
+            startThreadCpu = threadBean.getCurrentThreadCpuTime();
+            startProcessCpu = processCpuTime();
+        } else if (frame > WARMUP_FRAMES) {
+            frameNanos[frame - WARMUP_FRAMES - 1] = now - lastNow;
+        }
+        lastNow = now;
+
+        if (frame == WARMUP_FRAMES + MEASURED_FRAMES) {
+            results[phase] = result(threadBean.getCurrentThreadCpuTime() - startThreadCpu,
+                    processCpuTime() - startProcessCpu);
+            phase++;
+            frame = 0;
+            if (isFinished()) {
+                report();
+                return;
+            }
+        }
+        frame++;
+    }
+
+    /**
+     * The scene sprites of the frame.
+     */
+    void drawSprites(SpriteRenderer renderer) {
+
+        double maxX = BoardView.WIDTH - LevelData.FRAME_DIMENSION;
+        double maxY = BoardView.HEIGHT - LevelData.FRAME_DIMENSION;
+        for (int i = 0; i < sprites; i++) {
+            int sprite = SCENE_SPRITES[i % SCENE_SPRITES.length];
+            int spriteFrame = (frame / 4 + i) % SpriteAtlas.SHEET_FRAMES;
+            double x = maxX * (0.5 + 0.5 * Math.sin(frame * 0.011 + i * 1.7));
+            double y = maxY * (0.5 + 0.5 * Math.sin(frame * 0.013 + i * 2.3));
+            if (i % 4 == 3) {
+                renderer.drawRotated(sprite, spriteFrame, x, y, (frame * 3 + i * 15) % 360);
+            } else {
+                renderer.draw(sprite, spriteFrame, x, y);
+            }
+        }
+    }
+
+    private String result(long threadCpu, long processCpu) {
+
+        long[] sorted = frameNanos.clone();
+        Arrays.sort(sorted);
+        long wall = 0;
+        for (long nanos : sorted) {
+            wall += nanos;
+        }
+        return String.format("%-8s %7.2f %7.2f %7.2f %7.2f ms %7.2f ms %6.0f%%",
+                renderers[phase],
+                sorted[sorted.length / 2] / 1e6,
+                sorted[(int) Math.ceil(0.99 * sorted.length) - 1] / 1e6,
+                sorted[sorted.length - 1] / 1e6,
+                threadCpu / 1e6 / MEASURED_FRAMES,
+                processCpu < 0 ? Double.NaN : processCpu / 1e6 / MEASURED_FRAMES,
+                processCpu < 0 ? Double.NaN : 100.0 * processCpu / wall);
+    }
+
+    private void report() {
+
+        System.out.println("Render bench: level " + level + ", " + sprites + " scene sprites, "
+                + MEASURED_FRAMES + " frames per renderer after " + WARMUP_FRAMES + " warm-up frames");
+        System.out.println("Frame times in ms, CPU time per frame, CPU load in % of a core");
+        System.out.println(String.format("%-8s %7s %7s %7s %10s %10s %7s",
+                "renderer", "p50", "p99", "max", "FX thread", "process", "load"));
+        for (String result : results) {
+            System.out.println(result);
+        }
+    }
+
+    /**
+     * @return the CPU time of all the process threads, -1 if the JVM doesn't tell
+     */
+    private long processCpuTime() {
+        return osBean instanceof com.sun.management.OperatingSystemMXBean
+                ? ((com.sun.management.OperatingSystemMXBean) osBean).getProcessCpuTime() : -1;
+    }
+}
@@ -0,0 +1,355 @@
+package game;
+
+import javafx.geometry.Rectangle2D;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+
+/**
+ * Plays back the recording made by the ReplayRecorder: feeds the recorded input to the GameState at the ticks
+ * it was given at. The GameState is expected to have the level loaded and the board dimensions set; the seed and
+ * the speed come from the recording.
+ *
+ * Every KEYFRAME_INTERVAL ticks played a GameState snapshot is stored, so seeking back (and forth, over the part
+ * already played) only needs to replay a few seconds at most.
+ */
+class ReplayPlayer {
+
+    static final int KEYFRAME_INTERVAL = 600;
+
+    private final int level;
+    private final long seed;
+    private final int tickRate;
+
+    /*
+     * Decoded input
+     */
+    private final int count;
+    private final long[] ticks;
+    private final int[] inputs;
+    private final int[] values1;
+    private final int[] values2;
+    private final int[] values3;
+
+    private final long endTick;
+    private final int endOutcome;
+    private final int endTurns;
+
+    private GameState state;
+    private IntConsumer padListener;
+
+    private int inputIdx;
+    private boolean seeking;
+
+    private final TreeMap<Long, GameState.Snapshot> keyframes = new TreeMap<>();
+
+    private ReplayPlayer(InputStream in) throws IOException {
+
+        for (byte b : ReplayRecorder.MAGIC) {
+            if (in.read() != b) {
+                throw new IOException("Not an Eist returns replay");
+            }
+        }
+        long version = ReplayRecorder.readVarint(in);
+        if (version != ReplayRecorder.FORMAT_VERSION) {
+            throw new IOException("Unsupported replay format version " + version);
+        }
+        level = (int) ReplayRecorder.readVarint(in);
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Unexpected end of the replay header");
+            }
+            value = (value << 8) | b;
+        }
+        seed = value;
+        tickRate = (int) ReplayRecorder.readVarint(in);
+
+        long[] ticks = new long[64];
+        int[] inputs = new int[64];
+        int[] values1 = new int[64];
+        int[] values2 = new int[64];
+        int[] values3 = new int[64];
+
+        int count = 0;
+        long tick = 0;
+        long endTick = -1;
+        int endOutcome = ReplayRecorder.END_QUIT;
+        int endTurns = 0;
+
+        while (in.available() > 0 && endTick < 0) {
+
+            long header = ReplayRecorder.readVarint(in);
+            tick += header >>> 3;
+            int input = (int) (header & 7);
+
+            if (count == ticks.length) {
+                ticks = Arrays.copyOf(ticks, count * 2);
+                inputs = Arrays.copyOf(inputs, count * 2);
+                values1 = Arrays.copyOf(values1, count * 2);
+                values2 = Arrays.copyOf(values2, count * 2);
+                values3 = Arrays.copyOf(values3, count * 2);
+            }
+            ticks[count] = tick;
+            inputs[count] = input;
+
+            switch (input) {
+                case ReplayRecorder.INPUT_START:
+                    break;
+
+                case ReplayRecorder.INPUT_PAD:
+                case ReplayRecorder.INPUT_LADDER:
+                    values1[count] = (int) ReplayRecorder.readVarint(in);
+                    break;
+
+                case ReplayRecorder.INPUT_ARROW:
+                    values1[count] = (int) ReplayRecorder.readVarint(in);
+                    values2[count] = (int) ReplayRecorder.readVarint(in);
+                    values3[count] = (int) ReplayRecorder.readVarint(in);
+                    break;
+
+                case ReplayRecorder.INPUT_CLEAR:
+                    values1[count] = (int) ReplayRecorder.readVarint(in);
+                    values2[count] = (int) ReplayRecorder.readVarint(in);
+                    break;
+
+                case ReplayRecorder.INPUT_SPEED:
+                    // Kept as is; decoded when applied
+                    long bits = ReplayRecorder.readVarint(in);
+                    values1[count] = (int) (bits >>> 32);
+                    values2[count] = (int) bits;
+                    values3[count] = (int) ReplayRecorder.readVarint(in);
+                    break;
+
+                case ReplayRecorder.INPUT_END:
+                    endTick = tick;
+                    endOutcome = (int) ReplayRecorder.readVarint(in);
+                    endTurns = (int) ReplayRecorder.readVarint(in);
+                    break;
+
+                default:
+                    throw new IOException("Unknown input type " + input);
+            }
+            count++;
+        }
+
+        this.count = count;
+        this.ticks = ticks;
+        this.inputs = inputs;
+        this.values1 = values1;
+        this.values2 = values2;
+        this.values3 = values3;
+        this.endTick = endTick >= 0 ? endTick : tick;
+        this.endOutcome = endOutcome;
+        this.endTurns = endTurns;
+    }
+
+    static ReplayPlayer read(File file) throws IOException {
+
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            return new ReplayPlayer(in);
+        }
+    }
+
+    /**
+     * Take over the GameState of the freshly loaded level.
+     */
+    void attach(GameState state) {
+
+        this.state = state;
+        state.setRecorder(null);
+        state.setSeed(seed);
+        inputIdx = 0;
+        keyframes.clear();
+        keyframes.put(0L, state.snapshot());
+    }
+
+    /**
+     * @param padListener called with the pad selection, for the on-screen replay to show it
+     */
+    void setPadListener(IntConsumer padListener) {
+        this.padListener = padListener;
+    }
+
+    /**
+     * Apply the input due and run a single tick.
+     */
+    void advance() {
+
+        if (isFinished()) {
+            return;
+        }
+
+        long now = state.getTicks();
+        while (inputIdx < count && ticks[inputIdx] <= now) {
+            apply(inputIdx++);
+        }
+
+        state.tick();
+
+        long played = state.getTicks();
+        if (played % KEYFRAME_INTERVAL == 0 && !keyframes.containsKey(played)) {
+            keyframes.put(played, state.snapshot());
+        }
+    }
+
+    private void apply(int idx) {
+
+        double grid = state.getGridDimension();
+
+        switch (inputs[idx]) {
+            case ReplayRecorder.INPUT_START:
+                state.start();
+                break;
+
+            case ReplayRecorder.INPUT_PAD:
+                state.selectPad(values1[idx]);
+                if (padListener != null && !seeking) {
+                    padListener.accept(values1[idx]);
+                }
+                break;
+
+            case ReplayRecorder.INPUT_ARROW:
+                state.placeArrow(values1[idx] * grid, values2[idx] * grid, values3[idx]);
+                break;
+
+            case ReplayRecorder.INPUT_CLEAR:
+                state.removeArrow(new Rectangle2D(values1[idx] * grid, values2[idx] * grid, grid * 2, grid * 2));
+                break;
+
+            case ReplayRecorder.INPUT_LADDER:
+                state.clickSlot(values1[idx]);
+                break;
+
+            case ReplayRecorder.INPUT_SPEED:
+                long bits = ((long) values1[idx] << 32) | (values2[idx] & 0xFFFFFFFFL);
+                state.setSpeed(Double.longBitsToDouble(bits) * grid, values3[idx]);
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Jump to the tick: restore the nearest keyframe before it, then play silently up to it.
+     */
+    void seek(long tick) {
+
+        tick = Math.max(0, Math.min(tick, endTick));
+
+        Map.Entry<Long, GameState.Snapshot> keyframe = keyframes.floorEntry(tick);
+        state.restore(keyframe.getValue());
+
+        inputIdx = 0;
+        while (inputIdx < count && ticks[inputIdx] < keyframe.getKey()) {
+            inputIdx++;
+        }
+
+        seeking = true;
+        try {
+            while (state.getTicks() < tick && !isFinished()) {
+                advance();
+            }
+        } finally {
+            seeking = false;
+        }
+
+        if (padListener != null) {
+            int selection = -1;
+            for (int i = 0; i < inputIdx; i++) {
+                if (inputs[i] == ReplayRecorder.INPUT_PAD) {
+                    selection = values1[i];
+                }
+            }
+            if (selection >= 0) {
+                padListener.accept(selection);
+            }
+        }
+    }
+
+    /**
+     * While seeking, the sounds should be muted.
+     */
+    boolean isSeeking() {
+        return seeking;
+    }
+
+    boolean isFinished() {
+        return state == null || state.getTicks() >= endTick;
+    }
+
+    int getLevel() {
+        return level;
+    }
+
+    int getTickRate() {
+        return tickRate;
+    }
+
+    long getEndTick() {
+        return endTick;
+    }
+
+    int getEndOutcome() {
+        return endOutcome;
+    }
+
+    int getEndTurns() {
+        return endTurns;
+    }
+
+    /**
+     * eist-returns -R <replay file> --headless: play the recording headless, as fast as possible, and compare the result with
+     * the recorded one.
+     *
+     * @return process exit code
+     */
+    static int main(String[] args) {
+
+        if (args.length < 1) {
+            System.out.println("Usage: eist-returns -R <replay file> --headless");
+            return 2;
+        }
+
+        try {
+            ReplayPlayer player = read(new File(args[0]));
+            LevelData levelData = LevelData.load(player.getLevel());
+
+            GameState state = levelData.newGame(player.getTickRate());
+
+            final int[] outcome = {ReplayRecorder.END_QUIT};
+            state.setListener((event, x) -> {
+                if (event == GameState.EVENT_EXIT_REACHED) {
+                    outcome[0] = ReplayRecorder.END_EXIT;
+                } else if (event == GameState.EVENT_FALL_END) {
+                    outcome[0] = ReplayRecorder.END_FELL;
+                }
+            });
+
+            player.attach(state);
+
+            long startTime = System.nanoTime();
+            while (!player.isFinished()) {
+                player.advance();
+            }
+            long elapsed = System.nanoTime() - startTime;
+
+            String[] names = {"exit reached", "fell", "quit"};
+            System.out.println("Level " + player.getLevel() + ", " + player.getEndTick() + " ticks played in "
+                    + elapsed / 1000000 + " ms");
+            System.out.println("Recorded: " + names[player.getEndOutcome()] + ", turns: " + player.getEndTurns());
+            System.out.println("Replayed: " + names[outcome[0]] + ", turns: " + state.getTurns());
+
+            return outcome[0] == player.getEndOutcome() && state.getTurns() == player.getEndTurns() ? 0 : 1;
+
+        } catch (IOException e) {
+            System.out.println("Couldn't play " + args[0] + ": " + e.getMessage());
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package game;
+
+import java.io.*;
+
+/**
+ * Records the player input of a single level run, as accepted by GameState, for the ReplayPlayer.
+ *
+ * The format is meant to be small, a few bytes per input. All integers are unsigned LEB128 varints:
+ *
+ *   header: 'E' 'R' 'E' 'C', format version, level number, seed (8 bytes, big endian), tick rate
+ *   input:  (ticks since the previous input << 3 | input type), followed by the input values
+ *
+ * INPUT_START      -
+ * INPUT_PAD        selection (DIR_* value)
+ * INPUT_ARROW      column, row, direction (grid units, see Utils.rows / columns)
+ * INPUT_CLEAR      column, row
+ * INPUT_LADDER     slot index
+ * INPUT_SPEED      walking speed in grid squares per second (double bits), Eist frame duration in nanoseconds
+ * INPUT_END        outcome (END_* value), turns
+ *
+ * Coordinates and the walking speed are in grid units, so that the recording doesn't depend on the screen size.
+ */
+class ReplayRecorder {
+
+    static final int FORMAT_VERSION = 1;
+
+    static final int INPUT_START = 0;
+    static final int INPUT_PAD = 1;
+    static final int INPUT_ARROW = 2;
+    static final int INPUT_CLEAR = 3;
+    static final int INPUT_LADDER = 4;
+    static final int INPUT_SPEED = 5;
+    static final int INPUT_END = 7;
+
+    static final int END_EXIT = 0;
+    static final int END_FELL = 1;
+    static final int END_QUIT = 2;
+
+    static final byte[] MAGIC = {'E', 'R', 'E', 'C'};
+
+    private final ByteArrayOutputStream data = new ByteArrayOutputStream(256);
+    private final int level;
+
+    private long lastTick;
+    private boolean finished;
+
+    ReplayRecorder(int level, long seed, int tickRate) {
+
+        this.level = level;
+
+        data.write(MAGIC, 0, MAGIC.length);
+        writeVarint(data, FORMAT_VERSION);
+        writeVarint(data, level);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            data.write((int) (seed >>> shift));
+        }
+        writeVarint(data, tickRate);
+    }
+
+    /**
+     * Called by GameState on accepted input.
+     */
+    void record(long tick, int input, int value1, int value2, int value3) {
+
+        if (finished) {
+            return;
+        }
+        writeVarint(data, ((tick - lastTick) << 3) | input);
+        lastTick = tick;
+
+        switch (input) {
+            case INPUT_PAD:
+            case INPUT_LADDER:
+                writeVarint(data, value1);
+                break;
+
+            case INPUT_ARROW:
+                writeVarint(data, value1);
+                writeVarint(data, value2);
+                writeVarint(data, value3);
+                break;
+
+            case INPUT_CLEAR:
+            case INPUT_END:
+                writeVarint(data, value1);
+                writeVarint(data, value2);
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    void recordSpeed(long tick, double gridsPerSecond, long eistFrameDuration) {
+
+        if (finished) {
+            return;
+        }
+        writeVarint(data, ((tick - lastTick) << 3) | INPUT_SPEED);
+        lastTick = tick;
+        writeVarint(data, Double.doubleToLongBits(gridsPerSecond));
+        writeVarint(data, eistFrameDuration);
+    }
+
+    /**
+     * No more input gets recorded after this.
+     */
+    void finish(long tick, int outcome, int turns) {
+
+        record(tick, INPUT_END, outcome, turns, 0);
+        finished = true;
+    }
+
+    boolean isFinished() {
+        return finished;
+    }
+
+    int getLevel() {
+        return level;
+    }
+
+    byte[] toByteArray() {
+        return data.toByteArray();
+    }
+
+    void save(File file) throws IOException {
+
+        File folder = file.getParentFile();
+        if (folder != null && !folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Couldn't create " + folder);
+        }
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            data.writeTo(outputStream);
+        }
+    }
+
+    static void writeVarint(OutputStream out, long value) {
+        try {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+
+        } catch (IOException e) {
+            // ByteArrayOutputStream doesn't throw
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static long readVarint(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Unexpected end of the replay data");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
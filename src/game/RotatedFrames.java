@@ -0,0 +1,463 @@
+package game;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The frames of the turning sprites rotated in fixed steps, rendered once for the atlas scale (see SpriteAtlas).
+ * Drawing a turning sprite is then a plain copy, as drawing any other frame is: no transform set, nothing rotated by
+ * the GPU every frame.
+ *
+ * The frames get rotated around their center, with bilinear sampling of the premultiplied pixels, and cropped to
+ * where they are not transparent; the crops are packed into pages. The memory is bounded: if the steps asked for
+ * don't fit, they get coarser, down to MAX_STEP_DEGREES; if that doesn't fit either, nothing gets rendered and the
+ * sprites are rotated as they are drawn.
+ *
+ * Rendering takes a second or so at full HD, so it runs on a worker thread while the atlas is drawn already: the
+ * sprites are rotated as they are drawn until it is done (see isRendered()).
+ *
+ * Eist is the same on every level: the atlases of the same scale share the rotated frames (see isFor()). Step 0 is
+ * the unrotated frame, drawn from the atlas.
+ */
+class RotatedFrames {
+
+    /**
+     * The default steps fit the default memory at full HD, about 53 MB: 5 degree steps would take twice as much.
+     */
+    static final double DEFAULT_STEP_DEGREES = 10;
+    static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+    /**
+     * Coarser steps show as a jerky turn: rather none cached.
+     */
+    static final double MAX_STEP_DEGREES = 15;
+
+    private static final int PAGE_SIZE = 2048;
+
+    /**
+     * A rotated frame: the area of a page, and where it is drawn, logical, relative to the unrotated frame.
+     */
+    static final class Cell {
+
+        final Image page;
+        final Rectangle2D area;
+        final double x;
+        final double y;
+        final double width;
+        final double height;
+
+        Cell(Image page, Rectangle2D area, double x, double y, double width, double height) {
+            this.page = page;
+            this.area = area;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    /*
+     * The sprites added: the strip of frames as in the atlas, and the frame size drawn at, logical
+     */
+    private final List<Integer> sprites = new ArrayList<>();
+    private final List<Image> strips = new ArrayList<>();
+    private final List<double[]> sizes = new ArrayList<>();
+    private final int[] frameCounts = new int[SpriteAtlas.SPRITE_COUNT];
+
+    private final double scale;
+    private final double requestedStepDegrees;
+    private final long maxBytes;
+    private int steps;
+    private double stepDegrees;
+    private long bytes;
+    private boolean tried;
+
+    /**
+     * Set once the cells are, for the drawing threads to see them
+     */
+    private volatile boolean rendered;
+
+    /**
+     * [sprite][frame * steps + step]
+     */
+    private final Cell[][] cells = new Cell[SpriteAtlas.SPRITE_COUNT][];
+
+    /**
+     * @param scale       of the atlas
+     * @param stepDegrees the step asked for
+     * @param maxBytes    the memory the pages may take
+     */
+    RotatedFrames(double scale, double stepDegrees, long maxBytes) {
+        this.scale = scale;
+        requestedStepDegrees = stepDegrees;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return true if rendered for an atlas of that scale, with those settings
+     */
+    boolean isFor(double scale, double stepDegrees, long maxBytes) {
+        return this.scale == scale && requestedStepDegrees == stepDegrees && this.maxBytes == maxBytes;
+    }
+
+    /**
+     * @param strip the frames side by side, at the atlas scale
+     * @param width the frame width drawn at, logical
+     */
+    void add(int sprite, Image strip, int frameCount, double width, double height) {
+        sprites.add(sprite);
+        strips.add(strip);
+        sizes.add(new double[]{width, height});
+        frameCounts[sprite] = frameCount;
+    }
+
+    /**
+     * Render the frames added, unless already done; on any thread.
+     *
+     * @return false if not even the coarsest steps fit: there is nothing to draw from then
+     */
+    synchronized boolean render() {
+
+        if (tried) {
+            return rendered;
+        }
+        tried = true;
+
+        GameEvents.RotatedFramesRender event = new GameEvents.RotatedFramesRender();
+        event.begin();
+
+        int requestedSteps = (int) Math.max(1, Math.round(360 / requestedStepDegrees));
+        int count = sprites.size();
+
+        /*
+         * The opaque bounds of the frames, relative to the frame center, in pixels: left, top, right, bottom
+         */
+        int[][] pixels = new int[count][];
+        double[][][] bounds = new double[count][][];
+        for (int i = 0; i < count; i++) {
+            Image strip = strips.get(i);
+            int stripWidth = (int) strip.getWidth();
+            int stripHeight = (int) strip.getHeight();
+            pixels[i] = new int[stripWidth * stripHeight];
+            strip.getPixelReader().getPixels(0, 0, stripWidth, stripHeight, PixelFormat.getIntArgbPreInstance(),
+                    pixels[i], 0, stripWidth);
+            int frameCount = frameCounts[sprites.get(i)];
+            bounds[i] = new double[frameCount][];
+            for (int frame = 0; frame < frameCount; frame++) {
+                bounds[i][frame] = opaqueBounds(pixels[i], stripWidth, stripWidth / frameCount, stripHeight, frame);
+            }
+        }
+
+        /*
+         * The finest steps that fit, of those dividing the full turn as the steps asked for do
+         */
+        steps = 0;
+        for (int divider = 1; divider <= requestedSteps; divider++) {
+            if (requestedSteps % divider != 0) {
+                continue;
+            }
+            int candidate = requestedSteps / divider;
+            if (divider > 1 && 360.0 / candidate > MAX_STEP_DEGREES) {
+                break;
+            }
+            if (layoutBytes(bounds, candidate) <= maxBytes) {
+                steps = candidate;
+                break;
+            }
+        }
+        if (steps < 2) {
+            System.out.println("No rotated frames: they don't fit in " + (maxBytes >> 20) + " MB");
+            sprites.clear();
+            strips.clear();
+            sizes.clear();
+            event.commit();
+            return false;
+        }
+        stepDegrees = 360.0 / steps;
+        if (steps != requestedSteps) {
+            System.out.println("Rotated frames in steps of " + stepDegrees + " degrees to fit in " + (maxBytes >> 20)
+                    + " MB");
+        }
+
+        /*
+         * Lay the cells out on the pages, shelf packing as the atlas does, then render the pages
+         */
+        List<int[]> layout = new ArrayList<>(); // i, frame, step, page, x, y, cell x, cell y, width, height
+        List<int[]> pageSizes = new ArrayList<>();
+        int pageWidth = 0;
+        int pageHeight = 0;
+        int rowX = 0;
+        int rowY = 0;
+        int rowHeight = 0;
+        for (int i = 0; i < count; i++) {
+            for (int frame = 0; frame < bounds[i].length; frame++) {
+                for (int step = 1; step < steps; step++) {
+                    int[] cell = cellBounds(bounds[i][frame], step * stepDegrees);
+                    if (cell == null) {
+                        continue;
+                    }
+                    if (rowX > 0 && rowX + cell[2] > PAGE_SIZE) {
+                        rowX = 0;
+                        rowY += rowHeight;
+                        rowHeight = 0;
+                    }
+                    if ((rowX > 0 || rowY > 0) && rowY + cell[3] > PAGE_SIZE) {
+                        pageSizes.add(new int[]{pageWidth, pageHeight});
+                        pageWidth = 0;
+                        pageHeight = 0;
+                        rowX = 0;
+                        rowY = 0;
+                        rowHeight = 0;
+                    }
+                    layout.add(new int[]{i, frame, step, pageSizes.size(), rowX, rowY,
+                            cell[0], cell[1], cell[2], cell[3]});
+                    rowX += cell[2];
+                    rowHeight = Math.max(rowHeight, cell[3]);
+                    pageWidth = Math.max(pageWidth, rowX);
+                    pageHeight = Math.max(pageHeight, rowY + rowHeight);
+                }
+            }
+        }
+        pageSizes.add(new int[]{Math.max(1, pageWidth), Math.max(1, pageHeight)});
+
+        for (int i = 0; i < count; i++) {
+            // Left null: step 0, and the frames with nothing to show
+            cells[sprites.get(i)] = new Cell[frameCounts[sprites.get(i)] * steps];
+        }
+
+        bytes = 0;
+        int next = 0;
+        for (int page = 0; page < pageSizes.size(); page++) {
+            int width = pageSizes.get(page)[0];
+            int height = pageSizes.get(page)[1];
+            int[] pagePixels = new int[width * height];
+            int first = next;
+            for (; next < layout.size() && layout.get(next)[3] == page; next++) {
+                int[] cell = layout.get(next);
+                int i = cell[0];
+                Image strip = strips.get(i);
+                int frameCount = frameCounts[sprites.get(i)];
+                rotate(pixels[i], (int) strip.getWidth(), (int) strip.getWidth() / frameCount,
+                        (int) strip.getHeight(), cell[1], cell[2] * stepDegrees, cell, pagePixels, width);
+            }
+            WritableImage image = new WritableImage(width, height);
+            image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbPreInstance(), pagePixels, 0,
+                    width);
+            bytes += 4L * width * height;
+
+            for (int j = first; j < next; j++) {
+                int[] cell = layout.get(j);
+                int i = cell[0];
+                double frameWidth = sizes.get(i)[0];
+                double frameHeight = sizes.get(i)[1];
+                Image strip = strips.get(i);
+                double scaleX = strip.getWidth() / frameCounts[sprites.get(i)] / frameWidth;
+                double scaleY = strip.getHeight() / frameHeight;
+                cells[sprites.get(i)][cell[1] * steps + cell[2]] = new Cell(image,
+                        new Rectangle2D(cell[4], cell[5], cell[8], cell[9]),
+                        frameWidth / 2 + cell[6] / scaleX, frameHeight / 2 + cell[7] / scaleY,
+                        cell[8] / scaleX, cell[9] / scaleY);
+            }
+        }
+
+        sprites.clear();
+        strips.clear();
+        sizes.clear();
+        rendered = true;
+
+        event.steps = steps;
+        event.bytes = bytes;
+        event.commit();
+        return true;
+    }
+
+    /**
+     * @return true once render() is done, and got the frames to draw from
+     */
+    boolean isRendered() {
+        return rendered;
+    }
+
+    /**
+     * @return the number of steps in a full turn
+     */
+    int getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return the memory taken by the pages
+     */
+    long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the angle, to the nearest step
+     */
+    double quantize(double degrees) {
+        return Math.round(degrees / stepDegrees) * stepDegrees;
+    }
+
+    /**
+     * @param degrees clockwise
+     * @return the nearest step, 0 to getSteps() - 1
+     */
+    int step(double degrees) {
+        return (int) Math.floorMod(Math.round(degrees / stepDegrees), (long) steps);
+    }
+
+    /**
+     * @return true if the sprite has rotated frames, rendered already
+     */
+    boolean contains(int sprite) {
+        return rendered && cells[sprite] != null;
+    }
+
+    /**
+     * @return null for step 0, or a frame with nothing to show: the unrotated frame draws the same
+     */
+    Cell get(int sprite, int frame, int step) {
+        Cell[] spriteCells = cells[sprite];
+        int index = frame * steps + step;
+        return spriteCells != null && index < spriteCells.length ? spriteCells[index] : null;
+    }
+
+    /**
+     * @return left, top, right, bottom of the pixels not transparent, relative to the frame center; null if none
+     */
+    private static double[] opaqueBounds(int[] pixels, int stripWidth, int frameWidth, int frameHeight, int frame) {
+
+        int left = frameWidth;
+        int top = frameHeight;
+        int right = -1;
+        int bottom = -1;
+        for (int y = 0; y < frameHeight; y++) {
+            int row = y * stripWidth + frame * frameWidth;
+            for (int x = 0; x < frameWidth; x++) {
+                if (pixels[row + x] >>> 24 != 0) {
+                    left = Math.min(left, x);
+                    right = Math.max(right, x);
+                    top = Math.min(top, y);
+                    bottom = Math.max(bottom, y);
+                }
+            }
+        }
+        if (right < 0) {
+            return null;
+        }
+        double centerX = frameWidth / 2.0;
+        double centerY = frameHeight / 2.0;
+        return new double[]{left - centerX, top - centerY, right + 1 - centerX, bottom + 1 - centerY};
+    }
+
+    /**
+     * @return x, y (relative to the frame center), width and height of the rotated opaque bounds, a pixel wider on
+     *         each side for the sampling; null if the frame is transparent
+     */
+    private static int[] cellBounds(double[] opaque, double degrees) {
+
+        if (opaque == null) {
+            return null;
+        }
+        double angle = Math.toRadians(degrees);
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+        double minX = Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (int corner = 0; corner < 4; corner++) {
+            double x = opaque[(corner & 1) == 0 ? 0 : 2];
+            double y = opaque[(corner & 2) == 0 ? 1 : 3];
+            double rotatedX = cos * x - sin * y;
+            double rotatedY = sin * x + cos * y;
+            minX = Math.min(minX, rotatedX);
+            maxX = Math.max(maxX, rotatedX);
+            minY = Math.min(minY, rotatedY);
+            maxY = Math.max(maxY, rotatedY);
+        }
+        int x = (int) Math.floor(minX) - 1;
+        int y = (int) Math.floor(minY) - 1;
+        return new int[]{x, y, (int) Math.ceil(maxX) + 1 - x, (int) Math.ceil(maxY) + 1 - y};
+    }
+
+    private static long layoutBytes(double[][][] bounds, int candidateSteps) {
+
+        long total = 0;
+        for (double[][] spriteBounds : bounds) {
+            for (double[] frameBounds : spriteBounds) {
+                for (int step = 1; step < candidateSteps; step++) {
+                    int[] cell = cellBounds(frameBounds, step * 360.0 / candidateSteps);
+                    if (cell != null) {
+                        total += 4L * cell[2] * cell[3];
+                    }
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Render a frame rotated clockwise into its cell of the page: each cell pixel samples the frame where the
+     * inverse rotation takes it. Outside the frame is transparent, not the neighbouring frame of the strip.
+     *
+     * @param cell as laid out: the page position at 4 and 5, the bounds relative to the frame center from 6 on
+     */
+    private static void rotate(int[] strip, int stripWidth, int frameWidth, int frameHeight, int frame,
+                               double degrees, int[] cell, int[] page, int pageWidth) {
+
+        double angle = Math.toRadians(degrees);
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+        double centerX = frameWidth / 2.0;
+        double centerY = frameHeight / 2.0;
+        int frameLeft = frame * frameWidth;
+
+        for (int j = 0; j < cell[9]; j++) {
+            double v = cell[7] + j + 0.5;
+            int pageRow = (cell[5] + j) * pageWidth + cell[4];
+            for (int i = 0; i < cell[8]; i++) {
+                double u = cell[6] + i + 0.5;
+                double sourceX = centerX + cos * u + sin * v - 0.5;
+                double sourceY = centerY - sin * u + cos * v - 0.5;
+                int x0 = (int) Math.floor(sourceX);
+                int y0 = (int) Math.floor(sourceY);
+                double fx = sourceX - x0;
+                double fy = sourceY - y0;
+
+                int p00 = pixel(strip, stripWidth, frameLeft, frameWidth, frameHeight, x0, y0);
+                int p10 = pixel(strip, stripWidth, frameLeft, frameWidth, frameHeight, x0 + 1, y0);
+                int p01 = pixel(strip, stripWidth, frameLeft, frameWidth, frameHeight, x0, y0 + 1);
+                int p11 = pixel(strip, stripWidth, frameLeft, frameWidth, frameHeight, x0 + 1, y0 + 1);
+                if ((p00 | p10 | p01 | p11) == 0) {
+                    continue;
+                }
+                double w00 = (1 - fx) * (1 - fy);
+                double w10 = fx * (1 - fy);
+                double w01 = (1 - fx) * fy;
+                double w11 = fx * fy;
+                int argb = 0;
+                for (int shift = 0; shift < 32; shift += 8) {
+                    double channel = w00 * (p00 >>> shift & 0xff) + w10 * (p10 >>> shift & 0xff)
+                            + w01 * (p01 >>> shift & 0xff) + w11 * (p11 >>> shift & 0xff);
+                    argb |= Math.min(255, (int) (channel + 0.5)) << shift;
+                }
+                page[pageRow + i] = argb;
+            }
+        }
+    }
+
+    private static int pixel(int[] strip, int stripWidth, int frameLeft, int frameWidth, int frameHeight,
+                             int x, int y) {
+        if (x < 0 || y < 0 || x >= frameWidth || y >= frameHeight) {
+            return 0;
+        }
+        return strip[y * stripWidth + frameLeft + x];
+    }
+}
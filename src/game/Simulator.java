@@ -0,0 +1,506 @@
+package game;
+
+import game.Sprites.Ornament;
+import game.Sprites.Player;
+import javafx.geometry.Rectangle2D;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static game.Utils.DIR_RIGHT;
+import static game.Utils.DIR_UP;
+
+/**
+ * Runs the level headless, as fast as the CPU allows, with the arrows and ladder clicks given in scenario files.
+ * Many scenario files are run in parallel, one per core.
+ *
+ * eist-returns -S <level number | level folder> [--limit <seconds>] <scenario file>...
+ *
+ * Scenario file syntax, one action per line ('#' starts a comment):
+ *
+ *   arrow <column>,<row>,<direction>   place the arrow; column and row as in the .dat files, DIR_* direction
+ *   clear <column>,<row>               remove the arrow
+ *   ladder <slot index>                click the ladder slot (place the ladder, or take it away)
+ *
+ * Actions are applied before Eist starts walking, unless prefixed with '@<tick>': '@300 ladder 1' clicks the slot
+ * 5 seconds (at 60 ticks per second) after the start.
+ *
+ * With --check-alloc the heap allocated by the game frames (the input actions excluded) is measured, and the run
+ * fails if a frame allocates anything: the game loop is meant to run garbage free, so that the GC doesn't cause frame
+ * hitches. A frame is a tick and a render pass of the dynamic layer, as in the game (see Frame). No flight recording
+ * should run then: the game loop events are created while one takes them only (see GameEvents.beginTick()).
+ */
+class Simulator {
+
+    static final int RESULT_EXIT = 0;
+    static final int RESULT_FELL = 1;
+    static final int RESULT_STUCK = 2;
+
+    private static final String[] RESULT_NAMES = {"exit reached", "fell", "stuck"};
+
+    static final int ACTION_ARROW = 0;
+    static final int ACTION_CLEAR = 1;
+    static final int ACTION_LADDER = 2;
+
+    /**
+     * Simulated seconds after which Eist is considered walking in circles.
+     */
+    static final int DEFAULT_LIMIT_SECONDS = 600;
+
+    /**
+     * The most runs of a scenario for an allocation free one; the JIT takes a few to settle on the frame code.
+     */
+    static final int ALLOCATION_CHECK_RUNS = 8;
+
+    static class Action {
+
+        long tick;
+        int type;
+        int column;
+        int row;
+        int direction;
+        int slotIdx;
+        int lineNumber;
+    }
+
+    static class Result {
+
+        String name;
+        int outcome;
+        int turns;
+        long ticks;
+        long allocatedBytes = -1; // By the frames, -1 if not measured
+        List<String> warnings = new ArrayList<>();
+
+        @Override
+        public String toString() {
+            StringBuilder stringBuilder = new StringBuilder();
+            stringBuilder.append(name).append(": ").append(RESULT_NAMES[outcome])
+                    .append(", turns: ").append(turns)
+                    .append(", ticks: ").append(ticks);
+            if (allocatedBytes >= 0) {
+                stringBuilder.append(", allocated: ").append(allocatedBytes).append(" bytes");
+            }
+            for (String warning : warnings) {
+                stringBuilder.append("\n  ").append(warning);
+            }
+            return stringBuilder.toString();
+        }
+    }
+
+    /**
+     * @return process exit code
+     */
+    static int main(String[] args) {
+
+        if (args.length < 2) {
+            System.out.println("Usage: eist-returns -S <level number | level folder> [--limit <seconds>] [--check-alloc] <scenario file>...");
+            return 2;
+        }
+
+        int limitSeconds = DEFAULT_LIMIT_SECONDS;
+        boolean checkAllocation = false;
+        List<File> scenarioFiles = new ArrayList<>();
+
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--limit") && i + 1 < args.length) {
+                limitSeconds = Integer.valueOf(args[++i]);
+            } else if (args[i].equals("--check-alloc")) {
+                checkAllocation = true;
+            } else {
+                scenarioFiles.add(new File(args[i]));
+            }
+        }
+
+        LevelData levelData;
+        try {
+            File folder = new File(args[0]);
+            levelData = folder.isDirectory() ? LevelData.load(folder) : LevelData.load(Integer.valueOf(args[0]));
+
+        } catch (IOException | NumberFormatException e) {
+            System.out.println("Couldn't load level " + args[0] + ": " + e);
+            return 1;
+        }
+
+        List<List<Action>> scenarios = new ArrayList<>();
+        for (File file : scenarioFiles) {
+            try {
+                scenarios.add(readScenario(file));
+            } catch (IOException e) {
+                System.out.println("Couldn't read " + file + ": " + e.getMessage());
+                return 1;
+            }
+        }
+
+        final int tickRate = GameClock.DEFAULT_TICK_RATE;
+        final long maxTicks = (long) limitSeconds * tickRate;
+
+        final AllocationCounter allocationCounter = checkAllocation ? AllocationCounter.create() : null;
+        if (checkAllocation && allocationCounter == null) {
+            System.out.println("Allocation counting is not supported by this JVM");
+            return 1;
+        }
+
+        int threads = Math.min(Runtime.getRuntime().availableProcessors(), Math.max(1, scenarios.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        long startTime = System.nanoTime();
+
+        List<Future<Result>> futures = new ArrayList<>();
+        for (int i = 0; i < scenarios.size(); i++) {
+            final String name = scenarioFiles.get(i).getName();
+            final List<Action> actions = scenarios.get(i);
+            futures.add(executor.submit(() -> {
+                if (allocationCounter == null) {
+                    return run(levelData, name, actions, tickRate, maxTicks, null, null);
+                }
+                /*
+                 * Until the JIT settles, deoptimization brings back the objects escape analysis removed, and that
+                 * counts as allocated; the first run fills the renderer pool too. A real allocation shows in every
+                 * run: keep the lowest count.
+                 */
+                Frame frame = new Frame();
+                Result result = run(levelData, name, actions, tickRate, maxTicks, allocationCounter, frame);
+                for (int run = 1; run < ALLOCATION_CHECK_RUNS && result.allocatedBytes > 0; run++) {
+                    result = run(levelData, name, actions, tickRate, maxTicks, allocationCounter, frame);
+                }
+                return result;
+            }));
+        }
+
+        int exitCode = 0;
+        int[] summary = new int[RESULT_NAMES.length];
+        for (Future<Result> future : futures) {
+            try {
+                Result result = future.get();
+                summary[result.outcome]++;
+                System.out.println(result);
+                if (result.allocatedBytes > 0) {
+                    exitCode = 1;
+                }
+
+            } catch (InterruptedException | ExecutionException e) {
+                System.out.println("Simulation failed: " + e.getCause());
+                exitCode = 1;
+            }
+        }
+        executor.shutdown();
+
+        System.out.println(String.format("\n%d scenario(s) on %d thread(s) in %d ms: %d exit reached, %d fell, %d stuck",
+                scenarios.size(), threads, (System.nanoTime() - startTime) / 1000000,
+                summary[RESULT_EXIT], summary[RESULT_FELL], summary[RESULT_STUCK]));
+
+        return exitCode;
+    }
+
+    static List<Action> readScenario(File file) throws IOException {
+
+        List<Action> actions = new ArrayList<>();
+
+        try (BufferedReader bufferedReader = new BufferedReader(new FileReader(file))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = bufferedReader.readLine()) != null) {
+                lineNumber++;
+
+                int commentIdx = line.indexOf('#');
+                if (commentIdx >= 0) {
+                    line = line.substring(0, commentIdx);
+                }
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+
+                Action action = new Action();
+                action.lineNumber = lineNumber;
+
+                String[] words = line.split("\\s+");
+                int idx = 0;
+                try {
+                    if (words[0].startsWith("@")) {
+                        action.tick = Long.valueOf(words[0].substring(1));
+                        idx++;
+                    }
+                    if (words.length != idx + 2) {
+                        throw new IOException("line " + lineNumber + ": expected '[@tick] <action> <values>'");
+                    }
+                    String[] values = words[idx + 1].split(",");
+
+                    switch (words[idx]) {
+                        case "arrow":
+                            action.type = ACTION_ARROW;
+                            action.column = Integer.valueOf(values[0]);
+                            action.row = Integer.valueOf(values[1]);
+                            action.direction = Integer.valueOf(values[2]);
+                            if (action.direction < DIR_RIGHT || action.direction > DIR_UP) {
+                                throw new IOException("line " + lineNumber + ": direction must be 0 to 3");
+                            }
+                            break;
+
+                        case "clear":
+                            action.type = ACTION_CLEAR;
+                            action.column = Integer.valueOf(values[0]);
+                            action.row = Integer.valueOf(values[1]);
+                            break;
+
+                        case "ladder":
+                            action.type = ACTION_LADDER;
+                            action.slotIdx = Integer.valueOf(values[0]);
+                            break;
+
+                        default:
+                            throw new IOException("line " + lineNumber + ": unknown action '" + words[idx] + "'");
+                    }
+
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    throw new IOException("line " + lineNumber + ": " + e.getMessage());
+                }
+                actions.add(action);
+            }
+        }
+        actions.sort((a1, a2) -> Long.compare(a1.tick, a2.tick));
+        return actions;
+    }
+
+    /**
+     * Play a single scenario on a GameState of its own.
+     *
+     * @param allocationCounter measures the heap allocated by the frames if not null
+     * @param frame             draws each tick if not null; may be reused by the next run
+     */
+    static Result run(LevelData levelData, String name, List<Action> actions, int tickRate, long maxTicks,
+                      AllocationCounter allocationCounter, Frame frame) {
+
+        final Result result = new Result();
+        result.name = name;
+        result.outcome = RESULT_STUCK;
+
+        GameState state = levelData.newGame(tickRate);
+        GameState.Terrain terrain = levelData.getTerrain();
+
+        final boolean[] finished = {false};
+        state.setListener((event, x) -> {
+            if (event == GameState.EVENT_EXIT_REACHED) {
+                result.outcome = RESULT_EXIT;
+                finished[0] = true;
+            } else if (event == GameState.EVENT_FALL) {
+                result.outcome = RESULT_FELL;
+                finished[0] = true;
+            }
+        });
+
+        if (frame != null) {
+            frame.start(levelData, state);
+        }
+
+        int actionIdx = 0;
+        long tick = 0;
+        long allocatedBytes = 0;
+
+        while (!finished[0] && tick < maxTicks) {
+
+            while (actionIdx < actions.size() && actions.get(actionIdx).tick <= tick) {
+                apply(state, terrain, actions.get(actionIdx), levelData, result);
+                actionIdx++;
+            }
+
+            if (tick == 0) {
+                state.start();
+            } else if (!state.getEist().isMoving) {
+                // Stopped on error, e.g. walked off the board
+                break;
+            }
+
+            long before = allocationCounter != null ? allocationCounter.allocatedBytes() : 0;
+            if (frame != null) {
+                frame.run();
+            } else {
+                state.tick();
+            }
+            if (allocationCounter != null) {
+                allocatedBytes += allocationCounter.allocatedBytes() - before;
+            }
+            tick++;
+        }
+
+        result.turns = state.getTurns();
+        result.ticks = tick;
+        if (allocationCounter != null) {
+            result.allocatedBytes = allocatedBytes;
+        }
+        return result;
+    }
+
+    private static void apply(GameState state, GameState.Terrain terrain, Action action, LevelData levelData,
+                              Result result) {
+
+        double x = LevelData.GRID_DIMENSION * action.column;
+        double y = LevelData.GRID_DIMENSION * action.row;
+
+        switch (action.type) {
+            case ACTION_ARROW:
+                /*
+                 * As in the game: clicking the black area does nothing.
+                 */
+                int centerX = (int) (x + LevelData.GRID_DIMENSION);
+                int centerY = (int) (y + LevelData.GRID_DIMENSION);
+                if (centerX >= levelData.getBoardWidth() || centerY >= levelData.getBoardHeight()
+                        || terrain.isVoid(centerX, centerY) || !state.placeArrow(x, y, action.direction)) {
+                    result.warnings.add("line " + action.lineNumber + ": arrow not allowed at "
+                            + action.column + "," + action.row);
+                }
+                break;
+
+            case ACTION_CLEAR:
+                if (!state.removeArrow(new Rectangle2D(x, y, LevelData.FRAME_DIMENSION,
+                        LevelData.FRAME_DIMENSION))) {
+                    result.warnings.add("line " + action.lineNumber + ": no arrow at " + action.column + "," + action.row);
+                }
+                break;
+
+            case ACTION_LADDER:
+                if (action.slotIdx < 0 || action.slotIdx >= levelData.getSlots().size()
+                        || !state.clickSlot(action.slotIdx)) {
+                    result.warnings.add("line " + action.lineNumber + ": ladder slot " + action.slotIdx + " click ignored");
+                }
+                break;
+        }
+    }
+
+    /**
+     * A frame of the game loop, headless: a tick, then the dynamic layer drawn (see Main.runTicks() and drawBoard()),
+     * with their events. The static layer is left out, redrawn only when the board changes.
+     *
+     * The nodes renderer draws: the canvas one queues the drawing for the FX render thread, which never runs headless,
+     * so its queue only grows. The sprites of the level bitmaps come from level 1, whatever the level run.
+     */
+    static class Frame {
+
+        private static final String[] SPRITE_RESOURCES = new String[SpriteAtlas.SPRITE_COUNT];
+
+        static {
+            SPRITE_RESOURCES[SpriteAtlas.EIST_RIGHT] = "images/sprites/eist_right.png";
+            SPRITE_RESOURCES[SpriteAtlas.EIST_DOWN] = "images/sprites/eist_down.png";
+            SPRITE_RESOURCES[SpriteAtlas.EIST_LEFT] = "images/sprites/eist_left.png";
+            SPRITE_RESOURCES[SpriteAtlas.EIST_UP] = "images/sprites/eist_up.png";
+            SPRITE_RESOURCES[SpriteAtlas.FALLING_RIGHT] = "images/sprites/falldown_right.png";
+            SPRITE_RESOURCES[SpriteAtlas.FALLING_DOWN] = "images/sprites/falldown_down.png";
+            SPRITE_RESOURCES[SpriteAtlas.FALLING_LEFT] = "images/sprites/falldown_left.png";
+            SPRITE_RESOURCES[SpriteAtlas.FALLING_UP] = "images/sprites/falldown_up.png";
+            SPRITE_RESOURCES[SpriteAtlas.TELEPORT] = "images/sprites/teleport.png";
+            SPRITE_RESOURCES[SpriteAtlas.ARTIFACT] = "levels/01/amulet.png";
+            SPRITE_RESOURCES[SpriteAtlas.ORNAMENT] = "levels/01/ornament.png";
+        }
+
+        private final SpriteAtlas atlas = new SpriteAtlas(1);
+        private final SpriteRenderer sprites = SpriteRenderer.create(SpriteRenderer.NODES, new BoardView());
+        private final SpriteLayer layer = new SpriteLayer();
+        private final Camera camera = new Camera();
+        private GameState state;
+        private CellList<Ornament> ornaments;
+
+        Frame() {
+
+            for (int sprite = 0; sprite < SPRITE_RESOURCES.length; sprite++) {
+                String resource = SPRITE_RESOURCES[sprite];
+                if (resource != null) {
+                    atlas.add(sprite, () -> openResource(resource), SpriteAtlas.SHEET_FRAMES,
+                            LevelData.FRAME_DIMENSION, LevelData.FRAME_DIMENSION);
+                }
+            }
+            atlas.pack();
+            sprites.resize(BoardView.WIDTH, BoardView.HEIGHT);
+        }
+
+        /**
+         * Draw the game from now on, as on its level start.
+         */
+        void start(LevelData levelData, GameState state) {
+
+            this.state = state;
+            camera.setBoard(levelData.getBoardWidth(), levelData.getBoardHeight(), levelData.isSizedBoard());
+            Player eist = state.getEist();
+            camera.center(eist.x + LevelData.GRID_DIMENSION, eist.y + LevelData.GRID_DIMENSION, 1);
+
+            // No ornaments in LevelData: they don't change the game
+            ornaments = new CellList<>(Ornament::getArea, LevelData.GRID_DIMENSION, levelData.getBoardWidth(),
+                    levelData.getBoardHeight());
+        }
+
+        private static InputStream openResource(String resource) {
+
+            InputStream inputStream = ClassLoader.getSystemResourceAsStream(resource);
+            if (inputStream == null) {
+                throw new UncheckedIOException(new FileNotFoundException(resource));
+            }
+            return inputStream;
+        }
+
+        void run() {
+
+            GameEvents.Tick tickEvent = GameEvents.beginTick();
+            state.tick();
+            if (tickEvent != null && tickEvent.shouldCommit()) {
+                tickEvent.tick = state.getTicks();
+                tickEvent.commit();
+            }
+
+            /*
+             * Drawn as at the end of the tick, which the frames in the game are in between
+             */
+            GameEvents.Render renderEvent = GameEvents.beginRender();
+            Player eist = state.getEist();
+            camera.follow(eist.getRenderX(1) + LevelData.GRID_DIMENSION, eist.getRenderY(1) + LevelData.GRID_DIMENSION,
+                    1);
+            layer.draw(sprites, atlas, state, state.getArtifacts(), ornaments, state.getTeleports(), camera, 1);
+            sprites.endFrame();
+            int drawImages = atlas.takeDrawCount();
+            if (renderEvent != null && renderEvent.shouldCommit()) {
+                renderEvent.dynamicLayer = true;
+                renderEvent.drawImages = drawImages;
+                renderEvent.commit();
+            }
+        }
+    }
+
+    /**
+     * Heap allocated by the current thread, from the HotSpot specific ThreadMXBean.
+     */
+    static class AllocationCounter {
+
+        private final com.sun.management.ThreadMXBean threadMXBean;
+
+        private AllocationCounter(com.sun.management.ThreadMXBean threadMXBean) {
+            this.threadMXBean = threadMXBean;
+        }
+
+        /**
+         * @return null if the JVM can't count
+         */
+        static AllocationCounter create() {
+
+            ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+            if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+                return null;
+            }
+            com.sun.management.ThreadMXBean hotSpotBean = (com.sun.management.ThreadMXBean) threadMXBean;
+            if (!hotSpotBean.isThreadAllocatedMemorySupported()) {
+                return null;
+            }
+            hotSpotBean.setThreadAllocatedMemoryEnabled(true);
+            return new AllocationCounter(hotSpotBean);
+        }
+
+        long allocatedBytes() {
+            return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+    }
+}
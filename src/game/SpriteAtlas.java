@@ -0,0 +1,396 @@
+package game;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The game sprites scaled once to the size they get drawn at, and packed into a single image. Drawing a sprite frame
+ * is then a (nearly) unscaled copy out of one texture, instead of cutting a frame out of a full resolution sheet and
+ * filtering it down on every draw.
+ *
+ * The atlas is built for a level, as the level has its own bitmaps (see LevelAssets), and rasterized at a scale: the
+ * window pixels per logical pixel (see BoardView). The bitmaps get decoded again at the target size, from their URL
+ * or from the level bundle. The sprites are drawn at their logical size whatever the scale, so an atlas of another
+ * scale draws the same, only resampled; a resized window gets a rescaled() atlas in the background.
+ *
+ * The sprites that turn (Eist) get their frames rotated too, in steps, so that a turn is drawn as plain copies as
+ * well (see RotatedFrames); the angles are taken to the nearest step. The rotated frames get rendered apart from the
+ * packing, on a worker thread (see renderRotations()); the atlas draws the turns with a transform until then.
+ */
+class SpriteAtlas {
+
+    /*
+     * Sprites
+     */
+    static final int EIST_RIGHT = 0;
+    static final int EIST_DOWN = 1;
+    static final int EIST_LEFT = 2;
+    static final int EIST_UP = 3;
+    static final int FALLING_RIGHT = 4;
+    static final int FALLING_DOWN = 5;
+    static final int FALLING_LEFT = 6;
+    static final int FALLING_UP = 7;
+    static final int ARROW_RIGHT = 8;
+    static final int ARROW_DOWN = 9;
+    static final int ARROW_LEFT = 10;
+    static final int ARROW_UP = 11;
+    static final int SLOT_H = 12;
+    static final int SLOT_V = 13;
+    static final int TELEPORT = 14;
+    static final int ARTIFACT = 15;
+    static final int ORNAMENT = 16;
+    static final int KEY = 17;
+    static final int DOOR_H = 18;
+    static final int DOOR_V = 19;
+    static final int LADDER_H = 20;
+    static final int LADDER_V = 21;
+    static final int EXIT_CLOSED = 22;
+    static final int EXIT_OPEN = 23;
+    static final int MUTED_MUSIC = 24;
+    static final int MUTED_SOUND = 25;
+    static final int SEL_RIGHT = 26;
+    static final int SEL_LEFT = 27;
+    static final int SEL_UP = 28;
+    static final int SEL_DOWN = 29;
+    static final int SEL_CLEAR = 30;
+
+    static final int SPRITE_COUNT = 31;
+
+    /**
+     * Frames in the animated sprite sheets, laid out in a single row.
+     */
+    static final int SHEET_FRAMES = GameState.FRAME_LAST_IDX + 1;
+
+    /**
+     * Rows of sprites get started when this wide; a 4K screen at full size fits the widest sheet still.
+     */
+    private static final int MAX_WIDTH = 2048;
+
+    private final double scale;
+
+    private final List<Integer> pending = new ArrayList<>();
+    private final List<Integer> packed = new ArrayList<>();
+    private final Image[] sources = new Image[SPRITE_COUNT];
+    private final List<Supplier<InputStream>> encodedSources = new ArrayList<>(Collections.nCopies(SPRITE_COUNT, null));
+    private final int[] frameCounts = new int[SPRITE_COUNT];
+
+    /*
+     * Per sprite: the size drawn at, the size of a frame in the atlas and the frames themselves
+     */
+    private final double[] widths = new double[SPRITE_COUNT];
+    private final double[] heights = new double[SPRITE_COUNT];
+    private final Rectangle2D[][] frames = new Rectangle2D[SPRITE_COUNT][];
+
+    private WritableImage image;
+
+    private final boolean[] rotated = new boolean[SPRITE_COUNT];
+    private double rotationStep;
+    private long rotationMaxBytes;
+    private RotatedFrames rotatedFrames;
+
+    /**
+     * Per rotated sprite, the unrotated frames as rotated frame cells: step 0.
+     */
+    private final RotatedFrames.Cell[][] unrotatedCells = new RotatedFrames.Cell[SPRITE_COUNT][];
+
+    private int drawCount;
+
+    /**
+     * @param scale atlas pixels per logical pixel
+     */
+    SpriteAtlas(double scale) {
+        this.scale = scale;
+    }
+
+    double getScale() {
+        return scale;
+    }
+
+    /**
+     * @param source     the full resolution bitmap, loaded from a URL (it gets decoded again at the target size)
+     * @param frameCount number of frames, side by side in the source
+     * @param width      frame width as drawn on the board, logical
+     * @param height     frame height as drawn on the board, logical
+     */
+    void add(int sprite, Image source, int frameCount, double width, double height) {
+        sources[sprite] = source;
+        frameCounts[sprite] = frameCount;
+        widths[sprite] = width;
+        heights[sprite] = height;
+        pending.add(sprite);
+    }
+
+    /**
+     * @param encodedSource opens the bitmap file content; for the bitmaps with no URL (see LevelBundle)
+     */
+    void add(int sprite, Supplier<InputStream> encodedSource, int frameCount, double width, double height) {
+        add(sprite, (Image) null, frameCount, width, height);
+        encodedSources.set(sprite, encodedSource);
+    }
+
+    /**
+     * Have the frames of the sprites marked by addRotated() rotated as well: made ready when packed, rendered by
+     * renderRotations().
+     *
+     * @param stepDegrees the angles are taken to the nearest step; 0 for no rotated frames, nor steps
+     * @param maxBytes    the memory the rotated frames may take; the steps get coarser if they don't fit
+     * @param shared      the rotated frames of another atlas, taken over if of the same scale and settings; or null
+     */
+    void setRotations(double stepDegrees, long maxBytes, RotatedFrames shared) {
+        rotationStep = stepDegrees;
+        rotationMaxBytes = maxBytes;
+        if (shared != null && shared.isFor(scale, stepDegrees, maxBytes)) {
+            rotatedFrames = shared;
+        }
+    }
+
+    void addRotated(int sprite) {
+        rotated[sprite] = true;
+    }
+
+    /**
+     * Scale the sprites added and copy them into the atlas image. The sprites that couldn't be loaded stay empty:
+     * drawing them does nothing, as drawing a broken Image does.
+     */
+    void pack() {
+
+        int count = pending.size();
+        Image[] scaled = new Image[count];
+        int[] x = new int[count];
+        int[] y = new int[count];
+
+        /*
+         * Shelf packing, in the order added: the sprites go left to right, a new row starts below the tallest
+         * sprite of the previous one.
+         */
+        int rowX = 0;
+        int rowY = 0;
+        int rowHeight = 0;
+        int atlasWidth = 1;
+
+        for (int i = 0; i < count; i++) {
+            int sprite = pending.get(i);
+            Image source = sources[sprite];
+            Supplier<InputStream> encodedSource = encodedSources.get(sprite);
+
+            int frameWidth = Math.max(1, (int) Math.round(widths[sprite] * scale));
+            int frameHeight = Math.max(1, (int) Math.round(heights[sprite] * scale));
+            int stripWidth = frameWidth * frameCounts[sprite];
+
+            GameEvents.ImageDecode event = new GameEvents.ImageDecode();
+            event.begin();
+            Image image = null;
+            if (encodedSource != null) {
+                image = new Image(encodedSource.get(), stripWidth, frameHeight, false, true);
+                event.commit(image, "sprite " + sprite, "bundle", () -> -1);
+            } else if (source != null && source.getUrl() != null) {
+                String url = source.getUrl();
+                image = new Image(url, stripWidth, frameHeight, false, true);
+                event.commit(image, url, url.startsWith("file:") ? "file" : "resource",
+                        () -> GameEvents.contentLength(url));
+            }
+            if (image != null && !image.isError() && (int) image.getWidth() == stripWidth
+                    && (int) image.getHeight() == frameHeight) {
+                scaled[i] = image;
+            }
+            if (scaled[i] == null) {
+                System.out.println("Sprite " + sprite + " not in the atlas: "
+                        + (source != null ? source.getUrl() : encodedSource != null ? "bundled bitmap" : "no bitmap"));
+                frames[sprite] = new Rectangle2D[0];
+                continue;
+            }
+
+            if (rowX > 0 && rowX + stripWidth > MAX_WIDTH) {
+                rowX = 0;
+                rowY += rowHeight;
+                rowHeight = 0;
+            }
+            x[i] = rowX;
+            y[i] = rowY;
+
+            frames[sprite] = new Rectangle2D[frameCounts[sprite]];
+            for (int frame = 0; frame < frameCounts[sprite]; frame++) {
+                frames[sprite][frame] = new Rectangle2D(rowX + frame * frameWidth, rowY, frameWidth, frameHeight);
+            }
+
+            rowX += stripWidth;
+            rowHeight = Math.max(rowHeight, frameHeight);
+            atlasWidth = Math.max(atlasWidth, rowX);
+        }
+
+        image = new WritableImage(atlasWidth, Math.max(1, rowY + rowHeight));
+        PixelWriter writer = image.getPixelWriter();
+        for (int i = 0; i < count; i++) {
+            if (scaled[i] != null) {
+                writer.setPixels(x[i], y[i], (int) scaled[i].getWidth(), (int) scaled[i].getHeight(),
+                        scaled[i].getPixelReader(), 0, 0);
+            }
+        }
+
+        if (rotationStep > 0 && rotatedFrames == null) {
+            RotatedFrames frames = new RotatedFrames(scale, rotationStep, rotationMaxBytes);
+            for (int i = 0; i < count; i++) {
+                int sprite = pending.get(i);
+                if (rotated[sprite] && scaled[i] != null) {
+                    frames.add(sprite, scaled[i], frameCounts[sprite], widths[sprite], heights[sprite]);
+                }
+            }
+            rotatedFrames = frames;
+        }
+
+        for (int sprite : pending) {
+            if (rotated[sprite]) {
+                unrotatedCells[sprite] = new RotatedFrames.Cell[frames[sprite].length];
+                for (int frame = 0; frame < frames[sprite].length; frame++) {
+                    unrotatedCells[sprite][frame] = new RotatedFrames.Cell(image, frames[sprite][frame], 0, 0,
+                            widths[sprite], heights[sprite]);
+                }
+            }
+        }
+
+        /*
+         * The sources are kept for rescaled()
+         */
+        packed.addAll(pending);
+        pending.clear();
+    }
+
+    /**
+     * The same sprites, packed into a new atlas at another scale. Reads nothing that changes once packed, so it can
+     * be called on a worker thread while this one is being drawn.
+     */
+    SpriteAtlas rescaled(double scale) {
+
+        SpriteAtlas atlas = new SpriteAtlas(scale);
+        for (int sprite : packed) {
+            atlas.add(sprite, sources[sprite], frameCounts[sprite], widths[sprite], heights[sprite]);
+            atlas.encodedSources.set(sprite, encodedSources.get(sprite));
+        }
+        System.arraycopy(rotated, 0, atlas.rotated, 0, SPRITE_COUNT);
+        atlas.setRotations(rotationStep, rotationMaxBytes, null);
+        atlas.pack();
+        atlas.renderRotations();
+        return atlas;
+    }
+
+    /**
+     * Render the rotated frames, unless rendered already, e.g. shared from another atlas. Takes a while: on a worker
+     * thread, while the atlas gets drawn. Nothing happens if the sprites have no rotated frames.
+     */
+    void renderRotations() {
+        if (rotatedFrames != null) {
+            rotatedFrames.render();
+        }
+    }
+
+    /**
+     * @return the frame area in the atlas image, null if the sprite has no such frame
+     */
+    Rectangle2D getFrame(int sprite, int frame) {
+        Rectangle2D[] spriteFrames = frames[sprite];
+        return spriteFrames != null && frame < spriteFrames.length ? spriteFrames[frame] : null;
+    }
+
+    Image getImage() {
+        return image;
+    }
+
+    /**
+     * @return the frame width as drawn on the board, logical
+     */
+    double getWidth(int sprite) {
+        return widths[sprite];
+    }
+
+    double getHeight(int sprite) {
+        return heights[sprite];
+    }
+
+    /**
+     * @return null if none; maybe not rendered yet
+     */
+    RotatedFrames getRotatedFrames() {
+        return rotatedFrames;
+    }
+
+    /**
+     * @return the angle to the nearest rotation step, the one drawn
+     */
+    double quantizeRotation(double degrees) {
+        if (rotatedFrames != null && rotatedFrames.isRendered()) {
+            return rotatedFrames.quantize(degrees);
+        }
+        return rotationStep > 0 ? Math.round(degrees / rotationStep) * rotationStep : degrees;
+    }
+
+    /**
+     * @param degrees clockwise, taken to the nearest step
+     * @return the rotated frame, null if the sprite has no rotated frames
+     */
+    RotatedFrames.Cell getRotated(int sprite, int frame, double degrees) {
+
+        if (rotatedFrames == null || !rotatedFrames.contains(sprite) || unrotatedCells[sprite] == null
+                || frame >= unrotatedCells[sprite].length) {
+            return null;
+        }
+        RotatedFrames.Cell cell = rotatedFrames.get(sprite, frame, rotatedFrames.step(degrees));
+        return cell != null ? cell : unrotatedCells[sprite][frame];
+    }
+
+    /**
+     * Draw a rotated frame: a plain copy, as any other frame.
+     *
+     * @param x where the unrotated frame would be
+     */
+    void draw(GraphicsContext gc, RotatedFrames.Cell cell, double x, double y) {
+        gc.drawImage(cell.page, cell.area.getMinX(), cell.area.getMinY(), cell.area.getWidth(), cell.area.getHeight(),
+                x + cell.x, y + cell.y, cell.width, cell.height);
+        drawCount++;
+    }
+
+    /**
+     * @return the drawImage calls made since the last call; for the performance overlay (see FrameStats)
+     */
+    int takeDrawCount() {
+        int count = drawCount;
+        drawCount = 0;
+        return count;
+    }
+
+    void draw(GraphicsContext gc, int sprite, double x, double y) {
+        draw(gc, sprite, 0, x, y);
+    }
+
+    /**
+     * Draw the frame at the size given when added.
+     */
+    void draw(GraphicsContext gc, int sprite, int frame, double x, double y) {
+        Rectangle2D area = getFrame(sprite, frame);
+        if (area != null) {
+            gc.drawImage(image, area.getMinX(), area.getMinY(), area.getWidth(), area.getHeight(),
+                    x, y, widths[sprite], heights[sprite]);
+            drawCount++;
+        }
+    }
+
+    /**
+     * Draw the frame to fill the area given; for the pad buttons, whose size comes with them.
+     */
+    void draw(GraphicsContext gc, int sprite, Rectangle2D target) {
+        Rectangle2D area = getFrame(sprite, 0);
+        if (area != null) {
+            gc.drawImage(image, area.getMinX(), area.getMinY(), area.getWidth(), area.getHeight(),
+                    target.getMinX(), target.getMinY(), target.getWidth(), target.getHeight());
+            drawCount++;
+        }
+    }
+}
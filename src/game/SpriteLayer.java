@@ -0,0 +1,157 @@
+package game;
+
+import game.Sprites.Artifact;
+import game.Sprites.Ornament;
+import game.Sprites.Player;
+import game.Sprites.Teleport;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static game.Utils.DIR_RIGHT;
+import static game.Utils.DIR_DOWN;
+import static game.Utils.DIR_LEFT;
+import static game.Utils.DIR_UP;
+
+/**
+ * The dynamic layer content of a frame: the animated sprites in view and Eist, given to a SpriteRenderer. Runs every
+ * frame, so it allocates nothing: the objects in view go to lists kept from a frame to the next.
+ *
+ * Main draws the game with it, and the allocation checks (see Simulator) draw their frames with it too, headless.
+ */
+class SpriteLayer {
+
+    private final List<Artifact> artifactsInView = new ArrayList<>();
+    private final List<Ornament> ornamentsInView = new ArrayList<>();
+    private final List<Teleport> teleportsInView = new ArrayList<>();
+
+    /**
+     * The atlas sprite of the Eist's direction; kept while turning.
+     */
+    private int eistSprite = SpriteAtlas.EIST_RIGHT;
+
+    /**
+     * Set the viewport, begin the frame and give the sprites; the caller ends the frame, after adding whatever it
+     * draws over them.
+     *
+     * @param alpha see GameClock.getAlpha()
+     */
+    void draw(SpriteRenderer sprites, SpriteAtlas atlas, GameState state, CellList<Artifact> artifacts,
+              CellList<Ornament> ornaments, CellList<Teleport> teleports, Camera camera, double alpha) {
+
+        sprites.setViewport(camera.getX(), camera.getY(), camera.getWidth(), camera.getHeight());
+        sprites.beginFrame(atlas);
+
+        /*
+         * The sprites whose frame reaches into the view (see Camera)
+         */
+        double minX = camera.getX() - LevelData.GRID_DIMENSION;
+        double minY = camera.getY() - LevelData.GRID_DIMENSION;
+        double maxX = camera.getX() + camera.getWidth() + LevelData.GRID_DIMENSION;
+        double maxY = camera.getY() + camera.getHeight() + LevelData.GRID_DIMENSION;
+
+        int artifactFrame = state.getArtifactFrame();
+        Player eist = state.getEist();
+
+        /*
+         * Switch the Eists source graphics according to the movement direction. It could have been just rotated,
+         * but I wanted the light to always come from the right side. Oh, ok: almost always. The bitmap will need
+         * rotation while turning, and sometimes while falling down. Missing chiaroscuro should be unnoticeable.
+         */
+        switch (eist.getDirection()) {
+            case DIR_RIGHT:
+                eistSprite = SpriteAtlas.EIST_RIGHT;
+                break;
+
+            case DIR_DOWN:
+                eistSprite = SpriteAtlas.EIST_DOWN;
+                break;
+
+            case DIR_LEFT:
+                eistSprite = SpriteAtlas.EIST_LEFT;
+                break;
+
+            case DIR_UP:
+                eistSprite = SpriteAtlas.EIST_UP;
+                break;
+
+            default:
+                break;
+        }
+
+        /*
+         * Draw artifacts
+         */
+        if (artifacts.allIntersecting(minX, minY, maxX, maxY, artifactsInView) > 0) {
+
+            for (int i = 0; i < artifactsInView.size(); i++) {
+                Artifact artifact = artifactsInView.get(i);
+
+                sprites.draw(SpriteAtlas.ARTIFACT, artifactFrame, artifact.getPosX(), artifact.getPosY());
+            }
+        }
+
+        /*
+         * Draw ornaments
+         */
+        if (ornaments.allIntersecting(minX, minY, maxX, maxY, ornamentsInView) > 0) {
+
+            for (int i = 0; i < ornamentsInView.size(); i++) {
+                Ornament ornament = ornamentsInView.get(i);
+
+                sprites.draw(SpriteAtlas.ORNAMENT, artifactFrame, ornament.getPosX(), ornament.getPosY());
+            }
+        }
+
+        /*
+         * Draw teleports
+         */
+        if (teleports.allIntersecting(minX, minY, maxX, maxY, teleportsInView) > 0) {
+
+            for (int i = 0; i < teleportsInView.size(); i++) {
+                Teleport teleport = teleportsInView.get(i);
+
+                sprites.draw(SpriteAtlas.TELEPORT, artifactFrame, teleport.getPosX(), teleport.getPosY());
+            }
+        }
+
+        /*
+         * Draw Eist
+         */
+        double eistX = eist.getRenderX(alpha);
+        double eistY = eist.getRenderY(alpha);
+
+        if (!state.isFalling()) {
+
+            if (eist.rotation != 0) {
+                // Rotation around Eist's center
+                sprites.drawRotated(eistSprite, state.getEistFrame(), eistX, eistY, eist.rotation);
+            } else {
+                sprites.draw(eistSprite, state.getEistFrame(), eistX, eistY);
+            }
+        }
+
+        if (eist.isMoving && state.isFalling()) {
+
+            int fallingFrame = state.getFallingFrame();
+
+            switch (eist.getDirection()) {
+                case DIR_RIGHT:
+                    sprites.draw(SpriteAtlas.FALLING_RIGHT, fallingFrame, eistX, eistY);
+                    break;
+
+                case DIR_DOWN:
+                    sprites.draw(SpriteAtlas.FALLING_DOWN, fallingFrame, eistX, eistY);
+                    break;
+
+                case DIR_LEFT:
+                    sprites.draw(SpriteAtlas.FALLING_LEFT, fallingFrame, eistX, eistY);
+                    break;
+
+                case DIR_UP:
+                    sprites.draw(SpriteAtlas.FALLING_UP, fallingFrame, eistX, eistY);
+                    break;
+            }
+        }
+    }
+}
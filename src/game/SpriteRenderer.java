@@ -0,0 +1,75 @@
+package game;
+
+import javafx.scene.Node;
+
+/**
+ * Draws the animated sprites: the dynamic layer of the game window, over the static layer canvas (see Main). The
+ * sprites of a frame are given between beginFrame() and endFrame(), in logical coordinates (see BoardView), the last
+ * one on top; whatever was given for the previous frame goes away.
+ *
+ * Two backends, chosen at startup with --renderer=canvas|nodes:
+ *
+ *   canvas  immediate mode: the sprites are drawn into a Canvas, and only the areas drawn on the previous frame get
+ *           cleared (see CanvasSpriteRenderer); the default
+ *   nodes   retained mode: a pool of ImageViews in the scene graph, moved to where the sprites are
+ *           (see NodeSpriteRenderer)
+ *
+ * RenderBench compares them on the same scripted scene.
+ */
+interface SpriteRenderer {
+
+    String CANVAS = "canvas";
+    String NODES = "nodes";
+
+    /**
+     * @param name CANVAS or NODES; anything else gets the canvas renderer
+     */
+    static SpriteRenderer create(String name, BoardView view) {
+        if (NODES.equalsIgnoreCase(name)) {
+            return new NodeSpriteRenderer(view);
+        }
+        if (name != null && !CANVAS.equalsIgnoreCase(name)) {
+            System.out.println("Unknown renderer " + name + ", using " + CANVAS);
+        }
+        return new CanvasSpriteRenderer(view);
+    }
+
+    /**
+     * @return CANVAS or NODES
+     */
+    String getName();
+
+    /**
+     * @return the layer to add to the scene, over the static layer
+     */
+    Node getNode();
+
+    /**
+     * The window got resized: the view is fitted to the new size already.
+     */
+    void resize(double width, double height);
+
+    /**
+     * What of the board the sprites get shown in (see Camera): the sprites given from now on are in board coordinates,
+     * the board point (x, y) at the layout top left corner, and they're cut at width x height. The whole 1920 x 1080
+     * layout until set.
+     */
+    void setViewport(double x, double y, double width, double height);
+
+    /**
+     * @param atlas the atlas the sprites of the frame come from; it changes when the level does, or the view scale
+     */
+    void beginFrame(SpriteAtlas atlas);
+
+    /**
+     * The frame at the size given when added to the atlas; nothing if the sprite has no such frame.
+     */
+    void draw(int sprite, int frame, double x, double y);
+
+    /**
+     * The frame rotated clockwise around its center.
+     */
+    void drawRotated(int sprite, int frame, double x, double y, double degrees);
+
+    void endFrame();
+}
@@ -16,17 +16,24 @@ abstract class Sprites extends Utils {
         double rotation;
         double x;
         double y;
+        double prevX; // Position before the last simulation tick, to interpolate the drawing from
+        double prevY;
         int detectionPoint1X;
         int detectionPoint1Y;
         int detectionPoint2X;
         int detectionPoint2Y;
 
-        private Integer direction;
-        private Integer turning; // TURNING_NOT / _RIGHT / _LEFT / _BACK
-        private Integer keys;
+        private int direction;
+        private int turning; // TURNING_NOT / _RIGHT / _LEFT / _BACK
+        private int keys;
         private Rectangle2D area;
-        private Point2D center;
-        private Point2D end_point; // Coordinates at which Eist should be placed at the end of the current maneuver
+        /*
+         * Kept as primitives, not Point2D: the center moves every tick.
+         */
+        private double centerX;
+        private double centerY;
+        private double endX; // Coordinates at which Eist should be placed at the end of the current maneuver
+        private double endY;
 
         void setDirection(int value) {
             switch(value) {
@@ -52,41 +59,68 @@ abstract class Sprites extends Utils {
             keys = value;
         }
 
-        void setCenter(Point2D point2D) {
-            center = point2D;
+        void setCenter(double x, double y) {
+            centerX = x;
+            centerY = y;
         }
 
         void setArea(Rectangle2D rectangle2D) {
             area = rectangle2D;
         }
 
-        void setEndPoint(Point2D point2D) {
-            end_point = point2D;
+        void setEndPoint(double x, double y) {
+            endX = x;
+            endY = y;
         }
 
         int getDirection() {
-            return direction != null ? direction : 0;
+            return direction;
         }
 
         int getTurning() {
-            return turning != null ? turning : 0;
+            return turning;
         }
 
         int getKeys() {
-            return keys != null ? keys : 0;
+            return keys;
+        }
+
+        double getCenterX() {
+            return centerX;
+        }
+
+        double getCenterY() {
+            return centerY;
         }
 
-        Point2D getCenter() {
-            return center;
+        double getEndX() {
+            return endX;
         }
 
-        Point2D getEndPoint() {
-            return end_point;
+        double getEndY() {
+            return endY;
         }
 
         Rectangle2D getArea() {
             return  area;
         }
+
+        /**
+         * Remember the current position as the starting point of the next tick. Call it directly after a jump
+         * (teleport, level load) too, so that the renderer won't interpolate across the board.
+         */
+        void storePosition() {
+            prevX = x;
+            prevY = y;
+        }
+
+        double getRenderX(double alpha) {
+            return prevX + (x - prevX) * alpha;
+        }
+
+        double getRenderY(double alpha) {
+            return prevY + (y - prevY) * alpha;
+        }
     }
 
     static class Arrow {
@@ -164,6 +198,7 @@ abstract class Sprites extends Utils {
 
         private double posX;
         private double posY;
+        private Rectangle2D area;
 
         void setPosX(double x_value) {
             posX = x_value;
@@ -173,6 +208,10 @@ abstract class Sprites extends Utils {
             posY = y_value;
         }
 
+        void setArea(Rectangle2D rectangle2D) {
+            area = rectangle2D;
+        }
+
         double getPosX() {
             return posX;
         }
@@ -180,6 +219,10 @@ abstract class Sprites extends Utils {
         double getPosY() {
             return posY;
         }
+
+        Rectangle2D getArea() {
+            return  area;
+        }
     }
 
     static class Teleport {
@@ -3,22 +3,42 @@ package game;
 import javafx.application.Application;
 import javafx.application.Platform;
 
+import java.util.Arrays;
+
 
 public class Start {
 
     public static void main(String[] args) {
 
         /*
-         * Workaround for the JavaFX for linux bug
-         * see: https://stackoverflow.com/questions/45812036/javafx-60-fps-frame-rate-cap-doesnt-work/45827990#45827990
+         * The 'quantum.multithreaded=false' workaround for the 60 FPS cap is no longer needed: the game
+         * simulation runs on a fixed timestep (see GameClock), whatever the display refresh rate.
          */
-        System.setProperty("quantum.multithreaded", "false");
-        System.out.println("Setting \'quantum.multithreaded\' \'true\' (see: https://stackoverflow.com/a/45827990/4040598)");
         System.out.println("eist-returns {-E --edit} runs the Level Editor");
+        System.out.println("eist-returns {-S --simulate} <level> <scenario file>... runs the level headless");
+        System.out.println("eist-returns {-P --par} calculates the par (minimum turns) of all the levels");
+        System.out.println("eist-returns {-R --replay} <replay file> [--headless] plays the recorded level run");
+        System.out.println("eist-returns {-B --bundle} [--bench] [level folder]... packs the levels into bundle files");
+        System.out.println("eist-returns {-D --dat-bench} [entries] measures the .dat parsing throughput");
+        System.out.println("eist-returns --renderer=canvas|nodes draws the sprites into a canvas, or as scene nodes");
+        System.out.println("eist-returns --render-bench [level] [sprites] compares the renderers on a scripted scene");
 
         if(args.length > 0) {
             String arg = args[0].trim().toUpperCase();
-            if (arg.equals("-E") || arg.equals("--EDIT")) {
+            if (arg.equals("-S") || arg.equals("--SIMULATE")) {
+                /*
+                 * No FX toolkit needed here
+                 */
+                System.exit(Simulator.main(Arrays.copyOfRange(args, 1, args.length)));
+            } else if (arg.equals("-P") || arg.equals("--PAR")) {
+                System.exit(LevelSolver.main(Arrays.copyOfRange(args, 1, args.length)));
+            } else if (arg.equals("-B") || arg.equals("--BUNDLE")) {
+                System.exit(LevelBundle.main(Arrays.copyOfRange(args, 1, args.length)));
+            } else if (arg.equals("-D") || arg.equals("--DAT-BENCH")) {
+                System.exit(DatReader.main(Arrays.copyOfRange(args, 1, args.length)));
+            } else if ((arg.equals("-R") || arg.equals("--REPLAY")) && Arrays.asList(args).contains("--headless")) {
+                System.exit(ReplayPlayer.main(Arrays.copyOfRange(args, 1, args.length)));
+            } else if (arg.equals("-E") || arg.equals("--EDIT")) {
                 Application.launch(Editor.class, args);
             } else {
                 Application.launch(Main.class, args);
@@ -22,7 +22,7 @@ import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
-import javafx.scene.image.PixelReader;
+import javafx.scene.input.KeyCode;
 import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.*;
@@ -36,6 +36,7 @@ import javafx.scene.text.FontWeight;
 import javafx.scene.text.Text;
 import javafx.stage.*;
 
+import java.awt.image.BufferedImage;
 import java.io.File;
 
 import game.Sprites.Player;
@@ -60,6 +61,8 @@ import java.io.*;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.MessageDigest;
@@ -68,6 +71,13 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
 import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
 
@@ -87,29 +97,65 @@ abstract class Utils extends Application {
     int mAchievedLevel = 0;
 
     double mFrameDurationEist = 90000000;
+    /**
+     * Simulation ticks per second, independent from the display refresh rate (see GameClock).
+     */
+    int mTickRate = GameClock.DEFAULT_TICK_RATE;
+    /**
+     * Eist's turns are drawn in steps of this many degrees, from frames rotated beforehand taking this much memory
+     * at most (see RotatedFrames); a step of 0 turns Eist smoothly, rotating the frames as they are drawn.
+     */
+    double mRotationStep = RotatedFrames.DEFAULT_STEP_DEGREES;
+    long mRotationCacheBytes = RotatedFrames.DEFAULT_MAX_BYTES;
+    /**
+     * The last made, rendered or not yet, for the atlases built next (Eist is the same on every level); set on the
+     * loading threads.
+     */
+    private volatile RotatedFrames mRotatedFrames;
     /**
      * This was left as final int, since in the future may be replaced with a value stored in prefs.
      */
     final int MAX_LEVEL = 40;
     boolean mGameFinished = false;
 
+    /**
+     * The board dimensions setting: the window is the screen width divided by it, 1 for the full screen.
+     */
     double mDimensionDivider;
 
-    int mCurrentEistFrame = 0;
-    int mCurrentArtifactFrame = 0;
-    Integer mCurrentFallingFrame = null;
+    /**
+     * The logical board in the window; see BoardView.
+     */
+    final BoardView mView = new BoardView();
 
     boolean mEditor = false;
     boolean mTesting = false;
+    /**
+     * Playing a recording (see ReplayPlayer): nothing gets recorded.
+     */
+    boolean mReplaying = false;
 
-    boolean turnRight;
+    int mTurnsBest;
+    /**
+     * Minimum turns to clear the level (see LevelSolver), 0 until calculated.
+     */
+    int mPar;
 
-    boolean mDisableDoorReaction = false;
+    /**
+     * Off-path pixels of the current board, sampled once on loading (the decoded board image is only drawn).
+     */
+    WalkabilityMask mWalkability;
 
-    int mTurnsCounter;
-    int mTurnsBest;
+    /**
+     * The current board, 1920 x 1080 unless set by board.dat (see LevelData); the objects get indexed over it.
+     */
+    double mBoardWidth = BoardView.WIDTH;
+    double mBoardHeight = BoardView.HEIGHT;
 
-    PixelReader pixelReader;
+    /**
+     * What of the board gets shown, scrolled with Eist on a board.dat board.
+     */
+    final Camera mCamera = new Camera();
 
     private Rectangle2D mButtonLevelUp;
     private Rectangle2D mButtonLevelDown;
@@ -136,6 +182,11 @@ abstract class Utils extends Application {
 
     File mUserFolder;
     File mUserLevelsFolder;
+
+    /**
+     * The performance overlay and the frame times export; see handleFrameStatsKey().
+     */
+    final FrameStats mFrameStats = new FrameStats();
     private File mEditorFolder;
 
     private boolean mLoadUserLevel;
@@ -164,6 +215,7 @@ abstract class Utils extends Application {
     Font messageFont;
     Font turnsFont;
     Font playerFont;
+    Font statsFont;
     private Font menuFont;
 
     private String mHttpResponse;
@@ -178,6 +230,10 @@ abstract class Utils extends Application {
     double mFrameDimension;
     double mGridDimension;
     double mHalfGridDimension;
+    /**
+     * The menu windows are not scaled as the board is: their grid, in window pixels (see initializeMenuMetrics()).
+     */
+    private double mMenuGridDimension;
     private double mButtonWidth;
     private double mButtonWidthNarrow;
     int mDetectionOffset;
@@ -235,14 +291,19 @@ abstract class Utils extends Application {
     Pad pad;
     Toolbar toolbar;
 
+    /**
+     * The game rules; works on the objects above and the object lists loaded from .dat files.
+     */
+    GameState state;
+
     private Alert mErrorAlert;
 
     /**
      * To place the game board content (arrows, artifacts, teleports etc), we'll divide it into rows and columns grid.
      * The column is half the width of the Frame. The row is half the height of the Frame.
      */
-    double[] rows = new double[19];
-    double[] columns = new double[33];
+    double[] rows = new double[LevelData.MAX_BOARD_SQUARES + 1];
+    double[] columns = new double[LevelData.MAX_BOARD_SQUARES + 1];
 
     void setBoard() {
 
@@ -255,21 +316,22 @@ abstract class Utils extends Application {
         mMuteSound = prefs.getBoolean("msound", false);
         mMuteMusic = prefs.getBoolean("mmusic", false);
         mDimensionDivider = prefs.getDouble("divider", 1.5);
+        mTickRate = GameClock.clampTickRate(prefs.getInt("tickrate", GameClock.DEFAULT_TICK_RATE));
+        mRotationStep = prefs.getDouble("rotationstep", RotatedFrames.DEFAULT_STEP_DEGREES);
+        mRotationCacheBytes = prefs.getInt("rotationcache", (int) (RotatedFrames.DEFAULT_MAX_BYTES >> 20))
+                * 1024L * 1024L;
 
         mPlayer = prefs.get("user", "");
         mPass = prefs.get("pass", "");
 
         /*
-         * The dimensions of the Scene and the game board inside will derive from the users' screen width.
-         * Source graphics has been drawn as fullHD (1920 x 1080).
+         * The game works in the dimensions the source graphics has been drawn for, fullHD (1920 x 1080), whatever
+         * the window size: the drawing gets scaled to the window (see BoardView).
          */
-        Rectangle2D primaryScreenBounds = Screen.getPrimary().getVisualBounds();
-        mSceneWidth = primaryScreenBounds.getWidth() / mDimensionDivider;
-        mSceneHeight = (mSceneWidth / 1920) * 1080;
-        mFrameDimension = (mSceneWidth / 1920) * 120;
+        mSceneWidth = BoardView.WIDTH;
+        mSceneHeight = BoardView.HEIGHT;
+        mFrameDimension = LevelData.FRAME_DIMENSION;
         mGridDimension = mFrameDimension / 2;
-        mButtonWidth = mGridDimension * 5;
-        mButtonWidthNarrow = mGridDimension * 3;
         mHalfGridDimension = mGridDimension / 2;
         mDetectionOffset = (int) mFrameDimension / 6;
         mRotationRadius = mFrameDimension / 4;
@@ -302,32 +364,31 @@ abstract class Utils extends Application {
         mCenterX = columns[13] + mGridDimension / 2;
     }
 
-    /*
-     * FPS calculation after https://stackoverflow.com/a/28288527/4040598 by @brian
-     */
-
-    /*static long lastUpdate = 0;
-    static int index = 0;
-    static double[] frameRates = new double[5];
-    */
-    /*
-     * Returns the average FPS for the last frameRates.length frames rendered.
-     * (Original for loop replaced with foreach).
+    /**
+     * F3 shows the performance overlay, F4 starts or stops the frame times CSV export into ~/.EistReturns/perf.
+     *
+     * @return false if not a FrameStats key
      */
-    /*
-    static double getAverageFPS() {
-        double total = 0.0d;
-
-        for (double value : frameRates) {
-            total += value;
+    boolean handleFrameStatsKey(KeyCode code) {
+
+        switch (code) {
+            case F3:
+                mFrameStats.toggleVisible();
+                return true;
+            case F4:
+                mFrameStats.toggleRecording(new File(mUserFolder, "perf"));
+                return true;
+            default:
+                return false;
         }
-        return total / frameRates.length;
     }
-    */
 
     void handleMouseEvent(MouseEvent event) {
 
-        Point2D pointClicked = new Point2D(event.getSceneX(), event.getSceneY());
+        if (!mView.contains(event.getSceneX(), event.getSceneY())) {
+            return;
+        }
+        Point2D pointClicked = new Point2D(mView.toBoardX(event.getSceneX()), mView.toBoardY(event.getSceneY()));
 
 
         if (event.getButton() == MouseButton.PRIMARY) {
@@ -385,19 +446,19 @@ abstract class Utils extends Application {
                              */
                             if (pad.getButtonLeft().contains(pointClicked)) {
                                 pad.setSelection(DIR_LEFT);
-                                eist.isMoving = true;
+                                state.selectPad(DIR_LEFT);
                             } else if (pad.getButtonRight().contains(pointClicked)) {
                                 pad.setSelection(DIR_RIGHT);
-                                eist.isMoving = true;
+                                state.selectPad(DIR_RIGHT);
                             } else if (pad.getButtonUp().contains(pointClicked)) {
                                 pad.setSelection(DIR_UP);
-                                eist.isMoving = true;
+                                state.selectPad(DIR_UP);
                             } else if (pad.getButtonDown().contains(pointClicked)) {
                                 pad.setSelection(DIR_DOWN);
-                                eist.isMoving = true;
+                                state.selectPad(DIR_DOWN);
                             } else if (pad.getButtonClear().contains(pointClicked)) {
                                 pad.setSelection(DIR_CLEAR);
-                                eist.isMoving = true;
+                                state.selectPad(DIR_CLEAR);
                             }
                         }
 
@@ -414,60 +475,52 @@ abstract class Utils extends Application {
                      * Board clicked
                      */
                     if (!mEditor) {
-                        eist.isMoving = true;
+                        state.start();
                     } else {
                         if (mTesting) {
-                            eist.isMoving = true;
+                            state.start();
                         }
                     }
 
+                    /*
+                     * On to board coordinates, for a scrolled board (see Camera); off the board, nothing to click
+                     */
+                    pointClicked = pointClicked.add(mCamera.getX(), mCamera.getY());
+                    if (pointClicked.getX() < 0 || pointClicked.getY() < 0
+                            || pointClicked.getX() >= mWalkability.getWidth()
+                            || pointClicked.getY() >= mWalkability.getHeight()) {
+                        return;
+                    }
+
                     for (Slot slot : mSlots) {
 
                         if (slot.getArea().contains(pointClicked)) {
 
                             int clickedSlotIdx = mSlots.indexOf(slot);
 
-                            if (ladder.getSlotIdx() == null) {
-
-                                if (!mMuteSound) {
-                                    fxLadder.setBalance(calculateBalance(mSlots.get(clickedSlotIdx).getPosX()));
-                                    fxLadder.play();
-                                }
-                                ladder.setSlotIdx(clickedSlotIdx);
-
-                            } else {
-
-                                if (clickedSlotIdx == ladder.getSlotIdx()) {
-
-                                    if (!mMuteSound) {
-                                        fxLadder.setBalance(calculateBalance(mSlots.get(clickedSlotIdx).getPosX()));
-                                        fxLadder.play();
-                                    }
-                                    ladder.setSlotIdx(null);
-                                }
+                            if (state.clickSlot(clickedSlotIdx) && !mMuteSound) {
+                                fxLadder.setBalance(calculateBalance(mSlots.get(clickedSlotIdx).getPosX()));
+                                fxLadder.play();
                             }
-
                         }
                     }
 
                     /*
                      * In-game: place or remove arrows if selected
                      */
-                    if (pad.getSelection() != null && pixelReader.getArgb((int) pointClicked.getX(), (int) pointClicked.getY()) != -16777216) {
+                    if (pad.getSelection() != null && !mWalkability.isVoid((int) pointClicked.getX(), (int) pointClicked.getY())) {
 
-                        Rectangle2D pressedSquare = nearestAdjustedSquare(pointClicked.getX(), pointClicked.getY());
+                        Rectangle2D pressedSquare = mWalkability.nearestAdjustedSquare(pointClicked.getX(), pointClicked.getY());
 
                         if (pressedSquare != null) {
 
                             if (pad.getSelection() != DIR_CLEAR) {
 
-                                if (arrowAllowed(new Point2D(pressedSquare.getMinX() + mGridDimension, pressedSquare.getMinY() + mGridDimension))) {
-                                    placeArrow(pressedSquare.getMinX(), pressedSquare.getMinY());
-                                }
+                                state.placeArrow(pressedSquare.getMinX(), pressedSquare.getMinY(), pad.getSelection());
 
                             } else {
 
-                                removeArrow(pressedSquare);
+                                state.removeArrow(pressedSquare);
                             }
                         }
                     }
@@ -479,9 +532,9 @@ abstract class Utils extends Application {
                         /*
                         If path clicked
                          */
-                        if (pixelReader.getArgb((int) pointClicked.getX(), (int) pointClicked.getY()) != -16777216) {
+                        if (!mWalkability.isVoid((int) pointClicked.getX(), (int) pointClicked.getY())) {
 
-                            Rectangle2D pressedSquare = nearestAdjustedSquare(pointClicked.getX(), pointClicked.getY());
+                            Rectangle2D pressedSquare = mWalkability.nearestAdjustedSquare(pointClicked.getX(), pointClicked.getY());
                             Point2D checkPoint;
 
                             if (pressedSquare != null) {
@@ -533,7 +586,7 @@ abstract class Utils extends Application {
                             placeOrnament(rectangle2D.getMinX(), rectangle2D.getMinY());
                         }
                         if (toolbar.getSelection() == SELECTION_SLOT &&
-                                pixelReader.getArgb((int) pointClicked.getX(), (int) pointClicked.getY()) == -16777216) {
+                                mWalkability.isVoid((int) pointClicked.getX(), (int) pointClicked.getY())) {
                             Rectangle2D area = nearestSlot(pointClicked.getX(), pointClicked.getY(), toolbar.getSlotOrientation());
                             if (area != null) {
                                 placeSlot(area, toolbar.getSlotOrientation());
@@ -562,8 +615,10 @@ abstract class Utils extends Application {
                                 prefs.putInt("sel", toolbar.getSelection());
                             }
                             mTesting = true;
+                            mTestStart = state.snapshot();
                         } else {
                             mTesting = false;
+                            mTestStart = null;
                             disableButtons(false);
                             loadEditor();
                         }
@@ -609,6 +664,12 @@ abstract class Utils extends Application {
      */
     Image mBoardImg;
 
+    /**
+     * Instead of mBoardImg on a board.dat board, and the menu panel drawn right of it.
+     */
+    BoardTiles mBoardTiles;
+    Image mMenuImg;
+
     Image mEistImg;
     Image mEistRightImg;
     Image mEistDownImg;
@@ -665,119 +726,387 @@ abstract class Utils extends Application {
     Image mMutedMusicImg;
     Image mMutedSoundImg;
 
+    /**
+     * The sprites above, scaled for the board; what the game draws from.
+     */
+    SpriteAtlas mAtlas;
+
+    /**
+     * The assets of the current level, whose atlas gets replaced when rasterized again.
+     */
+    private LevelAssets mLevelAssets;
+
+    /*
+     * The atlas rasterized at a new scale, in the background; see rasterizeAtlas(). The rotated frames of a new atlas
+     * get rendered there too (see buildAtlas()); the thread starts with the first task.
+     */
+    final ExecutorService mRasterExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "atlas-raster");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private boolean mRasterizing;
+
+    /**
+     * Rasterize the current level sprites again if the view calls for another scale: in the background, while the
+     * current atlas gets drawn scaled. Nothing happens to the game state; the atlas is swapped in on the FX thread,
+     * and the static layer redrawn with it (see onAtlasChanged()). Only one runs at a time; the one after it takes the
+     * scale of the time, so a window resized in many steps gets rasterized twice at most.
+     */
+    void rasterizeAtlas() {
+
+        if (mRasterizing || mAtlas == null || mAtlas.getScale() == mView.getRasterScale()) {
+            return;
+        }
+
+        mRasterizing = true;
+        SpriteAtlas atlas = mAtlas;
+        LevelAssets assets = mLevelAssets;
+        double scale = mView.getRasterScale();
+        CompletableFuture.supplyAsync(() -> atlas.rescaled(scale), mRasterExecutor)
+                .whenComplete((rescaled, error) -> Platform.runLater(() -> {
+                    mRasterizing = false;
+                    if (error != null) {
+                        System.out.println("Couldn't rasterize the sprites: " + error);
+                        return;
+                    }
+                    /*
+                     * Kept with the level assets, unless these got replaced meanwhile
+                     */
+                    assets.atlas = rescaled;
+                    if (rescaled.getRotatedFrames() != null) {
+                        mRotatedFrames = rescaled.getRotatedFrames();
+                    }
+                    if (mAtlas == atlas) {
+                        mAtlas = rescaled;
+                        onAtlasChanged();
+                    }
+                    rasterizeAtlas();
+                }));
+    }
+
+    /**
+     * The atlas drawn from got replaced; nothing to do unless some drawing is kept from the previous one.
+     */
+    void onAtlasChanged() {
+    }
+
+    /*
+     * The board tiles of a board.dat board get decoded in the background, as the camera gets near; see BoardTiles.
+     */
+    private ExecutorService mBoardTileExecutor;
+
+    private ExecutorService boardTileExecutor() {
+
+        if (mBoardTileExecutor == null) {
+            mBoardTileExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "board-tiles");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return mBoardTileExecutor;
+    }
+
+    /**
+     * Board tiles got decoded; nothing to do unless the board drawing is kept.
+     */
+    void onBoardTilesLoaded() {
+    }
+
+    /**
+     * Show the board around Eist, as the level (re)starts.
+     */
+    void centerCamera() {
+        mCamera.center(eist.x + mGridDimension, eist.y + mGridDimension, mView.getScale());
+    }
+
+    /**
+     * The common sprites and the level bitmaps, for the level assets.
+     */
+    private SpriteAtlas buildAtlas(LevelAssets assets, LevelBundle bundle, AssetGeometry geometry) {
+
+        GameEvents.AtlasBuild event = new GameEvents.AtlasBuild();
+        event.begin();
+
+        SpriteAtlas atlas = new SpriteAtlas(geometry.rasterScale);
+        int frames = SpriteAtlas.SHEET_FRAMES;
+        double frameDimension = geometry.frameDimension;
+        double gridDimension = geometry.gridDimension;
+
+        atlas.setRotations(geometry.rotationStep, geometry.rotationCacheBytes, mRotatedFrames);
+        atlas.addRotated(SpriteAtlas.EIST_RIGHT);
+        atlas.addRotated(SpriteAtlas.EIST_DOWN);
+        atlas.addRotated(SpriteAtlas.EIST_LEFT);
+        atlas.addRotated(SpriteAtlas.EIST_UP);
+
+        atlas.add(SpriteAtlas.EIST_RIGHT, mEistRightImg, frames, frameDimension, frameDimension);
+        atlas.add(SpriteAtlas.EIST_DOWN, mEistDownImg, frames, frameDimension, frameDimension);
+        atlas.add(SpriteAtlas.EIST_LEFT, mEistLeftImg, frames, frameDimension, frameDimension);
+        atlas.add(SpriteAtlas.EIST_UP, mEistUpImg, frames, frameDimension, frameDimension);
+        atlas.add(SpriteAtlas.FALLING_RIGHT, mEistFallingRightImg, frames, frameDimension, frameDimension);
+        atlas.add(SpriteAtlas.FALLING_DOWN, mEistFallingDownImg, frames, frameDimension, frameDimension);
+        atlas.add(SpriteAtlas.FALLING_LEFT, mEistFallingLeftImg, frames, frameDimension, frameDimension);
+        atlas.add(SpriteAtlas.FALLING_UP, mEistFallingUpImg, frames, frameDimension, frameDimension);
+        atlas.add(SpriteAtlas.TELEPORT, mTeleportImg, frames, frameDimension, frameDimension);
+        addLevelSprite(atlas, SpriteAtlas.ARTIFACT, assets.artifact, bundle, "amulet.png", frames, frameDimension, frameDimension);
+        addLevelSprite(atlas, SpriteAtlas.ORNAMENT, assets.ornament, bundle, "ornament.png", frames, frameDimension, frameDimension);
+
+        atlas.add(SpriteAtlas.ARROW_RIGHT, mArrowRightImg, 1, frameDimension, frameDimension);
+        atlas.add(SpriteAtlas.ARROW_DOWN, mArrowDownImg, 1, frameDimension, frameDimension);
+        atlas.add(SpriteAtlas.ARROW_LEFT, mArrowLeftImg, 1, frameDimension, frameDimension);
+        atlas.add(SpriteAtlas.ARROW_UP, mArrowUpImg, 1, frameDimension, frameDimension);
+        addLevelSprite(atlas, SpriteAtlas.KEY, assets.key, bundle, "key.png", 1, frameDimension, frameDimension);
+        addLevelSprite(atlas, SpriteAtlas.DOOR_H, assets.doorH, bundle, "door_h.png", 1, frameDimension, frameDimension);
+        addLevelSprite(atlas, SpriteAtlas.DOOR_V, assets.doorV, bundle, "door_v.png", 1, frameDimension, frameDimension);
+        addLevelSprite(atlas, SpriteAtlas.EXIT_CLOSED, assets.exitClosed, bundle, "exit_closed.png", 1, frameDimension, frameDimension);
+        addLevelSprite(atlas, SpriteAtlas.EXIT_OPEN, assets.exitOpen, bundle, "exit_open.png", 1, frameDimension, frameDimension);
+        atlas.add(SpriteAtlas.SLOT_H, mSlotHImg, 1, gridDimension, frameDimension);
+        atlas.add(SpriteAtlas.SLOT_V, mSlotVImg, 1, frameDimension, gridDimension);
+        addLevelSprite(atlas, SpriteAtlas.LADDER_H, assets.ladderH, bundle, "ladder_h.png", 1, gridDimension, frameDimension);
+        addLevelSprite(atlas, SpriteAtlas.LADDER_V, assets.ladderV, bundle, "ladder_v.png", 1, frameDimension, gridDimension);
+
+        atlas.add(SpriteAtlas.SEL_RIGHT, mSelRightImg, 1, geometry.selRight.getWidth(), geometry.selRight.getHeight());
+        atlas.add(SpriteAtlas.SEL_LEFT, mSelLeftImg, 1, geometry.selLeft.getWidth(), geometry.selLeft.getHeight());
+        atlas.add(SpriteAtlas.SEL_UP, mSelUpImg, 1, geometry.selUp.getWidth(), geometry.selUp.getHeight());
+        atlas.add(SpriteAtlas.SEL_DOWN, mSelDownImg, 1, geometry.selDown.getWidth(), geometry.selDown.getHeight());
+        atlas.add(SpriteAtlas.SEL_CLEAR, mSelClearImg, 1, geometry.selClear.getWidth(), geometry.selClear.getHeight());
+        atlas.add(SpriteAtlas.MUTED_MUSIC, mMutedMusicImg, 1, gridDimension, gridDimension);
+        atlas.add(SpriteAtlas.MUTED_SOUND, mMutedSoundImg, 1, gridDimension, gridDimension);
+
+        atlas.pack();
+
+        /*
+         * The rotated frames take a second or so to render: the level starts meanwhile, turning Eist with a transform.
+         * The next atlases share them, rendered or not; they get rendered once.
+         */
+        RotatedFrames rotatedFrames = atlas.getRotatedFrames();
+        if (rotatedFrames != null) {
+            mRotatedFrames = rotatedFrames;
+            if (!rotatedFrames.isRendered()) {
+                mRasterExecutor.execute(atlas::renderRotations);
+            }
+        }
+
+        event.width = (int) atlas.getImage().getWidth();
+        event.height = (int) atlas.getImage().getHeight();
+        event.commit();
+        return atlas;
+    }
+
+    /**
+     * The bitmaps loaded from a level bundle have no URL to decode them again from at the atlas size.
+     */
+    private static void addLevelSprite(SpriteAtlas atlas, int sprite, Image image, LevelBundle bundle, String name,
+                                       int frameCount, double width, double height) {
+
+        if (bundle != null && bundle.hasImage(name)) {
+            atlas.add(sprite, () -> bundle.getImage(name), frameCount, width, height);
+        } else {
+            atlas.add(sprite, image, frameCount, width, height);
+        }
+    }
+
+    /**
+     * Orbitron gets loaded once; the other sizes are derived by the family name, which the loading registers.
+     */
     void initializeFonts() {
 
         infoFont = Font.loadFont(ClassLoader.getSystemResource("Orbitron-Regular.ttf").toExternalForm(), mGridDimension * 0.75);
-        turnsFont = Font.loadFont(ClassLoader.getSystemResource("Orbitron-Regular.ttf").toExternalForm(), mGridDimension * 0.6);
+        String family = infoFont != null ? infoFont.getFamily() : Font.getDefault().getFamily();
+        if (infoFont == null) {
+            infoFont = Font.font(family, mGridDimension * 0.75);
+        }
+        turnsFont = Font.font(family, mGridDimension * 0.6);
         playerFont = Font.font("Helvetica", FontWeight.NORMAL, mGridDimension * 0.45);
-        messageFont = Font.loadFont(ClassLoader.getSystemResource("Orbitron-Regular.ttf").toExternalForm(), mGridDimension * 0.35);
-        menuFont = Font.loadFont(ClassLoader.getSystemResource("Orbitron-Regular.ttf").toExternalForm(), mGridDimension * 0.35);
+        messageFont = Font.font(family, mGridDimension * 0.35);
+        statsFont = Font.font("Monospaced", Math.max(11, mGridDimension * 0.25));
+        initializeMenuMetrics();
+    }
+
+    /**
+     * The menu windows take their sizes from the board as shown, so that they match the game window whatever its
+     * size; they are built on opening, with the metrics of the time.
+     */
+    private void initializeMenuMetrics() {
+
+        mMenuGridDimension = mGridDimension * mView.getScale();
+        mButtonWidth = mMenuGridDimension * 5;
+        mButtonWidthNarrow = mMenuGridDimension * 3;
+        menuFont = Font.font(infoFont.getFamily(), mMenuGridDimension * 0.35);
+    }
+
+    /**
+     * Fit the board to the window; see BoardView.fit().
+     *
+     * @return true if the view changed: the canvases need their transform set again and a redraw, and the sprites a
+     * new raster scale (see rasterizeAtlas())
+     */
+    boolean fitView(double windowWidth, double windowHeight, double outputScale) {
+
+        if (!mView.fit(windowWidth, windowHeight, outputScale)) {
+            return false;
+        }
+        if (infoFont != null) {
+            initializeMenuMetrics();
+        }
+        return true;
     }
 
+    /**
+     * Load all the common assets and wait for them; see queueCommonAssets() for the game, which doesn't wait.
+     */
     void loadCommonGraphics() {
 
-        /*
-         * Load media
-         */
-        try {
-            trackMainPlayer = new MediaPlayer(new Media(ClassLoader.getSystemResource("sounds/eist-intro.mp3").toExternalForm()));
-            trackMainPlayer.setVolume(0.4);
-            trackMainPlayer.setCycleCount(MediaPlayer.INDEFINITE);
+        AssetLoader loader = new AssetLoader();
+        queueCommonAssets(loader);
+        loader.start();
+        loader.awaitAll();
 
-            trackLevelPlayer = new MediaPlayer(new Media(ClassLoader.getSystemResource("sounds/eist-level.mp3").toExternalForm()));
-            trackLevelPlayer.setVolume(0.3);
-            trackLevelPlayer.setCycleCount(MediaPlayer.INDEFINITE);
+        initializeButtons();
+    }
 
-        } catch (MediaException e) {
+    private static Image loadImage(String resource) {
 
-            displayExceptionAlert("Media player error (missing sound codec?)", e);
-        }
+        GameEvents.ImageDecode event = new GameEvents.ImageDecode();
+        event.begin();
+        String url = ClassLoader.getSystemResource(resource).toExternalForm();
+        Image image = new Image(url);
+        event.commit(image, resource, "resource", () -> GameEvents.contentLength(url));
+        return image;
+    }
 
-        try {
-            fxBounce = new AudioClip(ClassLoader.getSystemResource("sounds/bounce.wav").toExternalForm());
-            fxBounce.setVolume(1);
+    private AudioClip loadClip(String resource) {
+        AudioClip clip = new AudioClip(ClassLoader.getSystemResource(resource).toExternalForm());
+        clip.setVolume(1);
+        return clip;
+    }
+
+    /**
+     * Queue the loading of the common assets: the sprites are needed for the first frame, the media and the menu and
+     * editor bitmaps later.
+     */
+    void queueCommonAssets(AssetLoader loader) {
 
-            fxArtifact = new AudioClip(ClassLoader.getSystemResource("sounds/amulet.wav").toExternalForm());
-            fxArtifact.setVolume(1);
+        /*
+         * Load media
+         */
+        loader.add(AssetLoader.GROUP_LATER, "eist-intro.mp3", () -> {
+            try {
+                MediaPlayer player = new MediaPlayer(new Media(ClassLoader.getSystemResource("sounds/eist-intro.mp3").toExternalForm()));
+                player.setVolume(0.4);
+                player.setCycleCount(MediaPlayer.INDEFINITE);
+                trackMainPlayer = player;
 
-            fxKey = new AudioClip(ClassLoader.getSystemResource("sounds/key.wav").toExternalForm());
-            fxKey.setVolume(1);
+            } catch (MediaException e) {
+                Platform.runLater(() -> displayExceptionAlert("Media player error (missing sound codec?)", e));
+            }
+        });
+        loader.add(AssetLoader.GROUP_LATER, "eist-level.mp3", () -> {
+            try {
+                MediaPlayer player = new MediaPlayer(new Media(ClassLoader.getSystemResource("sounds/eist-level.mp3").toExternalForm()));
+                player.setVolume(0.3);
+                player.setCycleCount(MediaPlayer.INDEFINITE);
+                trackLevelPlayer = player;
 
-            fxDoor = new AudioClip(ClassLoader.getSystemResource("sounds/door_open.wav").toExternalForm());
-            fxDoor.setVolume(1);
+            } catch (MediaException e) {
+                Platform.runLater(() -> displayExceptionAlert("Media player error (missing sound codec?)", e));
+            }
+        });
 
-            fxExit = new AudioClip(ClassLoader.getSystemResource("sounds/exit.wav").toExternalForm());
-            fxExit.setVolume(1);
+        loader.add(AssetLoader.GROUP_LATER, "sound effects", () -> {
+            try {
+                fxBounce = loadClip("sounds/bounce.wav");
+                fxArtifact = loadClip("sounds/amulet.wav");
+                fxKey = loadClip("sounds/key.wav");
+                fxDoor = loadClip("sounds/door_open.wav");
+                fxExit = loadClip("sounds/exit.wav");
+                fxLevelLost = loadClip("sounds/level_lost.wav");
+                fxLevelUp = loadClip("sounds/level.wav");
+                fxLadder = loadClip("sounds/ladder.wav");
+                fxTeleport = loadClip("sounds/teleport.wav");
 
-            fxLevelLost = new AudioClip(ClassLoader.getSystemResource("sounds/level_lost.wav").toExternalForm());
-            fxLevelLost.setVolume(1);
+            } catch (Exception e) {
+                Platform.runLater(() -> displayExceptionAlert("Media *.wav file found", e));
+            }
+        });
 
-            fxLevelUp = new AudioClip(ClassLoader.getSystemResource("sounds/level.wav").toExternalForm());
-            fxLevelUp.setVolume(1);
+        loader.add(AssetLoader.GROUP_FIRST_FRAME, "Eist sprites", () -> {
+            mEistRightImg = loadImage("images/sprites/eist_right.png");
+            mEistDownImg = loadImage("images/sprites/eist_down.png");
+            mEistLeftImg = loadImage("images/sprites/eist_left.png");
+            mEistUpImg = loadImage("images/sprites/eist_up.png");
+        });
 
-            fxLadder = new AudioClip(ClassLoader.getSystemResource("sounds/ladder.wav").toExternalForm());
-            fxLadder.setVolume(1);
+        loader.add(AssetLoader.GROUP_FIRST_FRAME, "falldown sprites", () -> {
+            mEistFallingRightImg = loadImage("images/sprites/falldown_right.png");
+            mEistFallingDownImg = loadImage("images/sprites/falldown_down.png");
+            mEistFallingLeftImg = loadImage("images/sprites/falldown_left.png");
+            mEistFallingUpImg = loadImage("images/sprites/falldown_up.png");
+        });
 
-            fxTeleport = new AudioClip(ClassLoader.getSystemResource("sounds/teleport.wav").toExternalForm());
-            fxTeleport.setVolume(1);
+        loader.add(AssetLoader.GROUP_FIRST_FRAME, "board sprites", () -> {
+            mArrowRightImg = loadImage("images/sprites/arrow_right.png");
+            mArrowDownImg = loadImage("images/sprites/arrow_down.png");
+            mArrowLeftImg = loadImage("images/sprites/arrow_left.png");
+            mArrowUpImg = loadImage("images/sprites/arrow_up.png");
 
-        } catch (Exception e) {
-            displayExceptionAlert("Media *.wav file found", e);
-        }
+            mSlotHImg = loadImage("images/sprites/slot_h.png");
+            mSlotVImg = loadImage("images/sprites/slot_v.png");
 
-        mEistRightImg = new Image(ClassLoader.getSystemResource("images/sprites/eist_right.png").toExternalForm());
-        mEistDownImg = new Image(ClassLoader.getSystemResource("images/sprites/eist_down.png").toExternalForm());
-        mEistLeftImg = new Image(ClassLoader.getSystemResource("images/sprites/eist_left.png").toExternalForm());
-        mEistUpImg = new Image(ClassLoader.getSystemResource("images/sprites/eist_up.png").toExternalForm());
+            mTeleportImg = loadImage("images/sprites/teleport.png");
 
-        mEistFallingRightImg = new Image(ClassLoader.getSystemResource("images/sprites/falldown_right.png").toExternalForm());
-        mEistFallingDownImg = new Image(ClassLoader.getSystemResource("images/sprites/falldown_down.png").toExternalForm());
-        mEistFallingLeftImg = new Image(ClassLoader.getSystemResource("images/sprites/falldown_left.png").toExternalForm());
-        mEistFallingUpImg = new Image(ClassLoader.getSystemResource("images/sprites/falldown_up.png").toExternalForm());
+            mMutedMusicImg = loadImage("images/common/muted_music.png");
+            mMutedSoundImg = loadImage("images/common/muted_sound.png");
 
-        mArrowRightImg = new Image(ClassLoader.getSystemResource("images/sprites/arrow_right.png").toExternalForm());
-        mArrowDownImg = new Image(ClassLoader.getSystemResource("images/sprites/arrow_down.png").toExternalForm());
-        mArrowLeftImg = new Image(ClassLoader.getSystemResource("images/sprites/arrow_left.png").toExternalForm());
-        mArrowUpImg = new Image(ClassLoader.getSystemResource("images/sprites/arrow_up.png").toExternalForm());
+            mMenuImg = loadImage("images/common/menu.png");
+        });
 
-        mSlotHImg = new Image(ClassLoader.getSystemResource("images/sprites/slot_h.png").toExternalForm());
-        mSlotHToolbarImg = new Image(ClassLoader.getSystemResource("images/sprites/slot_h_toolbar.png").toExternalForm());
-        mSlotVImg = new Image(ClassLoader.getSystemResource("images/sprites/slot_v.png").toExternalForm());
-        mSlotVToolbarImg = new Image(ClassLoader.getSystemResource("images/sprites/slot_v_toolbar.png").toExternalForm());
-        mToolbarEraseImg = new Image(ClassLoader.getSystemResource("images/sprites/toolbar_erase.png").toExternalForm());
+        loader.add(AssetLoader.GROUP_FIRST_FRAME, "intro pages", () -> {
+            mIntro01 = loadImage("images/common/intro01.png");
+            mIntro02 = loadImage("images/common/intro02.png");
+            mIntro03 = loadImage("images/common/intro03.png");
+            mIntro04 = loadImage("images/common/intro04.png");
+        });
 
-        mToolbarMenuImg = new Image(ClassLoader.getSystemResource("images/sprites/toolbar_menu.png").toExternalForm());
+        /*
+         * Pad buttons
+         */
+        loader.add(AssetLoader.GROUP_FIRST_FRAME, "pad sprites", () -> {
+            mSelRightImg = loadImage("images/sprites/button_arrow_right_selected.png");
+            mSelLeftImg = loadImage("images/sprites/button_arrow_left_selected.png");
+            mSelUpImg = loadImage("images/sprites/button_arrow_up_selected.png");
+            mSelDownImg = loadImage("images/sprites/button_arrow_down_selected.png");
+            mSelClearImg = loadImage("images/sprites/button_erase_selected.png");
+        });
 
-        mTeleportImg = new Image("images/sprites/teleport.png");
+        loader.add(AssetLoader.GROUP_LATER, "editor sprites", () -> {
+            mSlotHToolbarImg = loadImage("images/sprites/slot_h_toolbar.png");
+            mSlotVToolbarImg = loadImage("images/sprites/slot_v_toolbar.png");
+            mToolbarEraseImg = loadImage("images/sprites/toolbar_erase.png");
+            mToolbarMenuImg = loadImage("images/sprites/toolbar_menu.png");
+        });
 
-        mIntro01 = new Image(ClassLoader.getSystemResource("images/common/intro01.png").toExternalForm());
-        mIntro02 = new Image(ClassLoader.getSystemResource("images/common/intro02.png").toExternalForm());
-        mIntro03 = new Image(ClassLoader.getSystemResource("images/common/intro03.png").toExternalForm());
-        mIntro04 = new Image(ClassLoader.getSystemResource("images/common/intro04.png").toExternalForm());
-        mIntroFinished = new Image(ClassLoader.getSystemResource("images/common/you_won.png").toExternalForm());
+        loader.add(AssetLoader.GROUP_LATER, "menu bitmaps", () -> {
+            mIntroFinished = loadImage("images/common/you_won.png");
 
-        mMutedMusicImg = new Image(ClassLoader.getSystemResource("images/common/muted_music.png").toExternalForm());
-        mMutedSoundImg = new Image(ClassLoader.getSystemResource("images/common/muted_sound.png").toExternalForm());
+            BackgroundImage mButtonImage = new BackgroundImage(loadImage("images/common/menu_button.png"),
+                    BackgroundRepeat.NO_REPEAT, BackgroundRepeat.NO_REPEAT, BackgroundPosition.DEFAULT,
+                    new BackgroundSize(AUTO, AUTO, true, true, true, false));
+            mButtonBackground = new Background(mButtonImage);
 
-        BackgroundImage mButtonImage = new BackgroundImage(new Image(ClassLoader.getSystemResource("images/common/menu_button.png").toExternalForm()),
-                BackgroundRepeat.NO_REPEAT, BackgroundRepeat.NO_REPEAT, BackgroundPosition.DEFAULT,
-                new BackgroundSize(AUTO, AUTO, true, true, true, false));
-        mButtonBackground = new Background(mButtonImage);
+            BackgroundImage mButtonImageNarrow = new BackgroundImage(loadImage("images/common/menu_button_narrow.png"),
+                    BackgroundRepeat.NO_REPEAT, BackgroundRepeat.NO_REPEAT, BackgroundPosition.DEFAULT,
+                    new BackgroundSize(AUTO, AUTO, true, true, true, false));
+            mButtonBackgroundNarrow = new Background(mButtonImageNarrow);
+        });
+    }
 
-        BackgroundImage mButtonImageNarrow = new BackgroundImage(new Image(ClassLoader.getSystemResource("images/common/menu_button_narrow.png").toExternalForm()),
-                BackgroundRepeat.NO_REPEAT, BackgroundRepeat.NO_REPEAT, BackgroundPosition.DEFAULT,
-                new BackgroundSize(AUTO, AUTO, true, true, true, false));
-        mButtonBackgroundNarrow = new Background(mButtonImageNarrow);
+    void initializeButtons() {
 
         /*
          * Initialize pad buttons
          */
-        mSelRightImg = new Image(ClassLoader.getSystemResource("images/sprites/button_arrow_right_selected.png").toExternalForm());
-        mSelLeftImg = new Image(ClassLoader.getSystemResource("images/sprites/button_arrow_left_selected.png").toExternalForm());
-        mSelUpImg = new Image(ClassLoader.getSystemResource("images/sprites/button_arrow_up_selected.png").toExternalForm());
-        mSelDownImg = new Image(ClassLoader.getSystemResource("images/sprites/button_arrow_down_selected.png").toExternalForm());
-        mSelClearImg = new Image(ClassLoader.getSystemResource("images/sprites/button_erase_selected.png").toExternalForm());
-
         pad.setSelection(null);
         pad.setButtonUp(new Rectangle2D(columns[28], rows[1], mGridDimension * 3, mFrameDimension));
         pad.setButtonDown(new Rectangle2D(columns[28], rows[5], mGridDimension * 3, mFrameDimension));
@@ -801,456 +1130,602 @@ abstract class Utils extends Application {
     /**
      * Create game objects on the basis of .dat files
      */
-    List<Arrow> mArrows;
-    List<Artifact> mArtifacts;
-    List<Teleport> mTeleports;
-    List<Key> mKeys;
-    List<Door> mDoors;
+    CellList<Arrow> mArrows;
+    CellList<Artifact> mArtifacts;
+    CellList<Teleport> mTeleports;
+    CellList<Key> mKeys;
+    CellList<Door> mDoors;
     List<Slot> mSlots;
-    List<Ornament> mOrnaments;
+    CellList<Ornament> mOrnaments;
 
-    void loadLevel(int level) {
+    /**
+     * Counts the levels loaded, for the renderer to tell a reload of the same level.
+     */
+    int mLevelLoadCount;
 
-        System.out.println("Loading level " + level);
+    /**
+     * The game state right after loadLevel() / when the editor test run started, to start over from.
+     */
+    private GameState.Snapshot mLevelStart;
+    private GameState.Snapshot mTestStart;
 
-        setSpeed(level);
+    /**
+     * Budget in MB, "levelcache" in the preferences; 0 disables the cache.
+     */
+    private static final int DEFAULT_LEVEL_CACHE_MB = 64;
 
-        mEditor = false;
+    private LevelAssetCache mLevelAssetCache;
 
-        mCurrentFallingFrame = null;
-        eist.isMoving = false;
-        eist.setKeys(0);
-        pad.setSelection(null);
+    /**
+     * The files a user-defined level folder must have to get loaded instead of the built-in level; see loadLevel().
+     */
+    private static final String[] USER_LEVEL_FILES = {
+            "board.png", "amulet.png", "amulets.dat", "door_h.png", "door_v.png", "doors.dat", "exit_closed.png",
+            "exit_open.png", "key.png", "keys.dat", "ladder_h.png", "ladder_v.png", "slots.dat", "level.dat"
+    };
 
-        mAchievedLevel = prefs.getInt("achieved", 0);
+    /*
+     * The level files get checked, read and decoded on the level-load thread: ahead of time for the level likely to
+     * come next (see prefetchLevel()), for the switch to it (see switchLevel()), and for a direct loadLevel(), which
+     * waits for it. The asset cache and the prefetched assets are used by that thread only.
+     */
+    private ExecutorService mLevelLoadExecutor;
+    private String mPrefetchedKey;
+    private LevelAssets mPrefetched;
 
-        if (mGameFinished) {
-            mIntro01 = mIntroFinished;
-            fxLevelUp.play();
+    /**
+     * Counts the level load requests: a level switch done loading after another request gets dropped.
+     */
+    private int mLevelRequest;
+
+    /**
+     * From the exit reached until the next level is swapped in.
+     */
+    boolean mSwitchingLevel;
+
+    private ExecutorService levelLoadExecutor() {
+
+        if (mLevelLoadExecutor == null) {
+            mLevelAssetCache = new LevelAssetCache(prefs.getInt("levelcache", DEFAULT_LEVEL_CACHE_MB) * 1024L * 1024L);
+            mLevelLoadExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "level-load");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
         }
+        return mLevelLoadExecutor;
+    }
 
-        mTurnsCounter = 0;
+    /**
+     * What a level needs read from the disk before it starts; see prepareLevel().
+     */
+    private static final class PreparedLevel {
 
         String urlString;
+        boolean userLevel;
 
-        String lvlNumberToString = (level < 10) ? "0" + String.valueOf(level) : String.valueOf(level);
-            /*
-             * load saved level best score, if any.
-             */
-        mTurnsBest = prefs.getInt(lvlNumberToString + "best", 0);
+        /**
+         * The files an incomplete user-defined level misses, one per line; null if none. The built-in level gets
+         * loaded then.
+         */
+        String missingFiles;
 
-        urlString = "levels/" + lvlNumberToString + "/";
+        /**
+         * What is wrong with a malformed user-defined level, null if nothing. The built-in level gets loaded then.
+         */
+        String userLevelError;
 
-        /*
-         * Check if user-defined folder exists
+        /**
+         * The level set name, for the window title; null if none
          */
-        if (level > 0) {
+        String info;
 
-            File userLevel = new File(System.getProperty("user.home") + "/.EistReturns/" + urlString);
+        LevelAssets assets;
+    }
 
-            if (userLevel.exists()) {
+    /**
+     * Check the user-defined level folder, read the level set name and get the assets. On the level-load thread.
+     *
+     * @param event gets where the assets came from and the outcome; committed by the caller, on the FX thread
+     */
+    private PreparedLevel prepareLevel(int level, AssetGeometry geometry, GameEvents.LevelLoad event) {
 
-                mLoadUserLevel = true;
+        PreparedLevel prepared = findLevelSource(level);
+        if (prepared.missingFiles != null) {
+            event.outcome = "user-defined level incomplete";
+        }
 
-                List<String> userLevelLoadingReport = new ArrayList<>();
+        prepared.assets = getLevelAssets(level, prepared.urlString, prepared.userLevel, geometry, event);
 
-                System.out.println("Found user-defined level: " + userLevel.toString() + "\n");
-                    /*
-                     * Let's check if all the necessary data exist in the user-defined folder.
-                     * Skip arrows, teleports and ornaments, as the don't have to exist on each level.
-                     */
-                System.out.println("Checking integrity:");
+        /*
+         * A malformed user-defined level gets replaced as an incomplete one does
+         */
+        if (prepared.assets.error != null && prepared.userLevel) {
+            prepared.userLevelError = prepared.assets.error;
+            prepared.userLevel = false;
+            prepared.urlString = "levels/" + lvlToString(level) + "/";
+            event.outcome = "user-defined level malformed";
+            prepared.assets = getLevelAssets(level, prepared.urlString, false, geometry, event);
+        }
 
-                File checkMe = new File(userLevel + "/board.png");
-                if (checkMe.exists()) {
-                    System.out.println("+Board image found.");
-                } else {
-                    System.out.println("-Board image not found.");
-                    userLevelLoadingReport.add("Missing " + userLevel + "/board.png");
-                    mLoadUserLevel = false;
-                }
+        prepared.info = infoString(System.getProperty("user.home") + "/.EistReturns/levels/info.txt");
+        if (prepared.info == null && prepared.userLevel) {
+            prepared.info = "unnamed set";
+        }
+        return prepared;
+    }
 
-                checkMe = new File(userLevel + "/amulet.png");
-                if (checkMe.exists()) {
-                    System.out.println("+Artifact image found.");
-                } else {
-                    System.out.println("-Artifact image not found.");
-                    userLevelLoadingReport.add("Missing " + userLevel + "/amulet.png");
-                    mLoadUserLevel = false;
-                }
+    /**
+     * Where the level gets loaded from: the user-defined level folder if there's a complete one, or the built-in
+     * level. The folder check gets recorded as a LevelIntegrityCheck.
+     */
+    private PreparedLevel findLevelSource(int level) {
 
-                checkMe = new File(userLevel + "/amulets.dat");
-                if (checkMe.exists()) {
-                    System.out.println("+Artifacts data found.");
-                } else {
-                    System.out.println("-Artifacts data not found.");
-                    userLevelLoadingReport.add("Missing " + userLevel + "/amulets.dat");
-                    mLoadUserLevel = false;
-                }
+        PreparedLevel source = new PreparedLevel();
+        source.urlString = "levels/" + lvlToString(level) + "/";
+        if (level == 0) {
+            return source;
+        }
 
-                checkMe = new File(userLevel + "/door_h.png");
-                if (checkMe.exists()) {
-                    System.out.println("+Horizontal door image found.");
-                } else {
-                    System.out.println("-Horizontal door image not found.");
-                    userLevelLoadingReport.add("Missing " + userLevel + "/door_h.png");
-                    mLoadUserLevel = false;
-                }
+        File userLevel = new File(System.getProperty("user.home") + "/.EistReturns/" + source.urlString);
+        if (LevelBundle.isCurrent(userLevel)) {
+            source.userLevel = true;
 
-                checkMe = new File(userLevel + "/door_v.png");
-                if (checkMe.exists()) {
-                    System.out.println("+Vertical door image found.");
-                } else {
-                    System.out.println("-Vertical door image not found.");
-                    userLevelLoadingReport.add("Missing " + userLevel + "/door_v.png");
-                    mLoadUserLevel = false;
-                }
+        } else if (userLevel.exists()) {
 
-                checkMe = new File(userLevel + "/doors.dat");
-                if (checkMe.exists()) {
-                    System.out.println("+Doors data found.");
-                } else {
-                    System.out.println("-Doors data not found.");
-                    userLevelLoadingReport.add("Missing " + userLevel + "/doors.dat");
-                    mLoadUserLevel = false;
-                }
+            GameEvents.LevelIntegrityCheck checkEvent = new GameEvents.LevelIntegrityCheck();
+            checkEvent.begin();
+            checkEvent.level = level;
 
-                checkMe = new File(userLevel + "/exit_closed.png");
-                if (checkMe.exists()) {
-                    System.out.println("+Closed exit image found.");
-                } else {
-                    System.out.println("-Closed exit image not found.");
-                    userLevelLoadingReport.add("Missing " + userLevel + "/exit_closed.png");
-                    mLoadUserLevel = false;
+            /*
+             * Arrows, teleports and ornaments aren't checked for, as they don't have to exist on each level.
+             */
+            StringBuilder missingFiles = new StringBuilder();
+            for (String name : USER_LEVEL_FILES) {
+                if (!new File(userLevel, name).exists()) {
+                    missingFiles.append("Missing ").append(userLevel).append('/').append(name).append('\n');
+                    checkEvent.missingFiles++;
                 }
+            }
+            source.userLevel = checkEvent.missingFiles == 0;
+            if (!source.userLevel) {
+                source.missingFiles = missingFiles.toString();
+            }
 
-                checkMe = new File(userLevel + "/exit_open.png");
-                if (checkMe.exists()) {
-                    System.out.println("+Open exit image found.");
-                } else {
-                    System.out.println("-Open exit image not found.");
-                    userLevelLoadingReport.add("Missing " + userLevel + "/exit_open.png");
-                    mLoadUserLevel = false;
-                }
+            checkEvent.outcome = source.userLevel ? GameEvents.OUTCOME_OK : "incomplete";
+            checkEvent.commit();
+        }
 
-                checkMe = new File(userLevel + "/key.png");
-                if (checkMe.exists()) {
-                    System.out.println("+Key image found.");
-                } else {
-                    System.out.println("-Key image not found.");
-                    userLevelLoadingReport.add("Missing " + userLevel + "/key.png");
-                    mLoadUserLevel = false;
-                }
+        if (source.userLevel) {
+            source.urlString = userLevel.toURI().toString();
+        }
+        return source;
+    }
 
-                checkMe = new File(userLevel + "/keys.dat");
-                if (checkMe.exists()) {
-                    System.out.println("+Keys data found.");
-                } else {
-                    System.out.println("-Keys data not found.");
-                    userLevelLoadingReport.add("Missing " + userLevel + "/keys.dat");
-                    mLoadUserLevel = false;
-                }
-
-                checkMe = new File(userLevel + "/ladder_h.png");
-                if (checkMe.exists()) {
-                    System.out.println("+Horizontal ladder image found.");
-                } else {
-                    System.out.println("-Horizontal ladder image not found.");
-                    userLevelLoadingReport.add("Missing " + userLevel + "/ladder_h.png");
-                    mLoadUserLevel = false;
-                }
-
-                checkMe = new File(userLevel + "/ladder_v.png");
-                if (checkMe.exists()) {
-                    System.out.println("+Vertical ladder image found.");
-                } else {
-                    System.out.println("-Vertical ladder image not found.");
-                    userLevelLoadingReport.add("Missing " + userLevel + "/ladder_v.png");
-                    mLoadUserLevel = false;
-                }
-
-                checkMe = new File(userLevel + "/slots.dat");
-                if (checkMe.exists()) {
-                    System.out.println("+Ladder slots data found.");
-                } else {
-                    System.out.println("-Ladder slots data not found.");
-                    userLevelLoadingReport.add("Missing " + userLevel + "/slots.dat");
-                    mLoadUserLevel = false;
-                }
-
-                checkMe = new File(userLevel + "/level.dat");
-                if (checkMe.exists()) {
-                    System.out.println("+level.dat file found.");
-                } else {
-                    System.out.println("-level.dat file not found.");
-                    userLevelLoadingReport.add("Missing " + userLevel + "/level.dat");
-                    mLoadUserLevel = false;
-                }
-
-                if (mLoadUserLevel) {
-                    urlString = userLevel.toURI().toString();
-                    System.out.println("\nAll necessary level data present. Loading user-defined level.");
+    /**
+     * The level assets are looked up by the source (built-in or user-defined) and the level number; not by the window
+     * size, as the bitmaps are decoded at the logical size and the sprite atlas rasterized again if needed (see
+     * rasterizeAtlas()). User-defined levels may get changed in between, so the newest file modification time goes to the key too.
+     *
+     * On the level-load thread.
+     *
+     * @param event gets where the assets came from
+     */
+    private LevelAssets getLevelAssets(int level, String urlString, boolean userLevel, AssetGeometry geometry,
+                                       GameEvents.LevelLoad event) {
+
+        String key = levelAssetsKey(level, urlString, userLevel);
+
+        LevelAssets assets = mLevelAssetCache.get(key);
+        event.assets = "cache";
+        if (assets == null) {
+            if (key.equals(mPrefetchedKey)) {
+                assets = mPrefetched;
+                mPrefetchedKey = null;
+                mPrefetched = null;
+                event.assets = "prefetch";
+            } else {
+                assets = loadLevelAssets(level, urlString, userLevel, false, geometry);
+                event.assets = "load";
+            }
+            if (assets.error == null) {
+                mLevelAssetCache.put(key, assets);
+            }
+        }
+        event.cacheHits = mLevelAssetCache.getHits();
+        event.cacheMisses = mLevelAssetCache.getMisses();
+        event.cacheEvictions = mLevelAssetCache.getEvictions();
+        event.cacheBytes = mLevelAssetCache.getUsedBytes();
+        return assets;
+    }
 
-                } else {
+    private String levelAssetsKey(int level, String urlString, boolean userLevel) {
 
-                    System.out.println("\nEssential level file(s) missing. Loading default level.\n");
-                    StringBuilder missingFilesList = new StringBuilder();
-                    for (String string : userLevelLoadingReport) {
-                        missingFilesList.append(string);
-                        missingFilesList.append("\n");
-                    }
-                    displayMissingUserFiles(missingFilesList.toString());
+        if (userLevel) {
+            long modified = 0;
+            File[] files = new File(URI.create(urlString)).listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    modified = Math.max(modified, file.lastModified());
                 }
-
-            } else {
-                mLoadUserLevel = false;
-                System.out.println("User-defined level not found. Loading from resources.");
             }
-
+            return "user/" + level + "/" + modified;
         } else {
-            mLoadUserLevel = false;
+            return "builtin/" + level;
         }
+    }
 
-        /*
-         * Load board bitmap
-         */
-        mBoardImg = new Image(urlString + "board.png", mSceneWidth, mSceneHeight, true, true, false);
-
-        pixelReader = mBoardImg.getPixelReader();
+    /**
+     * Load the assets of a level in the background, unless they're cached or prefetched already; past the last level
+     * there's none to load, as the game finishes. The assets are kept for the next getLevelAssets(), which puts them
+     * into the cache: a prefetch replaces the previous one if that hasn't been used.
+     */
+    void prefetchLevel(int level) {
 
-        String info = infoString(System.getProperty("user.home") + "/.EistReturns/levels/info.txt");
-        if (info == null && mLoadUserLevel) {
-            info = "unnamed set";
+        if (level < 1 || level >= MAX_LEVEL || mReplaying) {
+            return;
         }
 
-        if (info != null) {
-            if (mGameStage != null) {
-                mGameStage.setTitle("Eist returns: " + info);
-            }
-        } else {
-            if (mGameStage != null) {
-                mGameStage.setTitle("Eist returns");
-            }
-        }
+        AssetGeometry geometry = new AssetGeometry(this);
+        // A failure shows when the level gets loaded to be played
+        levelLoadExecutor().submit(() -> {
 
-        String dataString;
-        /*
-         * Load arrows
-         */
-        mArrows = new ArrayList<>();
-        dataString = datToString(urlString + "arrows.dat");
-        if (dataString != null && !dataString.isEmpty()) {
+            PreparedLevel source = findLevelSource(level);
+            String key = levelAssetsKey(level, source.urlString, source.userLevel);
+            if (key.equals(mPrefetchedKey) || mLevelAssetCache.contains(key)) {
+                return;
+            }
+            mPrefetched = loadLevelAssets(level, source.urlString, source.userLevel, true, geometry);
+            mPrefetchedKey = key;
+        });
+    }
 
-            String[] arrows = dataString.split(":");
+    /**
+     * What the level assets get loaded at, taken on the FX thread for the loading threads, as the window scale and
+     * the menu layout may change meanwhile. Read-only.
+     */
+    private static final class AssetGeometry {
 
-            for (String single_entry : arrows) {
+        final double rasterScale;
+        final double sceneWidth;
+        final double sceneHeight;
+        final double frameDimension;
+        final double gridDimension;
+        final double rotationStep;
+        final long rotationCacheBytes;
 
-                String[] positions = single_entry.split(",");
+        /*
+         * The pad buttons, which the selection sprites are drawn over
+         */
+        final Rectangle2D selRight;
+        final Rectangle2D selLeft;
+        final Rectangle2D selUp;
+        final Rectangle2D selDown;
+        final Rectangle2D selClear;
+
+        /**
+         * On the FX thread.
+         */
+        AssetGeometry(Utils utils) {
+            rasterScale = utils.mView.getRasterScale();
+            sceneWidth = utils.mSceneWidth;
+            sceneHeight = utils.mSceneHeight;
+            frameDimension = utils.mFrameDimension;
+            gridDimension = utils.mGridDimension;
+            rotationStep = utils.mRotationStep;
+            rotationCacheBytes = utils.mRotationCacheBytes;
+            selRight = utils.pad.getButtonRight();
+            selLeft = utils.pad.getButtonLeft();
+            selUp = utils.pad.getButtonUp();
+            selDown = utils.pad.getButtonDown();
+            selClear = utils.pad.getButtonClear();
+        }
+    }
 
-                int posX = Integer.valueOf(positions[0]);
-                int posY = Integer.valueOf(positions[1]);
+    /**
+     * Runs on the level-load thread: reads no state but the common sprites, which are set before any level gets
+     * loaded; the rest comes with the geometry.
+     *
+     * @param fromFile a user-defined level, read from the files rather than the resources
+     * @param prefetch for the event only
+     * @param geometry taken on the FX thread
+     */
+    private LevelAssets loadLevelAssets(int level, String urlString, boolean fromFile, boolean prefetch,
+                                        AssetGeometry geometry) {
 
-                Arrow arrow = new Arrow();
-                arrow.setPosX(columns[posX]);
-                arrow.setPosY(rows[posY]);
+        GameEvents.LevelAssetsLoad event = new GameEvents.LevelAssetsLoad();
+        event.begin();
 
-                arrow.setArea(innerRect(columns[posX], rows[posY]));
+        LevelAssets assets = new LevelAssets();
+        double frameDimension = geometry.frameDimension;
+        double gridDimension = geometry.gridDimension;
 
-                arrow.setDirection(Integer.valueOf(positions[2]));
-                mArrows.add(arrow);
-            }
-        }
+        LevelBundle bundle = findLevelBundle(urlString, fromFile);
 
         /*
-         * Load artifacts (called "amulets" in resources due to historical reasons ;)
+         * The data first: board.dat tells how to load the board
          */
-        mArtifactImg = new Image(urlString + "amulet.png");
-        mArtifacts = new ArrayList<>();
-        dataString = datToString(urlString + "amulets.dat");
-        if (dataString != null) {
+        if (bundle != null) {
+            for (String name : LevelAssets.DATA_FILES) {
+                assets.putData(name, bundle.getTable(name));
+            }
+        } else {
+            assets.error = readLevelData(urlString, fromFile, assets::putData);
+        }
 
-            String[] artifacts = dataString.split(":");
+        DatReader.Table boardSize = assets.getData("board.dat");
+        if (boardSize != null && boardSize.getRows() > 0) {
+            loadBoardTiles(assets, bundle, urlString, fromFile, boardSize, geometry);
+        }
+        if (assets.boardTiles == null) {
+            assets.board = levelImage(bundle, urlString, "board.png", geometry.sceneWidth, geometry.sceneHeight);
+            assets.walkability = WalkabilityMask.fromImage(assets.board.getPixelReader(),
+                    (int) assets.board.getWidth(), (int) assets.board.getHeight(), gridDimension, frameDimension);
+        }
 
-            for (String single_entry : artifacts) {
+        assets.artifact = levelImage(bundle, urlString, "amulet.png", 0, 0);
+        assets.ornament = levelImage(bundle, urlString, "ornament.png", 0, 0);
+        assets.key = levelImage(bundle, urlString, "key.png", 0, 0);
+        assets.doorH = levelImage(bundle, urlString, "door_h.png", 0, 0);
+        assets.doorV = levelImage(bundle, urlString, "door_v.png", 0, 0);
+        assets.ladderH = levelImage(bundle, urlString, "ladder_h.png", frameDimension, frameDimension);
+        assets.ladderV = levelImage(bundle, urlString, "ladder_v.png", frameDimension, frameDimension);
+        assets.exitClosed = levelImage(bundle, urlString, "exit_closed.png", frameDimension, frameDimension);
+        assets.exitOpen = levelImage(bundle, urlString, "exit_open.png", frameDimension, frameDimension);
+
+        assets.atlas = buildAtlas(assets, bundle, geometry);
+
+        event.level = level;
+        event.userLevel = fromFile;
+        event.bundle = bundle != null;
+        event.prefetch = prefetch;
+        event.outcome = assets.error != null ? assets.error : GameEvents.OUTCOME_OK;
+        event.commit();
+        return assets;
+    }
 
-                String[] positions = single_entry.split(",");
+    /**
+     * The board of a board.dat level: decoded whole once, for the mask and to check its size, but kept encoded, to be
+     * decoded a tile at a time as shown (see BoardTiles). The level is malformed if it doesn't fit board.dat; the
+     * board gets loaded as a 1920 x 1080 one then, for the level to be replaced as the other malformed ones are.
+     */
+    private void loadBoardTiles(LevelAssets assets, LevelBundle bundle, String urlString, boolean fromFile,
+                                DatReader.Table boardSize, AssetGeometry geometry) {
 
-                int posX = Integer.valueOf(positions[0]);
-                int posY = Integer.valueOf(positions[1]);
+        try {
+            LevelData.checkBoardSize(boardSize, urlString + "board.dat");
+            int width = (int) geometry.gridDimension * boardSize.get(0, 0);
+            int height = (int) geometry.gridDimension * boardSize.get(0, 1);
 
-                Artifact artifact = new Artifact();
-                artifact.setPosX(columns[posX]);
-                artifact.setPosY(rows[posY]);
+            byte[] png = readLevelFile(bundle, urlString, "board.png", fromFile);
+            BufferedImage image = LevelData.decodeBoard(png, urlString + "board.png", width, height);
+            assets.walkability = WalkabilityMask.fromImage(image, geometry.gridDimension, geometry.frameDimension);
+            assets.boardTiles = new BoardTiles(png, width, height);
 
-                artifact.setArea(innerRect(columns[posX], rows[posY]));
-                mArtifacts.add(artifact);
+        } catch (IOException e) {
+            System.out.println("Couldn't load the board: " + e.getMessage());
+            if (assets.error == null) {
+                assets.error = e.getMessage();
             }
         }
+    }
 
-        /*
-         * Load ornaments
-         */
-        mOrnamentImg = new Image(urlString + "ornament.png");
-        mOrnaments = new ArrayList<>();
-        dataString = datToString(urlString + "ornaments.dat");
-        if (dataString != null) {
-
-            String[] ornaments = dataString.split(":");
-
-            for (String single_entry : ornaments) {
-
-                String[] positions = single_entry.split(",");
+    /**
+     * @return the file content, as stored in the bundle if there's one
+     */
+    private byte[] readLevelFile(LevelBundle bundle, String urlString, String name, boolean fromFile)
+            throws IOException {
 
-                int posX = Integer.valueOf(positions[0]);
-                int posY = Integer.valueOf(positions[1]);
+        InputStream inputStream = bundle != null ? bundle.getImage(name) : null;
+        if (inputStream == null) {
+            if (fromFile) {
+                return Files.readAllBytes(new File(URI.create(urlString + name)).toPath());
+            }
+            inputStream = getClass().getClassLoader().getResourceAsStream(urlString + name);
+            if (inputStream == null) {
+                throw new FileNotFoundException(urlString + name);
+            }
+        }
+        try (InputStream in = inputStream) {
+            return in.readAllBytes();
+        }
+    }
 
-                Ornament ornament = new Ornament();
-                ornament.setPosX(columns[posX]);
-                ornament.setPosY(rows[posY]);
+    /**
+     * @return the level bundle of the level folder, null if none (or not up to date, or unreadable): the level files
+     * get loaded then
+     */
+    private LevelBundle findLevelBundle(String urlString, boolean fromFile) {
 
-                mOrnaments.add(ornament);
+        try {
+            if (fromFile) {
+                File folder = new File(URI.create(urlString));
+                return LevelBundle.isCurrent(folder) ? LevelBundle.open(new File(folder, LevelBundle.FILE_NAME)) : null;
             }
-        }
+            URL url = getClass().getClassLoader().getResource(urlString + LevelBundle.FILE_NAME);
+            return url != null ? LevelBundle.load(url) : null;
 
-        /*
-         * Load teleports
-         */
-        mTeleports = new ArrayList<>();
-        dataString = datToString(urlString + "teleports.dat");
-        if (dataString != null) {
+        } catch (IOException e) {
+            System.out.println("Couldn't load the level bundle, loading the level files: " + e);
+            return null;
+        }
+    }
 
-            String[] teleports = dataString.split(":");
+    /**
+     * @param width 0 for the bitmap size, as height
+     */
+    private static Image levelImage(LevelBundle bundle, String urlString, String name, double width, double height) {
 
-            for (String single_entry : teleports) {
+        GameEvents.ImageDecode event = new GameEvents.ImageDecode();
+        event.begin();
 
-                String[] positions = single_entry.split(",");
+        InputStream inputStream = bundle != null ? bundle.getImage(name) : null;
+        if (inputStream != null) {
+            Image image = new Image(inputStream, width, height, true, true);
+            event.commit(image, name, "bundle", () -> bundle.getImageSize(name));
+            return image;
+        }
+        Image image = new Image(urlString + name, width, height, true, true, false);
+        event.commit(image, urlString + name, urlString.startsWith("file:") ? "file" : "resource",
+                () -> GameEvents.contentLength(urlString + name));
+        return image;
+    }
 
-                int posX = Integer.valueOf(positions[0]);
-                int posY = Integer.valueOf(positions[1]);
+    /**
+     * Load the level right away, waiting for the level-load thread; for the starts from the menu, the editor, a
+     * falldown on the intro and the like. The level-up doesn't wait, see switchLevel().
+     */
+    void loadLevel(int level) {
 
-                Teleport teleport = new Teleport();
-                teleport.setPosX(columns[posX]);
-                teleport.setPosY(rows[posY]);
+        GameEvents.LevelLoad loadEvent = new GameEvents.LevelLoad();
+        loadEvent.begin();
+        loadEvent.level = level;
+        loadEvent.outcome = GameEvents.OUTCOME_OK;
 
-                teleport.setArea(innerRect(columns[posX], rows[posY]));
-                mTeleports.add(teleport);
-            }
-        }
+        AssetGeometry geometry = new AssetGeometry(this);
+        mLevelRequest++;
+        PreparedLevel prepared = CompletableFuture.supplyAsync(() -> prepareLevel(level, geometry, loadEvent),
+                levelLoadExecutor()).join();
 
-        /*
-         * Load keys
-         */
-        mKeyImg = new Image(urlString + "key.png");
-        mKeys = new ArrayList<>();
-        dataString = datToString(urlString + "keys.dat");
-        if (dataString != null) {
+        startLevel(level, prepared, loadEvent);
+    }
 
-            String[] keys = dataString.split(":");
+    /**
+     * Go to the level once it's loaded, with no file checked, read nor decoded on the FX thread: Eist stands at the
+     * exit meanwhile. Its assets have most likely been prefetched when the exit opened, so that's a few frames.
+     */
+    void switchLevel(int level) {
 
-            for (String single_entry : keys) {
+        GameEvents.LevelLoad loadEvent = new GameEvents.LevelLoad();
+        loadEvent.begin();
+        loadEvent.level = level;
+        loadEvent.outcome = GameEvents.OUTCOME_OK;
 
-                String[] positions = single_entry.split(",");
+        AssetGeometry geometry = new AssetGeometry(this);
+        int request = ++mLevelRequest;
+        mSwitchingLevel = true;
+        eist.isMoving = false;
 
-                int posX = Integer.valueOf(positions[0]);
-                int posY = Integer.valueOf(positions[1]);
+        CompletableFuture.supplyAsync(() -> prepareLevel(level, geometry, loadEvent), levelLoadExecutor())
+                .whenCompleteAsync((prepared, error) -> {
+                    if (request != mLevelRequest) {
+                        return;
+                    }
+                    if (error != null) {
+                        displayExceptionAlert("Couldn't load level " + level, error);
+                        loadLevel(level);
+                        return;
+                    }
+                    startLevel(level, prepared, loadEvent);
+                }, Platform::runLater);
+    }
 
-                Key key = new Key();
-                key.setPosX(columns[posX]);
-                key.setPosY(rows[posY]);
+    /**
+     * Start the level on what prepareLevel() got; on the FX thread.
+     */
+    private void startLevel(int level, PreparedLevel prepared, GameEvents.LevelLoad loadEvent) {
 
-                key.setArea(innerRect(columns[posX], rows[posY]));
-                mKeys.add(key);
-            }
-        }
+        System.out.println("Loading level " + level);
 
-        /*
-         * Load doors
-         */
-        mDoorHImg = new Image(urlString + "door_h.png");
-        mDoorVImg = new Image(urlString + "door_v.png");
-        mDoors = new ArrayList<>();
-        dataString = datToString(urlString + "doors.dat");
-        if (dataString != null) {
+        mLevelLoadCount++;
+        mSwitchingLevel = false;
 
-            String[] artifacts = dataString.split(":");
+        saveReplay(ReplayRecorder.END_QUIT);
 
-            for (String single_entry : artifacts) {
+        setSpeed(level);
 
-                String[] positions = single_entry.split(",");
+        mEditor = false;
 
-                int posX = Integer.valueOf(positions[0]);
-                int posY = Integer.valueOf(positions[1]);
-                int orientation = Integer.valueOf(positions[2]);
+        eist.isMoving = false;
+        eist.setKeys(0);
+        pad.setSelection(null);
 
-                Door door = new Door();
-                door.setPosX(columns[posX]);
-                door.setPosY(rows[posY]);
-                door.setOrientation(orientation);
+        mAchievedLevel = prefs.getInt("achieved", 0);
 
-                door.setArea(innerRect(columns[posX], rows[posY]));
-                mDoors.add(door);
-            }
+        if (mGameFinished) {
+            mIntro01 = mIntroFinished;
+            fxLevelUp.play();
         }
 
+        String lvlNumberToString = (level < 10) ? "0" + String.valueOf(level) : String.valueOf(level);
+            /*
+             * load saved level best score, if any.
+             */
+        mTurnsBest = prefs.getInt(lvlNumberToString + "best", 0);
+
         /*
-         * Load ladder slots
+         * Par gets calculated in the background, if not cached yet.
          */
-        mSlots = new ArrayList<>();
-        dataString = datToString(urlString + "slots.dat");
-        if (dataString != null) {
-
-            String[] slots = dataString.split(":");
-
-            for (String single_entry : slots) {
+        mPar = 0;
+        if (level > 0) {
+            LevelSolver.requestPar(level, par -> Platform.runLater(() -> {
+                if (mCurrentLevel == level && !mEditor && par != LevelSolver.UNSOLVED) {
+                    mPar = par;
+                }
+            }));
+        }
 
-                String[] positions = single_entry.split(",");
+        mLoadUserLevel = prepared.userLevel;
+        if (prepared.missingFiles != null) {
+            displayMissingUserFiles(prepared.missingFiles);
+        }
+        if (prepared.userLevelError != null) {
+            String error = prepared.userLevelError;
+            Platform.runLater(() -> displayUserLevelError("User defined level data is malformed", "Error:",
+                    error + "\n\nThe default level has been loaded instead."));
+        }
 
-                int posX = Integer.valueOf(positions[0]);
-                int posY = Integer.valueOf(positions[1]);
-                int orientation = Integer.valueOf(positions[2]);
+        LevelAssets assets = prepared.assets;
 
-                Slot slot = new Slot();
-                slot.setPosX(columns[posX]);
-                slot.setPosY(rows[posY]);
-                slot.setOrientation(orientation);
+        mBoardImg = assets.board;
+        mBoardTiles = assets.boardTiles;
+        mWalkability = assets.walkability;
+        if (mBoardTiles != null) {
+            mBoardWidth = mWalkability.getWidth();
+            mBoardHeight = mWalkability.getHeight();
+            mBoardTiles.setLoading(boardTileExecutor(), this::onBoardTilesLoaded);
+        } else {
+            mBoardWidth = mSceneWidth;
+            mBoardHeight = mSceneHeight;
+        }
+        mCamera.setBoard(mBoardWidth, mBoardHeight, mBoardTiles != null);
 
-                if (slot.getOrientation() == ORIENTATION_VERTICAL) {
-                    slot.setArea(new Rectangle2D(columns[posX], rows[posY], mFrameDimension, mGridDimension));
-                } else {
-                    slot.setArea(new Rectangle2D(columns[posX], rows[posY], mGridDimension, mFrameDimension));
-                }
-                mSlots.add(slot);
+        if (prepared.info != null) {
+            if (mGameStage != null) {
+                mGameStage.setTitle("Eist returns: " + prepared.info);
+            }
+        } else {
+            if (mGameStage != null) {
+                mGameStage.setTitle("Eist returns");
             }
         }
 
-        /*
-         * Load ladder bitmaps
-         */
-        mLadderHImg = new Image(urlString + "ladder_h.png", mFrameDimension, mFrameDimension, true, true, true);
-        mLadderVImg = new Image(urlString + "ladder_v.png", mFrameDimension, mFrameDimension, true, true, true);
+        mArtifactImg = assets.artifact;
+        mOrnamentImg = assets.ornament;
+        mKeyImg = assets.key;
+        mDoorHImg = assets.doorH;
+        mDoorVImg = assets.doorV;
+        mLadderHImg = assets.ladderH;
+        mLadderVImg = assets.ladderV;
+        mExitClosedImg = assets.exitClosed;
+        mExitOpenImg = assets.exitOpen;
 
-        /*
-         * Load exit bitmaps
-         */
-        mExitClosedImg = new Image(urlString + "exit_closed.png", mFrameDimension, mFrameDimension, true, true, true);
-        mExitOpenImg = new Image(urlString + "exit_open.png", mFrameDimension, mFrameDimension, true, true, true);
+        mAtlas = assets.atlas;
+        mLevelAssets = assets;
+        rasterizeAtlas();
 
-        /*
-         * Load level data
-         */
-        dataString = datToString(urlString + "level.dat");
-        if (dataString != null) {
+        loadLevelObjects(assets::getData);
+        eist.storePosition();
+        centerCamera();
 
-            String[] data = dataString.split(",");
+        state.load(mArrows, mArtifacts, mTeleports, mKeys, mDoors, mSlots);
+        mLevelStart = state.snapshot();
 
-            eist.x = columns[Integer.valueOf(data[0])];
-            eist.y = rows[Integer.valueOf(data[1])];
-            eist.setDirection(Integer.valueOf(data[2]));
-            exit.setPosX(columns[Integer.valueOf(data[3])]);
-            exit.setPosY(rows[Integer.valueOf(data[4])]);
-            exit.setArea(new Rectangle2D(exit.getPosX(), exit.getPosY(), mFrameDimension, mFrameDimension));
-            ladder.setSlotIdx(Integer.valueOf(data[5]));
-        }
+        loadEvent.userLevel = mLoadUserLevel;
+        loadEvent.commit();
+
+        startRecording(level);
 
         if (level == 0) {
 
@@ -1269,7 +1744,7 @@ abstract class Utils extends Application {
                 }
             };
             sleeper.setOnSucceeded(event -> {
-                eist.isMoving = true;
+                state.start();
                 if (trackMainPlayer != null && !mMuteMusic && !trackMainPlayer.getStatus().equals(MediaPlayer.Status.PLAYING)) {
                     trackMainPlayer.play();
                 }
@@ -1299,289 +1774,313 @@ abstract class Utils extends Application {
                 }
             });
             new Thread(sleeper).start();
+
+            /*
+             * Completion is what most runs end in, so the next level gets loaded while this one is played.
+             */
+            prefetchLevel(level + 1);
         }
     }
 
-    void setSpeed(int level){
-
-        mFullSpeed = prefs.getBoolean("fspeed", false);
-
-        walkingSpeedPerSecond = mSceneWidth / 14d;
-        mFrameDurationEist = 70000000;
+    /**
+     * Record the run, to be stored as the last replay of the level.
+     */
+    private void startRecording(int level) {
 
-        if(!mFullSpeed && level > 0){
-            double delay = (1.1 / mDimensionDivider) * (MAX_LEVEL - level);
-            walkingSpeedPerSecond = walkingSpeedPerSecond - delay;
-            mFrameDurationEist = mFrameDurationEist + ((MAX_LEVEL - level) * 500000);
+        if (level > 0 && !mReplaying) {
+            long seed = System.nanoTime();
+            state.setSeed(seed);
+            state.setRecorder(new ReplayRecorder(level, seed, mTickRate));
+        } else {
+            state.setRecorder(null);
         }
-
-        System.out.println("walkingSpeedPerSecond = " + walkingSpeedPerSecond);
-        System.out.println("mFrameDurationEist = " + mFrameDurationEist);
     }
 
     /**
-     * Object detection area must not fill all the frame. Let's center a rectangle of the grid size inside the frame.
-     *
-     * @param outerX Source frame X
-     * @param outerY Source frame Y
-     * @return Centered smaller rectangle
+     * Start the current level over, after a falldown. The initial layout loadLevel() parsed is restored in place:
+     * no files get checked, read nor decoded, and the music just plays on. Level 0 gets loaded as usual, as the
+     * intro walk starts by itself.
      */
-    private Rectangle2D innerRect(double outerX, double outerY) {
-        double x = outerX + mGridDimension / 2;
-        double y = outerY + mGridDimension / 2;
+    void resetLevel() {
 
-        return new Rectangle2D(x, y, mGridDimension, mGridDimension);
+        if (mLevelStart == null || mCurrentLevel == 0) {
+            loadLevel(mCurrentLevel);
+            return;
+        }
+
+        saveReplay(ReplayRecorder.END_QUIT);
+
+        mLevelLoadCount++;
+        state.restore(mLevelStart);
+        pad.setSelection(null);
+        centerCamera();
+
+        // The full speed may have been toggled meanwhile
+        setSpeed(mCurrentLevel);
+
+        startRecording(mCurrentLevel);
     }
 
     /**
-     * Loading files for Editor varies quite much. Let's use a separate method
+     * End the editor test run after a falldown: back to the layout the test started with, which is the one saved.
      */
-    void loadEditor() {
+    void resetEditorTest() {
 
-        setUpButtons();
-        toolbar.setSelection(prefs.getInt("sel", SELECTION_KEY));
+        if (mTestStart == null) {
+            loadEditor();
+            return;
+        }
+
+        state.restore(mTestStart);
+        mTestStart = null;
+        pad.setSelection(null);
 
-        mEditor = true;
         mTesting = false;
+        disableButtons(false);
+    }
 
-        mCurrentFallingFrame = null;
-        eist.isMoving = false;
-        eist.setKeys(0);
-        pad.setSelection(null);
+    void setSpeed(int level){
 
-        mTurnsCounter = 0;
+        mFullSpeed = prefs.getBoolean("fspeed", false);
 
-        String urlString;
+        walkingSpeedPerSecond = mSceneWidth / 14d;
+        mFrameDurationEist = 70000000;
 
-        File userLevel = new File(System.getProperty("user.home") + "/.EistReturns/levels/editor-data/");
-        urlString = userLevel.toURI().toString();
+        if(!mFullSpeed && level > 0){
+            double delay = 1.1 * (MAX_LEVEL - level);
+            walkingSpeedPerSecond = walkingSpeedPerSecond - delay;
+            mFrameDurationEist = mFrameDurationEist + ((MAX_LEVEL - level) * 500000);
+        }
 
-        /*
-         * Load board bitmap
-         */
-        mBoardImg = new Image(urlString + "board.png", mSceneWidth, mSceneHeight, true, true, false);
+        if (state != null) {
+            state.setSpeed(walkingSpeedPerSecond, mFrameDurationEist);
+        }
+    }
 
-        pixelReader = mBoardImg.getPixelReader();
+    /**
+     * Build the level objects out of the .dat files parsed; the same for the game and the editor.
+     *
+     * @param tables the table of a .dat file by its name, null if missing
+     * @return whether level.dat was there, to set Eist and the exit from
+     */
+    private boolean loadLevelObjects(Function<String, DatReader.Table> tables) {
 
-        String dataString;
+        DatReader.Table table;
         /*
          * Load arrows
          */
-        mArrows = new ArrayList<>();
-        dataString = datToString(urlString + "arrows.dat");
-        if (dataString != null && !dataString.isEmpty()) {
-
-            String[] arrows = dataString.split(":");
-
-            for (String single_entry : arrows) {
+        mArrows = newCellList(Arrow::getArea);
+        table = tables.apply("arrows.dat");
+        for (int i = 0; table != null && i < table.getRows(); i++) {
 
-                String[] positions = single_entry.split(",");
+            int posX = table.get(i, 0);
+            int posY = table.get(i, 1);
 
-                int posX = Integer.valueOf(positions[0]);
-                int posY = Integer.valueOf(positions[1]);
+            Arrow arrow = new Arrow();
+            arrow.setPosX(columns[posX]);
+            arrow.setPosY(rows[posY]);
 
-                Arrow arrow = new Arrow();
-                arrow.setPosX(columns[posX]);
-                arrow.setPosY(rows[posY]);
+            arrow.setArea(innerRect(columns[posX], rows[posY]));
 
-                arrow.setArea(innerRect(columns[posX], rows[posY]));
-
-                arrow.setDirection(Integer.valueOf(positions[2]));
-                mArrows.add(arrow);
-            }
+            arrow.setDirection(table.get(i, 2));
+            mArrows.add(arrow);
         }
 
         /*
          * Load artifacts (called "amulets" in resources due to historical reasons ;)
          */
-        mArtifactImg = new Image(urlString + "amulet.png");
-        mArtifacts = new ArrayList<>();
-        dataString = datToString(urlString + "amulets.dat");
-        if (dataString != null) {
-
-            String[] artifacts = dataString.split(":");
-
-            for (String single_entry : artifacts) {
+        mArtifacts = newCellList(Artifact::getArea);
+        table = tables.apply("amulets.dat");
+        for (int i = 0; table != null && i < table.getRows(); i++) {
 
-                String[] positions = single_entry.split(",");
+            int posX = table.get(i, 0);
+            int posY = table.get(i, 1);
 
-                int posX = Integer.valueOf(positions[0]);
-                int posY = Integer.valueOf(positions[1]);
+            Artifact artifact = new Artifact();
+            artifact.setPosX(columns[posX]);
+            artifact.setPosY(rows[posY]);
 
-                Artifact artifact = new Artifact();
-                artifact.setPosX(columns[posX]);
-                artifact.setPosY(rows[posY]);
-
-                artifact.setArea(innerRect(columns[posX], rows[posY]));
-                mArtifacts.add(artifact);
-            }
+            artifact.setArea(innerRect(columns[posX], rows[posY]));
+            mArtifacts.add(artifact);
         }
 
         /*
          * Load ornaments
          */
-        mOrnamentImg = new Image(urlString + "ornament.png");
-        mOrnaments = new ArrayList<>();
-        dataString = datToString(urlString + "ornaments.dat");
-        if (dataString != null) {
-
-            String[] ornaments = dataString.split(":");
-
-            for (String single_entry : ornaments) {
+        mOrnaments = newCellList(Ornament::getArea);
+        table = tables.apply("ornaments.dat");
+        for (int i = 0; table != null && i < table.getRows(); i++) {
 
-                String[] positions = single_entry.split(",");
+            int posX = table.get(i, 0);
+            int posY = table.get(i, 1);
 
-                int posX = Integer.valueOf(positions[0]);
-                int posY = Integer.valueOf(positions[1]);
+            Ornament ornament = new Ornament();
+            ornament.setPosX(columns[posX]);
+            ornament.setPosY(rows[posY]);
+            ornament.setArea(innerRect(columns[posX], rows[posY]));
 
-                Ornament ornament = new Ornament();
-                ornament.setPosX(columns[posX]);
-                ornament.setPosY(rows[posY]);
-
-                mOrnaments.add(ornament);
-            }
+            mOrnaments.add(ornament);
         }
 
         /*
          * Load teleports
          */
-        mTeleports = new ArrayList<>();
-        dataString = datToString(urlString + "teleports.dat");
-        if (dataString != null) {
+        mTeleports = newCellList(Teleport::getArea);
+        table = tables.apply("teleports.dat");
+        for (int i = 0; table != null && i < table.getRows(); i++) {
 
-            String[] teleports = dataString.split(":");
+            int posX = table.get(i, 0);
+            int posY = table.get(i, 1);
 
-            for (String single_entry : teleports) {
+            Teleport teleport = new Teleport();
+            teleport.setPosX(columns[posX]);
+            teleport.setPosY(rows[posY]);
 
-                String[] positions = single_entry.split(",");
+            teleport.setArea(innerRect(columns[posX], rows[posY]));
+            mTeleports.add(teleport);
+        }
 
-                int posX = Integer.valueOf(positions[0]);
-                int posY = Integer.valueOf(positions[1]);
+        /*
+         * Load keys
+         */
+        mKeys = newCellList(Key::getArea);
+        table = tables.apply("keys.dat");
+        for (int i = 0; table != null && i < table.getRows(); i++) {
 
-                Teleport teleport = new Teleport();
-                teleport.setPosX(columns[posX]);
-                teleport.setPosY(rows[posY]);
+            int posX = table.get(i, 0);
+            int posY = table.get(i, 1);
 
-                teleport.setArea(innerRect(columns[posX], rows[posY]));
-                mTeleports.add(teleport);
-            }
+            Key key = new Key();
+            key.setPosX(columns[posX]);
+            key.setPosY(rows[posY]);
+
+            key.setArea(innerRect(columns[posX], rows[posY]));
+            mKeys.add(key);
         }
 
         /*
-         * Load keys
+         * Load doors
          */
-        mKeyImg = new Image(urlString + "key.png");
-        mKeys = new ArrayList<>();
-        dataString = datToString(urlString + "keys.dat");
-        if (dataString != null) {
+        mDoors = newCellList(Door::getArea);
+        table = tables.apply("doors.dat");
+        for (int i = 0; table != null && i < table.getRows(); i++) {
 
-            String[] keys = dataString.split(":");
+            int posX = table.get(i, 0);
+            int posY = table.get(i, 1);
 
-            for (String single_entry : keys) {
+            Door door = new Door();
+            door.setPosX(columns[posX]);
+            door.setPosY(rows[posY]);
+            door.setOrientation(table.get(i, 2));
 
-                String[] positions = single_entry.split(",");
+            door.setArea(innerRect(columns[posX], rows[posY]));
+            mDoors.add(door);
+        }
 
-                int posX = Integer.valueOf(positions[0]);
-                int posY = Integer.valueOf(positions[1]);
+        /*
+         * Load ladder slots
+         */
+        mSlots = new ArrayList<>();
+        table = tables.apply("slots.dat");
+        for (int i = 0; table != null && i < table.getRows(); i++) {
+
+            int posX = table.get(i, 0);
+            int posY = table.get(i, 1);
 
-                Key key = new Key();
-                key.setPosX(columns[posX]);
-                key.setPosY(rows[posY]);
+            Slot slot = new Slot();
+            slot.setPosX(columns[posX]);
+            slot.setPosY(rows[posY]);
+            slot.setOrientation(table.get(i, 2));
 
-                key.setArea(innerRect(columns[posX], rows[posY]));
-                mKeys.add(key);
+            if (slot.getOrientation() == ORIENTATION_VERTICAL) {
+                slot.setArea(new Rectangle2D(columns[posX], rows[posY], mFrameDimension, mGridDimension));
+            } else {
+                slot.setArea(new Rectangle2D(columns[posX], rows[posY], mGridDimension, mFrameDimension));
             }
+            mSlots.add(slot);
         }
 
-        /*
-         * Load doors
-         */
-        mDoorHImg = new Image(urlString + "door_h.png");
-        mDoorVImg = new Image(urlString + "door_v.png");
-        mDoors = new ArrayList<>();
-        dataString = datToString(urlString + "doors.dat");
-        if (dataString != null) {
+        /*
+         * Load level data
+         */
+        table = tables.apply("level.dat");
+        if (table == null || table.getRows() == 0) {
+            return false;
+        }
+
+        eist.x = columns[table.get(0, 0)];
+        eist.y = rows[table.get(0, 1)];
+        eist.setDirection(table.get(0, 2));
+        exit.setPosX(columns[table.get(0, 3)]);
+        exit.setPosY(rows[table.get(0, 4)]);
+        exit.setArea(new Rectangle2D(exit.getPosX(), exit.getPosY(), mFrameDimension, mFrameDimension));
+        ladder.setSlotIdx(table.get(0, 5) == DatReader.NULL_VALUE ? null : table.get(0, 5));
+        return true;
+    }
+
+    /**
+     * Object detection area must not fill all the frame. Let's center a rectangle of the grid size inside the frame.
+     *
+     * @param outerX Source frame X
+     * @param outerY Source frame Y
+     * @return Centered smaller rectangle
+     */
+    private Rectangle2D innerRect(double outerX, double outerY) {
+        double x = outerX + mGridDimension / 2;
+        double y = outerY + mGridDimension / 2;
+
+        return new Rectangle2D(x, y, mGridDimension, mGridDimension);
+    }
 
-            String[] artifacts = dataString.split(":");
+    /**
+     * Loading files for Editor varies quite much. Let's use a separate method
+     */
+    void loadEditor() {
 
-            for (String single_entry : artifacts) {
+        setUpButtons();
+        toolbar.setSelection(prefs.getInt("sel", SELECTION_KEY));
 
-                String[] positions = single_entry.split(",");
+        mEditor = true;
+        mTesting = false;
 
-                int posX = Integer.valueOf(positions[0]);
-                int posY = Integer.valueOf(positions[1]);
-                int orientation = Integer.valueOf(positions[2]);
+        eist.isMoving = false;
+        eist.setKeys(0);
+        pad.setSelection(null);
 
-                Door door = new Door();
-                door.setPosX(columns[posX]);
-                door.setPosY(rows[posY]);
-                door.setOrientation(orientation);
+        String urlString;
 
-                door.setArea(innerRect(columns[posX], rows[posY]));
-                mDoors.add(door);
-            }
-        }
+        File userLevel = new File(System.getProperty("user.home") + "/.EistReturns/levels/editor-data/");
+        urlString = userLevel.toURI().toString();
 
         /*
-         * Load ladder slots
+         * Load board bitmap
          */
-        mSlots = new ArrayList<>();
-        dataString = datToString(urlString + "slots.dat");
-        if (dataString != null) {
-
-            String[] slots = dataString.split(":");
-
-            for (String single_entry : slots) {
-
-                String[] positions = single_entry.split(",");
-
-                int posX = Integer.valueOf(positions[0]);
-                int posY = Integer.valueOf(positions[1]);
-                int orientation = Integer.valueOf(positions[2]);
-
-                Slot slot = new Slot();
-                slot.setPosX(columns[posX]);
-                slot.setPosY(rows[posY]);
-                slot.setOrientation(orientation);
+        mBoardImg = new Image(urlString + "board.png", mSceneWidth, mSceneHeight, true, true, false);
+        mBoardTiles = null;
+        mBoardWidth = mSceneWidth;
+        mBoardHeight = mSceneHeight;
+        mCamera.setBoard(mBoardWidth, mBoardHeight, false);
 
-                if (slot.getOrientation() == ORIENTATION_VERTICAL) {
-                    slot.setArea(new Rectangle2D(columns[posX], rows[posY], mFrameDimension, mGridDimension));
-                } else {
-                    slot.setArea(new Rectangle2D(columns[posX], rows[posY], mGridDimension, mFrameDimension));
-                }
-                mSlots.add(slot);
-            }
-        }
+        mWalkability = WalkabilityMask.fromImage(mBoardImg.getPixelReader(), (int) mBoardImg.getWidth(),
+                (int) mBoardImg.getHeight(), mGridDimension, mFrameDimension);
 
-        /*
-         * Load ladder bitmaps
-         */
+        mArtifactImg = new Image(urlString + "amulet.png");
+        mOrnamentImg = new Image(urlString + "ornament.png");
+        mKeyImg = new Image(urlString + "key.png");
+        mDoorHImg = new Image(urlString + "door_h.png");
+        mDoorVImg = new Image(urlString + "door_v.png");
         mLadderHImg = new Image(urlString + "ladder_h.png", mFrameDimension, mFrameDimension, true, true, true);
         mLadderVImg = new Image(urlString + "ladder_v.png", mFrameDimension, mFrameDimension, true, true, true);
-
-        /*
-         * Load exit bitmaps
-         */
         mExitClosedImg = new Image(urlString + "exit_closed.png", mFrameDimension, mFrameDimension, true, true, true);
         mExitOpenImg = new Image(urlString + "exit_open.png", mFrameDimension, mFrameDimension, true, true, true);
 
-        /*
-         * Load level data
-         */
-        dataString = datToString(urlString + "level.dat");
-        if (dataString != null) {
-
-            String[] data = dataString.split(",");
-
-            eist.x = columns[Integer.valueOf(data[0])];
-            eist.y = rows[Integer.valueOf(data[1])];
-            eist.setDirection(Integer.valueOf(data[2]));
-            exit.setPosX(columns[Integer.valueOf(data[3])]);
-            exit.setPosY(rows[Integer.valueOf(data[4])]);
-            exit.setArea(new Rectangle2D(exit.getPosX(), exit.getPosY(), mFrameDimension, mFrameDimension));
-            ladder.setSlotIdx(Integer.valueOf(data[5]));
+        Map<String, DatReader.Table> tables = new HashMap<>();
+        String error = readLevelData(urlString, true, tables::put);
+        if (error != null) {
+            Platform.runLater(() -> displayUserLevelError("Editor data is malformed", "Error:", error));
+        }
 
-        } else {
+        if (!loadLevelObjects(tables::get)) {
             // error loading file, set replacement data
             eist.x = columns[1];
             eist.y = rows[1];
@@ -1592,6 +2091,7 @@ abstract class Utils extends Application {
             ladder.setSlotIdx(0);
 
         }
+        eist.storePosition();
         /*
          * Just in case the slots.dat file not found:
          */
@@ -1599,6 +2099,8 @@ abstract class Utils extends Application {
             ladder.setSlotIdx(null);
         }
 
+        state.load(mArrows, mArtifacts, mTeleports, mKeys, mDoors, mSlots);
+
         if (trackMainPlayer != null && trackMainPlayer.getStatus().equals(MediaPlayer.Status.PLAYING)) {
             trackMainPlayer.stop();
         }
@@ -1623,45 +2125,53 @@ abstract class Utils extends Application {
         disableButtons(false);
     }
 
-    private String datToString(String urlString) {
+    /**
+     * Parse the .dat files of the level folder.
+     *
+     * @param tables gets the files parsed, null for the files missing
+     * @return the first error, null if none; the malformed files are left out of the tables
+     */
+    private String readLevelData(String urlString, boolean fromFile, BiConsumer<String, DatReader.Table> tables) {
+
+        String error = null;
+        for (String name : LevelAssets.DATA_FILES) {
+            try {
+                tables.accept(name, readDat(urlString + name, LevelAssets.columnsOf(name), fromFile));
 
-        StringBuilder stringBuilder = new StringBuilder();
+            } catch (IOException e) {
+                System.out.println("Couldn't read " + urlString + name + ": " + e.getMessage());
+                if (error == null) {
+                    error = e.getMessage();
+                }
+            }
+        }
+        return error;
+    }
+
+    /**
+     * @return null if the file doesn't exist
+     * @throws DatReader.FormatException if malformed
+     */
+    private DatReader.Table readDat(String urlString, int columns, boolean fromFile) throws IOException {
 
+        String name;
         InputStream inputStream;
 
-        if (!mLoadUserLevel && !mEditor) {
+        if (!fromFile) {
+            name = urlString;
             inputStream = getClass().getClassLoader().getResourceAsStream(urlString);
         } else {
-            try {
-                // This should be done better, still I don't know how...
-                inputStream = new FileInputStream(urlString.substring(5));
-            } catch (FileNotFoundException e) {
-                inputStream = null;
-            }
+            File file = new File(URI.create(urlString));
+            name = file.getPath();
+            inputStream = file.isFile() ? new FileInputStream(file) : null;
         }
-        String output = null;
 
         if (inputStream == null) {
             System.out.println("Couldn't read " + urlString);
             return null;
-
-        } else {
-
-            BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(inputStream));
-            try {
-                String line;
-                while ((line = bufferedReader.readLine()) != null) {
-                    stringBuilder.append(line).append("\n");
-                }
-                output = stringBuilder.toString().trim();
-
-            } catch (IOException e) {
-                displayExceptionAlert("Error reading InputStream", e);
-            }
-            if (output != null && output.equals("")) {
-                output = null;
-            }
-            return output;
+        }
+        try (InputStream in = new BufferedInputStream(inputStream)) {
+            return DatReader.read(in, name, columns);
         }
     }
 
@@ -1683,8 +2193,7 @@ abstract class Utils extends Application {
 
         } else {
 
-            BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(inputStream));
-            try {
+            try (BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(inputStream))) {
                 String line;
                 while ((line = bufferedReader.readLine()) != null) {
                     stringBuilder.append(line).append("\n");
@@ -1692,7 +2201,12 @@ abstract class Utils extends Application {
                 output = stringBuilder.toString().trim();
 
             } catch (IOException e) {
-                displayExceptionAlert("Error reading InputStream", e);
+                // The level-load thread reads it too
+                if (Platform.isFxApplicationThread()) {
+                    displayExceptionAlert("Error reading InputStream", e);
+                } else {
+                    Platform.runLater(() -> displayExceptionAlert("Error reading InputStream", e));
+                }
             }
             if (output != null && output.equals("")) {
                 output = null;
@@ -1701,10 +2215,6 @@ abstract class Utils extends Application {
         }
     }
 
-    static boolean getRandomBoolean() {
-        return Math.random() < 0.5;
-    }
-
     private Rectangle2D nearestSquare(double touch_x, double touch_y) {
 
         double nearest_left = ((int) (touch_x / mGridDimension)) * mGridDimension;
@@ -1735,104 +2245,10 @@ abstract class Utils extends Application {
 
     private boolean isSlotAllowed(Rectangle2D nearestSquare) {
 
-        int top_left_color = pixelReader.getArgb((int) nearestSquare.getMinX(), (int) nearestSquare.getMinY());
-        int top_right_color = pixelReader.getArgb((int) nearestSquare.getMaxX(), (int) nearestSquare.getMinY());
-        int bottom_left_color = pixelReader.getArgb((int) nearestSquare.getMinX(), (int) nearestSquare.getMaxY());
-        int bottom_right_color = pixelReader.getArgb((int) nearestSquare.getMaxX(), (int) nearestSquare.getMaxY());
-
-        return top_left_color != -16777216 && top_right_color != -16777216 &&
-                bottom_left_color != -16777216 && bottom_right_color != -16777216;
-    }
-
-    /**
-     * On the basis of clicked point coordinates, we need to calculate the place to put the arrow in.
-     * Disallowed locations: off the board and on the margin of the board.
-     *
-     * @param touch_x Clicked point X
-     * @param touch_y Clicked point Y
-     * @return Adjusted rectangle coordinates.
-     */
-    private Rectangle2D nearestAdjustedSquare(double touch_x, double touch_y) {
-
-        double nearest_left = ((int) (touch_x / mGridDimension)) * mGridDimension;
-        double nearest_top = ((int) (touch_y / mGridDimension)) * mGridDimension;
-
-        if (touch_x - nearest_left < mHalfGridDimension) {
-            nearest_left = nearest_left - mGridDimension;
-        }
-        if (touch_y - nearest_top < mHalfGridDimension) {
-            nearest_top = nearest_top - mGridDimension;
-        }
-
-        try {
-
-            Rectangle2D adjustedSquare = new Rectangle2D(nearest_left, nearest_top, mFrameDimension, mFrameDimension);
-
-            int top_left_color = pixelReader.getArgb((int) adjustedSquare.getMinX() + 15, (int) adjustedSquare.getMinY() + 15);
-            int top_right_color = pixelReader.getArgb((int) adjustedSquare.getMaxX() - 15, (int) adjustedSquare.getMinY() + 15);
-            int bottom_left_color = pixelReader.getArgb((int) adjustedSquare.getMinX() + 15, (int) adjustedSquare.getMaxY() - 15);
-            int bottom_right_color = pixelReader.getArgb((int) adjustedSquare.getMaxX() - 15, (int) adjustedSquare.getMaxY() - 15);
-
-
-            // both right corner sticks out -> move LEFT
-            if (top_right_color == -16777216 && bottom_right_color == -16777216) {
-                adjustedSquare = new Rectangle2D(adjustedSquare.getMinX() - mGridDimension, adjustedSquare.getMinY(), mFrameDimension, mFrameDimension);
-            }
-            // both bottom corners stick out -> MOVE UP
-            if (bottom_left_color == -16777216 && bottom_right_color == -16777216) {
-                adjustedSquare = new Rectangle2D(adjustedSquare.getMinX(), adjustedSquare.getMinY() - mGridDimension, mFrameDimension, mFrameDimension);
-            }
-            // both left corner sticks out -> MOVE RIGHT
-            if (top_left_color == -16777216 && bottom_left_color == -16777216 && top_right_color != -16777216) {
-                adjustedSquare = new Rectangle2D(adjustedSquare.getMinX() + mGridDimension, adjustedSquare.getMinY(), mFrameDimension, mFrameDimension);
-            }
-            // both top corners stick out -> MOVE DOWN
-            if (top_left_color == -16777216 && top_right_color == -16777216 && bottom_left_color != -16777216) {
-                adjustedSquare = new Rectangle2D(adjustedSquare.getMinX(), adjustedSquare.getMinY() + mGridDimension, mFrameDimension, mFrameDimension);
-            }
-
-            // three corners stick out -> MOVE BOTTOM RIGHT
-            if (top_left_color == -16777216 && top_right_color == -16777216 && bottom_left_color == -16777216) {
-                adjustedSquare = new Rectangle2D(adjustedSquare.getMinX() + mGridDimension, adjustedSquare.getMinY() + mGridDimension, mFrameDimension, mFrameDimension);
-            }
-
-            // just top left corner sticks out -> MOVE BOTTOM RIGHT
-            if (top_left_color == -16777216 && top_right_color != -16777216 && bottom_left_color != -16777216) {
-                adjustedSquare = new Rectangle2D(adjustedSquare.getMinX() + mGridDimension, adjustedSquare.getMinY() + mGridDimension, mFrameDimension, mFrameDimension);
-            }
-
-            // just bottom left corner sticks out -> MOVE TOP RIGHT
-            if (bottom_left_color == -16777216 && top_left_color != -16777216 && bottom_right_color != -16777216) {
-                adjustedSquare = new Rectangle2D(adjustedSquare.getMinX() + mGridDimension, adjustedSquare.getMinY() - mGridDimension, mFrameDimension, mFrameDimension);
-            }
-
-            // just top right corner sticks out -> MOVE BOTTOM LEFT
-            if (top_right_color == -16777216 && top_left_color != -16777216 && bottom_right_color != -16777216) {
-                adjustedSquare = new Rectangle2D(adjustedSquare.getMinX() - mGridDimension, adjustedSquare.getMinY() + mGridDimension, mFrameDimension, mFrameDimension);
-            }
-
-            // Shouldn't happen, but happens: all 4 corners out of the board (WTF?)
-            if (top_right_color == -16777216 && top_left_color != -16777216 && bottom_right_color != -16777216 && bottom_left_color != -16777216) {
-                adjustedSquare = null;
-            }
-
-            return (adjustedSquare);
-
-        } catch (Exception e) {
-
-            System.out.println("Couldn't get square: " + e);
-            return null;
-        }
-    }
-
-    private void placeArrow(double x, double y) {
-
-        Arrow arrow = new Arrow();
-        arrow.setPosX(x);
-        arrow.setPosY(y);
-        arrow.setArea(innerRect(x, y));
-        arrow.setDirection(pad.getSelection());
-        mArrows.add(arrow);
+        return !mWalkability.isVoid((int) nearestSquare.getMinX(), (int) nearestSquare.getMinY())
+                && !mWalkability.isVoid((int) nearestSquare.getMaxX(), (int) nearestSquare.getMinY())
+                && !mWalkability.isVoid((int) nearestSquare.getMinX(), (int) nearestSquare.getMaxY())
+                && !mWalkability.isVoid((int) nearestSquare.getMaxX(), (int) nearestSquare.getMaxY());
     }
 
     private void placeDoor(double x, double y) {
@@ -1894,6 +2310,7 @@ abstract class Utils extends Application {
         Ornament ornament = new Ornament();
         ornament.setPosX(x);
         ornament.setPosY(y);
+        ornament.setArea(innerRect(x, y));
         mOrnaments.add(ornament);
     }
 
@@ -1922,6 +2339,7 @@ abstract class Utils extends Application {
 
         eist.x = x;
         eist.y = y;
+        eist.storePosition();
         eist.setArea(new Rectangle2D(exit.getPosX(), exit.getPosY(), mFrameDimension, mFrameDimension));
     }
 
@@ -1993,46 +2411,16 @@ abstract class Utils extends Application {
 
     private boolean arrowAllowed(Point2D squareCenter) {
 
-        for (Arrow arrow : mArrows) {
-            if (arrow.getArea().contains(squareCenter)) {
-                return false;
-            }
-        }
-        for (Artifact artifact : mArtifacts) {
-            if (artifact.getArea().contains(squareCenter)) {
-                return false;
-            }
-        }
-        for (Key key : mKeys) {
-            if (key.getArea().contains(squareCenter)) {
-                return false;
-            }
-        }
-        for (Door door : mDoors) {
-            if (door.getArea().contains(squareCenter)) {
-                return false;
-            }
-        }
-        for (Teleport teleport : mTeleports) {
-            if (teleport.getArea().contains(squareCenter)) {
-                return false;
-            }
-        }
-
-        if (exit.getArea().contains(squareCenter)) {
-            return false;
-        }
-        return true;
+        return mArrows.first(squareCenter) == null && mArtifacts.first(squareCenter) == null
+                && mKeys.first(squareCenter) == null && mDoors.first(squareCenter) == null
+                && mTeleports.first(squareCenter) == null && !exit.getArea().contains(squareCenter);
     }
 
-    private void removeArrow(Rectangle2D pressedSquare) {
-
-        for (Arrow arrow : mArrows) {
-            if (arrow.getArea().intersects(pressedSquare)) {
-                mArrows.remove(arrow);
-                break;
-            }
-        }
+    /**
+     * The level object list, indexed by the board grid cells (see CellList).
+     */
+    <T> CellList<T> newCellList(Function<T, Rectangle2D> areaOf) {
+        return new CellList<>(areaOf, mGridDimension, mBoardWidth, mBoardHeight);
     }
 
     /**
@@ -2042,6 +2430,7 @@ abstract class Utils extends Application {
      * @return double in range -1.0 to 1.0
      */
     double calculateBalance(double eistX) {
+        eistX -= mCamera.getX(); // Where in the view, on a scrolled board
         if (eistX < mCenterX) {
             return -(mCenterX - eistX) / mCenterX;
         } else if (eistX > mCenterX) {
@@ -2051,7 +2440,7 @@ abstract class Utils extends Application {
         }
     }
 
-    private void displayExceptionAlert(String header, Exception e) {
+    private void displayExceptionAlert(String header, Throwable e) {
         if (mErrorAlert != null && mErrorAlert.isShowing()) {
             return;
         }
@@ -2092,13 +2481,17 @@ abstract class Utils extends Application {
     }
 
     private void displayMissingUserFiles(String content) {
+        displayUserLevelError("User defined level misses required files", "Missing files:", content);
+    }
+
+    private void displayUserLevelError(String header, String labelText, String content) {
 
         Alert alert = new Alert(Alert.AlertType.ERROR);
         alert.setResizable(true);
         alert.setTitle("Error loading data");
-        alert.setHeaderText("User defined level misses required files");
+        alert.setHeaderText(header);
 
-        Label label = new Label("Missing files:");
+        Label label = new Label(labelText);
 
         TextArea textArea = new TextArea(content);
         textArea.setEditable(false);
@@ -2206,7 +2599,7 @@ abstract class Utils extends Application {
             dialog = new ChoiceDialog<>("Small", choices);
         }
         dialog.setTitle("Setting the game window size");
-        dialog.setHeaderText("Select size and restart the game");
+        dialog.setHeaderText("Select size");
         dialog.setContentText("Choose the window size:");
         dialog.initOwner(mGameStage);
 
@@ -2215,19 +2608,41 @@ abstract class Utils extends Application {
             System.out.println("Your choice: " + result.get());
             switch (result.get()) {
                 case "Small":
-                    prefs.putDouble("divider", 2.0);
+                    mDimensionDivider = 2.0;
                     break;
                 case "Medium":
-                    prefs.putDouble("divider", 1.5);
+                    mDimensionDivider = 1.5;
                     break;
                 case "Full screen":
-                    prefs.putDouble("divider", 1.0);
+                    mDimensionDivider = 1.0;
                     break;
                 default:
                     break;
             }
-            Platform.exit();
+            prefs.putDouble("divider", mDimensionDivider);
+            applyWindowSize(mEditorStage != null ? mEditorStage : mGameStage);
+        }
+    }
+
+    /**
+     * Size the window as the board dimensions setting says; the board follows the scene size, see fitView().
+     */
+    void applyWindowSize(Stage stage) {
+
+        if (mDimensionDivider == 1.0) {
+            stage.setFullScreen(true);
+            return;
         }
+        stage.setFullScreen(false);
+
+        /*
+         * The window decorations, if any, come on top of the scene
+         */
+        double extraWidth = stage.getWidth() - stage.getScene().getWidth();
+        double extraHeight = stage.getHeight() - stage.getScene().getHeight();
+        stage.setWidth(BoardView.windowWidth(mDimensionDivider) + extraWidth);
+        stage.setHeight(BoardView.windowHeight(mDimensionDivider) + extraHeight);
+        stage.centerOnScreen();
     }
 
     private void displayImportLevelChoiceDialog() {
@@ -3380,91 +3795,24 @@ abstract class Utils extends Application {
     }
 
     private void saveEditor(boolean toast) {
-        StringBuilder content = new StringBuilder();
-        if (mArrows != null && mArrows.size() > 0) {
-            for (Arrow arrow : mArrows) {
-                content.append(String.valueOf((int) (arrow.getPosX() / mGridDimension)));
-                content.append(",");
-                content.append(String.valueOf((int) (arrow.getPosY() / mGridDimension)));
-                content.append(",");
-                content.append(String.valueOf(arrow.getDirection()));
-                content.append(":");
-            }
-            saveToDatFile("arrows.dat", content.toString());
-        } else {
-            saveToDatFile("arrows.dat", "");
-        }
-
-        content = new StringBuilder();
-        if (mArtifacts != null && mArtifacts.size() > 0) {
-            for (Artifact artifact : mArtifacts) {
-                content.append(String.valueOf((int) (artifact.getPosX() / mGridDimension)));
-                content.append(",");
-                content.append(String.valueOf((int) (artifact.getPosY() / mGridDimension)));
-                content.append(":");
-            }
-            saveToDatFile("amulets.dat", content.toString());
-        } else {
-            saveToDatFile("amulets.dat", "");
-        }
-
-        content = new StringBuilder();
-        if (mDoors != null && mDoors.size() > 0) {
-            for (Door door : mDoors) {
-                content.append(String.valueOf((int) (door.getPosX() / mGridDimension)));
-                content.append(",");
-                content.append(String.valueOf((int) (door.getPosY() / mGridDimension)));
-                content.append(",");
-                content.append(String.valueOf(door.getOrientation()));
-                content.append(":");
-            }
-            saveToDatFile("doors.dat", content.toString());
-        } else {
-            saveToDatFile("doors", "");
-        }
-
-        content = new StringBuilder();
-        if (mKeys != null && mKeys.size() > 0) {
-            for (Key key : mKeys) {
-                content.append(String.valueOf((int) (key.getPosX() / mGridDimension)));
-                content.append(",");
-                content.append(String.valueOf((int) (key.getPosY() / mGridDimension)));
-                content.append(":");
-            }
-            saveToDatFile("keys.dat", content.toString());
-        } else {
-            saveToDatFile("keys.dat", "");
-        }
-
-        content = new StringBuilder();
-        if (mOrnaments != null && mOrnaments.size() > 0) {
-            for (Ornament ornament : mOrnaments) {
-                content.append(String.valueOf((int) (ornament.getPosX() / mGridDimension)));
-                content.append(",");
-                content.append(String.valueOf((int) (ornament.getPosY() / mGridDimension)));
-                content.append(":");
-            }
-            saveToDatFile("ornaments.dat", content.toString());
-        } else {
-            saveToDatFile("ornaments.dat", "");
-        }
 
-        content = new StringBuilder();
-        if (mSlots != null && mSlots.size() > 0) {
-            for (Slot slot : mSlots) {
-                content.append(String.valueOf((int) (slot.getPosX() / mGridDimension)));
-                content.append(",");
-                content.append(String.valueOf((int) (slot.getPosY() / mGridDimension)));
-                content.append(",");
-                content.append(String.valueOf(slot.getOrientation()));
-                content.append(":");
-            }
-            saveToDatFile("slots.dat", content.toString());
-        } else {
-            saveToDatFile("slots.dat", "");
-        }
+        GameEvents.EditorSave event = new GameEvents.EditorSave();
+        event.begin();
+
+        event.fileWritten(saveToDatFile("arrows.dat", datContent(mArrows, mGridDimension, Arrow::getPosX,
+                Arrow::getPosY, Arrow::getDirection)));
+        event.fileWritten(saveToDatFile("amulets.dat", datContent(mArtifacts, mGridDimension, Artifact::getPosX,
+                Artifact::getPosY, null)));
+        event.fileWritten(saveToDatFile("doors.dat", datContent(mDoors, mGridDimension, Door::getPosX, Door::getPosY,
+                Door::getOrientation)));
+        event.fileWritten(saveToDatFile("keys.dat", datContent(mKeys, mGridDimension, Key::getPosX, Key::getPosY,
+                null)));
+        event.fileWritten(saveToDatFile("ornaments.dat", datContent(mOrnaments, mGridDimension, Ornament::getPosX,
+                Ornament::getPosY, null)));
+        event.fileWritten(saveToDatFile("slots.dat", datContent(mSlots, mGridDimension, Slot::getPosX, Slot::getPosY,
+                Slot::getOrientation)));
 
-        content = new StringBuilder();
+        StringBuilder content = new StringBuilder();
         content.append(String.valueOf((int) (eist.x / mGridDimension)));
         content.append(",");
         content.append(String.valueOf((int) (eist.y / mGridDimension)));
@@ -3477,24 +3825,21 @@ abstract class Utils extends Application {
         content.append(",");
         content.append(String.valueOf(ladder.getSlotIdx()));
 
-        saveToDatFile("level.dat", content.toString());
+        event.fileWritten(saveToDatFile("level.dat", content.toString()));
 
         boolean teleportsOK = true;
-        content = new StringBuilder();
         if (mTeleports != null && mTeleports.size() == 2) {
-            for (Teleport teleport : mTeleports) {
-                content.append(String.valueOf((int) (teleport.getPosX() / mGridDimension)));
-                content.append(",");
-                content.append(String.valueOf((int) (teleport.getPosY() / mGridDimension)));
-                content.append(":");
-            }
-            saveToDatFile("teleports.dat", content.toString());
+            event.fileWritten(saveToDatFile("teleports.dat", datContent(mTeleports, mGridDimension, Teleport::getPosX,
+                    Teleport::getPosY, null)));
         } else {
-            saveToDatFile("teleports.dat", "");
+            event.fileWritten(saveToDatFile("teleports.dat", ""));
             if (mTeleports != null && mTeleports.size() == 1) {
                 teleportsOK = false;
             }
         }
+        event.teleportsSkipped = !teleportsOK;
+        event.commit();
+
         if (teleportsOK) {
             if (toast) {
                 Toast.makeText(mEditorStage, "Editor saved", TOAST_LENGTH_SHORT);
@@ -3510,14 +3855,44 @@ abstract class Utils extends Application {
         saveEditor(false);
     }
 
-    private void saveToDatFile(String filename, String content) {
-        String pathAndFilename = new File(System.getProperty("user.home") + "/.EistReturns/levels/editor-data/" + filename).toString();
-        try {
-            PrintStream out = new PrintStream(pathAndFilename);
+    /**
+     * The .dat file content of the objects, as the editor saves it: grid column and row, then the direction or
+     * orientation if any, each entry ended with ':'. Static, so that it can be measured headless (see the benchmarks).
+     *
+     * @param valueOf null for the objects with no direction nor orientation
+     * @return empty if there are no objects
+     */
+    static <T> String datContent(List<T> objects, double gridDimension, ToDoubleFunction<T> posXOf,
+                                 ToDoubleFunction<T> posYOf, ToIntFunction<T> valueOf) {
+
+        StringBuilder content = new StringBuilder();
+        if (objects != null) {
+            for (T object : objects) {
+                content.append((int) (posXOf.applyAsDouble(object) / gridDimension));
+                content.append(",");
+                content.append((int) (posYOf.applyAsDouble(object) / gridDimension));
+                if (valueOf != null) {
+                    content.append(",");
+                    content.append(valueOf.applyAsInt(object));
+                }
+                content.append(":");
+            }
+        }
+        return content.toString();
+    }
+
+    /**
+     * @return the bytes written, -1 if failed
+     */
+    private long saveToDatFile(String filename, String content) {
+        File file = new File(System.getProperty("user.home") + "/.EistReturns/levels/editor-data/" + filename);
+        try (PrintStream out = new PrintStream(file.toString())) {
             out.println(content);
         } catch (IOException e) {
             System.out.println("Failed writing " + filename + ": " + e);
+            return -1;
         }
+        return file.length();
     }
 
     /*
@@ -3945,7 +4320,7 @@ abstract class Utils extends Application {
         stage.setHeight(mEditorStage.getHeight() * 0.95);
 
         Text hint = new Text();
-        hint.setFont(messageFont);
+        hint.setFont(menuFont);
         hint.setFill(Color.WHITE);
 
         hint.setText("Select action below:");
@@ -3978,7 +4353,7 @@ abstract class Utils extends Application {
         buttonExit.setStyle("-fx-text-fill: white;");
         buttonExit.setBackground(mButtonBackground);
         buttonExit.setMinWidth(mButtonWidth);
-        buttonExit.setMinHeight(mGridDimension);
+        buttonExit.setMinHeight(mMenuGridDimension);
         buttonExit.setText("Exit editor");
 
         buttonExit.addEventHandler(MouseEvent.MOUSE_ENTERED,
@@ -3993,7 +4368,7 @@ abstract class Utils extends Application {
         button1.setStyle("-fx-text-fill: white;");
         button1.setBackground(mButtonBackground);
         button1.setMinWidth(mButtonWidth);
-        button1.setMinHeight(mGridDimension);
+        button1.setMinHeight(mMenuGridDimension);
         button1.setText("Delete user level");
 
         button1.addEventHandler(MouseEvent.MOUSE_ENTERED,
@@ -4011,7 +4386,7 @@ abstract class Utils extends Application {
         button2.setStyle("-fx-text-fill: white;");
         button2.setBackground(mButtonBackground);
         button2.setMinWidth(mButtonWidth);
-        button2.setMinHeight(mGridDimension);
+        button2.setMinHeight(mMenuGridDimension);
         button2.setText("Clear user levels");
 
         button2.addEventHandler(MouseEvent.MOUSE_ENTERED,
@@ -4029,7 +4404,7 @@ abstract class Utils extends Application {
         buttonClose.setStyle("-fx-text-fill: white;");
         buttonClose.setBackground(mButtonBackground);
         buttonClose.setMinWidth(mButtonWidth);
-        buttonClose.setMinHeight(mGridDimension);
+        buttonClose.setMinHeight(mMenuGridDimension);
         buttonClose.setText("Close");
 
         buttonClose.addEventHandler(MouseEvent.MOUSE_ENTERED,
@@ -4044,7 +4419,7 @@ abstract class Utils extends Application {
         button4.setStyle("-fx-text-fill: white;");
         button4.setBackground(mButtonBackground);
         button4.setMinWidth(mButtonWidth);
-        button4.setMinHeight(mGridDimension);
+        button4.setMinHeight(mMenuGridDimension);
         button4.setText("Import user levels");
 
         button4.addEventHandler(MouseEvent.MOUSE_ENTERED,
@@ -4062,7 +4437,7 @@ abstract class Utils extends Application {
         button5.setStyle("-fx-text-fill: white;");
         button5.setBackground(mButtonBackground);
         button5.setMinWidth(mButtonWidth);
-        button5.setMinHeight(mGridDimension);
+        button5.setMinHeight(mMenuGridDimension);
         button5.setText("Export user levels");
 
         button5.addEventHandler(MouseEvent.MOUSE_ENTERED,
@@ -4086,7 +4461,7 @@ abstract class Utils extends Application {
         buttonName.setStyle("-fx-text-fill: white;");
         buttonName.setBackground(mButtonBackground);
         buttonName.setMinWidth(mButtonWidth);
-        buttonName.setMinHeight(mGridDimension);
+        buttonName.setMinHeight(mMenuGridDimension);
         buttonName.setText("Name your levels");
 
         buttonName.addEventHandler(MouseEvent.MOUSE_ENTERED,
@@ -4108,7 +4483,7 @@ abstract class Utils extends Application {
         buttonUpload.setStyle("-fx-text-fill: white;");
         buttonUpload.setBackground(mButtonBackground);
         buttonUpload.setMinWidth(mButtonWidth);
-        buttonUpload.setMinHeight(mGridDimension);
+        buttonUpload.setMinHeight(mMenuGridDimension);
         buttonUpload.setText("Upload a bitmap");
 
         buttonUpload.addEventHandler(MouseEvent.MOUSE_ENTERED,
@@ -4151,7 +4526,7 @@ abstract class Utils extends Application {
         stage.setHeight(mGameStage.getHeight() * 0.95);
 
         Text hint = new Text();
-        hint.setFont(messageFont);
+        hint.setFont(menuFont);
         hint.setFill(Color.WHITE);
 
         hint.setText("Select action below:");
@@ -4188,11 +4563,11 @@ abstract class Utils extends Application {
         buttonSize.setStyle("-fx-text-fill: white;");
         buttonSize.setBackground(mButtonBackground);
         buttonSize.setMinWidth(mButtonWidth);
-        buttonSize.setMinHeight(mGridDimension);
+        buttonSize.setMinHeight(mMenuGridDimension);
         buttonSize.setText("Board dimensions");
 
         buttonSize.addEventHandler(MouseEvent.MOUSE_ENTERED,
-                e -> hint.setText("Switches the widow size (restart required)"));
+                e -> hint.setText("Switches the window size"));
 
         buttonSize.addEventHandler(MouseEvent.MOUSE_EXITED,
                 e -> hint.setText("Select action below:"));
@@ -4206,7 +4581,7 @@ abstract class Utils extends Application {
         buttonClearAll.setStyle("-fx-text-fill: white;");
         buttonClearAll.setBackground(mButtonBackground);
         buttonClearAll.setMinWidth(mButtonWidth);
-        buttonClearAll.setMinHeight(mGridDimension);
+        buttonClearAll.setMinHeight(mMenuGridDimension);
         buttonClearAll.setText("Reset the game");
 
         buttonClearAll.addEventHandler(MouseEvent.MOUSE_ENTERED,
@@ -4224,7 +4599,7 @@ abstract class Utils extends Application {
         buttonFinish.setStyle("-fx-text-fill: white;");
         buttonFinish.setBackground(mButtonBackground);
         buttonFinish.setMinWidth(mButtonWidth);
-        buttonFinish.setMinHeight(mGridDimension);
+        buttonFinish.setMinHeight(mMenuGridDimension);
         buttonFinish.setText("Exit game");
 
         buttonFinish.addEventHandler(MouseEvent.MOUSE_ENTERED,
@@ -4246,7 +4621,7 @@ abstract class Utils extends Application {
         buttonClose.setStyle("-fx-text-fill: white;");
         buttonClose.setBackground(mButtonBackground);
         buttonClose.setMinWidth(mButtonWidth);
-        buttonClose.setMinHeight(mGridDimension);
+        buttonClose.setMinHeight(mMenuGridDimension);
         buttonClose.setText("Close");
 
         buttonClose.addEventHandler(MouseEvent.MOUSE_ENTERED,
@@ -4261,7 +4636,7 @@ abstract class Utils extends Application {
         buttonImport.setStyle("-fx-text-fill: white;");
         buttonImport.setBackground(mButtonBackground);
         buttonImport.setMinWidth(mButtonWidth);
-        buttonImport.setMinHeight(mGridDimension);
+        buttonImport.setMinHeight(mMenuGridDimension);
         buttonImport.setText("Import user levels");
 
         buttonImport.addEventHandler(MouseEvent.MOUSE_ENTERED,
@@ -4280,7 +4655,7 @@ abstract class Utils extends Application {
         buttonRestore.setStyle("-fx-text-fill: white;");
         buttonRestore.setBackground(mButtonBackground);
         buttonRestore.setMinWidth(mButtonWidth);
-        buttonRestore.setMinHeight(mGridDimension);
+        buttonRestore.setMinHeight(mMenuGridDimension);
         buttonRestore.setText("Restore levels");
 
         buttonRestore.addEventHandler(MouseEvent.MOUSE_ENTERED,
@@ -4299,7 +4674,7 @@ abstract class Utils extends Application {
         buttonScores.setStyle("-fx-text-fill: white;");
         buttonScores.setBackground(mButtonBackground);
         buttonScores.setMinWidth(mButtonWidth);
-        buttonScores.setMinHeight(mGridDimension);
+        buttonScores.setMinHeight(mMenuGridDimension);
         buttonScores.setText("Level scores");
 
         buttonScores.addEventHandler(MouseEvent.MOUSE_ENTERED,
@@ -4317,7 +4692,7 @@ abstract class Utils extends Application {
         buttonManagePlayers.setStyle("-fx-text-fill: white;");
         buttonManagePlayers.setBackground(mButtonBackground);
         buttonManagePlayers.setMinWidth(mButtonWidth);
-        buttonManagePlayers.setMinHeight(mGridDimension);
+        buttonManagePlayers.setMinHeight(mMenuGridDimension);
         buttonManagePlayers.setText("Manage players");
 
         buttonManagePlayers.addEventHandler(MouseEvent.MOUSE_ENTERED,
@@ -4335,7 +4710,7 @@ abstract class Utils extends Application {
         buttonLogOut.setStyle("-fx-text-fill: white;");
         buttonLogOut.setBackground(mButtonBackground);
         buttonLogOut.setMinWidth(mButtonWidth);
-        buttonLogOut.setMinHeight(mGridDimension);
+        buttonLogOut.setMinHeight(mMenuGridDimension);
         buttonLogOut.setText("Log me out");
 
         buttonLogOut.addEventHandler(MouseEvent.MOUSE_ENTERED,
@@ -4410,11 +4785,11 @@ abstract class Utils extends Application {
         stage.initStyle(StageStyle.TRANSPARENT);
         stage.initModality(Modality.WINDOW_MODAL);
 
-        stage.setWidth(mFrameDimension * 6);
+        stage.setWidth(mMenuGridDimension * 12);
         stage.setHeight(mGameStage.getHeight() * 0.95);
 
         StackPane root = new StackPane();
-        root.setStyle("-fx-background-color: rgba(0, 0, 0, 0.8); -fx-padding: " + mGridDimension + ";");
+        root.setStyle("-fx-background-color: rgba(0, 0, 0, 0.8); -fx-padding: " + mMenuGridDimension + ";");
         root.setAlignment(Pos.TOP_CENTER);
 
         Scene scene = new Scene(root);
@@ -4468,7 +4843,7 @@ abstract class Utils extends Application {
         buttonLogout.setStyle("-fx-text-fill: white;");
         buttonLogout.setBackground(mButtonBackgroundNarrow);
         buttonLogout.setMinWidth(mButtonWidthNarrow);
-        buttonLogout.setMinHeight(mGridDimension);
+        buttonLogout.setMinHeight(mMenuGridDimension);
         buttonLogout.setText("Log out");
         buttonLogout.setOnAction(e -> {
             stage.close();
@@ -4480,7 +4855,7 @@ abstract class Utils extends Application {
         buttonWebsite.setStyle("-fx-text-fill: white;");
         buttonWebsite.setBackground(mButtonBackgroundNarrow);
         buttonWebsite.setMinWidth(mButtonWidthNarrow);
-        buttonWebsite.setMinHeight(mGridDimension);
+        buttonWebsite.setMinHeight(mMenuGridDimension);
         buttonWebsite.setText("Details");
         buttonWebsite.setOnAction(e -> {
             stage.close();
@@ -4494,7 +4869,7 @@ abstract class Utils extends Application {
         buttonClose.setStyle("-fx-text-fill: white;");
         buttonClose.setBackground(mButtonBackgroundNarrow);
         buttonClose.setMinWidth(mButtonWidthNarrow);
-        buttonClose.setMinHeight(mGridDimension);
+        buttonClose.setMinHeight(mMenuGridDimension);
         buttonClose.setText("Close");
         buttonClose.setOnAction(e -> {
             stage.close();
@@ -4572,8 +4947,34 @@ abstract class Utils extends Application {
 
     }
 
+    /**
+     * Finish the recording of the current level run and store it as ~/.EistReturns/replays/NN.eistrec, replacing the
+     * previous run of the level. Runs quit before Eist made a step are not stored.
+     */
+    void saveReplay(int outcome) {
+
+        ReplayRecorder recorder = state != null ? state.getRecorder() : null;
+        if (recorder == null || recorder.isFinished()) {
+            return;
+        }
+        recorder.finish(state.getTicks(), outcome, state.getTurns());
+        state.setRecorder(null);
+
+        if (outcome == ReplayRecorder.END_QUIT && state.getTurns() == 0 && !eist.isMoving) {
+            return;
+        }
+        File file = new File(mUserFolder, "replays/" + lvlToString(recorder.getLevel()) + ".eistrec");
+        try {
+            recorder.save(file);
+        } catch (IOException e) {
+            System.out.println("Couldn't save the replay: " + e.toString());
+        }
+    }
+
     void gameExit(boolean askForConfirmation){
 
+        saveReplay(ReplayRecorder.END_QUIT);
+
         if(askForConfirmation) {
             Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
             alert.setTitle("Exit game");
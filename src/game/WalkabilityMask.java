@@ -0,0 +1,280 @@
+package game;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritablePixelFormat;
+import javafx.scene.image.PixelReader;
+
+import java.awt.image.BufferedImage;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.function.IntSupplier;
+
+/**
+ * The board bitmap reduced to what the game rules need from it: a bit per pixel, set where the pixel is black (off
+ * the path). Built once per level, so that neither the fall detection nor the click handling touch the decoded image
+ * afterwards.
+ *
+ * Along with it goes a table of the frame corners per grid position, used to snap the clicks to a square on the path
+ * (see nearestAdjustedSquare()).
+ */
+class WalkabilityMask implements GameState.Terrain {
+
+    /**
+     * Opaque black, the color off the path.
+     */
+    static final int VOID_ARGB = -16777216;
+
+    /**
+     * The frame corners are sampled this many pixels inside the frame.
+     */
+    static final int CORNER_INSET = 15;
+
+    /*
+     * Corner table flags: the corner sample is off the path.
+     */
+    static final int CORNER_TOP_LEFT = 1;
+    static final int CORNER_TOP_RIGHT = 2;
+    static final int CORNER_BOTTOM_LEFT = 4;
+    static final int CORNER_BOTTOM_RIGHT = 8;
+    /**
+     * Some of the samples fall outside the board.
+     */
+    static final int CORNERS_OUTSIDE = 16;
+
+    private final int width;
+    private final int height;
+    private final long[] bits;
+
+    private final double gridDimension;
+    private final double frameDimension;
+    private final int columns;
+    private final int rows;
+    private final byte[] corners;
+
+    private WalkabilityMask(int width, int height, double gridDimension, double frameDimension, RowSource rowSource) {
+
+        this.width = width;
+        this.height = height;
+        this.bits = new long[(int) (((long) width * height + 63) >>> 6)];
+        this.gridDimension = gridDimension;
+        this.frameDimension = frameDimension;
+
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            rowSource.read(y, row);
+            long base = (long) y * width;
+            for (int x = 0; x < width; x++) {
+                if (row[x] == VOID_ARGB) {
+                    long idx = base + x;
+                    bits[(int) (idx >>> 6)] |= 1L << idx;
+                }
+            }
+        }
+
+        columns = (int) Math.ceil(width / gridDimension) + 1;
+        rows = (int) Math.ceil(height / gridDimension) + 1;
+        corners = new byte[columns * rows];
+
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+
+                double minX = c * gridDimension;
+                double minY = r * gridDimension;
+
+                int left = (int) minX + CORNER_INSET;
+                int top = (int) minY + CORNER_INSET;
+                int right = (int) (minX + frameDimension) - CORNER_INSET;
+                int bottom = (int) (minY + frameDimension) - CORNER_INSET;
+
+                if (!contains(left, top) || !contains(right, bottom)) {
+                    corners[r * columns + c] = CORNERS_OUTSIDE;
+                    continue;
+                }
+                int flags = 0;
+                if (isVoid(left, top)) {
+                    flags |= CORNER_TOP_LEFT;
+                }
+                if (isVoid(right, top)) {
+                    flags |= CORNER_TOP_RIGHT;
+                }
+                if (isVoid(left, bottom)) {
+                    flags |= CORNER_BOTTOM_LEFT;
+                }
+                if (isVoid(right, bottom)) {
+                    flags |= CORNER_BOTTOM_RIGHT;
+                }
+                corners[r * columns + c] = (byte) flags;
+            }
+        }
+    }
+
+    private interface RowSource {
+        void read(int y, int[] row);
+    }
+
+    /**
+     * Build from the board image as decoded (and scaled) by the FX toolkit.
+     */
+    static WalkabilityMask fromImage(PixelReader pixelReader, int width, int height, double gridDimension,
+                                     double frameDimension) {
+
+        WritablePixelFormat<IntBuffer> format = PixelFormat.getIntArgbInstance();
+        return new WalkabilityMask(width, height, gridDimension, frameDimension,
+                (y, row) -> pixelReader.getPixels(0, y, width, 1, format, row, 0, width));
+    }
+
+    /**
+     * Build from the board image as decoded by ImageIO (see LevelData), a row at a time: the big boards don't get
+     * copied whole into an int array.
+     */
+    static WalkabilityMask fromImage(BufferedImage image, double gridDimension, double frameDimension) {
+
+        int width = image.getWidth();
+        return new WalkabilityMask(width, image.getHeight(), gridDimension, frameDimension,
+                (y, row) -> image.getRGB(0, y, width, 1, row, 0, width));
+    }
+
+    /**
+     * Build from run lengths (see LevelBundle): per row, alternately path and void pixel counts, the path first.
+     */
+    static WalkabilityMask fromRuns(IntSupplier runs, int width, int height, double gridDimension,
+                                    double frameDimension) {
+
+        return new WalkabilityMask(width, height, gridDimension, frameDimension, (y, row) -> {
+            boolean isVoid = false;
+            int x = 0;
+            while (x < width) {
+                int end = x + runs.getAsInt();
+                if (end > width) {
+                    throw new IllegalArgumentException("Runs past the end of row " + y);
+                }
+                Arrays.fill(row, x, end, isVoid ? VOID_ARGB : 0);
+                isVoid = !isVoid;
+                x = end;
+            }
+        });
+    }
+
+    private boolean contains(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    /**
+     * Read-only, so it may be shared by many threads.
+     *
+     * @throws IndexOutOfBoundsException outside the board, as PixelReader does
+     */
+    @Override
+    public boolean isVoid(int x, int y) {
+
+        if (!contains(x, y)) {
+            throw new IndexOutOfBoundsException("(" + x + ", " + y + ") outside the board");
+        }
+        long idx = (long) y * width + x;
+        return (bits[(int) (idx >>> 6)] & (1L << idx)) != 0;
+    }
+
+    /**
+     * @param column grid column of the frame top left corner
+     * @param row    grid row of the frame top left corner
+     * @return CORNER_* flags of the frame, CORNERS_OUTSIDE if it doesn't fit the board
+     */
+    int corners(int column, int row) {
+
+        if (column < 0 || row < 0 || column >= columns || row >= rows) {
+            return CORNERS_OUTSIDE;
+        }
+        return corners[row * columns + column];
+    }
+
+    /**
+     * On the basis of clicked point coordinates, we need to calculate the place to put the arrow in.
+     * Disallowed locations: off the board and on the margin of the board.
+     *
+     * @param touch_x Clicked point X
+     * @param touch_y Clicked point Y
+     * @return Adjusted rectangle coordinates.
+     */
+    Rectangle2D nearestAdjustedSquare(double touch_x, double touch_y) {
+
+        int column = (int) (touch_x / gridDimension);
+        int row = (int) (touch_y / gridDimension);
+
+        if (touch_x - column * gridDimension < gridDimension / 2) {
+            column--;
+        }
+        if (touch_y - row * gridDimension < gridDimension / 2) {
+            row--;
+        }
+
+        /*
+         * Corners sampled when the board was loaded
+         */
+        int corners = corners(column, row);
+        if ((corners & WalkabilityMask.CORNERS_OUTSIDE) != 0) {
+            System.out.println("Couldn't get square: (" + column + ", " + row + ") off the board");
+            return null;
+        }
+
+        boolean topLeftOut = (corners & WalkabilityMask.CORNER_TOP_LEFT) != 0;
+        boolean topRightOut = (corners & WalkabilityMask.CORNER_TOP_RIGHT) != 0;
+        boolean bottomLeftOut = (corners & WalkabilityMask.CORNER_BOTTOM_LEFT) != 0;
+        boolean bottomRightOut = (corners & WalkabilityMask.CORNER_BOTTOM_RIGHT) != 0;
+
+        Rectangle2D adjustedSquare = new Rectangle2D(column * gridDimension, row * gridDimension,
+                frameDimension, frameDimension);
+
+        // both right corner sticks out -> move LEFT
+        if (topRightOut && bottomRightOut) {
+            adjustedSquare = new Rectangle2D(adjustedSquare.getMinX() - gridDimension, adjustedSquare.getMinY(), frameDimension, frameDimension);
+        }
+        // both bottom corners stick out -> MOVE UP
+        if (bottomLeftOut && bottomRightOut) {
+            adjustedSquare = new Rectangle2D(adjustedSquare.getMinX(), adjustedSquare.getMinY() - gridDimension, frameDimension, frameDimension);
+        }
+        // both left corner sticks out -> MOVE RIGHT
+        if (topLeftOut && bottomLeftOut && !topRightOut) {
+            adjustedSquare = new Rectangle2D(adjustedSquare.getMinX() + gridDimension, adjustedSquare.getMinY(), frameDimension, frameDimension);
+        }
+        // both top corners stick out -> MOVE DOWN
+        if (topLeftOut && topRightOut && !bottomLeftOut) {
+            adjustedSquare = new Rectangle2D(adjustedSquare.getMinX(), adjustedSquare.getMinY() + gridDimension, frameDimension, frameDimension);
+        }
+
+        // three corners stick out -> MOVE BOTTOM RIGHT
+        if (topLeftOut && topRightOut && bottomLeftOut) {
+            adjustedSquare = new Rectangle2D(adjustedSquare.getMinX() + gridDimension, adjustedSquare.getMinY() + gridDimension, frameDimension, frameDimension);
+        }
+
+        // just top left corner sticks out -> MOVE BOTTOM RIGHT
+        if (topLeftOut && !topRightOut && !bottomLeftOut) {
+            adjustedSquare = new Rectangle2D(adjustedSquare.getMinX() + gridDimension, adjustedSquare.getMinY() + gridDimension, frameDimension, frameDimension);
+        }
+
+        // just bottom left corner sticks out -> MOVE TOP RIGHT
+        if (bottomLeftOut && !topLeftOut && !bottomRightOut) {
+            adjustedSquare = new Rectangle2D(adjustedSquare.getMinX() + gridDimension, adjustedSquare.getMinY() - gridDimension, frameDimension, frameDimension);
+        }
+
+        // just top right corner sticks out -> MOVE BOTTOM LEFT
+        if (topRightOut && !topLeftOut && !bottomRightOut) {
+            adjustedSquare = new Rectangle2D(adjustedSquare.getMinX() - gridDimension, adjustedSquare.getMinY() + gridDimension, frameDimension, frameDimension);
+        }
+
+        // Shouldn't happen, but happens: all 4 corners out of the board (WTF?)
+        if (topRightOut && !topLeftOut && !bottomRightOut && !bottomLeftOut) {
+            adjustedSquare = null;
+        }
+
+        return (adjustedSquare);
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+}
@@ -16,13 +16,29 @@ class ZipUtils {
     static final class ZipFileUtil {
 
         static void zipDirectory(File dir, File zipFile) throws IOException {
-            FileOutputStream fout = new FileOutputStream(zipFile);
-            ZipOutputStream zout = new ZipOutputStream(fout);
-            zipSubDirectory("", dir, zout);
-            zout.close();
+            GameEvents.LevelsZip event = new GameEvents.LevelsZip();
+            event.begin();
+            event.operation = "export";
+            event.archive = zipFile.getName();
+            try {
+                FileOutputStream fout = new FileOutputStream(zipFile);
+                ZipOutputStream zout = new ZipOutputStream(fout);
+                zipSubDirectory("", dir, zout, event);
+                zout.close();
+                event.outcome = GameEvents.OUTCOME_OK;
+            } catch (IOException e) {
+                event.outcome = e.toString();
+                throw e;
+            } finally {
+                event.commit();
+            }
         }
 
-        static void zipSubDirectory(String basePath, File dir, ZipOutputStream zout) throws IOException {
+        /**
+         * @param event counts the entries and the bytes zipped
+         */
+        private static void zipSubDirectory(String basePath, File dir, ZipOutputStream zout,
+                                            GameEvents.LevelsZip event) throws IOException {
             byte[] buffer = new byte[4096];
             File[] files = dir.listFiles();
             if(files != null) {
@@ -34,7 +50,8 @@ class ZipUtils {
                         if (isLevel(file)) {
                             String path = basePath + file.getName() + "/";
                             zout.putNextEntry(new ZipEntry(path));
-                            zipSubDirectory(path, file, zout);
+                            event.entries++;
+                            zipSubDirectory(path, file, zout, event);
                             zout.closeEntry();
                         }
                     } else {
@@ -44,9 +61,11 @@ class ZipUtils {
                         if (!file.getName().startsWith("java.io.FileInputStream")) {
                             FileInputStream fin = new FileInputStream(file);
                             zout.putNextEntry(new ZipEntry(basePath + file.getName()));
+                            event.entries++;
                             int length;
                             while ((length = fin.read(buffer)) > 0) {
                                 zout.write(buffer, 0, length);
+                                event.bytes += length;
                             }
                             zout.closeEntry();
                             fin.close();
@@ -58,6 +77,11 @@ class ZipUtils {
 
         static int unzip(File source, String out) throws IOException {
 
+            GameEvents.LevelsZip event = new GameEvents.LevelsZip();
+            event.begin();
+            event.operation = "import";
+            event.archive = source.getName();
+
             int dirsCounter = 0;
             try (ZipInputStream zis = new ZipInputStream(new FileInputStream(source))) {
 
@@ -65,6 +89,8 @@ class ZipUtils {
 
                 while (entry != null) {
 
+                    event.entries++;
+
                     File file = new File(out, entry.getName());
 
                     if (entry.isDirectory()) {
@@ -85,11 +111,18 @@ class ZipUtils {
 
                             while ((location = zis.read(buffer)) != -1) {
                                 bos.write(buffer, 0, location);
+                                event.bytes += location;
                             }
                         }
                     }
                     entry = zis.getNextEntry();
                 }
+                event.outcome = GameEvents.OUTCOME_OK;
+            } catch (IOException e) {
+                event.outcome = e.toString();
+                throw e;
+            } finally {
+                event.commit();
             }
             return dirsCounter;
         }
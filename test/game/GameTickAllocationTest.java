@@ -0,0 +1,216 @@
+package game;
+
+import game.Sprites.Player;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The game frames allocate nothing, on every level shipped. A frame is a tick and the dynamic layer drawn, as with
+ * 'eist-returns -S --check-alloc' (see Simulator.Frame).
+ *
+ * Eist gets played for a minute on each level, from a fixed seed: arrows placed in front of the gaps ahead of him,
+ * and elsewhere every other second, the ladder moved every few seconds, and every 20 seconds some time left to fall.
+ * He turns, walks into level arrows, keys, doors and teleports, crosses the ladder, and falls down. After the falldown
+ * the level starts over as in the game, restored from its start snapshot in the tick itself (see Utils.resetLevel()),
+ * and the play goes on; the same after reaching the exit. The input is given between the frames and is not measured,
+ * as in the Simulator.
+ *
+ * A level gets played again while the JIT settles, and the lowest count is kept (see Simulator.main()).
+ */
+class GameTickAllocationTest {
+
+    private static final int FIRST_LEVEL = 1;
+    private static final int LAST_LEVEL = 40;
+
+    private static final long PLAY_TICKS = 60L * GameClock.DEFAULT_TICK_RATE;
+
+    private static final int ARROW_INTERVAL_TICKS = 100;
+    private static final int LADDER_INTERVAL_TICKS = 170;
+
+    /**
+     * Eist gets kept on the path for a while, then left to fall
+     */
+    private static final int STEERING_TICKS = 1200;
+    private static final int FALLING_TICKS = 300;
+
+    /**
+     * How far ahead of the fall detection points a gap gets an arrow placed before it
+     */
+    private static final double LOOKAHEAD_DISTANCE = 2 * LevelData.GRID_DIMENSION;
+
+    private static final long SEED = 0x5EED_E157L;
+
+    private static final int[] DX = {1, 0, -1, 0};
+    private static final int[] DY = {0, 1, 0, -1};
+
+    /**
+     * Count of every GameState event, over all the levels
+     */
+    private final int[] events = new int[GameState.EVENT_EXIT_REACHED + 1];
+
+    private int resets;
+    private int ladderMoves;
+    private long random = SEED;
+
+    @Test
+    void framesAllocateNothing() throws IOException {
+
+        Simulator.AllocationCounter allocationCounter = Simulator.AllocationCounter.create();
+        assertNotNull(allocationCounter, "Allocation counting is not supported by this JVM");
+
+        // Kept across the runs, as the game keeps its renderer (see Simulator.main())
+        Simulator.Frame frame = new Simulator.Frame();
+
+        for (int level = FIRST_LEVEL; level <= LAST_LEVEL; level++) {
+            LevelData levelData = LevelData.load(level);
+
+            long allocatedBytes = -1;
+            for (int run = 0; run < Simulator.ALLOCATION_CHECK_RUNS && allocatedBytes != 0; run++) {
+                random = SEED + level;
+                allocatedBytes = play(levelData, frame, allocationCounter);
+            }
+            assertEquals(0, allocatedBytes, "level " + level + ": allocated by " + PLAY_TICKS + " frames");
+        }
+
+        /*
+         * Make sure the play got where the allocations used to be
+         */
+        assertTrue(events[GameState.EVENT_ARROW] > 0, "no arrow hit");
+        assertTrue(events[GameState.EVENT_TELEPORT] > 0, "no teleport");
+        assertTrue(events[GameState.EVENT_KEY] > 0, "no key collected");
+        assertTrue(events[GameState.EVENT_DOOR_OPEN] > 0, "no door opened");
+        assertTrue(events[GameState.EVENT_DOOR_BOUNCE] > 0, "no door bounce");
+        assertTrue(ladderMoves > 0, "no ladder moved");
+        assertTrue(events[GameState.EVENT_FALL_END] > 0, "no falldown");
+        assertTrue(resets > 0, "no level reset");
+    }
+
+    /**
+     * @return the bytes allocated by the frames
+     */
+    private long play(LevelData levelData, Simulator.Frame frame, Simulator.AllocationCounter allocationCounter) {
+
+        GameState state = levelData.newGame(GameClock.DEFAULT_TICK_RATE);
+        GameState.Snapshot levelStart = state.snapshot();
+        boolean[] exitReached = {false};
+
+        state.setListener((event, x) -> {
+            events[event]++;
+            if (event == GameState.EVENT_FALL_END) {
+                state.restore(levelStart);
+                resets++;
+            } else if (event == GameState.EVENT_EXIT_REACHED) {
+                exitReached[0] = true;
+            }
+        });
+        frame.start(levelData, state);
+
+        Player eist = state.getEist();
+        long allocatedBytes = 0;
+
+        for (long tick = 0; tick < PLAY_TICKS; tick++) {
+
+            if (exitReached[0]) {
+                exitReached[0] = false;
+                state.restore(levelStart);
+            }
+            if (!eist.isMoving) {
+                state.start();
+            }
+            placeArrow(levelData, state, tick);
+            if (tick % LADDER_INTERVAL_TICKS == LADDER_INTERVAL_TICKS - 1) {
+                moveLadder(levelData, state);
+            }
+
+            long before = allocationCounter.allocatedBytes();
+            frame.run();
+            allocatedBytes += allocationCounter.allocatedBytes() - before;
+        }
+        return allocatedBytes;
+    }
+
+    /**
+     * While steering, an arrow goes in front of a gap, turning Eist back to the path; the rest of the time he gets let
+     * fall. Now and then an arrow turns him anyway.
+     */
+    private void placeArrow(LevelData levelData, GameState state, long tick) {
+
+        Player eist = state.getEist();
+        if (eist.getTurning() != 0 || state.isFalling()) {
+            return;
+        }
+        int direction = eist.getDirection();
+        boolean steering = tick % STEERING_TICKS < STEERING_TICKS - FALLING_TICKS;
+        boolean gapAhead = !isWalkable(levelData, eist.getCenterX(), eist.getCenterY(), direction,
+                LOOKAHEAD_DISTANCE);
+        if (!(steering && gapAhead) && tick % ARROW_INTERVAL_TICKS != 0) {
+            return;
+        }
+
+        // The next square: the arrow area gets reached halfway there
+        int column = (int) Math.round(eist.x / LevelData.GRID_DIMENSION) + DX[direction];
+        int row = (int) Math.round(eist.y / LevelData.GRID_DIMENSION) + DY[direction];
+        double x = LevelData.GRID_DIMENSION * column;
+        double y = LevelData.GRID_DIMENSION * row;
+        double centerX = x + LevelData.GRID_DIMENSION;
+        double centerY = y + LevelData.GRID_DIMENSION;
+
+        // As Simulator.apply(): clicking the black area does nothing
+        if (!isOnPath(levelData, centerX, centerY)) {
+            return;
+        }
+        int turn = nextInt(3);
+        for (int i = 0; i < 3; i++) {
+            int newDirection = (direction + 1 + (turn + i) % 3) % 4;
+            if (isWalkable(levelData, centerX, centerY, newDirection, LevelData.GRID_DIMENSION)) {
+                state.placeArrow(x, y, newDirection);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return true if the fall detection points (see GameState.move()) stay on the path, the distance ahead
+     */
+    private static boolean isWalkable(LevelData levelData, double centerX, double centerY, int direction,
+                                      double distance) {
+
+        int offset = LevelData.DETECTION_OFFSET;
+        double aheadX = centerX + DX[direction] * (offset + distance);
+        double aheadY = centerY + DY[direction] * (offset + distance);
+        return isOnPath(levelData, aheadX + DY[direction] * offset, aheadY + DX[direction] * offset)
+                && isOnPath(levelData, aheadX - DY[direction] * offset, aheadY - DX[direction] * offset);
+    }
+
+    private static boolean isOnPath(LevelData levelData, double x, double y) {
+        return x >= 0 && y >= 0 && x < levelData.getBoardWidth() && y < levelData.getBoardHeight()
+                && !levelData.getTerrain().isVoid((int) x, (int) y);
+    }
+
+    /**
+     * Place the ladder on a slot, or take it away if placed already.
+     */
+    private void moveLadder(LevelData levelData, GameState state) {
+
+        int slotCount = levelData.getSlots().size();
+        int first = slotCount > 0 ? nextInt(slotCount) : 0;
+        for (int i = 0; i < slotCount; i++) {
+            if (state.clickSlot((first + i) % slotCount)) {
+                ladderMoves++;
+                return;
+            }
+        }
+    }
+
+    private int nextInt(int bound) {
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        return (int) Math.floorMod(random, (long) bound);
+    }
+}